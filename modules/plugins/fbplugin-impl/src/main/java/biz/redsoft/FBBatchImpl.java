@@ -56,6 +56,11 @@ public class FBBatchImpl implements IFBBatch {
         batch.getTransaction().commit();
     }
 
+    @Override
+    public void rollback() throws SQLException {
+        batch.getTransaction().rollback();
+    }
+
     @Override
     public void cancel() throws SQLException {
         batch.cancel();
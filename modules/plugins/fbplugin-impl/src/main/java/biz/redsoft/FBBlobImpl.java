@@ -16,7 +16,7 @@ import java.sql.SQLException;
 public class FBBlobImpl implements IFBBlob {
     DatabaseParameterBuffer buffer;
     FirebirdBlob detached = null;
-    long lenght = 0;
+    long lenght = -1;
     FbTransaction transaction = null;
 
     @Override
@@ -24,26 +24,44 @@ public class FBBlobImpl implements IFBBlob {
         FBBlob fbBlob = (FBBlob) blob;
         detached = fbBlob.detach();
         buffer = ((FBBlob) detached).getGdsHelper().getDatabaseParameterBuffer();
-        lenght = detached.length();
     }
 
-    @Override
-    public byte[] getBytes(long pos, int lenght) throws SQLException {
+    private void startTransaction() throws SQLException {
         if (((FBBlob) detached).getGdsHelper().getCurrentTransaction() == null) {
             TransactionParameterBuffer tpb = new TransactionParameterBufferImpl();
             transaction = ((FBBlob) detached).getGdsHelper().startTransaction(tpb);
             ((FBBlob) detached).getGdsHelper().setCurrentTransaction(transaction);
         }
+    }
+
+    @Override
+    public byte[] getBytes(long pos, int lenght) throws SQLException {
+        startTransaction();
         return detached.getBytes(pos, lenght);
     }
 
+    /**
+     * Length of the blob, requested from the server on the first call
+     * only - so the detached blob is not touched until it is read.
+     */
     @Override
     public long lenght() {
+        if (lenght < 0) {
+            try {
+                startTransaction();
+                lenght = detached.length();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return 0;
+            }
+        }
         return lenght;
     }
 
     @Override
     public void close() throws SQLException {
+        if (transaction == null)
+            return;
         transaction.commit();
         ((FBBlob) detached).free();
         ((FBBlob) detached).getGdsHelper().setCurrentTransaction(null);
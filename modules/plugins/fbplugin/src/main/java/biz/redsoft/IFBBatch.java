@@ -21,5 +21,7 @@ public interface IFBBatch {
 
     void commit() throws SQLException;
 
+    void rollback() throws SQLException;
+
     void cancel() throws SQLException;
 }
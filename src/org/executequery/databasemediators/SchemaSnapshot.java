@@ -0,0 +1,647 @@
+/*
+ * SchemaSnapshot.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databasemediators;
+
+import org.executequery.databaseobjects.DatabaseTypeConverter;
+import org.executequery.gui.browser.ColumnConstraint;
+import org.executequery.gui.browser.ColumnData;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Types;
+import java.util.*;
+
+import static org.executequery.databaseobjects.NamedObject.FOREIGN_KEY;
+import static org.executequery.databaseobjects.NamedObject.PRIMARY_KEY;
+import static org.executequery.databaseobjects.NamedObject.UNIQUE_KEY;
+
+/**
+ * Immutable in-memory graph of a database schema - relations with
+ * their fields, keys and indices, triggers, procedures, domains and
+ * object dependencies - as loaded in one pass by
+ * <code>SchemaSnapshotLoader</code>.
+ */
+public final class SchemaSnapshot {
+
+    private final DatabaseConnection databaseConnection;
+
+    private final long loadedAt;
+
+    private final String signature;
+
+    private final Map<String, Relation> relations;
+
+    private final List<Trigger> triggers;
+
+    private final List<String> procedures;
+
+    private final Set<String> domains;
+
+    private final List<Dependency> dependencies;
+
+    SchemaSnapshot(DatabaseConnection databaseConnection,
+                   long loadedAt,
+                   String signature,
+                   Map<String, Relation> relations,
+                   List<Trigger> triggers,
+                   List<String> procedures,
+                   Set<String> domains,
+                   List<Dependency> dependencies) {
+
+        this.databaseConnection = databaseConnection;
+        this.loadedAt = loadedAt;
+        this.signature = signature;
+        this.relations = Collections.unmodifiableMap(relations);
+        this.triggers = Collections.unmodifiableList(triggers);
+        this.procedures = Collections.unmodifiableList(procedures);
+        this.domains = Collections.unmodifiableSet(domains);
+        this.dependencies = Collections.unmodifiableList(dependencies);
+    }
+
+    public DatabaseConnection getDatabaseConnection() {
+        return databaseConnection;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Returns the signature of the non-relation objects this snapshot
+     * was loaded with, compared against the server to detect changes.
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    public Collection<Relation> getRelations() {
+        return relations.values();
+    }
+
+    public Relation getRelation(String name) {
+        return name != null ? relations.get(name.trim()) : null;
+    }
+
+    Map<String, Relation> getRelationMap() {
+        return relations;
+    }
+
+    public List<Trigger> getTriggers() {
+        return triggers;
+    }
+
+    public List<String> getProcedures() {
+        return procedures;
+    }
+
+    /**
+     * Returns the names of the user defined domains.
+     */
+    public Set<String> getDomains() {
+        return domains;
+    }
+
+    public List<Dependency> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Returns the dependencies whose dependent object is the one specified.
+     */
+    public List<Dependency> getDependenciesOf(String name) {
+
+        List<Dependency> list = new ArrayList<Dependency>();
+        for (Dependency dependency : dependencies) {
+
+            if (dependency.getDependentName().equals(name)) {
+
+                list.add(dependency);
+            }
+
+        }
+        return list;
+    }
+
+    /**
+     * Builds the column meta data for the specified relation in the same
+     * form as <code>MetaDataValues.getColumnMetaData</code>, or returns
+     * <code>null</code> if the relation is not part of this snapshot.
+     *
+     * @param name the relation name
+     * @return the column meta data or null
+     */
+    public ColumnData[] getColumnData(String name) {
+
+        Relation relation = getRelation(name);
+        if (relation == null) {
+
+            return null;
+        }
+
+        List<Field> fields = relation.getFields();
+        ColumnData[] columns = new ColumnData[fields.size()];
+
+        for (int i = 0; i < columns.length; i++) {
+
+            Field field = fields.get(i);
+
+            ColumnData cd = new ColumnData(databaseConnection);
+            cd.setColumnName(field.getName());
+            cd.setSQLType(field.getSqlType());
+            cd.setColumnType(field.getTypeName());
+            cd.setColumnSize(field.getSize());
+            cd.setColumnScale(field.getScale());
+            cd.setColumnSubtype(field.getSubType());
+            cd.setColumnRequired(field.isRequired()
+                    ? DatabaseMetaData.columnNoNulls : DatabaseMetaData.columnNullable);
+            cd.setDefaultValue(field.getDefaultSource());
+            cd.setTableName(relation.getName());
+
+            for (Constraint constraint : relation.getConstraints()) {
+
+                int index = constraint.getColumns().indexOf(field.getName());
+                if (index == -1 || constraint.getType() == UNIQUE_KEY) {
+
+                    continue;
+                }
+
+                ColumnConstraint cc = new ColumnConstraint();
+                cc.setTable(relation.getName());
+                cc.setColumn(field.getName());
+                cc.setName(constraint.getName());
+                cc.setType(constraint.getType());
+
+                if (constraint.getType() == PRIMARY_KEY) {
+
+                    cd.setPrimaryKey(true);
+
+                } else {
+
+                    cc.setRefTable(constraint.getReferencedRelation());
+                    if (index < constraint.getReferencedColumns().size()) {
+
+                        cc.setRefColumn(constraint.getReferencedColumns().get(index));
+                    }
+                    cd.setForeignKey(true);
+                }
+
+                cd.addConstraint(cc);
+            }
+
+            columns[i] = cd;
+        }
+
+        return columns;
+    }
+
+    /**
+     * A table or view.
+     */
+    public static final class Relation {
+
+        private final String name;
+
+        private final boolean view;
+
+        private final boolean system;
+
+        private final int relationType;
+
+        private final String description;
+
+        private final String viewSource;
+
+        private final String signature;
+
+        private final List<Field> fields = new ArrayList<Field>();
+
+        private final List<Constraint> constraints = new ArrayList<Constraint>();
+
+        private final List<Index> indices = new ArrayList<Index>();
+
+        Relation(String name, boolean view, boolean system, int relationType,
+                 String description, String viewSource, String signature) {
+            this.name = name;
+            this.view = view;
+            this.system = system;
+            this.relationType = relationType;
+            this.description = description;
+            this.viewSource = viewSource;
+            this.signature = signature;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isView() {
+            return view;
+        }
+
+        public boolean isSystem() {
+            return system;
+        }
+
+        /**
+         * Returns the <code>RDB$RELATION_TYPE</code> value or -1 where
+         * it is null or not supported by the server.
+         */
+        public int getRelationType() {
+            return relationType;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getViewSource() {
+            return viewSource;
+        }
+
+        /**
+         * Returns the change signature of this relation - its format
+         * number with hashes of its fields, indices, constraints,
+         * description and view source.
+         */
+        public String getSignature() {
+            return signature;
+        }
+
+        public List<Field> getFields() {
+            return Collections.unmodifiableList(fields);
+        }
+
+        public List<Constraint> getConstraints() {
+            return Collections.unmodifiableList(constraints);
+        }
+
+        public List<Index> getIndices() {
+            return Collections.unmodifiableList(indices);
+        }
+
+        public Constraint getPrimaryKey() {
+
+            for (Constraint constraint : constraints) {
+
+                if (constraint.getType() == PRIMARY_KEY) {
+
+                    return constraint;
+                }
+
+            }
+            return null;
+        }
+
+        public List<Constraint> getForeignKeys() {
+
+            List<Constraint> list = new ArrayList<Constraint>();
+            for (Constraint constraint : constraints) {
+
+                if (constraint.getType() == FOREIGN_KEY) {
+
+                    list.add(constraint);
+                }
+
+            }
+            return list;
+        }
+
+        void addField(Field field) {
+            fields.add(field);
+        }
+
+        void addConstraint(Constraint constraint) {
+            constraints.add(constraint);
+        }
+
+        void addIndex(Index index) {
+            indices.add(index);
+        }
+
+    }
+
+    /**
+     * A relation column with its resolved domain type.
+     */
+    public static final class Field {
+
+        private final String name;
+
+        private final String domain;
+
+        private final int fieldType;
+
+        private final int subType;
+
+        private final int size;
+
+        private final int scale;
+
+        private final boolean required;
+
+        private final String defaultSource;
+
+        private final String computedSource;
+
+        Field(String name, String domain, int fieldType, int subType, int size,
+              int scale, boolean required, String defaultSource, String computedSource) {
+            this.name = name;
+            this.domain = domain;
+            this.fieldType = fieldType;
+            this.subType = subType;
+            this.size = size;
+            this.scale = scale;
+            this.required = required;
+            this.defaultSource = defaultSource;
+            this.computedSource = computedSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDomain() {
+            return domain;
+        }
+
+        public int getFieldType() {
+            return fieldType;
+        }
+
+        public int getSubType() {
+            return subType;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        public String getDefaultSource() {
+            return defaultSource;
+        }
+
+        public String getComputedSource() {
+            return computedSource;
+        }
+
+        public boolean isComputed() {
+            return computedSource != null;
+        }
+
+        public String getTypeName() {
+            return DatabaseTypeConverter.getDataTypeName(fieldType, subType, -scale);
+        }
+
+        public int getSqlType() {
+
+            String typeName = getTypeName();
+            if ("NUMERIC".equals(typeName)) {
+
+                return Types.NUMERIC;
+
+            } else if ("DECIMAL".equals(typeName)) {
+
+                return Types.DECIMAL;
+            }
+            return DatabaseTypeConverter.getSqlTypeFromRDBType(fieldType, subType);
+        }
+
+    }
+
+    /**
+     * A primary, unique or foreign key with its columns in key order.
+     */
+    public static final class Constraint {
+
+        private final String name;
+
+        private final int type;
+
+        private final List<String> columns = new ArrayList<String>();
+
+        private String referencedRelation;
+
+        private List<String> referencedColumns = Collections.emptyList();
+
+        private String updateRule;
+
+        private String deleteRule;
+
+        Constraint(String name, int type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public List<String> getColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        public String getReferencedRelation() {
+            return referencedRelation;
+        }
+
+        public List<String> getReferencedColumns() {
+            return Collections.unmodifiableList(referencedColumns);
+        }
+
+        public String getUpdateRule() {
+            return updateRule;
+        }
+
+        public String getDeleteRule() {
+            return deleteRule;
+        }
+
+        void addColumn(String column) {
+            columns.add(column);
+        }
+
+        void setReference(String relation, List<String> columns, String updateRule, String deleteRule) {
+            this.referencedRelation = relation;
+            this.referencedColumns = columns;
+            this.updateRule = updateRule;
+            this.deleteRule = deleteRule;
+        }
+
+    }
+
+    /**
+     * A relation index.
+     */
+    public static final class Index {
+
+        private final String name;
+
+        private final boolean unique;
+
+        private final boolean descending;
+
+        private final boolean active;
+
+        private final boolean system;
+
+        private final List<String> columns = new ArrayList<String>();
+
+        Index(String name, boolean unique, boolean descending, boolean active, boolean system) {
+            this.name = name;
+            this.unique = unique;
+            this.descending = descending;
+            this.active = active;
+            this.system = system;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUnique() {
+            return unique;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public boolean isSystem() {
+            return system;
+        }
+
+        public List<String> getColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        void addColumn(String column) {
+            columns.add(column);
+        }
+
+    }
+
+    /**
+     * A trigger with the relation it fires on, if any.
+     */
+    public static final class Trigger {
+
+        private final String name;
+
+        private final String relation;
+
+        private final long type;
+
+        private final boolean active;
+
+        private final boolean system;
+
+        Trigger(String name, String relation, long type, boolean active, boolean system) {
+            this.name = name;
+            this.relation = relation;
+            this.type = type;
+            this.active = active;
+            this.system = system;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRelation() {
+            return relation;
+        }
+
+        public long getType() {
+            return type;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public boolean isSystem() {
+            return system;
+        }
+
+    }
+
+    /**
+     * A row of <code>RDB$DEPENDENCIES</code>.
+     */
+    public static final class Dependency {
+
+        private final String dependentName;
+
+        private final int dependentType;
+
+        private final String dependedOnName;
+
+        private final int dependedOnType;
+
+        private final String fieldName;
+
+        Dependency(String dependentName, int dependentType,
+                   String dependedOnName, int dependedOnType, String fieldName) {
+            this.dependentName = dependentName;
+            this.dependentType = dependentType;
+            this.dependedOnName = dependedOnName;
+            this.dependedOnType = dependedOnType;
+            this.fieldName = fieldName;
+        }
+
+        public String getDependentName() {
+            return dependentName;
+        }
+
+        public int getDependentType() {
+            return dependentType;
+        }
+
+        public String getDependedOnName() {
+            return dependedOnName;
+        }
+
+        public int getDependedOnType() {
+            return dependedOnType;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+    }
+
+}
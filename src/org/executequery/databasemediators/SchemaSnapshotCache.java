@@ -0,0 +1,362 @@
+/*
+ * SchemaSnapshotCache.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databasemediators;
+
+import org.executequery.datasource.ConnectionManager;
+import org.executequery.log.Log;
+import org.executequery.util.UserSettingsProperties;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.executequery.databasemediators.SchemaSnapshot.*;
+
+/**
+ * Stores schema snapshots in the user settings directory, one gzipped
+ * binary file per connection, so a connection can start from the last
+ * known schema and only refresh what changed on the server.
+ */
+public class SchemaSnapshotCache {
+
+    private static final int MAGIC = 0x52455353;
+
+    /**
+     * bumped whenever the file layout changes - older files are ignored
+     */
+    private static final int VERSION = 1;
+
+    private static final String DIRECTORY = "metadata";
+
+    private static final String EXTENSION = ".snapshot";
+
+    /**
+     * Reads the cached snapshot for the specified connection, returning
+     * <code>null</code> where there is none or it can not be used.
+     *
+     * @param dc the database connection
+     * @return the cached snapshot or null
+     */
+    public SchemaSnapshot read(DatabaseConnection dc) {
+
+        File file = fileFor(dc);
+        if (!file.exists()) {
+
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+
+            in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new FileInputStream(file))));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !String.valueOf(ConnectionManager.getURL(dc)).equals(readString(in))) {
+
+                return null;
+            }
+
+            return readSnapshot(in, dc);
+
+        } catch (IOException e) {
+
+            Log.warning("Discarding unreadable schema cache " + file.getName() + ": " + e.getMessage());
+            file.delete();
+            return null;
+
+        } finally {
+
+            close(in);
+        }
+
+    }
+
+    /**
+     * Writes the specified snapshot for its connection, replacing any
+     * previous file only once the new one is complete.
+     *
+     * @param snapshot the snapshot to store
+     */
+    public void write(SchemaSnapshot snapshot) {
+
+        DatabaseConnection dc = snapshot.getDatabaseConnection();
+        File file = fileFor(dc);
+        File temp = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+
+            file.getParentFile().mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(temp))));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, String.valueOf(ConnectionManager.getURL(dc)));
+            writeSnapshot(out, snapshot);
+            out.close();
+            out = null;
+
+            if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+
+                throw new IOException("unable to replace " + file.getName());
+            }
+
+        } catch (IOException e) {
+
+            Log.warning("Error writing schema cache for " + dc.getName() + ": " + e.getMessage());
+            temp.delete();
+
+        } finally {
+
+            close(out);
+        }
+
+    }
+
+    /**
+     * Removes the cached snapshot of the specified connection.
+     */
+    public void delete(DatabaseConnection dc) {
+        fileFor(dc).delete();
+    }
+
+    private File fileFor(DatabaseConnection dc) {
+
+        UserSettingsProperties settings = new UserSettingsProperties();
+        return new File(settings.getUserSettingsDirectory() + DIRECTORY
+                + settings.fileSeparator() + dc.getId() + EXTENSION);
+    }
+
+    private void writeSnapshot(DataOutputStream out, SchemaSnapshot snapshot) throws IOException {
+
+        out.writeLong(snapshot.getLoadedAt());
+        writeString(out, snapshot.getSignature());
+
+        out.writeInt(snapshot.getRelationMap().size());
+        for (Relation relation : snapshot.getRelations()) {
+
+            writeString(out, relation.getName());
+            out.writeBoolean(relation.isView());
+            out.writeBoolean(relation.isSystem());
+            out.writeInt(relation.getRelationType());
+            writeString(out, relation.getDescription());
+            writeString(out, relation.getViewSource());
+            writeString(out, relation.getSignature());
+
+            out.writeInt(relation.getFields().size());
+            for (Field field : relation.getFields()) {
+
+                writeString(out, field.getName());
+                writeString(out, field.getDomain());
+                out.writeInt(field.getFieldType());
+                out.writeInt(field.getSubType());
+                out.writeInt(field.getSize());
+                out.writeInt(field.getScale());
+                out.writeBoolean(field.isRequired());
+                writeString(out, field.getDefaultSource());
+                writeString(out, field.getComputedSource());
+            }
+
+            out.writeInt(relation.getConstraints().size());
+            for (Constraint constraint : relation.getConstraints()) {
+
+                writeString(out, constraint.getName());
+                out.writeInt(constraint.getType());
+                writeStrings(out, constraint.getColumns());
+                writeString(out, constraint.getReferencedRelation());
+                writeStrings(out, constraint.getReferencedColumns());
+                writeString(out, constraint.getUpdateRule());
+                writeString(out, constraint.getDeleteRule());
+            }
+
+            out.writeInt(relation.getIndices().size());
+            for (Index index : relation.getIndices()) {
+
+                writeString(out, index.getName());
+                out.writeBoolean(index.isUnique());
+                out.writeBoolean(index.isDescending());
+                out.writeBoolean(index.isActive());
+                out.writeBoolean(index.isSystem());
+                writeStrings(out, index.getColumns());
+            }
+
+        }
+
+        out.writeInt(snapshot.getTriggers().size());
+        for (Trigger trigger : snapshot.getTriggers()) {
+
+            writeString(out, trigger.getName());
+            writeString(out, trigger.getRelation());
+            out.writeLong(trigger.getType());
+            out.writeBoolean(trigger.isActive());
+            out.writeBoolean(trigger.isSystem());
+        }
+
+        writeStrings(out, snapshot.getProcedures());
+        writeStrings(out, new ArrayList<String>(snapshot.getDomains()));
+
+        out.writeInt(snapshot.getDependencies().size());
+        for (Dependency dependency : snapshot.getDependencies()) {
+
+            writeString(out, dependency.getDependentName());
+            out.writeInt(dependency.getDependentType());
+            writeString(out, dependency.getDependedOnName());
+            out.writeInt(dependency.getDependedOnType());
+            writeString(out, dependency.getFieldName());
+        }
+
+    }
+
+    private SchemaSnapshot readSnapshot(DataInputStream in, DatabaseConnection dc) throws IOException {
+
+        long loadedAt = in.readLong();
+        String signature = readString(in);
+
+        int count = in.readInt();
+        Map<String, Relation> relations = new LinkedHashMap<String, Relation>();
+        for (int i = 0; i < count; i++) {
+
+            Relation relation = new Relation(readString(in), in.readBoolean(), in.readBoolean(),
+                    in.readInt(), readString(in), readString(in), readString(in));
+            relations.put(relation.getName(), relation);
+
+            int fields = in.readInt();
+            for (int j = 0; j < fields; j++) {
+
+                relation.addField(new Field(readString(in), readString(in), in.readInt(), in.readInt(),
+                        in.readInt(), in.readInt(), in.readBoolean(), readString(in), readString(in)));
+            }
+
+            int constraints = in.readInt();
+            for (int j = 0; j < constraints; j++) {
+
+                Constraint constraint = new Constraint(readString(in), in.readInt());
+                for (String column : readStrings(in)) {
+
+                    constraint.addColumn(column);
+                }
+                constraint.setReference(readString(in), readStrings(in), readString(in), readString(in));
+                relation.addConstraint(constraint);
+            }
+
+            int indices = in.readInt();
+            for (int j = 0; j < indices; j++) {
+
+                Index index = new Index(readString(in), in.readBoolean(),
+                        in.readBoolean(), in.readBoolean(), in.readBoolean());
+                for (String column : readStrings(in)) {
+
+                    index.addColumn(column);
+                }
+                relation.addIndex(index);
+            }
+
+        }
+
+        count = in.readInt();
+        List<Trigger> triggers = new ArrayList<Trigger>(count);
+        for (int i = 0; i < count; i++) {
+
+            triggers.add(new Trigger(readString(in), readString(in),
+                    in.readLong(), in.readBoolean(), in.readBoolean()));
+        }
+
+        List<String> procedures = readStrings(in);
+        Set<String> domains = new HashSet<String>(readStrings(in));
+
+        count = in.readInt();
+        List<Dependency> dependencies = new ArrayList<Dependency>(count);
+        for (int i = 0; i < count; i++) {
+
+            dependencies.add(new Dependency(readString(in), in.readInt(),
+                    readString(in), in.readInt(), readString(in)));
+        }
+
+        return new SchemaSnapshot(dc, loadedAt, signature,
+                relations, triggers, procedures, domains, dependencies);
+    }
+
+    private void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+
+        out.writeInt(values.size());
+        for (String value : values) {
+
+            writeString(out, value);
+        }
+    }
+
+    private List<String> readStrings(DataInputStream in) throws IOException {
+
+        int count = in.readInt();
+        List<String> values = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string - writeUTF is limited to
+     * 64k which view sources and descriptions may exceed.
+     */
+    private void writeString(DataOutputStream out, String value) throws IOException {
+
+        if (value == null) {
+
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+        if (length < 0) {
+
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void close(Closeable closeable) {
+
+        if (closeable != null) {
+
+            try {
+                closeable.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+}
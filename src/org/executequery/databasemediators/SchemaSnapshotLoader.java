@@ -0,0 +1,696 @@
+/*
+ * SchemaSnapshotLoader.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databasemediators;
+
+import org.executequery.datasource.ConnectionManager;
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+
+import java.sql.*;
+import java.util.*;
+
+import static org.executequery.databaseobjects.NamedObject.FOREIGN_KEY;
+import static org.executequery.databaseobjects.NamedObject.PRIMARY_KEY;
+import static org.executequery.databaseobjects.NamedObject.UNIQUE_KEY;
+import static org.executequery.databasemediators.SchemaSnapshot.*;
+
+/**
+ * Loads a <code>SchemaSnapshot</code> of a whole Firebird database with
+ * one set based query per system table group instead of a set of
+ * meta data calls per object.
+ * <p>
+ * A previously loaded snapshot may be refreshed against the server -
+ * only relations whose signature has changed are read again.
+ */
+public class SchemaSnapshotLoader {
+
+    /**
+     * the largest number of names bound to one relation name filter
+     */
+    private static final int FILTER_SIZE = 100;
+
+    /**
+     * the number of changed relations above which a refresh is a full load
+     */
+    private static final int FULL_RELOAD_THRESHOLD = 500;
+
+    /**
+     * the relation signatures - the format number with a hash of the
+     * fields including their domain definitions, of the indices with
+     * their inactive flags, of the constraints, of the description and
+     * of the view source. A different aggregation order only costs an
+     * unneeded reload.
+     */
+    private static final String RELATION_SIGNATURES_QUERY =
+            "select r.rdb$relation_name, r.rdb$format,\n" +
+            "(select hash(list(trim(rf.rdb$field_name) || ':' || trim(rf.rdb$field_source) || ':'\n" +
+            "|| coalesce(rf.rdb$field_position, -1) || ':' || coalesce(rf.rdb$null_flag, 0) || ':'\n" +
+            "|| coalesce(hash(rf.rdb$default_source), 0) || ':' || coalesce(hash(rf.rdb$description), 0) || ':'\n" +
+            "|| coalesce(f.rdb$field_type, 0) || ':' || coalesce(f.rdb$field_sub_type, 0) || ':'\n" +
+            "|| coalesce(f.rdb$field_length, 0) || ':' || coalesce(f.rdb$field_scale, 0) || ':'\n" +
+            "|| coalesce(f.rdb$null_flag, 0) || ':' || coalesce(hash(f.rdb$default_source), 0)))\n" +
+            "from rdb$relation_fields rf\n" +
+            "left join rdb$fields f on f.rdb$field_name = rf.rdb$field_source\n" +
+            "where rf.rdb$relation_name = r.rdb$relation_name),\n" +
+            "(select hash(list(trim(i.rdb$index_name) || ':' || coalesce(i.rdb$index_inactive, 0) || ':'\n" +
+            "|| coalesce(i.rdb$unique_flag, 0) || ':' || coalesce(i.rdb$index_type, 0) || ':' || i.rdb$segment_count))\n" +
+            "from rdb$indices i where i.rdb$relation_name = r.rdb$relation_name),\n" +
+            "(select hash(list(trim(c.rdb$constraint_name) || ':' || trim(c.rdb$constraint_type) || ':'\n" +
+            "|| coalesce(trim(c.rdb$index_name), '')))\n" +
+            "from rdb$relation_constraints c where c.rdb$relation_name = r.rdb$relation_name),\n" +
+            "coalesce(hash(r.rdb$description), 0), coalesce(hash(r.rdb$view_source), 0)\n" +
+            "from rdb$relations r\n" +
+            "order by r.rdb$relation_name";
+
+    /**
+     * the signature of the non-relation objects - a hash per object
+     * type over the names and the definitions held in the system tables,
+     * so an altered domain type, a trigger switched inactive or a replaced
+     * dependency changes it
+     */
+    private static final String SIGNATURE_QUERY =
+            "select (select hash(list(trim(rdb$trigger_name) || ':' || coalesce(trim(rdb$relation_name), '') || ':'\n" +
+            "|| rdb$trigger_type || ':' || coalesce(rdb$trigger_inactive, 0))) from rdb$triggers),\n" +
+            "(select hash(list(trim(rdb$procedure_name))) from rdb$procedures),\n" +
+            "(select hash(list(trim(rdb$field_name) || ':' || coalesce(rdb$field_type, 0) || ':'\n" +
+            "|| coalesce(rdb$field_sub_type, 0) || ':' || coalesce(rdb$field_length, 0) || ':'\n" +
+            "|| coalesce(rdb$field_scale, 0) || ':' || coalesce(rdb$field_precision, 0) || ':'\n" +
+            "|| coalesce(rdb$null_flag, 0) || ':' || coalesce(hash(rdb$default_source), 0) || ':'\n" +
+            "|| coalesce(hash(rdb$validation_source), 0)))\n" +
+            "from rdb$fields where rdb$system_flag = 0),\n" +
+            "(select hash(list(trim(rdb$dependent_name) || ':' || rdb$dependent_type || ':'\n" +
+            "|| trim(rdb$depended_on_name) || ':' || rdb$depended_on_type || ':'\n" +
+            "|| coalesce(trim(rdb$field_name), ''))) from rdb$dependencies)\n" +
+            "from rdb$database";
+
+    private static final String RELATIONS_QUERY =
+            "select r.rdb$relation_name, r.rdb$system_flag,\n" +
+            "iif(r.rdb$view_blr is null, 0, 1), %s,\n" +
+            "r.rdb$description, r.rdb$view_source\n" +
+            "from rdb$relations r\n" +
+            "%s";
+
+    private static final String FIELDS_QUERY =
+            "select rf.rdb$relation_name, rf.rdb$field_name, rf.rdb$field_source,\n" +
+            "f.rdb$field_type, f.rdb$field_sub_type, f.rdb$field_length,\n" +
+            "f.rdb$character_length, f.rdb$field_precision, f.rdb$field_scale,\n" +
+            "coalesce(rf.rdb$null_flag, f.rdb$null_flag),\n" +
+            "coalesce(rf.rdb$default_source, f.rdb$default_source),\n" +
+            "f.rdb$computed_source\n" +
+            "from rdb$relation_fields rf\n" +
+            "join rdb$fields f on f.rdb$field_name = rf.rdb$field_source\n" +
+            "%s" +
+            "order by rf.rdb$relation_name, rf.rdb$field_position";
+
+    private static final String CONSTRAINTS_QUERY =
+            "select rc.rdb$relation_name, rc.rdb$constraint_name, rc.rdb$constraint_type,\n" +
+            "s.rdb$field_name, ref.rdb$const_name_uq, ref.rdb$update_rule, ref.rdb$delete_rule,\n" +
+            "uq.rdb$relation_name, us.rdb$field_name\n" +
+            "from rdb$relation_constraints rc\n" +
+            "join rdb$index_segments s on s.rdb$index_name = rc.rdb$index_name\n" +
+            "left join rdb$ref_constraints ref on ref.rdb$constraint_name = rc.rdb$constraint_name\n" +
+            "left join rdb$relation_constraints uq on uq.rdb$constraint_name = ref.rdb$const_name_uq\n" +
+            "left join rdb$index_segments us on us.rdb$index_name = uq.rdb$index_name\n" +
+            "and us.rdb$field_position = s.rdb$field_position\n" +
+            "where rc.rdb$constraint_type in ('PRIMARY KEY', 'UNIQUE', 'FOREIGN KEY')\n" +
+            "%s" +
+            "order by rc.rdb$relation_name, rc.rdb$constraint_name, s.rdb$field_position";
+
+    private static final String INDICES_QUERY =
+            "select i.rdb$relation_name, i.rdb$index_name, i.rdb$unique_flag,\n" +
+            "i.rdb$index_type, i.rdb$index_inactive, i.rdb$system_flag, s.rdb$field_name\n" +
+            "from rdb$indices i\n" +
+            "left join rdb$index_segments s on s.rdb$index_name = i.rdb$index_name\n" +
+            "%s" +
+            "order by i.rdb$relation_name, i.rdb$index_name, s.rdb$field_position";
+
+    private static final String TRIGGERS_QUERY =
+            "select rdb$trigger_name, rdb$relation_name, rdb$trigger_type,\n" +
+            "rdb$trigger_inactive, rdb$system_flag\n" +
+            "from rdb$triggers\n" +
+            "order by rdb$trigger_name";
+
+    private static final String PROCEDURES_QUERY =
+            "select rdb$procedure_name\n" +
+            "from rdb$procedures\n" +
+            "order by rdb$procedure_name";
+
+    private static final String DOMAINS_QUERY =
+            "select rdb$field_name\n" +
+            "from rdb$fields\n" +
+            "where rdb$system_flag = 0 and rdb$field_name not starting with 'RDB$'";
+
+    private static final String DEPENDENCIES_QUERY =
+            "select rdb$dependent_name, rdb$dependent_type,\n" +
+            "rdb$depended_on_name, rdb$depended_on_type, rdb$field_name\n" +
+            "from rdb$dependencies";
+
+    private final DatabaseConnection databaseConnection;
+
+    public SchemaSnapshotLoader(DatabaseConnection databaseConnection) {
+        this.databaseConnection = databaseConnection;
+    }
+
+    /**
+     * Returns whether the specified connection is a Firebird connection
+     * and so may be loaded from the <code>RDB$</code> system tables.
+     */
+    public static boolean isSupported(Connection connection) throws SQLException {
+        return connection.unwrap(Connection.class).getClass().getName().contains("FBConnection");
+    }
+
+    /**
+     * Loads the snapshot, returning <code>null</code> where the
+     * connection does not support the system table queries.
+     *
+     * @return the loaded snapshot or null
+     */
+    public SchemaSnapshot load() throws DataSourceException {
+        return refresh(null);
+    }
+
+    /**
+     * Checks the specified snapshot against the server and returns it
+     * unchanged if nothing it covers was altered, otherwise a new
+     * snapshot with the changed relations read again. With no snapshot
+     * to start from the whole schema is loaded.
+     *
+     * @param cached the snapshot to refresh or null
+     * @return the current snapshot or null where not supported
+     */
+    public SchemaSnapshot refresh(SchemaSnapshot cached) throws DataSourceException {
+
+        Connection connection = null;
+
+        try {
+
+            long start = System.currentTimeMillis();
+
+            connection = ConnectionManager.getConnection(databaseConnection);
+            if (!isSupported(connection)) {
+
+                return null;
+            }
+
+            Map<String, String> signatures = loadRelationSignatures(connection);
+            String signature = loadSignature(connection);
+
+            List<String> changed = new ArrayList<String>();
+            for (Map.Entry<String, String> entry : signatures.entrySet()) {
+
+                Relation relation = cached != null ? cached.getRelation(entry.getKey()) : null;
+                if (relation == null || !relation.getSignature().equals(entry.getValue())) {
+
+                    changed.add(entry.getKey());
+                }
+
+            }
+
+            boolean dropped = cached != null
+                    && !signatures.keySet().containsAll(cached.getRelationMap().keySet());
+
+            if (cached != null && changed.isEmpty() && !dropped
+                    && signature.equals(cached.getSignature())) {
+
+                if (Log.isDebugEnabled()) {
+
+                    Log.debug("Schema snapshot for " + databaseConnection.getName()
+                            + " is current, checked in " + (System.currentTimeMillis() - start) + "ms");
+                }
+
+                return cached;
+            }
+
+            boolean full = cached == null || changed.size() > FULL_RELOAD_THRESHOLD;
+            List<String> filter = full ? null : changed;
+
+            Map<String, Relation> loaded = loadRelations(connection, filter, signatures);
+            loadFields(connection, filter, loaded);
+            loadConstraints(connection, filter, loaded);
+            loadIndices(connection, filter, loaded);
+
+            // keep the unchanged relations in server order
+            Map<String, Relation> relations = new LinkedHashMap<String, Relation>();
+            for (String name : signatures.keySet()) {
+
+                Relation relation = loaded.get(name);
+                if (relation == null && cached != null) {
+
+                    relation = cached.getRelation(name);
+                }
+
+                if (relation != null) {
+
+                    relations.put(name, relation);
+                }
+
+            }
+
+            List<Trigger> triggers;
+            List<String> procedures;
+            Set<String> domains;
+            if (full || !signature.equals(cached.getSignature())) {
+
+                triggers = loadTriggers(connection);
+                procedures = loadNames(connection, PROCEDURES_QUERY);
+                domains = new HashSet<String>(loadNames(connection, DOMAINS_QUERY));
+
+            } else {
+
+                triggers = cached.getTriggers();
+                procedures = cached.getProcedures();
+                domains = cached.getDomains();
+            }
+
+            SchemaSnapshot snapshot = new SchemaSnapshot(databaseConnection, System.currentTimeMillis(),
+                    signature, relations, triggers, procedures, domains, loadDependencies(connection));
+
+            if (Log.isDebugEnabled()) {
+
+                Log.debug("Schema snapshot of " + relations.size() + " relations for "
+                        + databaseConnection.getName() + (full ? " loaded" : " refreshed "
+                        + changed.size() + " changed") + " in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            }
+
+            return snapshot;
+
+        } catch (SQLException e) {
+
+            throw new DataSourceException(e);
+
+        } finally {
+
+            if (connection != null) {
+
+                // back to the pool - the pool's close would destroy it
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    Log.debug("Error returning snapshot connection: " + e.getMessage());
+                }
+            }
+
+        }
+
+    }
+
+    private Map<String, String> loadRelationSignatures(Connection connection) throws SQLException {
+
+        Map<String, String> signatures = new LinkedHashMap<String, String>();
+
+        ResultSet rs = query(connection, RELATION_SIGNATURES_QUERY, null);
+        try {
+
+            while (rs.next()) {
+
+                signatures.put(trim(rs.getString(1)), rs.getInt(2) + ":" + rs.getLong(3) + ":"
+                        + rs.getLong(4) + ":" + rs.getLong(5) + ":" + rs.getLong(6) + ":" + rs.getLong(7));
+            }
+
+        } finally {
+            close(rs);
+        }
+
+        return signatures;
+    }
+
+    private String loadSignature(Connection connection) throws SQLException {
+
+        ResultSet rs = query(connection, SIGNATURE_QUERY, null);
+        try {
+
+            StringBuilder sb = new StringBuilder();
+            if (rs.next()) {
+
+                int count = rs.getMetaData().getColumnCount();
+                for (int i = 1; i <= count; i++) {
+
+                    sb.append(rs.getLong(i)).append(':');
+                }
+
+            }
+            return sb.toString();
+
+        } finally {
+            close(rs);
+        }
+
+    }
+
+    private Map<String, Relation> loadRelations(Connection connection, List<String> names,
+                                                Map<String, String> signatures) throws SQLException {
+
+        String relationType = connection.getMetaData().getDatabaseMajorVersion() < 2
+                ? "cast(null as smallint)" : "r.rdb$relation_type";
+
+        Map<String, Relation> relations = new HashMap<String, Relation>();
+
+        for (List<String> chunk : chunks(names)) {
+
+            ResultSet rs = query(connection, String.format(RELATIONS_QUERY, relationType,
+                    filter("where", "r.rdb$relation_name", chunk)), chunk);
+            try {
+
+                while (rs.next()) {
+
+                    String name = trim(rs.getString(1));
+                    int type = rs.getInt(4);
+                    if (rs.wasNull()) {
+
+                        type = -1;
+                    }
+
+                    String signature = signatures.get(name);
+                    relations.put(name, new Relation(name, rs.getInt(3) == 1, rs.getInt(2) != 0, type,
+                            rs.getString(5), rs.getString(6), signature != null ? signature : ""));
+                }
+
+            } finally {
+                close(rs);
+            }
+
+        }
+
+        return relations;
+    }
+
+    private void loadFields(Connection connection, List<String> names,
+                            Map<String, Relation> relations) throws SQLException {
+
+        for (List<String> chunk : chunks(names)) {
+
+            ResultSet rs = query(connection, String.format(FIELDS_QUERY,
+                    filter("where", "rf.rdb$relation_name", chunk)), chunk);
+            try {
+
+                while (rs.next()) {
+
+                    Relation relation = relations.get(trim(rs.getString(1)));
+                    if (relation == null) {
+
+                        continue;
+                    }
+
+                    int fieldType = rs.getInt(4);
+                    int subType = rs.getInt(5);
+                    int precision = rs.getInt(8);
+                    int scale = rs.getInt(9);
+
+                    int size;
+                    if (rs.getObject(7) != null) {
+
+                        size = rs.getInt(7);
+
+                    } else if (precision > 0) {
+
+                        size = precision;
+
+                    } else {
+
+                        size = rs.getInt(6);
+                    }
+
+                    relation.addField(new Field(trim(rs.getString(2)), trim(rs.getString(3)),
+                            fieldType, subType, size, -scale, rs.getInt(10) == 1,
+                            trimDefault(rs.getString(11)), trim(rs.getString(12))));
+                }
+
+            } finally {
+                close(rs);
+            }
+
+        }
+
+    }
+
+    private void loadConstraints(Connection connection, List<String> names,
+                                 Map<String, Relation> relations) throws SQLException {
+
+        Map<String, Constraint> constraints = new HashMap<String, Constraint>();
+        Map<String, List<String>> referencedColumns = new HashMap<String, List<String>>();
+
+        for (List<String> chunk : chunks(names)) {
+
+            ResultSet rs = query(connection, String.format(CONSTRAINTS_QUERY,
+                    filter("and", "rc.rdb$relation_name", chunk)), chunk);
+            try {
+
+                while (rs.next()) {
+
+                    String name = trim(rs.getString(2));
+
+                    Constraint constraint = constraints.get(name);
+                    if (constraint == null) {
+
+                        constraint = new Constraint(name, constraintType(trim(rs.getString(3))));
+                        constraints.put(name, constraint);
+
+                        Relation relation = relations.get(trim(rs.getString(1)));
+                        if (relation != null) {
+
+                            relation.addConstraint(constraint);
+                        }
+
+                        if (constraint.getType() == FOREIGN_KEY) {
+
+                            List<String> columns = new ArrayList<String>();
+                            referencedColumns.put(name, columns);
+                            constraint.setReference(trim(rs.getString(8)), columns,
+                                    trim(rs.getString(6)), trim(rs.getString(7)));
+                        }
+
+                    }
+
+                    constraint.addColumn(trim(rs.getString(4)));
+                    if (constraint.getType() == FOREIGN_KEY) {
+
+                        referencedColumns.get(name).add(trim(rs.getString(9)));
+                    }
+
+                }
+
+            } finally {
+                close(rs);
+            }
+
+        }
+
+    }
+
+    private void loadIndices(Connection connection, List<String> names,
+                             Map<String, Relation> relations) throws SQLException {
+
+        for (List<String> chunk : chunks(names)) {
+
+            ResultSet rs = query(connection, String.format(INDICES_QUERY,
+                    filter("where", "i.rdb$relation_name", chunk)), chunk);
+            try {
+
+                Index index = null;
+                while (rs.next()) {
+
+                    String name = trim(rs.getString(2));
+                    if (index == null || !index.getName().equals(name)) {
+
+                        index = new Index(name, rs.getInt(3) == 1, rs.getInt(4) == 1,
+                                rs.getInt(5) != 1, rs.getInt(6) != 0);
+
+                        Relation relation = relations.get(trim(rs.getString(1)));
+                        if (relation != null) {
+
+                            relation.addIndex(index);
+                        }
+
+                    }
+
+                    String column = trim(rs.getString(7));
+                    if (column != null) {
+
+                        index.addColumn(column);
+                    }
+
+                }
+
+            } finally {
+                close(rs);
+            }
+
+        }
+
+    }
+
+    private List<Trigger> loadTriggers(Connection connection) throws SQLException {
+
+        List<Trigger> triggers = new ArrayList<Trigger>();
+
+        ResultSet rs = query(connection, TRIGGERS_QUERY, null);
+        try {
+
+            while (rs.next()) {
+
+                triggers.add(new Trigger(trim(rs.getString(1)), trim(rs.getString(2)),
+                        rs.getLong(3), rs.getInt(4) != 1, rs.getInt(5) != 0));
+            }
+
+        } finally {
+            close(rs);
+        }
+
+        return triggers;
+    }
+
+    private List<Dependency> loadDependencies(Connection connection) throws SQLException {
+
+        List<Dependency> dependencies = new ArrayList<Dependency>();
+
+        ResultSet rs = query(connection, DEPENDENCIES_QUERY, null);
+        try {
+
+            while (rs.next()) {
+
+                dependencies.add(new Dependency(trim(rs.getString(1)), rs.getInt(2),
+                        trim(rs.getString(3)), rs.getInt(4), trim(rs.getString(5))));
+            }
+
+        } finally {
+            close(rs);
+        }
+
+        return dependencies;
+    }
+
+    private List<String> loadNames(Connection connection, String sql) throws SQLException {
+
+        List<String> names = new ArrayList<String>();
+
+        ResultSet rs = query(connection, sql, null);
+        try {
+
+            while (rs.next()) {
+
+                names.add(trim(rs.getString(1)));
+            }
+
+        } finally {
+            close(rs);
+        }
+
+        return names;
+    }
+
+    private ResultSet query(Connection connection, String sql, List<String> parameters) throws SQLException {
+
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+
+            statement.setFetchSize(1000);
+            if (parameters != null) {
+
+                for (int i = 0; i < parameters.size(); i++) {
+
+                    statement.setString(i + 1, parameters.get(i));
+                }
+
+            }
+            return statement.executeQuery();
+
+        } catch (SQLException e) {
+
+            statement.close();
+            throw e;
+        }
+
+    }
+
+    private void close(ResultSet rs) throws SQLException {
+
+        Statement statement = rs.getStatement();
+        rs.close();
+        if (statement != null) {
+
+            statement.close();
+        }
+    }
+
+    /**
+     * Splits the names into filter sized chunks - a null list, meaning
+     * no filter, is returned as a single null chunk.
+     */
+    private List<List<String>> chunks(List<String> names) {
+
+        List<List<String>> chunks = new ArrayList<List<String>>();
+        if (names == null) {
+
+            chunks.add(null);
+            return chunks;
+        }
+
+        for (int i = 0; i < names.size(); i += FILTER_SIZE) {
+
+            chunks.add(names.subList(i, Math.min(i + FILTER_SIZE, names.size())));
+        }
+        return chunks;
+    }
+
+    private String filter(String keyword, String column, List<String> names) {
+
+        if (names == null) {
+
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder(keyword).append(' ').append(column).append(" in (");
+        for (int i = 0; i < names.size(); i++) {
+
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(")\n").toString();
+    }
+
+    private int constraintType(String type) {
+
+        if ("PRIMARY KEY".equals(type)) {
+
+            return PRIMARY_KEY;
+
+        } else if ("FOREIGN KEY".equals(type)) {
+
+            return FOREIGN_KEY;
+        }
+        return UNIQUE_KEY;
+    }
+
+    private String trimDefault(String value) {
+
+        value = trim(value);
+        if (value != null && value.toUpperCase().startsWith("DEFAULT")) {
+
+            value = value.substring(7).trim();
+        }
+        return value;
+    }
+
+    private String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+
+}
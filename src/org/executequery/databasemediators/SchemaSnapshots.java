@@ -0,0 +1,234 @@
+/*
+ * SchemaSnapshots.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databasemediators;
+
+import org.executequery.EventMediator;
+import org.executequery.event.ApplicationEvent;
+import org.executequery.event.ConnectionEvent;
+import org.executequery.event.ConnectionListener;
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Shared schema snapshots, one per open connection. A snapshot is
+ * loaded on first request - refreshed from the copy stored on disk
+ * where there is one - and kept until the connection is closed or
+ * the snapshot is invalidated, typically on a tree reload.
+ */
+public final class SchemaSnapshots implements ConnectionListener {
+
+    private static final SchemaSnapshots INSTANCE = new SchemaSnapshots();
+
+    /**
+     * marker for connections the snapshot queries do not apply to
+     */
+    private static final Object UNSUPPORTED = new Object();
+
+    private final Map<DatabaseConnection, Object> snapshots =
+            new ConcurrentHashMap<DatabaseConnection, Object>();
+
+    /**
+     * invalidated snapshots kept as the base of the next refresh
+     */
+    private final Map<DatabaseConnection, SchemaSnapshot> stale =
+            new ConcurrentHashMap<DatabaseConnection, SchemaSnapshot>();
+
+    /**
+     * the loads in progress, shared by concurrent callers
+     */
+    private final ConcurrentMap<DatabaseConnection, FutureTask<Object>> loads =
+            new ConcurrentHashMap<DatabaseConnection, FutureTask<Object>>();
+
+    private final SchemaSnapshotCache cache = new SchemaSnapshotCache();
+
+    static {
+        EventMediator.registerListener(INSTANCE);
+    }
+
+    private SchemaSnapshots() {
+    }
+
+    /**
+     * Returns the snapshot for the specified connection, loading it if
+     * required, or <code>null</code> if the connection is not a Firebird
+     * connection or the snapshot could not be loaded.
+     *
+     * @param dc the database connection
+     * @return the snapshot or null
+     */
+    public static SchemaSnapshot get(DatabaseConnection dc) {
+
+        if (dc == null || !dc.isConnected()) {
+
+            return null;
+        }
+
+        Object snapshot = INSTANCE.snapshots.get(dc);
+        if (snapshot == null) {
+
+            snapshot = INSTANCE.loadShared(dc);
+        }
+
+        return snapshot instanceof SchemaSnapshot ? (SchemaSnapshot) snapshot : null;
+    }
+
+    /**
+     * Returns the snapshot already held for the specified connection
+     * without loading one.
+     *
+     * @param dc the database connection
+     * @return the snapshot or null
+     */
+    public static SchemaSnapshot getLoaded(DatabaseConnection dc) {
+
+        Object snapshot = dc != null ? INSTANCE.snapshots.get(dc) : null;
+        return snapshot instanceof SchemaSnapshot ? (SchemaSnapshot) snapshot : null;
+    }
+
+    /**
+     * Checks the snapshot held for the specified connection against
+     * the server, reading again whatever changed.
+     *
+     * @param dc the database connection
+     * @return the snapshot or null
+     */
+    public static SchemaSnapshot reload(DatabaseConnection dc) {
+
+        invalidate(dc);
+        return get(dc);
+    }
+
+    /**
+     * Marks the snapshot held for the specified connection as stale so
+     * the next request refreshes it against the server.
+     */
+    public static void invalidate(DatabaseConnection dc) {
+
+        if (dc != null) {
+
+            Object snapshot = INSTANCE.snapshots.remove(dc);
+            if (snapshot instanceof SchemaSnapshot) {
+
+                INSTANCE.stale.put(dc, (SchemaSnapshot) snapshot);
+            }
+        }
+    }
+
+    /**
+     * Loads the snapshot of the specified connection, callers arriving
+     * while a load runs waiting on that load rather than starting their
+     * own. No lock on the connection is held so connection requests for
+     * it are not held up by a slow load.
+     */
+    private Object loadShared(final DatabaseConnection dc) {
+
+        FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            public Object call() {
+
+                Object snapshot = load(dc);
+                if (snapshot != null) {
+
+                    snapshots.put(dc, snapshot);
+                }
+                return snapshot;
+            }
+        });
+
+        FutureTask<Object> running = loads.putIfAbsent(dc, task);
+        if (running == null) {
+
+            running = task;
+            try {
+                task.run();
+            } finally {
+                loads.remove(dc, task);
+            }
+        }
+
+        try {
+
+            return running.get();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            return null;
+
+        } catch (ExecutionException e) {
+
+            Log.error("Error loading schema snapshot for " + dc.getName(), e.getCause());
+            return null;
+        }
+    }
+
+    private static Object load(DatabaseConnection dc) {
+
+        try {
+
+            // start from the last stored snapshot and read only what changed
+            SchemaSnapshot cached = INSTANCE.stale.remove(dc);
+            if (cached == null) {
+
+                cached = INSTANCE.cache.read(dc);
+            }
+
+            SchemaSnapshot snapshot = new SchemaSnapshotLoader(dc).refresh(cached);
+            if (snapshot == null) {
+
+                return UNSUPPORTED;
+            }
+
+            if (snapshot != cached) {
+
+                INSTANCE.cache.write(snapshot);
+            }
+            return snapshot;
+
+        } catch (DataSourceException e) {
+
+            Log.error("Error loading schema snapshot for " + dc.getName(), e);
+            return null;
+        }
+
+    }
+
+    public void connected(ConnectionEvent connectionEvent) {
+    }
+
+    public void disconnected(ConnectionEvent connectionEvent) {
+
+        DatabaseConnection dc = connectionEvent.getDatabaseConnection();
+        snapshots.remove(dc);
+        stale.remove(dc);
+    }
+
+    public boolean canHandleEvent(ApplicationEvent event) {
+        return (event instanceof ConnectionEvent);
+    }
+
+}
@@ -32,6 +32,7 @@ import org.executequery.databaseobjects.DatabaseSource;
 import org.executequery.databaseobjects.ProcedureParameter;
 import org.executequery.databaseobjects.impl.DatabaseObjectFactoryImpl;
 import org.executequery.datasource.ConnectionManager;
+import org.executequery.datasource.MetaDataFetchScheduler;
 import org.executequery.gui.editor.autocomplete.Parameter;
 import org.executequery.log.Log;
 import org.executequery.sql.SqlStatementResult;
@@ -80,6 +81,12 @@ public class DefaultStatementExecutor implements StatementExecutor, Serializable
      */
     private Connection conn;
 
+    /**
+     * whether the connection is the one of the meta data fetch worker
+     * the query runs on - owned and closed by the worker
+     */
+    private boolean workerConnection;
+
     private boolean closeConnectionAfterQuery = true;
 
     /**
@@ -286,9 +293,15 @@ public class DefaultStatementExecutor implements StatementExecutor, Serializable
 
             try {
 
-                if (isUseDatabaseConnection())
-                    conn = ConnectionManager.getTemporaryConnection(databaseConnection);
-                else throw new DataSourceException("Connection=null or closed");
+                if (isUseDatabaseConnection()) {
+
+                    // meta data workers query on their own connection
+                    conn = MetaDataFetchScheduler.workerConnection(databaseConnection);
+                    workerConnection = (conn != null);
+                    if (!workerConnection)
+                        conn = ConnectionManager.getTemporaryConnection(databaseConnection);
+
+                } else throw new DataSourceException("Connection=null or closed");
                 if (keepAlive) {
 
                     try {
@@ -1657,7 +1670,8 @@ public class DefaultStatementExecutor implements StatementExecutor, Serializable
     @Override
     public void destroyConnection() throws SQLException {
         try {
-            ConnectionManager.close(databaseConnection, conn);
+            if (!workerConnection)
+                ConnectionManager.close(databaseConnection, conn);
             conn = null;
         } catch (DataSourceException e) {
             handleDataSourceException(e);
@@ -1744,7 +1758,7 @@ public class DefaultStatementExecutor implements StatementExecutor, Serializable
     private void closeConnection(boolean destroy) {
         if (destroy) {
             try {
-                if (conn != null) {
+                if (conn != null && !workerConnection) {
                     conn.close();
                 }
                 conn = null;
@@ -1818,7 +1832,8 @@ public class DefaultStatementExecutor implements StatementExecutor, Serializable
             if (conn != null) {
 
                 if (useDatabaseConnection && closeConnectionAfterQuery) {
-                    conn.close();
+                    if (!workerConnection)
+                        conn.close();
                     conn = null;
                 }
 
@@ -1848,7 +1863,8 @@ public class DefaultStatementExecutor implements StatementExecutor, Serializable
             try {
                 // close the current connection
                 if (databaseConnection != null && conn != null) {
-                    ConnectionManager.close(databaseConnection, conn);
+                    if (!workerConnection)
+                        ConnectionManager.close(databaseConnection, conn);
                     conn = null;
                 }
                 // reassign the connection
@@ -1923,6 +1939,7 @@ public class DefaultStatementExecutor implements StatementExecutor, Serializable
 
     public void setConn(Connection conn) {
         this.conn = conn;
+        workerConnection = false;
     }
 
     public boolean isCloseConnectionAfterQuery() {
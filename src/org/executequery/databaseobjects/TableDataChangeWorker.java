@@ -25,27 +25,43 @@ import org.executequery.gui.resultset.RecordDataItem;
 import org.executequery.log.Log;
 import org.underworldlabs.jdbc.DataSourceException;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
+ * Applies the data changes of the table grid within one transaction.
+ * <p>
+ * The changes of the same statement shape - the same statement text for
+ * the same table, changed columns and null values - are sent together
+ * as one JDBC batch through the prepared statement cached for the shape.
+ * The deleted rows go first, then the changed and the added rows, so the
+ * keys of the deleted rows may be reused by the others.
+ *
  * @author Takis Diakoumis
  * @version $Revision$
  * @date $Date$
  */
 public class TableDataChangeWorker {
 
+    private static final int BATCH_SIZE = 500;
+
+    private static final int MAX_ROW_DESCRIPTION_COLUMNS = 5;
+
     private Connection connection;
 
     private DatabaseTable table;
 
     private DatabaseTableObject tableObject;
 
-    private PreparedStatement statement;
+    private volatile PreparedStatement statement;
 
     public TableDataChangeWorker(DatabaseTable table) {
 
@@ -62,107 +78,158 @@ public class TableDataChangeWorker {
 
     public boolean apply(List<TableDataChange> rows) {
 
-        int result = 0;
-        for (TableDataChange tableDataChange : rows) {
+        Map<String, StatementGroup> deleting = new LinkedHashMap<String, StatementGroup>();
+        Map<String, StatementGroup> changing = new LinkedHashMap<String, StatementGroup>();
+        Map<String, StatementGroup> adding = new LinkedHashMap<String, StatementGroup>();
 
-            if (connection == null) {
+        boolean hasPrimaryKey = table != null && table.hasPrimaryKey();
 
-                createConnection(tableObject);
-            }
+        int expected = rows.size();
+        for (TableDataChange tableDataChange : rows) {
 
             List<RecordDataItem> row = tableDataChange.getRowDataForRow();
             if (row.get(0).isDeleted()) {
-                if (table != null && table.hasPrimaryKey())
-                    result += executeDeletingWithPK(connection, table, row);
+
+                if (hasPrimaryKey)
+                    add(deleting, prepareDeletingWithPK(tableDataChange));
                 else
-                    result += executedDeleting(connection, tableObject, row);
+                    add(deleting, prepareDeleting(tableDataChange));
+
             } else if (row.get(0).isNew()) {
-                result += executeAdding(connection, tableObject, row);
-            } else if (table != null && table.hasPrimaryKey())
-                result += executeWithPK(connection, table, row);
-            else
-                result += executeChange(connection, tableObject, row);
+
+                add(adding, prepareAdding(tableDataChange));
+
+            } else if (hasPrimaryKey) {
+
+                add(changing, prepareChangeWithPK(tableDataChange));
+
+            } else {
+
+                add(changing, prepareChange(tableDataChange));
+            }
+        }
+
+        if (deleting.isEmpty() && changing.isEmpty() && adding.isEmpty()) {
+
+            return false;
+        }
+
+        if (connection == null) {
+
+            createConnection(tableObject);
+        }
+
+        int result = 0;
+        try {
+
+            result += execute(deleting);
+            result += execute(changing);
+            result += execute(adding);
+
+        } catch (DataSourceException e) {
+
+            rollback();
+            throw e;
         }
 
-        if (result == rows.size()) {
+        if (result == expected) {
 
             commit();
             return true;
 
         } else {
 
+            rollback();
             return false;
         }
 
     }
 
-    private void createConnection(DatabaseTableObject table) {
+    private void add(Map<String, StatementGroup> groups, PreparedChange change) {
 
-        try {
+        if (change == null) {
 
-            connection = ConnectionManager.getConnection(table.getHost().getDatabaseConnection());
-            connection.setAutoCommit(false);
+            return;
+        }
 
-        } catch (SQLException e) {
+        StatementGroup group = groups.get(change.sql);
+        if (group == null) {
 
-            throw handleException(e);
+            group = new StatementGroup(change.sql);
+            groups.put(change.sql, group);
         }
+        group.changes.add(change);
+    }
+
+    private int execute(Map<String, StatementGroup> groups) {
+
+        int result = 0;
+        for (StatementGroup group : groups.values()) {
 
+            result += execute(group);
+        }
+        return result;
     }
 
-    private int executeWithPK(Connection connection, DatabaseTable table, List<RecordDataItem> values) {
+    private int execute(StatementGroup group) {
 
-        List<String> columns = new ArrayList<String>();
-        List<RecordDataItem> changes = new ArrayList<RecordDataItem>();
-        for (RecordDataItem item : values) {
+        Log.info("Executing data change using statement - [ " + group.sql + " ] for "
+                + group.changes.size() + " row(s)");
 
-            if (item.isChanged()) {
+        PreparedChange current = null;
+        try {
 
-                changes.add(item);
-                columns.add(item.getName());
-            }
+            statement = connection.prepareStatement(group.sql);
 
-        }
+            int result = 0;
+            int from = 0;
+            int size = group.changes.size();
+            while (from < size) {
 
-        if (changes.isEmpty()) {
+                int to = Math.min(from + BATCH_SIZE, size);
+                if (to - from == 1) {
 
-            return 0;
-        }
+                    current = group.changes.get(from);
+                    bind(statement, current.parameters);
+                    result += countOf(statement.executeUpdate(), current);
 
-        try {
+                } else {
 
-            int n = changes.size();
-            String sql = table.prepareStatementWithPK(columns);
+                    for (int i = from; i < to; i++) {
 
-            Log.info("Executing data change using statement - [ " + sql + " ]");
+                        bind(statement, group.changes.get(i).parameters);
+                        statement.addBatch();
+                    }
 
-            statement = connection.prepareStatement(sql);
-            for (int i = 0; i < n; i++) {
+                    int[] counts;
+                    try {
 
-                RecordDataItem recordDataItem = changes.get(i);
-                if (!recordDataItem.isNewValueNull()) {
+                        counts = statement.executeBatch();
 
-                    statement.setObject((i + 1), recordDataItem.getNewValue(), recordDataItem.getDataType());
+                    } catch (BatchUpdateException e) {
 
-                } else {
+                        current = failedChange(group.changes, from, to, e.getUpdateCounts());
+                        throw e;
+                    }
 
-                    statement.setNull((i + 1), Types.NULL);
+                    for (int i = 0; i < counts.length; i++) {
+
+                        result += countOf(counts[i], group.changes.get(from + i));
+                    }
                 }
 
+                current = null;
+                from = to;
             }
 
-            List<String> primaryKeys = table.getPrimaryKeyColumnNames();
-            for (String primaryKey : primaryKeys) {
+            return result;
 
-                n++;
-                statement.setObject(n, valueForKey(primaryKey, values));
-            }
+        } catch (SQLException e) {
 
-            return statement.executeUpdate();
+            throw handleException(rowException(e, current));
 
         } catch (Exception e) {
 
-            rollback();
             throw handleException(e);
 
         } finally {
@@ -180,69 +247,151 @@ public class TableDataChangeWorker {
 
     }
 
-    private int executeDeletingWithPK(Connection connection, DatabaseTable table, List<RecordDataItem> values) {
+    private int countOf(int updateCount, PreparedChange change) {
 
-        List<String> columns = new ArrayList<String>();
-        List<RecordDataItem> changes = new ArrayList<RecordDataItem>();
-        for (RecordDataItem item : values) {
+        if (updateCount == Statement.SUCCESS_NO_INFO) {
 
-            if (item.isDeleted()) {
+            return 1;
+        }
 
-                changes.add(item);
-                columns.add(item.getName());
+        if (updateCount != 1) {
+
+            Log.warning("Data change affected " + updateCount + " row(s) for " + describe(change.change));
+        }
+        return updateCount;
+    }
+
+    /**
+     * Returns the change the batch stopped at by the update counts
+     * of the failed batch - the count is either missing for it or
+     * marked as failed.
+     */
+    private PreparedChange failedChange(List<PreparedChange> changes, int from, int to, int[] counts) {
+
+        if (counts == null) {
+
+            return null;
+        }
+
+        for (int i = 0; i < counts.length && from + i < to; i++) {
+
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+
+                return changes.get(from + i);
             }
+        }
+
+        if (from + counts.length < to) {
 
+            return changes.get(from + counts.length);
         }
+        return null;
+    }
 
-        if (changes.isEmpty()) {
+    private SQLException rowException(SQLException e, PreparedChange change) {
+
+        if (change == null) {
 
-            return 0;
+            return e;
         }
 
-        try {
+        SQLException rowException = new SQLException(
+                describe(change.change) + ": " + e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        if (e.getNextException() != null) {
 
-            int n = 0;
-            String sql = table.prepareStatementDeletingWithPK();
+            rowException.setNextException(e.getNextException());
+        }
+        return rowException;
+    }
 
-            Log.info("Executing data change using statement - [ " + sql + " ]");
+    private String describe(TableDataChange change) {
 
-            statement = connection.prepareStatement(sql);
+        List<RecordDataItem> row = change.getRowDataForRow();
+        List<String> keys = table != null && table.hasPrimaryKey()
+                ? table.getPrimaryKeyColumnNames() : null;
 
-            List<String> primaryKeys = table.getPrimaryKeyColumnNames();
-            for (String primaryKey : primaryKeys) {
+        StringBuilder sb = new StringBuilder("Row [");
+        int count = 0;
+        for (RecordDataItem item : row) {
 
-                n++;
-                statement.setObject(n, valueForKey(primaryKey, values));
+            if (keys != null && !containsIgnoreCase(keys, item.getName())) {
+
+                continue;
             }
 
-            return statement.executeUpdate();
+            if (count == MAX_ROW_DESCRIPTION_COLUMNS) {
 
-        } catch (Exception e) {
+                sb.append(", ...");
+                break;
+            }
 
-            rollback();
-            throw handleException(e);
+            if (count > 0) {
 
-        } finally {
+                sb.append(", ");
+            }
+            Object value = item.isNew() ? item.getNewValue() : item.getValue();
+            sb.append(item.getName()).append(" = ").append(value);
+            count++;
+        }
+        return sb.append("]").toString();
+    }
 
-            if (statement != null) {
+    private boolean containsIgnoreCase(List<String> names, String name) {
 
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                }
-                statement = null;
+        for (String value : names) {
+
+            if (value.equalsIgnoreCase(name)) {
+
+                return true;
             }
+        }
+        return false;
+    }
+
+    private void bind(PreparedStatement statement, List<Parameter> parameters) throws SQLException {
 
+        for (int i = 0, n = parameters.size(); i < n; i++) {
+
+            Parameter parameter = parameters.get(i);
+            if (parameter.value == null) {
+
+                statement.setNull(i + 1, Types.NULL);
+
+            } else if (parameter.typed) {
+
+                statement.setObject(i + 1, parameter.value, parameter.sqlType);
+
+            } else {
+
+                statement.setObject(i + 1, parameter.value);
+            }
+
+        }
+
+    }
+
+    private void createConnection(DatabaseTableObject table) {
+
+        try {
+
+            connection = ConnectionManager.getConnection(table.getHost().getDatabaseConnection());
+            connection.setAutoCommit(false);
+
+        } catch (SQLException e) {
+
+            throw handleException(e);
         }
 
     }
 
-    private int executeAdding(Connection connection, DatabaseTableObject table, List<RecordDataItem> values) {
+    private PreparedChange prepareChangeWithPK(TableDataChange change) {
+
+        List<RecordDataItem> values = change.getRowDataForRow();
         List<String> columns = new ArrayList<String>();
         List<RecordDataItem> changes = new ArrayList<RecordDataItem>();
         for (RecordDataItem item : values) {
 
-            if (item.isNew()) {
+            if (item.isChanged()) {
 
                 changes.add(item);
                 columns.add(item.getName());
@@ -252,62 +401,45 @@ public class TableDataChangeWorker {
 
         if (changes.isEmpty()) {
 
-            return 0;
+            return null;
         }
 
-        try {
-
-            int n = changes.size();
-            String sql = table.prepareStatementAdding(columns, values);
-
-            Log.info("Executing data change using statement - [ " + sql + " ]");
-
-            statement = connection.prepareStatement(sql);
-            for (int i = 0, g = 0; i < n; i++, g++) {
-                RecordDataItem recordDataItem = changes.get(g);
-                if (!recordDataItem.isGenerated()) {
-                    if (!recordDataItem.isNewValueNull()) {
+        PreparedChange preparedChange = new PreparedChange(change, table.prepareStatementWithPK(columns));
+        addNewValues(preparedChange, changes);
 
-                        statement.setObject((i + 1), recordDataItem.getNewValue(), recordDataItem.getDataType());
+        for (String primaryKey : table.getPrimaryKeyColumnNames()) {
 
-                    } else {
-
-                        statement.setNull((i + 1), Types.NULL);
-                    }
-                } else {
-                    i--;
-                    n--;
-                }
-
-            }
-            return statement.executeUpdate();
+            preparedChange.add(valueForKey(primaryKey, values));
+        }
 
-        } catch (Exception e) {
+        return preparedChange;
+    }
 
-            rollback();
-            throw handleException(e);
+    private PreparedChange prepareDeletingWithPK(TableDataChange change) {
 
-        } finally {
+        List<RecordDataItem> values = change.getRowDataForRow();
+        if (!hasDeleted(values)) {
 
-            if (statement != null) {
+            return null;
+        }
 
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                }
-                statement = null;
-            }
+        PreparedChange preparedChange = new PreparedChange(change, table.prepareStatementDeletingWithPK());
+        for (String primaryKey : table.getPrimaryKeyColumnNames()) {
 
+            preparedChange.add(valueForKey(primaryKey, values));
         }
 
+        return preparedChange;
     }
 
-    private int executedDeleting(Connection connection, DatabaseTableObject table, List<RecordDataItem> values) {
+    private PreparedChange prepareAdding(TableDataChange change) {
+
+        List<RecordDataItem> values = change.getRowDataForRow();
         List<String> columns = new ArrayList<String>();
         List<RecordDataItem> changes = new ArrayList<RecordDataItem>();
         for (RecordDataItem item : values) {
 
-            if (item.isDeleted()) {
+            if (item.isNew()) {
 
                 changes.add(item);
                 columns.add(item.getName());
@@ -317,49 +449,50 @@ public class TableDataChangeWorker {
 
         if (changes.isEmpty()) {
 
-            return 0;
+            return null;
         }
 
-        try {
+        // marks the generated columns of the row
+        PreparedChange preparedChange = new PreparedChange(change, tableObject.prepareStatementAdding(columns, values));
 
-            int n = 0;
-            String sql = table.prepareStatementDeleting(values);
+        List<RecordDataItem> inserted = new ArrayList<RecordDataItem>();
+        for (RecordDataItem item : changes) {
 
-            Log.info("Executing data change using statement - [ " + sql + " ]");
+            if (!item.isGenerated()) {
 
-            statement = connection.prepareStatement(sql);
+                inserted.add(item);
+            }
+        }
+        addNewValues(preparedChange, inserted);
 
-            for (RecordDataItem rdi : values) {
+        return preparedChange;
+    }
 
-                if (!rdi.isValueNull() && !rdi.isGenerated()) {
-                    n++;
-                    statement.setObject(n, rdi.getValue());
-                }
-            }
+    private PreparedChange prepareDeleting(TableDataChange change) {
 
-            return statement.executeUpdate();
+        List<RecordDataItem> values = change.getRowDataForRow();
+        if (!hasDeleted(values)) {
 
-        } catch (Exception e) {
+            return null;
+        }
 
-            rollback();
-            throw handleException(e);
+        // marks the generated columns of the row
+        PreparedChange preparedChange = new PreparedChange(change, tableObject.prepareStatementDeleting(values));
 
-        } finally {
+        for (RecordDataItem rdi : values) {
 
-            if (statement != null) {
+            if (!rdi.isValueNull() && !rdi.isGenerated()) {
 
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                }
-                statement = null;
+                preparedChange.add(rdi.getValue());
             }
-
         }
 
+        return preparedChange;
     }
 
-    private int executeChange(Connection connection, DatabaseTableObject table, List<RecordDataItem> values) {
+    private PreparedChange prepareChange(TableDataChange change) {
+
+        List<RecordDataItem> values = change.getRowDataForRow();
         List<String> columns = new ArrayList<String>();
         List<RecordDataItem> changes = new ArrayList<RecordDataItem>();
         for (RecordDataItem item : values) {
@@ -374,58 +507,51 @@ public class TableDataChangeWorker {
 
         if (changes.isEmpty()) {
 
-            return 0;
+            return null;
         }
 
-        try {
+        // marks the generated columns of the row
+        PreparedChange preparedChange = new PreparedChange(change, tableObject.prepareStatement(columns, values));
+        addNewValues(preparedChange, changes);
 
-            int n = changes.size();
-            String sql = table.prepareStatement(columns, values);
+        for (RecordDataItem rdi : values) {
 
-            Log.info("Executing data change using statement - [ " + sql + " ]");
+            if (!rdi.isValueNull() && !rdi.isGenerated()) {
 
-            statement = connection.prepareStatement(sql);
-            for (int i = 0; i < n; i++) {
+                preparedChange.add(rdi.getValue());
+            }
+        }
 
-                RecordDataItem recordDataItem = changes.get(i);
-                if (!recordDataItem.isNewValueNull()) {
+        return preparedChange;
+    }
 
-                    statement.setObject((i + 1), recordDataItem.getNewValue(), recordDataItem.getDataType());
+    private void addNewValues(PreparedChange preparedChange, List<RecordDataItem> items) {
 
-                } else {
+        for (RecordDataItem item : items) {
 
-                    statement.setNull((i + 1), Types.NULL);
-                }
+            if (!item.isNewValueNull()) {
 
-            }
-            for (RecordDataItem rdi : values) {
+                preparedChange.add(item.getNewValue(), item.getDataType());
 
-                if (!rdi.isValueNull() && !rdi.isGenerated()) {
-                    n++;
-                    statement.setObject(n, rdi.getValue());
-                }
+            } else {
+
+                preparedChange.add(null);
             }
 
-            return statement.executeUpdate();
+        }
 
-        } catch (Exception e) {
+    }
 
-            rollback();
-            throw handleException(e);
+    private boolean hasDeleted(List<RecordDataItem> values) {
 
-        } finally {
+        for (RecordDataItem item : values) {
 
-            if (statement != null) {
+            if (item.isDeleted()) {
 
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                }
-                statement = null;
+                return true;
             }
-
         }
-
+        return false;
     }
 
     private Object valueForKey(String primaryKey, List<RecordDataItem> values) {
@@ -506,6 +632,55 @@ public class TableDataChangeWorker {
 
     }
 
-}
+    private static final class StatementGroup {
+
+        private final String sql;
 
+        private final List<PreparedChange> changes = new ArrayList<PreparedChange>();
+
+        StatementGroup(String sql) {
+            this.sql = sql;
+        }
+
+    }
 
+    private static final class PreparedChange {
+
+        private final TableDataChange change;
+
+        private final String sql;
+
+        private final List<Parameter> parameters = new ArrayList<Parameter>();
+
+        PreparedChange(TableDataChange change, String sql) {
+            this.change = change;
+            this.sql = sql;
+        }
+
+        void add(Object value) {
+            parameters.add(new Parameter(value, false, Types.NULL));
+        }
+
+        void add(Object value, int sqlType) {
+            parameters.add(new Parameter(value, true, sqlType));
+        }
+
+    }
+
+    private static final class Parameter {
+
+        private final Object value;
+
+        private final boolean typed;
+
+        private final int sqlType;
+
+        Parameter(Object value, boolean typed, int sqlType) {
+            this.value = value;
+            this.typed = typed;
+            this.sqlType = sqlType;
+        }
+
+    }
+
+}
@@ -5,20 +5,25 @@ import org.executequery.gui.resultset.RecordDataItem;
 import org.underworldlabs.util.MiscUtils;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class AbstractTableObject extends DefaultDatabaseObject implements DatabaseTableObject {
     public AbstractTableObject(DatabaseHost host, String metaDataKey) {
         super(host, metaDataKey);
     }
 
-    protected List<TableDataChange> tableDataChanges;
+    /**
+     * The data changes keyed by the row they were made in, one per row.
+     */
+    protected Map<RowKey, TableDataChange> tableDataChanges;
 
-    protected List<TableDataChange> tableDataChanges() {
+    protected Map<RowKey, TableDataChange> tableDataChanges() {
 
         if (tableDataChanges == null) {
 
-            tableDataChanges = new ArrayList<TableDataChange>();
+            tableDataChanges = new LinkedHashMap<RowKey, TableDataChange>();
         }
         return tableDataChanges;
     }
@@ -133,24 +138,18 @@ public abstract class AbstractTableObject extends DefaultDatabaseObject implemen
 
     public void addTableDataChange(TableDataChange tableDataChange) {
 
-        if (tableDataChanges != null) {
-            for (int i = 0; i < tableDataChanges.size(); i++)
-                if (tableDataChange.getRowDataForRow() == tableDataChanges.get(i).getRowDataForRow()) {
-                    tableDataChanges.remove(i);
-                    i--;
-                }
-        }
-        tableDataChanges().add(tableDataChange);
+        RowKey key = new RowKey(tableDataChange.getRowDataForRow());
+        Map<RowKey, TableDataChange> changes = tableDataChanges();
+
+        // the latest change of the row goes last
+        changes.remove(key);
+        changes.put(key, tableDataChange);
     }
 
     @Override
     public void removeTableDataChange(List<RecordDataItem> row) {
         if (tableDataChanges != null) {
-            for (int i = 0; i < tableDataChanges.size(); i++)
-                if (row == tableDataChanges.get(i).getRowDataForRow()) {
-                    tableDataChanges.remove(i);
-                    i--;
-                }
+            tableDataChanges.remove(new RowKey(row));
         }
     }
 
@@ -164,7 +163,8 @@ public abstract class AbstractTableObject extends DefaultDatabaseObject implemen
         }
 
         tableDataChangeExecutor = new TableDataChangeWorker(this);
-        boolean success = tableDataChangeExecutor.apply(tableDataChanges);
+        boolean success = tableDataChangeExecutor.apply(
+                new ArrayList<TableDataChange>(tableDataChanges.values()));
         if (success) {
 
             clearDataChanges();
@@ -181,4 +181,28 @@ public abstract class AbstractTableObject extends DefaultDatabaseObject implemen
     public boolean allowsChildren() {
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * The row of the grid compared by identity.
+     */
+    protected static final class RowKey {
+
+        private final List<RecordDataItem> row;
+
+        RowKey(List<RecordDataItem> row) {
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RowKey && ((RowKey) o).row == row;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(row);
+        }
+
+    }
+
+}
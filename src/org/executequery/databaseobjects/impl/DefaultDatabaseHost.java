@@ -28,16 +28,16 @@ import org.executequery.databasemediators.DatabaseDriver;
 import org.executequery.databaseobjects.*;
 import org.executequery.datasource.ConnectionManager;
 import org.executequery.datasource.DefaultDriverLoader;
+import org.executequery.datasource.MetaDataFetchScheduler;
 import org.executequery.gui.browser.tree.TreePanel;
 import org.executequery.log.Log;
 import org.underworldlabs.jdbc.DataSourceException;
+import org.underworldlabs.util.DynamicLibraryLoader;
 import org.underworldlabs.util.MiscUtils;
 import org.underworldlabs.util.SystemProperties;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.*;
 import java.util.*;
 
@@ -179,6 +179,13 @@ public class DefaultDatabaseHost extends AbstractNamedObject
      */
     public Connection getConnection() throws DataSourceException {
 
+        // meta data workers fetch on their own connection
+        Connection workerConnection = MetaDataFetchScheduler.workerConnection(getDatabaseConnection());
+        if (workerConnection != null) {
+
+            return workerConnection;
+        }
+
         try {
 
             if ((connection == null || connection.isClosed())
@@ -224,6 +231,12 @@ public class DefaultDatabaseHost extends AbstractNamedObject
 
         try {
 
+            Connection workerConnection = MetaDataFetchScheduler.workerConnection(getDatabaseConnection());
+            if (workerConnection != null) {
+
+                return workerConnection.getMetaData();
+            }
+
             if (databaseMetaData == null) {
 
                 databaseMetaData = getConnection().getMetaData();
@@ -708,7 +721,7 @@ public class DefaultDatabaseHost extends AbstractNamedObject
      * @param table   the database object name
      * @return the columns
      */
-    public synchronized List<DatabaseColumn> getColumns(String catalog, String schema, String table)
+    public List<DatabaseColumn> getColumns(String catalog, String schema, String table)
             throws DataSourceException {
 
         ResultSet rs = null;
@@ -1417,14 +1430,8 @@ public class DefaultDatabaseHost extends AbstractNamedObject
         Driver driver = loadedDrivers.get(jdbcDriver.getId() + "-" + jdbcDriver.getClassName());
         if (driver.getClass().getName().contains("FBDriver")) {
             Connection conn = connection.unwrap(Connection.class);
-            URL[] urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            ClassLoader cl = new URLClassLoader(urls, conn.getClass().getClassLoader());
-            IFBDatabaseConnection db;
-            Class clazzdb;
-            Object odb;
-            clazzdb = cl.loadClass("biz.redsoft.FBDatabaseConnectionImpl");
-            odb = clazzdb.newInstance();
-            db = (IFBDatabaseConnection) odb;
+            IFBDatabaseConnection db = (IFBDatabaseConnection) DynamicLibraryLoader.loadingObjectFromClassLoader(conn,
+                    "FBDatabaseConnectionImpl");
             db.setConnection(conn);
             switch (db.getMajorVersion()) {
                 case 2:
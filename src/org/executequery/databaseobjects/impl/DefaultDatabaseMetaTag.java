@@ -21,6 +21,8 @@
 package org.executequery.databaseobjects.impl;
 
 import biz.redsoft.IFBDatabaseConnection;
+import org.executequery.databasemediators.SchemaSnapshot;
+import org.executequery.databasemediators.SchemaSnapshots;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databaseobjects.*;
 import org.executequery.datasource.PooledConnection;
@@ -172,6 +174,11 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
             }
         if (type != SYSTEM_FUNCTION) {
 
+            if (isMarkedForReload()) {
+
+                // an explicit reload should also see schema changes
+                SchemaSnapshots.invalidate(getHost().getDatabaseConnection());
+            }
 
             children = loadObjects(type);
 
@@ -281,6 +288,15 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private List<NamedObject> loadObjects(int type) throws DataSourceException {
 
+        if ((type == TABLE || type == VIEW) && typeTree == DEFAULT) {
+
+            List<NamedObject> list = loadRelationsFromSnapshot(type);
+            if (list != null) {
+
+                return list;
+            }
+        }
+
         ResultSet rs = null;
         try {
 
@@ -374,6 +390,48 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
         }
     }
 
+    /**
+     * Builds the table or view list from the connection's schema
+     * snapshot, or returns null where no snapshot is available.
+     */
+    private List<NamedObject> loadRelationsFromSnapshot(int type) {
+
+        SchemaSnapshot snapshot = SchemaSnapshots.get(getHost().getDatabaseConnection());
+        if (snapshot == null) {
+
+            return null;
+        }
+
+        List<NamedObject> list = new ArrayList<NamedObject>();
+        for (SchemaSnapshot.Relation relation : snapshot.getRelations()) {
+
+            if (relation.isSystem() || relation.isView() != (type == VIEW)) {
+
+                continue;
+            }
+
+            int relationType = relation.getRelationType();
+            if (type == TABLE && relationType != -1 && relationType != 0 && relationType != 2) {
+
+                continue;
+            }
+
+            DefaultDatabaseObject object = new DefaultDatabaseObject(getHost(), getMetaDataKey());
+            object.setName(relation.getName());
+            object.setCatalogName("");
+            object.setSchemaName("");
+            object.setRemarks(relation.getDescription());
+            object.setSource(relation.getViewSource());
+
+            AbstractDatabaseObject namedObject = type == TABLE
+                    ? new DefaultDatabaseTable(object) : new DefaultDatabaseView(object);
+            namedObject.setHost(getHost());
+            list.add(namedObject);
+        }
+
+        return list;
+    }
+
     /**
      * Loads the database functions.
      */
@@ -160,6 +160,41 @@ public class C3poConnectionPool extends AbstractConnectionPool {
         return activeConnections.size();
     }
 
+    public int getIdleSize() {
+
+        int size = 0;
+        try {
+
+            size = pooledDataSource.getNumIdleConnectionsDefaultUser();
+
+        } catch (SQLException e) {
+
+            rethrowAsDataSourceException(e);
+        }
+
+        return size;
+    }
+
+    public int getWaitingCount() {
+
+        int count = 0;
+        try {
+
+            count = pooledDataSource.getNumThreadsAwaitingCheckoutDefaultUser();
+
+        } catch (SQLException e) {
+
+            rethrowAsDataSourceException(e);
+        }
+
+        return count;
+    }
+
+    public long[] getAcquireTimeHistogram() {
+
+        return new long[0];
+    }
+
     public int getSize() {
 
         int size = 0;
@@ -0,0 +1,40 @@
+/*
+ * ConnectionHealthListener.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+/**
+ * Connection health listener interface.
+ * Implementing classes will be notified when a health check
+ * finds the server of an open connection not responding,
+ * responding again or the connection lost.
+ */
+public interface ConnectionHealthListener {
+
+    /**
+     * Indicates the state of the connection has changed - called
+     * on the health check thread, so the implementations must not block.
+     *
+     * @param pooledConnection the checked connection
+     * @param state            the new state
+     */
+    void connectionStateChanged(PooledConnection pooledConnection, ConnectionHealthMonitor.State state);
+
+}
@@ -0,0 +1,292 @@
+/*
+ * ConnectionHealthMonitor.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+import org.executequery.log.Log;
+import org.underworldlabs.util.SystemProperties;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Health checks of an open connection.
+ * <p>
+ * All the connections share a single scheduler thread, the checks themselves
+ * run on the worker threads started on demand so a hung server delays nothing
+ * else. An idle connection is pinged at the keepalive interval doubled after
+ * each answered ping up to eight times the interval, a connection used since
+ * the previous check is not pinged at all. A ping not answered within the
+ * shutdown timeout marks the connection as not responding and a failed ping
+ * as lost.
+ */
+public class ConnectionHealthMonitor {
+
+    public enum State {
+        ALIVE,
+        NOT_RESPONDING,
+        LOST
+    }
+
+    private static final int MAX_BACKOFF = 8;
+
+    private static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory("ConnectionHealthScheduler"));
+
+    private static final ExecutorService workers = Executors.newCachedThreadPool(threadFactory("ConnectionHealthCheck"));
+
+    private static final List<ConnectionHealthListener> listeners = new CopyOnWriteArrayList<>();
+
+    static {
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    private final PooledConnection connection;
+
+    private final long keepaliveInterval;
+
+    private final long responseTimeout;
+
+    private final AtomicBoolean checking = new AtomicBoolean();
+
+    private volatile State state = State.ALIVE;
+
+    private volatile boolean stopped;
+
+    private ScheduledFuture<?> keepalive;
+
+    /**
+     * the current keepalive interval - changed on the keepalive only
+     */
+    private long interval;
+
+    private long lastActivityTime;
+
+    public ConnectionHealthMonitor(PooledConnection connection) {
+
+        this.connection = connection;
+        keepaliveInterval = SystemProperties.getIntProperty("user", "connection.keepalive.interval");
+        responseTimeout = SystemProperties.getIntProperty("user", "connection.shutdown.timeout");
+        lastActivityTime = connection.getLastActivityTime();
+    }
+
+    public static void addConnectionHealthListener(ConnectionHealthListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeConnectionHealthListener(ConnectionHealthListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Runs the task periodically on the health check threads - used for
+     * the connection pools housekeeping. The run is skipped while
+     * the previous one is still in progress.
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(final Runnable task, long delay) {
+
+        final AtomicBoolean running = new AtomicBoolean();
+        return scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+
+                if (!running.compareAndSet(false, true))
+                    return;
+
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.run();
+
+                        } finally {
+                            running.set(false);
+                        }
+                    }
+                });
+            }
+        }, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Starts the keepalive pings.
+     */
+    public synchronized void start() {
+
+        if (keepaliveInterval <= 0 || stopped)
+            return;
+
+        interval = keepaliveInterval;
+        scheduleKeepalive();
+    }
+
+    /**
+     * Stops the keepalive pings of the closed connection.
+     */
+    public synchronized void stop() {
+
+        stopped = true;
+        if (keepalive != null) {
+
+            keepalive.cancel(false);
+            keepalive = null;
+        }
+    }
+
+    /**
+     * Checks the server responds in the background -
+     * called after an error on the connection.
+     */
+    public void check() {
+
+        if (stopped || state == State.LOST)
+            return;
+
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                ping();
+            }
+        });
+    }
+
+    private synchronized void scheduleKeepalive() {
+
+        if (stopped)
+            return;
+
+        keepalive = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        keepalive();
+                    }
+                });
+            }
+        }, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void keepalive() {
+
+        if (stopped)
+            return;
+
+        long activityTime = connection.getLastActivityTime();
+        if (connection.isBusy() || activityTime != lastActivityTime) {
+
+            // the statements show the state of the connection being used
+            lastActivityTime = activityTime;
+            interval = keepaliveInterval;
+
+        } else {
+
+            ping();
+            interval = Math.min(interval * 2, keepaliveInterval * MAX_BACKOFF);
+        }
+
+        if (state != State.LOST)
+            scheduleKeepalive();
+    }
+
+    private void ping() {
+
+        // the server has not answered the previous ping yet
+        if (!checking.compareAndSet(false, true))
+            return;
+
+        ScheduledFuture<?> watchdog = null;
+        try {
+
+            if (responseTimeout > 0) {
+
+                watchdog = scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        setState(State.NOT_RESPONDING);
+                    }
+                }, responseTimeout, TimeUnit.MILLISECONDS);
+            }
+
+            int timeoutSeconds = (int) Math.max(1, (responseTimeout + 999) / 1000);
+            boolean valid = connection.validate(timeoutSeconds);
+            if (watchdog != null)
+                watchdog.cancel(false);
+
+            // the closed connection is not lost
+            if (!stopped)
+                setState(valid ? State.ALIVE : State.LOST);
+
+        } catch (RuntimeException e) {
+
+            if (watchdog != null)
+                watchdog.cancel(false);
+            Log.warning("Error checking connection " + connection.getId() + ": " + e.getMessage());
+
+        } finally {
+
+            checking.set(false);
+        }
+    }
+
+    private void setState(State newState) {
+
+        synchronized (this) {
+
+            // the lost connection does not come back
+            if (stopped || state == newState || state == State.LOST)
+                return;
+            state = newState;
+        }
+
+        if (Log.isDebugEnabled()) {
+
+            Log.debug("Connection " + connection.getId() + " is " + newState);
+        }
+
+        connection.connectionStateChanged(newState);
+        for (ConnectionHealthListener listener : listeners)
+            listener.connectionStateChanged(connection, newState);
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
@@ -140,6 +140,7 @@ public final class ConnectionManager {
             return null;
         }
 
+        ConnectionPool pool;
         synchronized (databaseConnection) {
 
             if (connectionPools == null || !connectionPools.containsKey(databaseConnection)) {
@@ -147,12 +148,11 @@ public final class ConnectionManager {
                 createDataSource(databaseConnection);
             }
 
-            ConnectionPool pool = connectionPools.get(databaseConnection);
-            Connection connection = pool.getConnection();
-
-            return connection;
+            pool = connectionPools.get(databaseConnection);
         }
 
+        // waits for a free connection outside the lock
+        return pool.getConnection();
     }
 
     public static Connection getTemporaryConnection(DatabaseConnection databaseConnection) {
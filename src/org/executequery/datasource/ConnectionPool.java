@@ -62,6 +62,23 @@ interface ConnectionPool {
 
     int getPoolActiveSize();
 
+    /**
+     * Returns the number of open connections available for use.
+     */
+    int getIdleSize();
+
+    /**
+     * Returns the number of threads waiting for a connection.
+     */
+    int getWaitingCount();
+
+    /**
+     * Returns the connection acquisition times - element i holds the count
+     * of acquisitions that took less than 2^i milliseconds and not less
+     * than 2^(i-1), the last element counts all the longer ones.
+     */
+    long[] getAcquireTimeHistogram();
+
     int getInitialConnections();
 
     void setInitialConnections(int initialConnections);
@@ -30,24 +30,68 @@ import javax.sql.DataSource;
 import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Bounded pool of the connections to a database.
+ * <p>
+ * The idle connections are kept on a stack so the most recently used one
+ * is reused first. When all the connections are in use the callers wait
+ * in the arrival order up to the acquire timeout. A connection idle for
+ * longer than the validation interval is checked before it is handed out.
+ * The idle connections over the minimum are closed after the idle timeout
+ * and the connections older than the maximum lifetime are replaced - both
+ * on the connection health check threads shared by all the pools.
+ *
  * @author Takis Diakoumis
  */
 public class ConnectionPoolImpl extends AbstractConnectionPool implements PooledConnectionListener {
 
+    private static final long HOUSEKEEPING_INTERVAL = 30000;
+
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    private static final int ACQUIRE_TIME_BUCKETS = 20;
+
     private int maximumConnections = MAX_POOL_SIZE;
 
     private int minimumConnections = MIN_POOL_SIZE;
 
     private int initialConnections = INITIAL_POOL_SIZE;
 
-    private final List<PooledConnection> openConnections = Collections.synchronizedList(new ArrayList<PooledConnection>());
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    private final Condition connectionAvailable = lock.newCondition();
+
+    private final Set<PooledConnection> openConnections = new HashSet<>();
+
+    private final Set<PooledConnection> activeConnections = new HashSet<>();
+
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
 
-    private final List<PooledConnection> activeConnections = Collections.synchronizedList(new ArrayList<PooledConnection>());
+    /**
+     * the connections being created - counted against the maximum
+     */
+    private int pendingConnections;
+
+    private int waitingCount;
+
+    private boolean closed;
+
+    private final AtomicLongArray acquireTimes = new AtomicLongArray(ACQUIRE_TIME_BUCKETS);
+
+    private final ScheduledFuture<?> housekeeping;
 
     private final DatabaseConnection databaseConnection;
 
@@ -68,6 +112,17 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
             Log.debug("Creating new pool for connection " + databaseConnection.getName());
         }
 
+        housekeeping = ConnectionHealthMonitor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evictConnections();
+
+                } catch (RuntimeException e) {
+                    Log.warning("Error evicting pool connections for " + databaseConnection.getName() + ": " + e.getMessage());
+                }
+            }
+        }, HOUSEKEEPING_INTERVAL);
     }
 
     public DatabaseConnection getDatabaseConnection() {
@@ -75,111 +130,378 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
         return databaseConnection;
     }
 
+    /**
+     * Returns the connection closed by the user to the pool - without the
+     * pool the connection shared by all the callers stays in use as is.
+     */
     public void connectionClosed(PooledConnection pooledConnection) {
 
+        lock.lock();
+        try {
+            // the other callers may still use the shared connection
+            if (!SystemProperties.getBooleanProperty("user", "connection.usepool")
+                    && activeConnections.contains(pooledConnection))
+                return;
+
+            // closed more than once or removed from the pool
+            if (!activeConnections.remove(pooledConnection))
+                return;
+
+        } finally {
+            lock.unlock();
+        }
+
+        if (Log.isDebugEnabled()) {
+
+            Log.debug("Returning connection " + pooledConnection.getId() + " to the pool");
+        }
+
+        boolean reusable = !isExpired(pooledConnection, System.currentTimeMillis()) && pooledConnection.reset();
+
+        lock.lock();
+        try {
+            if (reusable && !closed && openConnections.contains(pooledConnection)) {
+                idleConnections.push(pooledConnection);
+                connectionAvailable.signal();
+                return;
+            }
+
+            openConnections.remove(pooledConnection);
+            connectionAvailable.signal();
+
+        } finally {
+            lock.unlock();
+        }
+
+        pooledConnection.destroy();
+    }
+
+    /**
+     * Discards the lost connection and replaces it - the connection in use
+     * is discarded on its return to the pool. The database is disconnected
+     * only when a new connection can not be opened.
+     */
+    public void connectionLost(PooledConnection pooledConnection) {
+
+        lock.lock();
+        try {
+            if (!idleConnections.remove(pooledConnection))
+                return;
+
+            openConnections.remove(pooledConnection);
+            connectionAvailable.signal();
+
+        } finally {
+            lock.unlock();
+        }
+
         if (Log.isDebugEnabled()) {
 
-            Log.debug("Removing connection " + pooledConnection.getId()
-                    + " from active connections list");
+            Log.debug("Discarding lost connection " + pooledConnection.getId());
         }
 
-        activeConnections.remove(pooledConnection);
-        reduceCapacity(minimumConnections);
+        pooledConnection.destroy();
+        if (isClosed())
+            return;
+
+        try {
+
+            ensureCapacity(minimumConnections);
+
+        } catch (DataSourceException e) {
+
+            Log.warning("Error replacing lost connection to " + databaseConnection.getName() + ": " + e.getMessage());
+            pooledConnection.databaseConnectionLost();
+        }
     }
 
     public void close(Connection connection) {
 
         if (connection != null) {
 
-            activeConnections.remove(connection);
+            discard((PooledConnection) connection);
+        }
 
-            PooledConnection pooledConnection = (PooledConnection) connection;
-            pooledConnection.destroy();
+        if (!isClosed()) {
 
-            openConnections.remove(pooledConnection);
+            ensureCapacity(minimumConnections);
         }
-
-        ensureCapacity(minimumConnections);
     }
 
-    public synchronized void close() {
+    public void close() {
 
         if (Log.isDebugEnabled()) {
 
             Log.debug("Closing connection pool for connection " + databaseConnection.getName());
         }
 
-        for (Connection connection : openConnections) {
+        housekeeping.cancel(false);
+
+        List<PooledConnection> connections;
+        lock.lock();
+        try {
+            closed = true;
+            connections = new ArrayList<>(openConnections);
+            activeConnections.clear();
+            idleConnections.clear();
+            openConnections.clear();
+            connectionAvailable.signalAll();
+
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection connection : connections) {
 
-            PooledConnection pooledConnection = (PooledConnection) connection;
-            pooledConnection.destroy();
+            connection.destroy();
         }
 
-        destroySshTunnel();
-        activeConnections.clear();
-        openConnections.clear();
+        synchronized (this) {
+
+            destroySshTunnel();
+        }
     }
 
-    public synchronized Connection getConnection() {
+    /**
+     * Returns a connection from the pool waiting for the connection in use
+     * to be returned when the pool reached the maximum size.
+     */
+    public Connection getConnection() {
+
+        long start = System.nanoTime();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(
+                SystemProperties.getIntProperty("user", "connection.pool.acquire.timeout"));
+        boolean usePool = SystemProperties.getBooleanProperty("user", "connection.usepool");
 
-        int size = openConnections.size();
         if (Log.isTraceEnabled()) {
 
             Log.trace("Retrieving new connection from the pool with current size: [ "
-                    + size + " ] from maximum pool capacity [ " + maximumConnections + " ]");
+                    + getSize() + " ] from maximum pool capacity [ " + maximumConnections + " ]");
         }
 
-        if (databaseConnection.isSshTunnel() && sshTunnel == null) {
+        while (true) {
 
-            createSshTunnel();
-        }
+            PooledConnection connection;
+            lock.lock();
+            try {
+                checkNotClosed();
 
-        if (size < minimumConnections) {
+                // without the pool all the callers share the connection in use
+                if (!usePool && !activeConnections.isEmpty())
+                    return activeConnections.iterator().next();
 
-            ensureCapacity(minimumConnections);
+                connection = idleConnections.poll();
+                if (connection != null) {
+
+                    activeConnections.add(connection);
+
+                } else if (openConnections.size() + pendingConnections < maximumConnections) {
+
+                    pendingConnections++;
+
+                } else {
+
+                    if (remaining <= 0) {
+
+                        throw new DataSourceException("Timed out waiting for a connection to "
+                                + databaseConnection.getName() + " - all " + maximumConnections + " connections are in use");
+                    }
+
+                    waitingCount++;
+                    try {
+                        remaining = connectionAvailable.awaitNanos(remaining);
+
+                    } finally {
+                        waitingCount--;
+                    }
+                    continue;
+                }
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                throw new DataSourceException(e);
+
+            } finally {
+                lock.unlock();
+            }
+
+            if (connection == null) {
+
+                connection = createActiveConnection();
+
+            } else if (System.currentTimeMillis() - connection.getLastValidationTime()
+                    > SystemProperties.getIntProperty("user", "connection.pool.validation.interval")
+                    && !connection.validate(VALIDATION_TIMEOUT)) {
+
+                if (Log.isDebugEnabled()) {
+
+                    Log.debug("Closing broken connection " + connection.getId());
+                }
+
+                discard(connection);
+                continue;
+            }
+
+            connection.setInUse(true);
+            recordAcquireTime(System.nanoTime() - start);
+
+            if (Log.isDebugEnabled()) {
+
+                Log.debug("Retrieving connection " + connection.getId());
+            }
+
+            return connection;
         }
+    }
 
-        PooledConnection connection = getNextOpenAvailable();
+    /**
+     * Creates the connection for the slot reserved by the caller.
+     */
+    private PooledConnection createActiveConnection() {
 
-        if (connection != null) {
+        PooledConnection connection = null;
+        try {
+
+            connection = createConnection();
+            return connection;
 
+        } finally {
+
+            lock.lock();
             try {
-                if (connection.isClosed()) {
+                pendingConnections--;
+                if (connection != null && !closed) {
+
+                    openConnections.add(connection);
+                    activeConnections.add(connection);
 
-                    close(connection);
-                    return getConnection();
+                } else {
+
+                    connectionAvailable.signal();
                 }
-            } catch (SQLException e) {
+
+            } finally {
+                lock.unlock();
             }
 
-            connection.setInUse(true);
-            activeConnections.add(connection);
-
-        } else if (size < maximumConnections) {
-            boolean usePool = SystemProperties.getBooleanProperty("user", "connection.usepool");
-            if (!usePool) {
-                if (activeConnections.size() > 0)
-                    return activeConnections.get(0);
-                else {
-                    createConnection();
-                    return getConnection();
+            if (connection != null && isClosed()) {
+
+                connection.destroy();
+                checkNotClosed();
+            }
+        }
+    }
+
+    /**
+     * Removes the connection from the pool and closes it.
+     */
+    private void discard(PooledConnection connection) {
+
+        lock.lock();
+        try {
+            idleConnections.remove(connection);
+            activeConnections.remove(connection);
+            if (openConnections.remove(connection))
+                connectionAvailable.signal();
+
+        } finally {
+            lock.unlock();
+        }
+
+        connection.destroy();
+    }
+
+    /**
+     * Closes the idle connections over the minimum unused for longer than the
+     * idle timeout and the ones older than the maximum lifetime.
+     */
+    private void evictConnections() {
+
+        // without the pool the idle connection may still be shared
+        if (!SystemProperties.getBooleanProperty("user", "connection.usepool")) {
+
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long idleTimeout = SystemProperties.getIntProperty("user", "connection.pool.idle.timeout");
+        List<PooledConnection> evicted = new ArrayList<>();
+
+        lock.lock();
+        try {
+            int excess = openConnections.size() - minimumConnections;
+            for (PooledConnection connection : idleConnections) {
+
+                if (isExpired(connection, now)) {
+
+                    evicted.add(connection);
+                    excess--;
+
+                } else if (excess > 0 && idleTimeout > 0 && now - connection.getLastUsedTime() > idleTimeout) {
+
+                    evicted.add(connection);
+                    excess--;
                 }
-            } else {
-                createConnection();
-                return getConnection();
             }
 
-        } else {
+            idleConnections.removeAll(evicted);
+            openConnections.removeAll(evicted);
+
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection connection : evicted) {
+
+            if (Log.isDebugEnabled()) {
+
+                Log.debug("Evicting connection " + connection.getId());
+            }
 
-            throw new DataSourceException("Maximum open connection count exceeded");
+            connection.destroy();
         }
 
         if (Log.isDebugEnabled()) {
 
-            Log.debug("Retrieving connection " + connection.getId());
+            Log.debug("Connection pool " + databaseConnection.getName() + ": active " + getPoolActiveSize()
+                    + ", idle " + getIdleSize() + ", waiting " + getWaitingCount()
+                    + ", acquire time histogram " + Arrays.toString(getAcquireTimeHistogram()));
         }
 
-        return connection;
+        ensureCapacity(minimumConnections);
+    }
+
+    private boolean isExpired(PooledConnection connection, long now) {
+
+        long maximumLifetime = SystemProperties.getIntProperty("user", "connection.pool.max.lifetime");
+        return maximumLifetime > 0 && now - connection.getCreationTime() > maximumLifetime;
+    }
+
+    private boolean isClosed() {
+
+        lock.lock();
+        try {
+            return closed;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkNotClosed() {
+
+        if (isClosed()) {
+
+            throw new DataSourceException("The connection pool for " + databaseConnection.getName() + " is closed");
+        }
+    }
+
+    private void recordAcquireTime(long nanos) {
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = Math.min(ACQUIRE_TIME_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+        acquireTimes.incrementAndGet(bucket);
     }
 
     private void destroySshTunnel() {
@@ -204,34 +526,45 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
             Log.debug("Ensuring pool capacity " + capacity);
         }
 
-        while (openConnections.size() < capacity) {
+        while (true) {
 
-            createConnection();
-        }
+            lock.lock();
+            try {
+                if (closed || openConnections.size() + pendingConnections >= Math.min(capacity, maximumConnections))
+                    return;
 
-    }
+                pendingConnections++;
 
-    private void reduceCapacity(int capacity) {
+            } finally {
+                lock.unlock();
+            }
 
-        if (Log.isDebugEnabled()) {
+            PooledConnection connection = null;
+            try {
 
-            Log.debug("Reducing pool capacity " + capacity);
-        }
+                connection = createConnection();
 
-        while (openConnections.size() > capacity) {
+            } finally {
 
-            PooledConnection connection = getNextOpenAvailable();
-            if (connection != null) {
+                lock.lock();
+                try {
+                    pendingConnections--;
+                    if (connection != null && !closed) {
 
-                close(connection);
+                        openConnections.add(connection);
+                        idleConnections.push(connection);
+                        connectionAvailable.signal();
+                        connection = null;
+                    }
 
-            } else {
+                } finally {
+                    lock.unlock();
+                }
 
-                break;
+                if (connection != null)
+                    connection.destroy();
             }
-
         }
-
     }
 
     private PooledConnection createConnection() {
@@ -240,28 +573,13 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
 
         try {
 
-            if (dataSource == null) {
-
-                DatabaseConnection _databaseConnection = databaseConnection;
-                if (databaseConnection.isSshTunnel()) {
+            Connection realConnection = poolDataSource().getConnection();
+            if (realConnection == null) {
 
-                    if (sshTunnel == null) {
+                synchronized (this) {
 
-                        createSshTunnel();
-                    }
-
-                    _databaseConnection = databaseConnection.copy();
-                    _databaseConnection.setHost("localhost");
-                    _databaseConnection.setPort(String.valueOf(sshTunnel.getTunnelPort()));
+                    destroySshTunnel();
                 }
-
-                dataSource = new SimpleDataSource(_databaseConnection);
-            }
-
-            Connection realConnection = dataSource.getConnection();
-            if (realConnection == null) {
-
-                destroySshTunnel();
                 throw new DataSourceException(
                         "A connection to the database could not be " +
                                 "established.\nPlease ensure that the details " +
@@ -286,11 +604,10 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
                 }
             }
 
-            connection = new PooledConnection(realConnection, databaseConnection,true,true);
+            // returned to the pool on close
+            connection = new PooledConnection(realConnection, databaseConnection, false, true);
             connection.addPooledConnectionListener(this);
 
-            openConnections.add(connection);
-
             if (Log.isDebugEnabled()) {
 
                 Log.debug("Added new connection to the pool - " + connection.getId());
@@ -298,39 +615,51 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
 
         } catch (SQLException e) {
 
-            destroySshTunnel();
+            synchronized (this) {
+
+                destroySshTunnel();
+            }
             rethrowAsDataSourceException(e);
         }
 
         return connection;
     }
 
-    private void configureTransactionIsolationLevel(Connection connection) {
+    private synchronized DataSource poolDataSource() {
 
-        try {
+        if (databaseConnection.isSshTunnel() && sshTunnel == null) {
 
-            defaultTxIsolation = connection.getTransactionIsolation();
-            supportsTransactions = connection.getMetaData().supportsTransactions();
+            createSshTunnel();
+        }
 
-        } catch (SQLException e) {
+        if (dataSource == null) {
 
-            rethrowAsDataSourceException(e);
+            DatabaseConnection _databaseConnection = databaseConnection;
+            if (databaseConnection.isSshTunnel()) {
+
+                _databaseConnection = databaseConnection.copy();
+                _databaseConnection.setHost("localhost");
+                _databaseConnection.setPort(String.valueOf(sshTunnel.getTunnelPort()));
+            }
+
+            dataSource = new SimpleDataSource(_databaseConnection);
         }
 
+        return dataSource;
     }
 
-    private PooledConnection getNextOpenAvailable() {
+    private void configureTransactionIsolationLevel(Connection connection) {
 
-        for (PooledConnection pooledConnection : openConnections) {
+        try {
 
-            if (pooledConnection.isAvailable()) {
+            defaultTxIsolation = connection.getTransactionIsolation();
+            supportsTransactions = connection.getMetaData().supportsTransactions();
 
-                return pooledConnection;
-            }
+        } catch (SQLException e) {
 
+            rethrowAsDataSourceException(e);
         }
 
-        return null;
     }
 
     public DataSource getDataSource() {
@@ -355,12 +684,57 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
 
     public int getPoolActiveSize() {
 
-        return activeConnections.size();
+        lock.lock();
+        try {
+            return activeConnections.size();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleSize() {
+
+        lock.lock();
+        try {
+            return idleConnections.size();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaitingCount() {
+
+        lock.lock();
+        try {
+            return waitingCount;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long[] getAcquireTimeHistogram() {
+
+        long[] histogram = new long[acquireTimes.length()];
+        for (int i = 0; i < histogram.length; i++) {
+
+            histogram[i] = acquireTimes.get(i);
+        }
+
+        return histogram;
     }
 
     public int getSize() {
 
-        return openConnections.size();
+        lock.lock();
+        try {
+            return openConnections.size();
+
+        } finally {
+            lock.unlock();
+        }
     }
 
     public boolean isTransactionSupported() {
@@ -444,17 +818,22 @@ public class ConnectionPoolImpl extends AbstractConnectionPool implements Pooled
         Log.debug("Setting transaction isolation level to open connections as [ "
                 + nameForTransactionIsolationLevel(isolationLevelToApply) + " ]");
 
+        List<PooledConnection> connections;
+        lock.lock();
         try {
+            connections = new ArrayList<>(openConnections);
 
-            synchronized (openConnections) {
+        } finally {
+            lock.unlock();
+        }
 
-                for (Connection connection : openConnections) {
+        try {
 
-                    if (!connection.isClosed()) {
+            for (Connection connection : connections) {
 
-                        connection.setTransactionIsolation(isolationLevelToApply);
-                    }
+                if (!connection.isClosed()) {
 
+                    connection.setTransactionIsolation(isolationLevelToApply);
                 }
 
             }
@@ -137,6 +137,7 @@ public class DefaultDriverLoader implements DriverLoader {
             } catch (SQLException e) {
                 e.printStackTrace();
             }
+            DynamicLibraryLoader.releasePluginClassLoaders(driver.getClass().getClassLoader());
             LOADED_DRIVERS.remove(key);
             driver = null;
         }
@@ -0,0 +1,78 @@
+/*
+ * FirebirdBatches.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+import biz.redsoft.IFBBatch;
+import biz.redsoft.IFBDatabaseConnection;
+import org.executequery.log.Log;
+import org.underworldlabs.util.DynamicLibraryLoader;
+
+import java.sql.Connection;
+
+/**
+ * Access to the server side batches of Firebird 4 and later through
+ * the Firebird plugin.
+ */
+public final class FirebirdBatches {
+
+    private FirebirdBatches() {
+    }
+
+    /**
+     * Creates the Firebird batch for the specified query when connected
+     * to Firebird 4 or later.
+     *
+     * @param connection the connection to create the batch on
+     * @param query      the parameterized query
+     * @return the batch or null if not available
+     */
+    public static IFBBatch createBatch(Connection connection, String query) {
+
+        try {
+
+            Connection fbConnection = connection.unwrap(Connection.class);
+            if (!fbConnection.getClass().getName().contains("FBConnection")) {
+                return null;
+            }
+
+            IFBDatabaseConnection db = (IFBDatabaseConnection)
+                    DynamicLibraryLoader.loadingObjectFromClassLoader(fbConnection, "FBDatabaseConnectionImpl4");
+            db.setConnection(fbConnection);
+
+            if (db.getMajorVersion() < 4) {
+                return null;
+            }
+
+            return db.createBatch(query);
+
+        } catch (Exception e) {
+
+            Log.debug("Firebird batch not available: " + e.getMessage());
+            return null;
+
+        } catch (LinkageError e) {
+
+            Log.debug("Firebird batch not available: " + e.getMessage());
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,456 @@
+/*
+ * MetaDataFetchScheduler.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+import org.executequery.EventMediator;
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.event.ApplicationEvent;
+import org.executequery.event.ConnectionEvent;
+import org.executequery.event.ConnectionListener;
+import org.executequery.log.Log;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs meta data fetches for one connection on a small pool of worker
+ * threads. Requests the user is waiting on run before speculative
+ * prefetches - the most recent user request first - and requests for
+ * a key already queued or running share the one fetch.
+ * <p>
+ * Each worker holds its own connection, returned by
+ * <code>workerConnection</code> while a fetch runs, so fetches on
+ * high latency links do not queue behind each other on one connection.
+ */
+public final class MetaDataFetchScheduler {
+
+    /**
+     * priority of a fetch the user is waiting on
+     */
+    public static final int USER = 0;
+
+    /**
+     * priority of a speculative prefetch
+     */
+    public static final int PREFETCH = 1;
+
+    private static final int WORKER_COUNT = 3;
+
+    /**
+     * how long an idle worker keeps its connection open
+     */
+    private static final long IDLE_TIMEOUT = 60000;
+
+    private static final Map<DatabaseConnection, MetaDataFetchScheduler> SCHEDULERS =
+            new ConcurrentHashMap<DatabaseConnection, MetaDataFetchScheduler>();
+
+    private static final ThreadLocal<Worker> CURRENT_WORKER = new ThreadLocal<Worker>();
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    static {
+        EventMediator.registerListener(new ConnectionListener() {
+
+            public void connected(ConnectionEvent connectionEvent) {
+            }
+
+            public void disconnected(ConnectionEvent connectionEvent) {
+
+                MetaDataFetchScheduler scheduler =
+                        SCHEDULERS.remove(connectionEvent.getDatabaseConnection());
+                if (scheduler != null) {
+
+                    scheduler.shutdown();
+                }
+            }
+
+            public boolean canHandleEvent(ApplicationEvent event) {
+                return (event instanceof ConnectionEvent);
+            }
+
+        });
+    }
+
+    private final DatabaseConnection databaseConnection;
+
+    private final PriorityBlockingQueue<Fetch> queue = new PriorityBlockingQueue<Fetch>();
+
+    private final Map<Object, Fetch> fetches = new ConcurrentHashMap<Object, Fetch>();
+
+    private int workers;
+
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+
+    private volatile boolean shutdown;
+
+    private MetaDataFetchScheduler(DatabaseConnection databaseConnection) {
+        this.databaseConnection = databaseConnection;
+    }
+
+    /**
+     * Returns the scheduler of the specified connection.
+     */
+    public static MetaDataFetchScheduler forConnection(DatabaseConnection dc) {
+
+        MetaDataFetchScheduler scheduler = SCHEDULERS.get(dc);
+        if (scheduler == null) {
+
+            synchronized (SCHEDULERS) {
+
+                scheduler = SCHEDULERS.get(dc);
+                if (scheduler == null) {
+
+                    scheduler = new MetaDataFetchScheduler(dc);
+                    SCHEDULERS.put(dc, scheduler);
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Returns the connection of the worker running on the current thread
+     * for the specified connection, or <code>null</code> if the current
+     * thread is not such a worker.
+     *
+     * @param dc the database connection
+     * @return the worker's own connection or null
+     */
+    public static Connection workerConnection(DatabaseConnection dc) {
+
+        Worker worker = CURRENT_WORKER.get();
+        if (worker == null || worker.scheduler.databaseConnection != dc) {
+
+            return null;
+        }
+        return worker.connection();
+    }
+
+    /**
+     * Queues the specified fetch. Where a fetch with the same key is
+     * already queued or running that fetch is returned instead, raised
+     * to the specified priority if it has not started yet.
+     *
+     * @param key      the fetch key - typically the tree node
+     * @param priority USER or PREFETCH
+     * @param task     the fetch
+     * @return the future of the queued fetch
+     */
+    public Future<?> submit(Object key, int priority, Runnable task) {
+
+        return submit(key, priority, task, null);
+    }
+
+    /**
+     * Queues the specified fetch as {@link #submit(Object, int, Runnable)}
+     * does and runs the callback once the fetch returned - this one or
+     * the one already queued for the key - has completed, failed or been
+     * cancelled. The callback runs on the thread completing the fetch.
+     *
+     * @param key      the fetch key - typically the tree node
+     * @param priority USER or PREFETCH
+     * @param task     the fetch
+     * @param whenDone the completion callback or null
+     * @return the future of the queued fetch
+     */
+    public Future<?> submit(Object key, int priority, Runnable task, Runnable whenDone) {
+
+        Fetch fetch = enqueue(key, priority, task);
+        if (whenDone != null) {
+
+            fetch.whenDone(whenDone);
+        }
+        return fetch;
+    }
+
+    private Fetch enqueue(Object key, int priority, Runnable task) {
+
+        Fetch fetch;
+        synchronized (fetches) {
+
+            fetch = fetches.get(key);
+            if (fetch != null) {
+
+                if (priority < fetch.priority && queue.remove(fetch)) {
+
+                    fetch.priority = priority;
+                    fetch.sequence = SEQUENCE.incrementAndGet();
+                    queue.add(fetch);
+                }
+                return fetch;
+            }
+
+            if (shutdown) {
+
+                fetch = new Fetch(key, priority, task);
+                fetch.cancel(false);
+                return fetch;
+            }
+
+            fetch = new Fetch(key, priority, task);
+            fetches.put(key, fetch);
+            queue.add(fetch);
+        }
+
+        startWorkers();
+        return fetch;
+    }
+
+    /**
+     * Returns whether a fetch with the specified key is queued or running.
+     */
+    public boolean isPending(Object key) {
+        return fetches.containsKey(key);
+    }
+
+    /**
+     * Cancels all queued fetches and stops the workers.
+     */
+    public void shutdown() {
+
+        shutdown = true;
+        synchronized (fetches) {
+
+            for (Fetch fetch : queue) {
+
+                fetch.cancel(false);
+            }
+            queue.clear();
+            fetches.clear();
+        }
+    }
+
+    private synchronized void startWorkers() {
+
+        int started = 0;
+        while (workers < WORKER_COUNT && idleWorkers.get() + started < queue.size() && !shutdown) {
+
+            started++;
+            workers++;
+            Thread thread = new Thread(new Worker(this),
+                    "MetaData-" + databaseConnection.getName() + "-" + workers);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private synchronized boolean workerIdle() {
+
+        // keep the worker when work arrived while it was timing out
+        if (!queue.isEmpty() && !shutdown) {
+
+            return false;
+        }
+
+        workers--;
+        return true;
+    }
+
+    private final class Fetch extends FutureTask<Object> implements Comparable<Fetch> {
+
+        private final Object key;
+
+        private volatile int priority;
+
+        private volatile long sequence;
+
+        private List<Runnable> callbacks;
+
+        private boolean completed;
+
+        Fetch(Object key, int priority, Runnable task) {
+            super(task, null);
+            this.key = key;
+            this.priority = priority;
+            this.sequence = SEQUENCE.incrementAndGet();
+        }
+
+        public int compareTo(Fetch other) {
+
+            if (priority != other.priority) {
+
+                return priority < other.priority ? -1 : 1;
+            }
+
+            // the latest user request first, prefetches in request order
+            int order = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+            return priority == USER ? -order : order;
+        }
+
+        void whenDone(Runnable callback) {
+
+            synchronized (this) {
+
+                if (!completed) {
+
+                    if (callbacks == null) {
+
+                        callbacks = new ArrayList<Runnable>();
+                    }
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+
+            callback.run();
+        }
+
+        @Override
+        protected void done() {
+
+            synchronized (fetches) {
+
+                if (fetches.get(key) == this) {
+
+                    fetches.remove(key);
+                }
+            }
+
+            if (!isCancelled()) {
+
+                try {
+                    get();
+                } catch (Exception e) {
+                    Log.error("Error fetching meta data for " + key, e);
+                }
+            }
+
+            List<Runnable> completedCallbacks;
+            synchronized (this) {
+
+                completed = true;
+                completedCallbacks = callbacks;
+                callbacks = null;
+            }
+
+            if (completedCallbacks != null) {
+
+                for (Runnable callback : completedCallbacks) {
+
+                    try {
+                        callback.run();
+                    } catch (RuntimeException e) {
+                        Log.error("Error completing meta data fetch for " + key, e);
+                    }
+                }
+            }
+        }
+
+    }
+
+    private static final class Worker implements Runnable {
+
+        private final MetaDataFetchScheduler scheduler;
+
+        private Connection connection;
+
+        Worker(MetaDataFetchScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        public void run() {
+
+            CURRENT_WORKER.set(this);
+            try {
+
+                while (!scheduler.shutdown) {
+
+                    scheduler.idleWorkers.incrementAndGet();
+                    Fetch fetch;
+                    try {
+                        fetch = scheduler.queue.poll(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+                    } finally {
+                        scheduler.idleWorkers.decrementAndGet();
+                    }
+
+                    if (fetch == null) {
+
+                        if (scheduler.workerIdle()) {
+
+                            return;
+                        }
+                        continue;
+                    }
+
+                    fetch.run();
+                }
+
+                scheduler.workerIdle();
+
+            } catch (InterruptedException e) {
+
+                scheduler.workerIdle();
+                Thread.currentThread().interrupt();
+
+            } finally {
+
+                CURRENT_WORKER.remove();
+                close();
+            }
+        }
+
+        Connection connection() {
+
+            try {
+
+                if (connection == null || connection.isClosed()) {
+
+                    // closed for real once the worker stops
+                    connection = null;
+                    DataSource dataSource = ConnectionManager.getDataSource(scheduler.databaseConnection);
+                    if (dataSource != null) {
+
+                        connection = new PooledConnection(
+                                dataSource.getConnection(), scheduler.databaseConnection, true, false);
+                    }
+                }
+
+            } catch (SQLException e) {
+
+                Log.debug("Meta data worker connection unavailable: " + e.getMessage());
+                connection = null;
+            }
+            return connection;
+        }
+
+        private void close() {
+
+            if (connection != null) {
+
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    Log.debug(e.getMessage());
+                }
+                connection = null;
+            }
+        }
+
+    }
+
+}
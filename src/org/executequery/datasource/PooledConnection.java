@@ -20,16 +20,12 @@
 
 package org.executequery.datasource;
 
-import biz.redsoft.IFBDatabasePerformance;
 import org.executequery.GUIUtilities;
 import org.executequery.databasemediators.ConnectionMediator;
 import org.executequery.databasemediators.DatabaseConnection;
-import org.underworldlabs.util.DynamicLibraryLoader;
-import org.underworldlabs.util.SystemProperties;
 
 import javax.swing.*;
 import java.sql.*;
-import java.util.Timer;
 import java.util.*;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
@@ -76,12 +72,22 @@ public class PooledConnection implements Connection {
 
     private List<PooledConnectionListener> listeners;
 
-    private final Timer timer;
-    private Timer timerDelay;
-    private final TimerTask task;
-    private final int timeoutShutdown;
+    /**
+     * the database connections asking to close the not responding connection
+     * - accessed on the event dispatch thread only
+     */
+    private static final Set<DatabaseConnection> notRespondingPrompts = new HashSet<DatabaseConnection>();
+
+    private final ConnectionHealthMonitor healthMonitor;
     private PooledStatement lastStatement;
-    private final boolean timerCheckConnection;
+
+    /**
+     * the pool bookkeeping times in milliseconds
+     */
+    private final long creationTime = System.currentTimeMillis();
+    private volatile long lastUsedTime = creationTime;
+    private volatile long lastValidationTime = creationTime;
+    private volatile long lastActivityTime = creationTime;
 
 
     /**
@@ -106,22 +112,13 @@ public class PooledConnection implements Connection {
      */
     public PooledConnection(Connection realConnection, DatabaseConnection databaseConnection, boolean closeOnReturn,boolean timerCheckConnection) {
         this.databaseConnection = databaseConnection;
-        this.timerCheckConnection=timerCheckConnection;
         mutex = new Semaphore(1);
         useCount = 0;
-        timeoutShutdown = SystemProperties.getIntProperty("user", "connection.shutdown.timeout");
         this.realConnection = realConnection;
         this.closeOnReturn = closeOnReturn;
-        timer = new Timer();
-        timerDelay = new Timer();
-        task = new TimerTask() {
-            @Override
-            public void run() {
-                checkConnectionToServer();
-            }
-        };
-        if(this.timerCheckConnection)
-            timer.schedule(task, timeoutShutdown);
+        healthMonitor = new ConnectionHealthMonitor(this);
+        if (timerCheckConnection)
+            healthMonitor.start();
         try {
 
             originalAutoCommit = realConnection.getAutoCommit();
@@ -182,10 +179,102 @@ public class PooledConnection implements Connection {
         }
 
         this.inUse = inUse;
+        lastUsedTime = System.currentTimeMillis();
+    }
+
+    long getCreationTime() {
+        return creationTime;
+    }
+
+    long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    long getLastValidationTime() {
+        return lastValidationTime;
+    }
+
+    long getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    /**
+     * Checks whether a statement is being executed on the connection.
+     */
+    boolean isBusy() {
+        return mutex.availablePermits() == 0;
+    }
+
+    public ConnectionHealthMonitor getHealthMonitor() {
+        return healthMonitor;
+    }
+
+    /**
+     * Checks the real connection is alive - used by the pool instead of
+     * {@link #isValid(int)} to avoid the server check on failure.
+     */
+    boolean validate(int timeoutSeconds) {
+
+        Connection connection = realConnection;
+        if (connection == null)
+            return false;
+
+        try {
+            boolean valid;
+            try {
+                valid = connection.isValid(timeoutSeconds);
+
+            } catch (AbstractMethodError | SQLFeatureNotSupportedException e) {
+                // pre JDBC 4 driver
+                valid = !connection.isClosed();
+            }
+
+            if (valid)
+                lastValidationTime = System.currentTimeMillis();
+            return valid;
+
+        } catch (SQLException e) {
+
+            return false;
+        }
     }
 
+    /**
+     * Prepares the connection returned to the pool for the next use - rolls
+     * back the pending transaction and restores the original auto-commit mode.
+     *
+     * @return false if the connection can not be reused
+     */
+    boolean reset() {
+
+        // a statement was left open or the connection was lost while in use
+        if (mutex.availablePermits() == 0 || realConnection == null
+                || healthMonitor.getState() == ConnectionHealthMonitor.State.LOST)
+            return false;
+
+        try {
+
+            if (!realConnection.getAutoCommit())
+                realConnection.rollback();
+            if (realConnection.getAutoCommit() != originalAutoCommit)
+                realConnection.setAutoCommit(originalAutoCommit);
+            realConnection.clearWarnings();
+            return true;
+
+        } catch (SQLException e) {
+
+            return false;
+        }
+    }
+
+    /**
+     * Closes the real connection whether or not the connection is returned
+     * to the pool on close.
+     */
     protected void destroy() {
 
+        closeOnReturn = true;
+
         /*if (Log.isDebugEnabled()) {*/
 
         //Log.info("Destroying connection - " + id);
@@ -209,8 +298,6 @@ public class PooledConnection implements Connection {
     public void close() throws SQLException {
 
         inUse = false;
-        if(timerCheckConnection)
-            timer.cancel();
 
         if (realConnection != null) {
 
@@ -240,6 +327,9 @@ public class PooledConnection implements Connection {
             fireConnectionClosed();
 
         }
+
+        if (realConnection == null)
+            healthMonitor.stop();
     }
 
     private void fireConnectionClosed() {
@@ -252,50 +342,72 @@ public class PooledConnection implements Connection {
 
     }
 
+    private void fireConnectionLost() {
+
+        for (PooledConnectionListener listener : listeners) {
+
+            listener.connectionLost(this);
+        }
+    }
+
     protected void handleException(SQLException e) throws SQLException {
         checkConnectionToServer();
         throw e;
     }
 
-    public void checkConnectionToServer()
-    {
-        try {
-            IFBDatabasePerformance db = (IFBDatabasePerformance) DynamicLibraryLoader.loadingObjectFromClassLoader(realConnection, "FBDatabasePerformanceImpl");
-            db.setConnection(realConnection);
-            TimerTask task = new TimerTask() {
-                @Override
-                public void run() {
-                    if (databaseConnection.isConnected()) {
-                        if (GUIUtilities.displayConfirmDialog("The server is not responding. do you want to close the connection?") == JOptionPane.OK_OPTION) {
+    /**
+     * Checks the server responds in the background.
+     */
+    public void checkConnectionToServer() {
+        healthMonitor.check();
+    }
+
+    /**
+     * Handles the health check result - the lost connection is replaced by
+     * the pool, the not responding one may be closed by the user on the
+     * event dispatch thread.
+     */
+    void connectionStateChanged(final ConnectionHealthMonitor.State state) {
+
+        if (state == ConnectionHealthMonitor.State.ALIVE)
+            return;
+
+        // only this connection is lost - the database stays connected
+        if (state == ConnectionHealthMonitor.State.LOST && listeners != null) {
+
+            fireConnectionLost();
+            return;
+        }
+
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+
+                if (!databaseConnection.isConnected())
+                    return;
+
+                if (state == ConnectionHealthMonitor.State.LOST) {
+
+                    closeDatabaseConnection();
+
+                } else if (notRespondingPrompts.add(databaseConnection)) {
+
+                    try {
+
+                        if (healthMonitor.getState() == ConnectionHealthMonitor.State.NOT_RESPONDING
+                                && GUIUtilities.displayConfirmDialog("The server is not responding. do you want to close the connection?") == JOptionPane.OK_OPTION
+                                && databaseConnection.isConnected()) {
+
                             closeDatabaseConnection();
-                            timerDelay.cancel();
                         }
-                    } else
-                        timerDelay.cancel();
-                }
-            };
-            timerDelay = new Timer();
-            /*StackTraceElement[] stack = Thread.currentThread().getStackTrace();
-            Log.info("---------------------------------Start check----------------------------------\n\n\n");
-            for (int i = 0; i < stack.length - 2; i++)
-                Log.info(stack[stack.length - 1 - i]);*/
-            timerDelay.schedule(task, timeoutShutdown);
-            db.getPerformanceInfo();
-            timerDelay.cancel();
-            //Log.info("---------------------------------Finish check.----------------------------------\n\n\n");
-        } catch (SQLException e)
-        {
-            if (databaseConnection.isConnected())
-                closeDatabaseConnection();
-            timerDelay.cancel();
-        } catch (ClassNotFoundException e) {
-            if (databaseConnection.isConnected()) {
-                if (GUIUtilities.displayConfirmDialog("The server is not responding. do you want to close the connection?") == JOptionPane.OK_OPTION) {
-                    closeDatabaseConnection();
+
+                    } finally {
+
+                        notRespondingPrompts.remove(databaseConnection);
+                    }
                 }
             }
-            timerDelay.cancel();
-        }
+        });
     }
 
     public Statement createStatement() throws SQLException {
@@ -570,10 +682,25 @@ public class PooledConnection implements Connection {
         }*/
     }
 
+    /**
+     * Closes the database connection on the event dispatch thread - called
+     * by the pool failing to replace the lost connection.
+     */
+    void databaseConnectionLost() {
+
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+
+                if (databaseConnection.isConnected())
+                    closeDatabaseConnection();
+            }
+        });
+    }
+
     public synchronized void closeDatabaseConnection() {
         databaseConnection.setConnected(false);
         ConnectionMediator.getInstance().disconnect(databaseConnection);
-        timer.cancel();
         GUIUtilities.displayErrorMessage("lost connection to server");
     }
 
@@ -933,6 +1060,7 @@ public class PooledConnection implements Connection {
         if (flag) {
             try {
                 mutex.acquire();
+                lastActivityTime = System.currentTimeMillis();
                 /*StackTraceElement[] stack = Thread.currentThread().getStackTrace();
                 Log.debug("---------------------------------Start a connection lock. Stack:----------------------------------\n\n\n");
                 for (int i = 0; i < stack.length - 2; i++)
@@ -27,6 +27,12 @@ public interface PooledConnectionListener {
 
     void connectionClosed(PooledConnection pooledConnection);
 
+    /**
+     * Indicates the health check found the connection lost - called
+     * on the health check thread.
+     */
+    void connectionLost(PooledConnection pooledConnection);
+
 }
 
 
@@ -40,12 +40,14 @@ import org.executequery.gui.text.TextFileWriter;
 import org.executequery.localization.Bundles;
 import org.executequery.sql.ActionOnError;
 import org.executequery.sql.ExecutionController;
+import org.executequery.sql.QueryOutputQueue;
 import org.executequery.sql.SqlScriptRunner;
 import org.executequery.sql.SqlStatementResult;
 import org.executequery.util.ThreadUtils;
 import org.executequery.util.ThreadWorker;
 import org.underworldlabs.swing.AbstractStatusBarPanel;
 import org.underworldlabs.swing.GUIUtils;
+import org.underworldlabs.swing.NumberTextField;
 import org.underworldlabs.swing.ProgressBar;
 import org.underworldlabs.swing.ProgressBarFactory;
 import org.underworldlabs.swing.plaf.UIUtils;
@@ -91,6 +93,10 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
 
     private JCheckBox logOutputCheckBox;
 
+    private NumberTextField batchSizeField;
+
+    private NumberTextField commitIntervalField;
+
     private JCheckBox useConnection;
 
     private JButton saveButton;
@@ -107,7 +113,12 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
 
     private boolean resetButtons;
 
-    private String script = null;
+    /**
+     * the script file too large for the editor - executed from the file
+     */
+    private File scriptFile = null;
+
+    private final QueryOutputQueue output = new QueryOutputQueue();
 
     public ExecuteSqlScriptPanel() {
 
@@ -146,6 +157,21 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
 
         actionOnErrorCombo.setModel(new DefaultComboBoxModel(actionsOnError));
 
+        batchSizeField = new NumberTextField();
+        batchSizeField.setColumns(8);
+        batchSizeField.setValue(0);
+
+        commitIntervalField = new NumberTextField();
+        commitIntervalField.setColumns(8);
+        commitIntervalField.setValue(0);
+
+        JPanel batchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        batchPanel.add(batchSizeField);
+        batchPanel.add(Box.createHorizontalStrut(10));
+        batchPanel.add(new JLabel(bundleString("CommitInterval")));
+        batchPanel.add(Box.createHorizontalStrut(5));
+        batchPanel.add(commitIntervalField);
+
         outputPanel = new LoggingOutputPanel();
         statusBar = new SqlTextPaneStatusBar();
         statusBar.setBorder(BorderFactory.createEmptyBorder(2, 0, 0, 1));
@@ -204,6 +230,17 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
         gbc.weightx = 0;
         gbc.gridwidth = 1;
         gbc.insets.top = 5;
+        mainPanel.add(new JLabel(bundleString("BatchSize")), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        gbc.gridwidth = GridBagConstraints.REMAINDER;
+        gbc.insets.top = 2;
+        mainPanel.add(batchPanel, gbc);
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.weightx = 0;
+        gbc.gridwidth = 1;
+        gbc.insets.top = 5;
         mainPanel.add(new JLabel(bundleString("InputFile")), gbc);
         gbc.gridx = 1;
         gbc.weightx = 1.0;
@@ -293,12 +330,26 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
         File file = new File(fileNameField.getText());
 
         try {
-            sqlText.setSQLText(FileUtils.loadFile(file.getPath()));
+            loadScriptFile(file);
         } catch (IOException e) {
             GUIUtilities.displayErrorMessage(bundleString("error.load-file"));
         }
     }
 
+    private void loadScriptFile(File file) throws IOException {
+
+        if (file.length() < MAX_LENGTH_TEXT_PANE) {
+
+            scriptFile = null;
+            sqlText.setSQLText(FileUtils.loadFile(file.getPath()));
+
+        } else {
+
+            scriptFile = file;
+            sqlText.setSQLText("'File is very big.It can not opened in editor'");
+        }
+    }
+
     public boolean logOutput() {
 
         return logOutputCheckBox.isSelected();
@@ -321,10 +372,7 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
 
         File file = fileChooser.getSelectedFile();
         fileNameField.setText(file.getAbsolutePath());
-        script = FileUtils.loadFile(file.getPath());
-        if(script.length()<MAX_LENGTH_TEXT_PANE)
-            sqlText.setSQLText(script);
-        else sqlText.setSQLText("'File is very big.It can not opened in editor'");
+        loadScriptFile(file);
     }
 
     private boolean fieldsValid() {
@@ -555,15 +603,22 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
                 if (selectedHost != null)
                     connection = selectedHost.getDatabaseConnection();
             }
-            if (script == null || script.length() < MAX_LENGTH_TEXT_PANE)
-                script = sqlText.getSQLText();
-            sqlStatementResult = sqlScriptRunner.execute(
-                    connection,
-                    script,
-                    (ActionOnError) actionOnErrorCombo.getSelectedItem());
+            ActionOnError actionOnError = (ActionOnError) actionOnErrorCombo.getSelectedItem();
+            sqlScriptRunner.setBatchSize(batchSizeField.getValue());
+            sqlScriptRunner.setCommitInterval(commitIntervalField.getValue());
+            if (scriptFile != null) {
+
+                sqlStatementResult = sqlScriptRunner.execute(connection, scriptFile, actionOnError);
+
+            } else {
+
+                sqlStatementResult = sqlScriptRunner.execute(connection, sqlText.getSQLText(), actionOnError);
+            }
 
         } finally {
 
+            output.flush();
+
             if (sqlStatementResult != null && sqlStatementResult.isException()) {
 
                 if (sqlStatementResult.isInterrupted()) {
@@ -680,7 +735,7 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
     } // SqlTextPaneStatusBar
 
     public void message(final String message) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+        output.add(new Runnable() {
             public void run() {
                 outputPanel.append(message);
             }
@@ -688,7 +743,7 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
     }
 
     public void actionMessage(final String message) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+        output.add(new Runnable() {
             public void run() {
                 outputPanel.appendAction(message);
             }
@@ -696,7 +751,7 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
     }
 
     public void errorMessage(final String message) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+        output.add(new Runnable() {
             public void run() {
                 outputPanel.appendError(message);
             }
@@ -704,7 +759,7 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
     }
 
     public void queryMessage(final String message) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+        output.add(new Runnable() {
             public void run() {
                 outputPanel.appendActionFixedWidth(message);
             }
@@ -712,7 +767,7 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
     }
 
     public void warningMessage(final String message) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+        output.add(new Runnable() {
             public void run() {
                 outputPanel.appendWarning(message);
             }
@@ -17,14 +17,11 @@ import org.executequery.log.Log;
 import org.executequery.sql.SqlStatementResult;
 import org.underworldlabs.swing.layouts.GridBagHelper;
 import org.underworldlabs.swing.util.SwingWorker;
-import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.DynamicLibraryLoader;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -266,22 +263,11 @@ public class BrowserPrivilegesPanel extends JPanel implements ActionListener {
             Log.error("error get connection for getting users in grant manager:", e);
         }
 
-        URL[] urls = new URL[0];
-        Class clazzdb = null;
         Object odb = null;
         try {
-            urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-            clazzdb = cl.loadClass("biz.redsoft.FBUserManagerImpl");
-            odb = clazzdb.newInstance();
+            odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBUserManagerImpl");
         } catch (ClassNotFoundException e) {
             Log.error("Error get users in Grant Manager:", e);
-        } catch (IllegalAccessException e) {
-            Log.error("Error get users in Grant Manager:", e);
-        } catch (InstantiationException e) {
-            Log.error("Error get users in Grant Manager:", e);
-        } catch (MalformedURLException e) {
-            Log.error("Error get users in Grant Manager:", e);
         }
         IFBUserManager userManager = (IFBUserManager) odb;
         userManager = getUserManager(userManager, databaseConnection);
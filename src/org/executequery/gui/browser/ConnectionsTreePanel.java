@@ -25,12 +25,14 @@ import org.executequery.GUIUtilities;
 import org.executequery.databasemediators.ConnectionMediator;
 import org.executequery.databasemediators.DatabaseConnection;
 import org.executequery.databasemediators.DatabaseConnectionFactory;
+import org.executequery.databasemediators.SchemaSnapshots;
 import org.executequery.databasemediators.spi.DatabaseConnectionFactoryImpl;
 import org.executequery.databaseobjects.DatabaseHost;
 import org.executequery.databaseobjects.DatabaseObjectFactory;
 import org.executequery.databaseobjects.NamedObject;
 import org.executequery.databaseobjects.impl.DatabaseObjectFactoryImpl;
 import org.executequery.databaseobjects.impl.DefaultDatabaseHost;
+import org.executequery.datasource.MetaDataFetchScheduler;
 import org.executequery.event.*;
 import org.executequery.gui.browser.nodes.ConnectionsFolderNode;
 import org.executequery.gui.browser.nodes.DatabaseHostNode;
@@ -1386,6 +1388,9 @@ public class ConnectionsTreePanel extends TreePanel
       DatabaseObjectNode node = (DatabaseObjectNode) object;
       node.reset();
 
+      // a reload means the schema may have changed
+      SchemaSnapshots.invalidate(getDatabaseConnection(node));
+
 
       nodeStructureChanged(node);
       pathExpanded(path);
@@ -1547,6 +1552,13 @@ public class ConnectionsTreePanel extends TreePanel
     }
 
     final DatabaseObjectNode node = (DatabaseObjectNode) object;
+    final DatabaseConnection connection = getDatabaseConnection(node);
+    if (connection != null && connection.isConnected() && !node.isHostNode()) {
+
+      scheduleNodeExpansion(node, connection);
+      return;
+    }
+
     worker = new SwingWorker() {
       public Object construct() {
         GUIUtilities.showWaitCursor();
@@ -1566,6 +1578,127 @@ public class ConnectionsTreePanel extends TreePanel
     worker.start();
   }
 
+  /**
+   * the most children of an expanded node prefetched in the background
+   */
+  private static final int PREFETCH_LIMIT = 50;
+
+  /**
+   * Expands the specified node on the connection's meta data workers
+   * ahead of any prefetch, then queues its children and siblings for
+   * speculative loading.
+   */
+  private void scheduleNodeExpansion(final DatabaseObjectNode node, DatabaseConnection connection) {
+
+    final MetaDataFetchScheduler scheduler = MetaDataFetchScheduler.forConnection(connection);
+    final Runnable expanded = new Runnable() {
+      public void run() {
+
+        try {
+
+          prefetchChildren(scheduler, node);
+
+          TreeNode parent = node.getParent();
+          if (parent instanceof DatabaseObjectNode) {
+
+            prefetchChildren(scheduler, (DatabaseObjectNode) parent);
+          }
+
+          if (isMoveScrollAfterExpansion()) {
+            moveScrollToSelection();
+            setMoveScrollAfterExpansion(false);
+          }
+
+        } finally {
+
+          GUIUtilities.showNormalCursor();
+        }
+      }
+    };
+
+    GUIUtilities.showWaitCursor();
+    if (node.isChildrenRetrieved()) {
+
+      expanded.run();
+      return;
+    }
+
+    // the node may already be queued as a prefetch - the callback
+    // runs for whichever fetch is returned
+    scheduler.submit(node, MetaDataFetchScheduler.USER, new Runnable() {
+      public void run() {
+        loadChildren(node);
+      }
+    }, new Runnable() {
+      public void run() {
+        SwingUtilities.invokeLater(expanded);
+      }
+    });
+  }
+
+  /**
+   * Queues the unloaded children of the specified node for prefetching.
+   * Called on the event dispatch thread.
+   */
+  private void prefetchChildren(MetaDataFetchScheduler scheduler, DatabaseObjectNode node) {
+
+    int count = node.getChildCount();
+    if (count > PREFETCH_LIMIT) {
+
+      return;
+    }
+
+    for (int i = 0; i < count; i++) {
+
+      TreeNode child = node.getChildAt(i);
+      if (!(child instanceof DatabaseObjectNode)) {
+
+        continue;
+      }
+
+      final DatabaseObjectNode childNode = (DatabaseObjectNode) child;
+      if (childNode.isChildrenRetrieved() || childNode.isLeaf()) {
+
+        continue;
+      }
+
+      scheduler.submit(childNode, MetaDataFetchScheduler.PREFETCH, new Runnable() {
+        public void run() {
+          loadChildren(childNode);
+        }
+      });
+    }
+  }
+
+  /**
+   * Loads the children of the specified node on the calling meta data
+   * worker and adds them to the tree on the event dispatch thread. The
+   * node is read on the event dispatch thread only - the nodes already
+   * loaded are not queued.
+   */
+  private void loadChildren(final DatabaseObjectNode node) {
+
+    final List<DatabaseObjectNode> children;
+    try {
+
+      children = node.getChildObjects();
+
+    } catch (DataSourceException e) {
+
+      controller.handleException(e);
+      return;
+    }
+
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+        if (!node.isChildrenRetrieved()) {
+          node.populateChildren(children);
+          nodeStructureChanged(node);
+        }
+      }
+    });
+  }
+
   public boolean isMoveScroll() {
     return moveScroll;
   }
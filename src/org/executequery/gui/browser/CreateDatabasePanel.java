@@ -43,10 +43,7 @@ import java.awt.event.ItemEvent;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
-import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.util.ArrayList;
@@ -823,16 +820,10 @@ public class CreateDatabasePanel extends ActionPanel
         }
         String path = sourceField.getText();
 
-        URL[] urlDriver = new URL[0];
-        Class clazzDriver = null;
-        URL[] urls = new URL[0];
-        Class clazzdb = null;
         Object odb = null;
         try {
-            urlDriver = MiscUtils.loadURLs(databaseDriver.getPath());
-            ClassLoader clD = new URLClassLoader(urlDriver);
-            clazzDriver = clD.loadClass(databaseDriver.getClassName());
-            Object o = clazzDriver.newInstance();
+            Object o = DynamicLibraryLoader.loadingObjectFromClassLoader(databaseDriver,
+                    databaseDriver.getClassName(), databaseDriver.getPath());
             Driver driver = (Driver) o;
 
             Log.info("Database creation via jaybird");
@@ -847,8 +838,7 @@ public class CreateDatabasePanel extends ActionPanel
 
             try {
                 Object odb1 = DynamicLibraryLoader.loadingObjectFromClassLoader(driver,
-                        "biz.redsoft.FBCryptoPluginInitImpl",
-                        "./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
+                        "FBCryptoPluginInitImpl");
                 IFBCryptoPluginInit cryptoPlugin = (IFBCryptoPluginInit) odb1;
                 // try to initialize crypto plugin
                 cryptoPlugin.init();
@@ -860,9 +850,8 @@ public class CreateDatabasePanel extends ActionPanel
                 //advancedProperties.put("excludeCryptoPlugins", "Multifactor,GostPassword,Certificate");
             }
             odb = DynamicLibraryLoader.loadingObjectFromClassLoader(driver,
-                    "biz.redsoft.FBCreateDatabaseImpl",
-                    "./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-        } catch (ClassNotFoundException | IllegalAccessException | InstantiationException | MalformedURLException e) {
+                    "FBCreateDatabaseImpl");
+        } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
 
@@ -1,21 +1,21 @@
 package org.executequery.gui.browser;
 
-import biz.redsoft.IFBBatch;
-import biz.redsoft.IFBBatchCompletionState;
-import biz.redsoft.IFBDatabaseConnection;
 import org.executequery.GUIUtilities;
 import org.executequery.base.TabView;
 import org.executequery.databasemediators.DatabaseConnection;
-import org.executequery.databasemediators.QueryTypes;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databaseobjects.DatabaseColumn;
 import org.executequery.databaseobjects.DatabaseHost;
+import org.executequery.databaseobjects.DatabaseTable;
 import org.executequery.databaseobjects.NamedObject;
-import org.executequery.datasource.ConnectionManager;
 import org.executequery.datasource.DefaultDriverLoader;
 import org.executequery.gui.LoggingOutputPanel;
 import org.executequery.gui.browser.generatortestdata.FieldGenerator;
 import org.executequery.gui.browser.generatortestdata.FieldsPanel;
+import org.executequery.gui.browser.generatortestdata.GenerationPlan;
+import org.executequery.gui.browser.generatortestdata.TestDataGenerator;
+import org.executequery.gui.browser.generatortestdata.ValueGenerator;
+import org.executequery.gui.browser.generatortestdata.methodspanels.RandomMethodPanel;
 import org.executequery.gui.components.OpenConnectionsComboboxPanel;
 import org.executequery.localization.Bundles;
 import org.executequery.sql.SqlStatementResult;
@@ -24,9 +24,9 @@ import org.underworldlabs.swing.DynamicComboBoxModel;
 import org.underworldlabs.swing.NumberTextField;
 import org.underworldlabs.swing.layouts.GridBagHelper;
 import org.underworldlabs.swing.util.SwingWorker;
-import org.underworldlabs.util.DynamicLibraryLoader;
 
 import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -35,12 +35,15 @@ import java.awt.event.ItemListener;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.Vector;
 
 public class GeneratorTestDataPanel extends JPanel implements TabView {
 
     public final static String TITLE = bundles("TITLE");
 
+    private static final long PROGRESS_INTERVAL = 1000;
+
     private OpenConnectionsComboboxPanel comboboxPanel;
 
     private JComboBox tableBox;
@@ -55,12 +58,20 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
 
     private JButton stopButton;
 
-    private boolean stop = false;
+    private JButton planButton;
+
+    private volatile GenerationPlan plan;
+
+    private volatile TestDataGenerator generator;
 
     private NumberTextField countRecordsField;
 
     private NumberTextField batchCountField;
 
+    private NumberTextField threadsField;
+
+    private JTextField seedField;
+
     private LoggingOutputPanel logPanel;
 
     private JProgressBar progressBar;
@@ -150,6 +161,166 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
         }
     }
 
+    /**
+     * Returns the seed entered or a new one when empty - the seed
+     * is logged, so the run can be repeated with the same rows.
+     */
+    private long getSeed() {
+        String text = seedField.getText().trim();
+        if (text.isEmpty())
+            return new Random().nextLong();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return text.hashCode();
+        }
+    }
+
+    private static long rowsPerSecond(long rows, long startTime) {
+        long time = System.currentTimeMillis() - startTime;
+        return time > 0 ? rows * 1000 / time : rows;
+    }
+
+    private TestDataGenerator.ErrorHandler createErrorHandler(final String sql) {
+        return new TestDataGenerator.ErrorHandler() {
+            private String lastMessage = "";
+
+            @Override
+            public synchronized void rowFailed(long row, Throwable e) {
+                String errorMessage = String.valueOf(e.getMessage());
+                if (!errorMessage.contentEquals(lastMessage)) {
+                    lastMessage = errorMessage;
+                    logPanel.appendError(sql + errorMessage);
+                }
+                logPanel.appendError("failed row " + row);
+            }
+        };
+    }
+
+    /**
+     * Shows the tables to fill in one run and returns the plan
+     * for the selected ones or null if cancelled.
+     */
+    private GenerationPlan showPlanDialog() {
+        Vector<String> tables = fillTables();
+        final DefaultTableModel model = new DefaultTableModel(
+                new Object[]{bundles("Selected"), bundles("Table"), bundles("CountRecords")}, 0) {
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                return columnIndex == 0 ? Boolean.class : columnIndex == 2 ? Integer.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column != 1;
+            }
+        };
+        for (String table : tables) {
+            if (!table.isEmpty())
+                model.addRow(new Object[]{Boolean.FALSE, table, countRecordsField.getValue()});
+        }
+
+        NumberTextField parallelTablesField = new NumberTextField(false);
+        parallelTablesField.setText("2");
+
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagHelper gbh = new GridBagHelper();
+        gbh.setDefaults(new GridBagConstraints(0, 0, 1, 1, 0, 0,
+                GridBagConstraints.NORTHWEST, GridBagConstraints.HORIZONTAL, new Insets(5, 5, 5, 5), 0, 0));
+        panel.add(new JLabel(bundles("ParallelTables")), gbh.defaults().setLabelDefault().get());
+        panel.add(parallelTablesField, gbh.defaults().nextCol().spanX().get());
+        JScrollPane scrollPane = new JScrollPane(new JTable(model));
+        scrollPane.setPreferredSize(new Dimension(450, 300));
+        panel.add(scrollPane, gbh.defaults().nextRowFirstCol().spanX().spanY().fillBoth().get());
+
+        if (GUIUtilities.displayConfirmCancelDialog(panel) != JOptionPane.YES_OPTION)
+            return null;
+
+        GenerationPlan selectedPlan = new GenerationPlan(getSelectedConnection(), new GenerationPlan.ColumnGeneratorFactory() {
+            @Override
+            public ValueGenerator createGenerator(DatabaseTable table, DatabaseColumn column, Random random) {
+                return new RandomMethodPanel(column).createGenerator(random);
+            }
+        }, getSeed());
+        boolean selected = false;
+        for (int i = 0; i < model.getRowCount(); i++) {
+            Object count = model.getValueAt(i, 2);
+            if (Boolean.TRUE.equals(model.getValueAt(i, 0)) && count instanceof Integer && (Integer) count > 0) {
+                DatabaseTable table = (DatabaseTable) ConnectionsTreePanel.getNamedObjectFromHost(
+                        getSelectedConnection(), NamedObject.TABLE, (String) model.getValueAt(i, 1));
+                if (table != null) {
+                    selectedPlan.addTable(table, (Integer) count);
+                    selected = true;
+                }
+            }
+        }
+        if (!selected)
+            return null;
+
+        selectedPlan.setParallelTables(parallelTablesField.getValue());
+        selectedPlan.setThreadCount(threadsField.getValue());
+        selectedPlan.setBatchSize(batchCountField.getValue());
+        selectedPlan.setCommitSize(commitAfterField.getValue());
+        selectedPlan.setUseFirebirdBatch(useBatchesBox.isEnabled() && useBatchesBox.isSelected());
+        selectedPlan.setStopOnError(stopOnErrorBox.isSelected());
+        return selectedPlan;
+    }
+
+    private void executePlan(GenerationPlan selectedPlan) {
+        startButton.setEnabled(false);
+        planButton.setEnabled(false);
+        stopButton.setEnabled(true);
+        progressBar.setIndeterminate(true);
+        plan = selectedPlan;
+        try {
+            StringBuilder order = new StringBuilder();
+            for (DatabaseTable table : selectedPlan.getOrder()) {
+                if (order.length() > 0)
+                    order.append(", ");
+                order.append(table.getName());
+            }
+            logPanel.append("Generation order: " + order);
+
+            selectedPlan.setListener(new GenerationPlan.Listener() {
+                @Override
+                public synchronized void tableStarted(DatabaseTable table, String query) {
+                    logPanel.append("execute:\n" + query);
+                }
+
+                @Override
+                public void tableProgress(DatabaseTable table, TestDataGenerator tableGenerator) {
+                }
+
+                @Override
+                public synchronized void tableFinished(DatabaseTable table, TestDataGenerator tableGenerator, long time) {
+                    long rows = tableGenerator.getInsertCount();
+                    logPanel.append(table.getName() + ": " + rows + " records added successfully, "
+                            + tableGenerator.getErrorCount() + " queries failed, execution time: " + time + " ms, "
+                            + (time > 0 ? rows * 1000 / time : rows) + " rows/sec");
+                }
+
+                @Override
+                public synchronized void tableSkipped(DatabaseTable table, String reason) {
+                    logPanel.appendError(table.getName() + " skipped: " + reason);
+                }
+            });
+            if (logBox.isSelected())
+                selectedPlan.setErrorHandler(createErrorHandler(""));
+
+            long startTime = System.currentTimeMillis();
+            selectedPlan.execute();
+            logPanel.append("Execution time: " + (System.currentTimeMillis() - startTime) + " ms");
+            GUIUtilities.displayInformationMessage("Generation completed. See log panel to details.");
+
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            GUIUtilities.displayExceptionErrorDialog("generation error: " + ex.getMessage(), ex);
+        } finally {
+            plan = null;
+            progressBar.setIndeterminate(false);
+        }
+    }
+
     private void init() {
         executor = new DefaultStatementExecutor();
         progressBar = new JProgressBar();
@@ -179,11 +350,41 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
         stopButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                stop = true;
+                TestDataGenerator running = generator;
+                if (running != null)
+                    running.stop();
+                GenerationPlan runningPlan = plan;
+                if (runningPlan != null)
+                    runningPlan.stop();
             }
         });
         stopButton.setEnabled(false);
 
+        planButton = new JButton(bundles("GenerateForTables"));
+        planButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                final GenerationPlan selectedPlan = showPlanDialog();
+                if (selectedPlan == null)
+                    return;
+                SwingWorker worker = new SwingWorker() {
+                    @Override
+                    public Object construct() {
+                        executePlan(selectedPlan);
+                        return null;
+                    }
+
+                    @Override
+                    public void finished() {
+                        startButton.setEnabled(true);
+                        planButton.setEnabled(true);
+                        stopButton.setEnabled(false);
+                    }
+                };
+                worker.start();
+            }
+        });
+
         startButton = new JButton(bundles("Start"));
         startButton.addActionListener(new ActionListener() {
             @Override
@@ -191,20 +392,16 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
                 SwingWorker worker = new SwingWorker() {
                     @Override
                     public Object construct() {
-                        stop = false;
                         int count = countRecordsField.getValue();
                         if (count <= 0)
                             GUIUtilities.displayErrorMessage("the number of records to be added must be greater than zero");
                         else {
-                            boolean outlog = logBox.isSelected();
                             startButton.setEnabled(false);
+                            planButton.setEnabled(false);
                             stopButton.setEnabled(true);
-                            long startTime = System.currentTimeMillis();
                             progressBar.setMinimum(0);
                             progressBar.setMaximum(count);
-                            int commitAfter = commitAfterField.getValue();
-                            int countSuccess = 0;
-                            int countError = 0;
+                            progressBar.setStringPainted(true);
                             List<FieldGenerator> fieldGenerators = fieldsPanel.getFieldGenerators();
                             List<FieldGenerator> selectedFields = new ArrayList<>();
                             String sql = "INSERT INTO \"" + tableBox.getSelectedItem() + "\" (";
@@ -219,8 +416,6 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
                                     } else first = false;
                                     sql += " \"" + fieldGenerators.get(g).getColumn().getName() + "\"\n";
                                     values += "? ";
-                                    fieldGenerators.get(g).setFirst();
-
                                 }
                             }
                             sql += ") VALUES (" + values + ");";
@@ -229,143 +424,60 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
                             try {
                                 if (selectedFields.size() < 1)
                                     throw new DataSourceException("no columns selected for generation");
-                                executor.setCommitMode(false);
-                                executor.setKeepAlive(true);
-                                if (useBatchesBox.isSelected()) {
-
-                                    int batchCount = batchCountField.getValue();
-
-                                    Connection realConnection = ConnectionManager.getTemporaryConnection(getSelectedConnection());
-                                    if (realConnection.unwrap(Connection.class).getClass().getName().contains("FBConnection")) { // Red Database or FB
-                                        Connection fbConn = realConnection.unwrap(Connection.class);
-                                        IFBDatabaseConnection db = null;
-                                        try {
-                                            db = (IFBDatabaseConnection) DynamicLibraryLoader.loadingObjectFromClassLoader(fbConn, "FBDatabaseConnectionImpl4");
-                                        } catch (ClassNotFoundException e) {
-                                            e.printStackTrace();
-                                        }
-                                        db.setConnection(fbConn);
-                                        IFBBatch batch = db.createBatch(sql);
-
-                                        boolean lastError = false;
-                                        String lastMessage = "";
-                                        int i = 0;
-                                        for (; i < count;) {
-
-                                            if (i + batchCount > count)
-                                                batchCount = i + batchCount - count;
-
-                                            for (int bc = 0; bc < batchCount; bc++) {
-                                                for (int g = 0; g < selectedFields.size(); g++) {
-                                                    Object param = selectedFields.get(g).getMethodGeneratorPanel().getTestDataObject();
-                                                    String typeName = selectedFields.get(g).getColumn().getTypeName();
-                                                    if (typeName.contains("BLOB")) {
-                                                        if (((byte[]) param).length == 0)
-                                                            param = new byte[1];
-                                                        batch.addBlob(g + 1, (byte[]) param);
-                                                    } else {
-                                                        batch.setObject(g + 1, param);
-                                                    }
-                                                }
-                                                batch.addBatch();
-                                            }
-
-                                            IFBBatchCompletionState execute = batch.execute();
-                                            if (printBatchStateBox.isSelected())
-                                                logPanel.append(execute.printAllStates());
-
-                                            if (stop)
-                                                break;
-                                            if (i % commitAfter == 0 && i != 0) {
-                                                batch.commit();
-                                                batch.startTransaction();
-                                            }
-                                            i += batchCount;
-                                            progressBar.setValue(i);
-                                        }
 
-                                        batch.commit();
-                                        logPanel.append("Execution time: " + (System.currentTimeMillis() - startTime) + " ms");
-                                        GUIUtilities.displayInformationMessage("Batch execution completed. See log panel to details.");
-                                    }
-                                } else {
-                                    PreparedStatement statement = executor.getPreparedStatement(sql);
-                                    boolean lastError = false;
-                                    String lastMessage = "";
-                                    int i = 0;
-                                    for (; i < count; i++) {
-                                        if (stop)
-                                            break;
-                                        if (i % commitAfter == 0 && i != 0) {
-                                            executor.getConnection().commit();
-                                        }
-                                        progressBar.setValue(i);
-                                        try {
-                                            for (int g = 0; g < selectedFields.size(); g++) {
-                                                Object param = selectedFields.get(g).getMethodGeneratorPanel().getTestDataObject();
-                                                statement.setObject(g + 1, param);
-                                            }
-                                        } catch (SQLException e) {
-                                            String message = sql;
-                                            if (outlog) {
-                                                String errorMessage = e.getMessage();
-                                                if (!lastError) {
-                                                    if (!errorMessage.contentEquals(lastMessage)) {
-                                                        message += errorMessage;
-                                                        lastMessage = message;
-                                                        logPanel.appendError(message);
-                                                    }
-                                                    logPanel.appendError("failed from " + i);
-                                                    lastError = true;
-                                                }
-                                            }
-                                        }
-                                        SqlStatementResult result = executor.execute(QueryTypes.INSERT, statement);
-                                        String message = sql;// + params;
-                                        if (result.isException()) {
-                                            if (outlog) {
-                                                String errorMessage = result.getSqlException().getMessage();
-                                                if (!lastError) {
-                                                    if (!errorMessage.contentEquals(lastMessage)) {
-                                                        message += errorMessage;
-                                                        lastMessage = message;
-                                                        logPanel.appendError(message);
-                                                    }
-                                                    logPanel.appendError("failed from " + i);
-                                                    lastError = true;
-                                                }
-                                            }
-                                            countError++;
-                                            if (stopOnErrorBox.isSelected()) {
-                                                GUIUtilities.displayExceptionErrorDialog(result.getSqlException().getMessage(), result.getSqlException());
-                                                break;
-                                            }
-                                        } else {
-                                            countSuccess++;
-                                            if (outlog && lastError) {
-                                                logPanel.appendError("to " + (i - 1));
-                                                lastError = false;
-                                            }
-                                        }
-                                    }
-                                    if (outlog && lastError) {
-                                        logPanel.appendError("to " + (i - 1));
-                                    }
-                                    executor.getConnection().commit();
-                                    logPanel.append("Execution time: " + (System.currentTimeMillis() - startTime) + " ms");
+                                long seed = getSeed();
+                                logPanel.append("Seed: " + seed);
+
+                                List<ValueGenerator> generators = new ArrayList<>();
+                                for (int g = 0; g < selectedFields.size(); g++) {
+                                    generators.add(selectedFields.get(g).createGenerator(new Random(seed + g)));
                                 }
 
-                                if (!useBatchesBox.isSelected()) {
-                                    GUIUtilities.displayInformationMessage(countSuccess + " records added successfully\n" + countError + " queries failed");
-                                    logPanel.append(countSuccess + " records added successfully\n" + countError + " queries failed");
+                                generator = new TestDataGenerator(getSelectedConnection(), sql, generators, seed);
+                                generator.setThreadCount(threadsField.getValue());
+                                generator.setBatchSize(batchCountField.getValue());
+                                generator.setCommitSize(commitAfterField.getValue());
+                                generator.setUseFirebirdBatch(useBatchesBox.isEnabled() && useBatchesBox.isSelected());
+                                generator.setStopOnError(stopOnErrorBox.isSelected());
+                                if (logBox.isSelected())
+                                    generator.setErrorHandler(createErrorHandler(sql));
+                                if (printBatchStateBox.isSelected())
+                                    generator.setBatchStateHandler(new TestDataGenerator.BatchStateHandler() {
+                                        @Override
+                                        public synchronized void batchExecuted(String states) {
+                                            logPanel.append(states);
+                                        }
+                                    });
+
+                                long startTime = System.currentTimeMillis();
+                                generator.start(count);
+                                while (!generator.awaitTermination(PROGRESS_INTERVAL)) {
+                                    long processed = generator.getInsertCount() + generator.getErrorCount();
+                                    progressBar.setValue((int) processed);
+                                    progressBar.setString(processed + " / " + count + " ("
+                                            + rowsPerSecond(generator.getInsertCount(), startTime) + " rows/sec)");
                                 }
+
+                                long time = System.currentTimeMillis() - startTime;
+                                long countSuccess = generator.getInsertCount();
+                                long countError = generator.getErrorCount();
+                                logPanel.append("Execution time: " + time + " ms, "
+                                        + rowsPerSecond(countSuccess, startTime) + " rows/sec");
+
+                                Throwable failure = generator.getFailure();
+                                if (failure != null)
+                                    throw failure instanceof Exception ? (Exception) failure : new DataSourceException(failure);
+
+                                GUIUtilities.displayInformationMessage(countSuccess + " records added successfully\n" + countError + " queries failed");
+                                logPanel.append(countSuccess + " records added successfully\n" + countError + " queries failed");
                             } catch (Exception ex) {
                                 ex.printStackTrace();
                                 GUIUtilities.displayExceptionErrorDialog("generation error: " + ex.getMessage(), ex);
                             } finally {
-                                executor.releaseResources();
+                                generator = null;
                             }
                             progressBar.setValue(0);
+                            progressBar.setStringPainted(false);
                         }
                         return null;
                     }
@@ -373,6 +485,7 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
                     @Override
                     public void finished() {
                         startButton.setEnabled(true);
+                        planButton.setEnabled(true);
                         stopButton.setEnabled(false);
                     }
                 };
@@ -389,6 +502,11 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
         commitAfterField = new NumberTextField(false);
         commitAfterField.setText("500");
 
+        threadsField = new NumberTextField(false);
+        threadsField.setText("1");
+
+        seedField = new JTextField();
+
 
         logBox = new JCheckBox(bundles("OutputLog"));
         useBatchesBox = new JCheckBox(bundles("useBatchesBox"));
@@ -427,6 +545,16 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
 
         topPanel.add(commitAfterField, gbh.defaults().nextCol().spanX().get());
 
+        label = new JLabel(bundles("Threads"));
+        topPanel.add(label, gbh.defaults().nextRowFirstCol().setLabelDefault().get());
+
+        topPanel.add(threadsField, gbh.defaults().nextCol().spanX().get());
+
+        label = new JLabel(bundles("Seed"));
+        topPanel.add(label, gbh.defaults().nextRowFirstCol().setLabelDefault().get());
+
+        topPanel.add(seedField, gbh.defaults().nextCol().spanX().get());
+
         topPanel.add(logBox, gbh.defaults().nextRowFirstCol().setLabelDefault().get());
 
         topPanel.add(stopOnErrorBox, gbh.defaults().nextCol().setLabelDefault().get());
@@ -454,6 +582,8 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
 
         topPanel.add(stopButton, gbh.defaults().nextCol().setLabelDefault().get());
 
+        topPanel.add(planButton, gbh.defaults().nextCol().setLabelDefault().get());
+
         topPanel.add(new JPanel(), gbh.defaults().nextCol().spanX().get());
 
         bottomPanel.setLayout(new GridBagLayout());
@@ -474,8 +604,6 @@ public class GeneratorTestDataPanel extends JPanel implements TabView {
         if (driver.getMajorVersion() < 4 || !executor.getDatabaseConnection().useNewAPI() ||
                 executor.getDatabaseConnection().getServerVersion() < 4) {
             useBatchesBox.setEnabled(false);
-            batchLabel.setEnabled(false);
-            batchCountField.setEnabled(false);
             printBatchStateBox.setEnabled(false);
             StringBuilder sb = new StringBuilder();
             if (driver.getMajorVersion() < 4)
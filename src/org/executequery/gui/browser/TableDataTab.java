@@ -1271,8 +1271,13 @@ public class TableDataTab extends JPanel
 
     public void closeResultSet() {
         try {
-            if (tableModel != null)
+            if (tableModel != null) {
                 tableModel.closeResultSet();
+                if (tableModel.isSpilling()) {
+                    tableModel.close();
+                    setLoaded(false);
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -9,7 +9,10 @@ import org.executequery.databasemediators.DatabaseDriver;
 import org.executequery.gui.browser.managment.tracemanager.BuildConfigurationPanel;
 import org.executequery.gui.browser.managment.tracemanager.LogConstants;
 import org.executequery.gui.browser.managment.tracemanager.SessionManagerPanel;
+import org.executequery.gui.browser.managment.tracemanager.StatementStatisticsPanel;
 import org.executequery.gui.browser.managment.tracemanager.TablePanel;
+import org.executequery.gui.browser.managment.tracemanager.TraceIngestionPipeline;
+import org.executequery.gui.browser.managment.tracemanager.TraceLogFile;
 import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
 import org.executequery.gui.browser.managment.tracemanager.net.SessionInfo;
 import org.executequery.localization.Bundles;
@@ -19,6 +22,7 @@ import org.executequery.repository.RepositoryCache;
 import org.underworldlabs.swing.CheckBoxPanel;
 import org.underworldlabs.swing.DynamicComboBoxModel;
 import org.underworldlabs.swing.NumberTextField;
+import org.underworldlabs.swing.util.SwingWorker;
 import org.underworldlabs.util.DynamicLibraryLoader;
 import org.underworldlabs.util.FileUtils;
 import org.underworldlabs.util.MiscUtils;
@@ -28,22 +32,22 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class TraceManagerPanel extends JPanel implements TabView {
 
     public static final String TITLE = Bundles.get(TraceManagerPanel.class, "title");
     private IFBTraceManager traceManager;
     private TablePanel loggerPanel;
-    private Timer timer;
+    private StatementStatisticsPanel statisticsPanel;
+    private JTabbedPane resultsTabPane;
+    private TraceIngestionPipeline ingestionPipeline;
     private OutputStream fileLog;
     private OutputStream outputStream;
-    private Lock lock;
-    private StringBuilder sb;
     private JButton fileLogButton;
     private JButton fileDatabaseButton;
     private JButton fileConfButton;
@@ -63,12 +67,10 @@ public class TraceManagerPanel extends JPanel implements TabView {
     private JTextField sessionField;
     private JComboBox<DatabaseConnection> databaseBox;
     private int idLogMessage = 0;
-    private boolean changed = false;
     private List<String> charsets;
     private JComboBox charsetCombo;
     private JTabbedPane tabPane;
     private JButton hideShowTabPaneButton;
-    private Message message;
     private List<SessionInfo> sessions;
     private SessionManagerPanel sessionManagerPanel;
     private BuildConfigurationPanel confPanel;
@@ -80,7 +82,6 @@ public class TraceManagerPanel extends JPanel implements TabView {
     }
 
     private void init() {
-        message = Message.LOG_MESSAGE;
         sessions = new ArrayList<>();
         initTraceManager();
         sessionField = new JTextField();
@@ -89,14 +90,31 @@ public class TraceManagerPanel extends JPanel implements TabView {
         loadCharsets();
         CheckBoxPanel columnsCheckPanel = new CheckBoxPanel(LogConstants.COLUMNS, 6, true);
         loggerPanel = new TablePanel(columnsCheckPanel);
-        lock = new ReentrantLock();
-        timer = new Timer(1500, new ActionListener() {
+        statisticsPanel = new StatementStatisticsPanel();
+        ingestionPipeline = new TraceIngestionPipeline(new TraceIngestionPipeline.Listener() {
             @Override
-            public void actionPerformed(ActionEvent e) {
-                timerAction();
+            public void logMessagesParsed(List<LogMessage> messages) {
+                for (LogMessage logMessage : messages) {
+                    idLogMessage++;
+                    logMessage.setId(idLogMessage);
+                }
+                loggerPanel.addRows(messages);
+                statisticsPanel.addMessages(messages);
+            }
+
+            @Override
+            public void sessionInfoParsed(SessionInfo sessionInfo) {
+                addSessionInfo(sessionInfo);
+            }
+
+            @Override
+            public void sessionStateChanged(int sessionId, boolean started) {
+                if (started)
+                    currentSessionId = sessionId;
+                else if (sessionId == currentSessionId)
+                    stopSession();
             }
         });
-        sb = new StringBuilder();
         fileLogButton = new JButton("...");
         fileDatabaseButton = new JButton("...");
         fileConfButton = new JButton("...");
@@ -240,45 +258,8 @@ public class TraceManagerPanel extends JPanel implements TabView {
                 int returnVal = fileChooser.showOpenDialog(openFileLog);
                 if (returnVal == JFileChooser.APPROVE_OPTION) {
                     openFileLogField.setText(fileChooser.getSelectedFile().getAbsolutePath());
-                    String s = "";
-                    boolean finded = false;
                     clearAll();
-                    idLogMessage = 0;
-                    BufferedReader reader = null;
-                    try {
-                        reader = new BufferedReader(
-                                new InputStreamReader(
-                                        new FileInputStream(openFileLogField.getText())));
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            String str = line.trim();
-                            if (str.matches(".?\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d+.*")) {
-                                if (finded) {
-                                    LogMessage logMessage = new LogMessage(s);
-                                    idLogMessage++;
-                                    logMessage.setId(idLogMessage);
-                                    loggerPanel.addRow(logMessage);
-                                }
-                                finded = true;
-                                s = str + "\n";
-                            } else {
-                                s += str + "\n";
-                            }
-                        }
-                        LogMessage logMessage = new LogMessage(s);
-                        idLogMessage++;
-                        logMessage.setId(idLogMessage);
-                        loggerPanel.addRow(logMessage);
-                    } catch (IOException e1) {
-                        e1.printStackTrace();
-                    } finally {
-                        if (reader != null) {
-                            try {
-                                reader.close();
-                            } catch (IOException e1) {
-                            }
-                        }
-                    }
+                    openLogFile(fileChooser.getSelectedFile());
                 }
             }
         });
@@ -286,53 +267,30 @@ public class TraceManagerPanel extends JPanel implements TabView {
         startStopSessionButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (outputStream != null) {
-                    try {
-                        outputStream.close();
-                    } catch (IOException e1) {
-                        e1.printStackTrace();
-                    }
-                }
+                ingestionPipeline.stop();
                 outputStream = null;
                 if (startStopSessionButton.getText().toUpperCase().contentEquals(bundleString("Start").toUpperCase())) {
-                    if (logToFileBox.isSelected()) {
-                        if (fileLog != null) {
-                            outputStream = new OutputStream() {
-                                @Override
-                                public void write(int b) throws IOException {
-                                    fileLog.write(b);
-                                    lock.lock();
-                                    changed = true;
-                                    sb.append((char) b);
-                                    lock.unlock();
-                                }
-                            };
-                        } else {
-                            GUIUtilities.displayErrorMessage("File is empty");
-                            return;
-                        }
+                    if (logToFileBox.isSelected() && fileLog == null) {
+                        GUIUtilities.displayErrorMessage("File is empty");
+                        return;
                     }
-                    else
-                        outputStream = new OutputStream() {
-                            @Override
-                            public void write(int b) {
-                                lock.lock();
-                                changed = true;
-                                sb.append((char) b);
-                                lock.unlock();
-                            }
-                        };
+                    // without a connection charset the output is read byte per char
+                    Charset outputCharset = StandardCharsets.ISO_8859_1;
+                    if (charsetCombo.getSelectedIndex() == 0)
+                        traceManager.setCharSet(null);
+                    else {
+                        String charset = MiscUtils.getJavaCharsetFromSqlCharset((String) charsetCombo.getSelectedItem());
+                        traceManager.setCharSet(charset);
+                        if (charset != null && Charset.isSupported(charset))
+                            outputCharset = Charset.forName(charset);
+                    }
+                    outputStream = ingestionPipeline.start(outputCharset, logToFileBox.isSelected() ? fileLog : null);
                     traceManager.setUser(userField.getText());
                     traceManager.setPassword(new String(passwordField.getPassword()));
                     traceManager.setLogger(outputStream);
-                    if (charsetCombo.getSelectedIndex() == 0)
-                        traceManager.setCharSet(null);
-                    else
-                        traceManager.setCharSet(MiscUtils.getJavaCharsetFromSqlCharset((String) charsetCombo.getSelectedItem()));
                     traceManager.setDatabase(fileDatabaseField.getText());
                     traceManager.setHost(hostField.getText());
                     traceManager.setPort(portField.getValue());
-                    timer.start();
                     try {
                         String conf;
                         if (useBuildConfBox.isSelected()) {
@@ -421,7 +379,10 @@ public class TraceManagerPanel extends JPanel implements TabView {
                 GridBagConstraints.NORTHEAST, GridBagConstraints.HORIZONTAL, new Insets(5, 5, 5, 5),
                 0, 0));
 
-        add(loggerPanel, new GridBagConstraints(0, 3,
+        resultsTabPane = new JTabbedPane();
+        resultsTabPane.add(bundleString("TraceEvents"), loggerPanel);
+        resultsTabPane.add(bundleString("StatementStatistics"), statisticsPanel);
+        add(resultsTabPane, new GridBagConstraints(0, 3,
                 2, 1, 1, 1,
                 GridBagConstraints.NORTHWEST, GridBagConstraints.BOTH, new Insets(0, 5, 5, 5),
                 0, 0));
@@ -581,61 +542,6 @@ public class TraceManagerPanel extends JPanel implements TabView {
         }
     }
 
-    private void timerAction() {
-        lock.lock();
-        String messages = sb.toString();
-        sb.setLength(0);
-        String s = "";
-        String[] strs = messages.split("\n");
-        boolean finded = false;
-        if (!messages.isEmpty())
-            for (int i = 0; i < strs.length; i++) {
-                String str = strs[i].trim();
-                if (str.toLowerCase().startsWith("trace session id")) {
-                    if (finded) {
-                        parseMessage(s);
-                    }
-                    s = str.replace("Trace session ID ", "");
-                    if (s.contains("started")) {
-                        s = s.replace("started", "");
-                        s = s.replace(" ", "");
-                        currentSessionId = Integer.parseInt(s);
-                    } else if (s.contains("stopped")) {
-                        s = s.replace("stopped", "");
-                        s = s.replace(" ", "");
-                        int sessionId = Integer.parseInt(s);
-                        if (sessionId == currentSessionId)
-                            stopSession();
-                    }
-
-                } else if (str.matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}.*")) {
-                    if (finded) {
-                        parseMessage(s);
-                    }
-                    message = Message.LOG_MESSAGE;
-                    finded = true;
-                    s = str + "\n";
-                } else if (str.matches("^Session ID:.*")) {
-                    if (finded) {
-                        parseMessage(s);
-                    }
-                    message = Message.SESSION_INFO;
-                    finded = true;
-                    s = str + "\n";
-                } else {
-                    s += str + "\n";
-                }
-            }
-        if (changed)
-            sb.append(s);
-        else if (!s.isEmpty() && !s.toLowerCase().startsWith("trace session")) {
-            s = s.trim();
-            parseMessage(s);
-        }
-        changed = false;
-        lock.unlock();
-    }
-
     @Override
     public boolean tabViewClosing() {
         if (startStopSessionButton.getText().contentEquals(bundleString("Stop")))
@@ -644,6 +550,7 @@ public class TraceManagerPanel extends JPanel implements TabView {
             } catch (SQLException e) {
                 GUIUtilities.displayExceptionErrorDialog("Error stop session", e);
             }
+        ingestionPipeline.shutdown();
         return true;
     }
 
@@ -657,28 +564,50 @@ public class TraceManagerPanel extends JPanel implements TabView {
         return true;
     }
 
-    private void parseMessage(String msg) {
-        if (message == Message.LOG_MESSAGE) {
-            LogMessage logMessage = new LogMessage(msg);
-            idLogMessage++;
-            logMessage.setId(idLogMessage);
-            loggerPanel.addRow(logMessage);
-        } else {
-            if (sessionManagerPanel.isRefreshFlag()) {
-                sessions.clear();
-                sessionManagerPanel.setRefreshFlag(false);
-            }
-            SessionInfo sessionInfo = new SessionInfo(msg);
-            sessions.add(sessionInfo);
-            sessionManagerPanel.setSessions(sessions);
+    private void addSessionInfo(SessionInfo sessionInfo) {
+        if (sessionManagerPanel.isRefreshFlag()) {
+            sessions.clear();
+            sessionManagerPanel.setRefreshFlag(false);
         }
+        sessions.add(sessionInfo);
+        sessionManagerPanel.setSessions(sessions);
     }
 
     public void clearAll() {
         loggerPanel.clearAll();
+        statisticsPanel.clearAll();
         idLogMessage = 0;
     }
 
+    private void openLogFile(final File file) {
+        openFileLog.setEnabled(false);
+        SwingWorker worker = new SwingWorker() {
+            @Override
+            public Object construct() {
+                try {
+                    // the log file is indexed here, events are parsed when displayed
+                    return new TraceLogFile(file, Charset.defaultCharset());
+                } catch (IOException e) {
+                    return e;
+                }
+            }
+
+            @Override
+            public void finished() {
+                openFileLog.setEnabled(true);
+                Object result = get();
+                if (result instanceof TraceLogFile) {
+                    TraceLogFile logFile = (TraceLogFile) result;
+                    loggerPanel.setLogFile(logFile);
+                    statisticsPanel.addLogFile(logFile);
+                    idLogMessage = logFile.getEventCount();
+                } else if (result instanceof Exception)
+                    GUIUtilities.displayExceptionErrorDialog("Error opening log file", (Exception) result);
+            }
+        };
+        worker.start();
+    }
+
     private void loadCharsets() {
         try {
             if (charsets == null)
@@ -721,9 +650,4 @@ public class TraceManagerPanel extends JPanel implements TabView {
         setEnableElements();
         logToFileBox.setEnabled(true);
     }
-
-    enum Message {
-        LOG_MESSAGE,
-        SESSION_INFO
-    }
 }
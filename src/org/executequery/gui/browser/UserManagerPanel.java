@@ -24,14 +24,12 @@ import org.executequery.repository.DatabaseConnectionRepository;
 import org.executequery.repository.DatabaseDriverRepository;
 import org.executequery.repository.RepositoryCache;
 import org.underworldlabs.swing.DefaultButton;
-import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.DynamicLibraryLoader;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -545,59 +543,25 @@ public class UserManagerPanel extends JPanel {
             if (dd == null) {
                 throw new SQLException("There are no drivers to initialize the user manager.");
             }
-            URL[] urlDriver = new URL[0];
-            Class clazzDriver = null;
-            URL[] urls = new URL[0];
-            Class clazzdb = null;
-            Object o = null;
-            Object odb = null;
-
-            urlDriver = MiscUtils.loadURLs(dd.getPath());
-            ClassLoader clD = new URLClassLoader(urlDriver);
-            clazzDriver = clD.loadClass(dd.getClassName());
-            o = clazzDriver.newInstance();
-
-            urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            ClassLoader cl = new URLClassLoader(urls, o.getClass().getClassLoader());
-            clazzdb = cl.loadClass("biz.redsoft.FBUserImpl");
-            odb = clazzdb.newInstance();
-
-            userAdd = (IFBUser) odb;
+            Object o = DynamicLibraryLoader.loadingObjectFromClassLoader(dd, dd.getClassName(), dd.getPath());
 
-            urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            cl = new URLClassLoader(urls, o.getClass().getClassLoader());
-            clazzdb = cl.loadClass("biz.redsoft.FBUserManagerImpl");
-            odb = clazzdb.newInstance();
+            userAdd = (IFBUser) DynamicLibraryLoader.loadingObjectFromClassLoader(o, "FBUserImpl");
 
-            this.userManager = (IFBUserManager) odb;
+            this.userManager = (IFBUserManager) DynamicLibraryLoader.loadingObjectFromClassLoader(o, "FBUserManagerImpl");
         } else {
             Connection connection = con.unwrap(Connection.class);
 
-            URL[] urls = new URL[0];
-            Class clazzdb = null;
             Object odb = null;
             DatabaseHost host = new DefaultDatabaseHost(getSelectedDatabaseConnection());
             version = host.getDatabaseMetaData().getDatabaseMajorVersion();
 
-            urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-            clazzdb = cl.loadClass("biz.redsoft.FBUserImpl");
-            odb = clazzdb.newInstance();
-
-            userAdd = (IFBUser) odb;
+            userAdd = (IFBUser) DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBUserImpl");
 
-            String loadedClass;
-            if (version >= 3)
-                loadedClass = "biz.redsoft.FB3UserManagerImpl";
-            else
-                loadedClass = "biz.redsoft.FBUserManagerImpl";
-            urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-            clazzdb = cl.loadClass(loadedClass);
             if (version >= 3)
-                odb = clazzdb.getConstructor(Connection.class).newInstance(con);
+                odb = DynamicLibraryLoader.loadingObjectFromClassLoaderWithParams(connection, "FB3UserManagerImpl",
+                        new DynamicLibraryLoader.Parameter(Connection.class, con));
             else
-                odb = clazzdb.newInstance();
+                odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBUserManagerImpl");
             this.userManager = (IFBUserManager) odb;
         }
     }
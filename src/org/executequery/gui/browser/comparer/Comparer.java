@@ -1,6 +1,8 @@
 package org.executequery.gui.browser.comparer;
 
 import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.databasemediators.SchemaSnapshot;
+import org.executequery.databasemediators.SchemaSnapshots;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databasemediators.spi.StatementExecutor;
 import org.executequery.log.Log;
@@ -13,6 +15,8 @@ public class Comparer {
     public Comparer(DatabaseConnection fc, DatabaseConnection sc) {
         firstConnection = new DefaultStatementExecutor(fc, true);
         secondConnection = new DefaultStatementExecutor(sc, true);
+        firstSnapshot = SchemaSnapshots.reload(fc);
+        secondSnapshot = SchemaSnapshots.reload(sc);
         procedure = new Procedure(this);
         domain = new Domain(this);
         dependencies = new Dependencies(this);
@@ -29,6 +33,18 @@ public class Comparer {
 
     }
 
+    /**
+     * Returns the schema snapshot of the database behind the specified
+     * executor, or null where none could be loaded.
+     */
+    SchemaSnapshot snapshotFor(StatementExecutor con) {
+        if (con == firstConnection)
+            return firstSnapshot;
+        if (con == secondConnection)
+            return secondSnapshot;
+        return null;
+    }
+
     void init() {
         procedure.init();
         domain.init();
@@ -57,6 +73,8 @@ public class Comparer {
     public Dependencies dependencies;
     public StatementExecutor firstConnection;
     public StatementExecutor secondConnection;
+    SchemaSnapshot firstSnapshot;
+    SchemaSnapshot secondSnapshot;
 
     public ArrayList<String> script = new ArrayList<String>();
     public String lists;
@@ -1,5 +1,6 @@
 package org.executequery.gui.browser.comparer;
 
+import org.executequery.databasemediators.SchemaSnapshot;
 import org.executequery.databasemediators.spi.StatementExecutor;
 
 import java.sql.ResultSet;
@@ -86,24 +87,29 @@ public class Table {
         ArrayList<String> info = new ArrayList<>();
         ArrayList<String> domains = new ArrayList<>();
 
-        query = "select rdb$fields.rdb$field_name\n"
-                + "from rdb$fields\n"
-                + "where (rdb$fields.rdb$system_flag = 0) and (rdb$fields.rdb$field_name not starting with 'RDB$')";
+        SchemaSnapshot snapshot = comparer.snapshotFor(con);
+        if (snapshot != null) {
+            domains.addAll(snapshot.getDomains());
+        } else {
+            query = "select rdb$fields.rdb$field_name\n"
+                    + "from rdb$fields\n"
+                    + "where (rdb$fields.rdb$system_flag = 0) and (rdb$fields.rdb$field_name not starting with 'RDB$')";
 
-        try {
+            try {
 
-            ResultSet rs = con.execute(query, true).getResultSet();
+                ResultSet rs = con.execute(query, true).getResultSet();
 
 
-            while (rs.next()) {
-                domains.add(rs.getString(1).trim());
-            }
+                while (rs.next()) {
+                    domains.add(rs.getString(1).trim());
+                }
 
-            rs.close();
-            con.releaseResources();
+                rs.close();
+                con.releaseResources();
 
-        } catch (java.sql.SQLException e) {
-            System.out.println("table 89: " + e + query);
+            } catch (java.sql.SQLException e) {
+                System.out.println("table 89: " + e + query);
+            }
         }
 
         query = "select rdb$relation_fields.rdb$field_name, \n" + //1
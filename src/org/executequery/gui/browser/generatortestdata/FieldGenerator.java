@@ -3,6 +3,8 @@ package org.executequery.gui.browser.generatortestdata;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databaseobjects.DatabaseColumn;
 
+import java.util.Random;
+
 public class FieldGenerator {
     MethodGeneratorPanel methodGeneratorPanel;
     private boolean selectedField;
@@ -33,15 +35,11 @@ public class FieldGenerator {
         return methodGeneratorPanel;
     }
 
-    public void setFirst() {
-        methodGeneratorPanel.setFirst();
-    }
-
     public void setMethodGeneratorPanel(MethodGeneratorPanel methodGeneratorPanel) {
         this.methodGeneratorPanel = methodGeneratorPanel;
     }
 
-    public Object getNextDataTestObject() {
-        return getMethodGeneratorPanel().getTestDataObject();
+    public ValueGenerator createGenerator(Random random) {
+        return getMethodGeneratorPanel().createGenerator(random);
     }
 }
@@ -0,0 +1,670 @@
+package org.executequery.gui.browser.generatortestdata;
+
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.databaseobjects.DatabaseColumn;
+import org.executequery.databaseobjects.DatabaseTable;
+import org.executequery.databaseobjects.impl.ColumnConstraint;
+import org.executequery.datasource.ConnectionManager;
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the test data of several tables in one run keeping the
+ * references between them consistent.
+ * <p>
+ * The tables are ordered by their foreign keys - a table is filled
+ * after all the tables it references, and the tables not depending
+ * on each other are filled at once. The values of a foreign key come
+ * from the pool of the keys sampled from the referenced table when it
+ * is filled, the size of the pool is limited so the memory used does
+ * not depend on the size of the tables. The tables referenced but not
+ * selected for the plan give the keys they already have.
+ * <p>
+ * The single column integer primary keys continue from the largest
+ * key of the table, the other columns get the values of the column
+ * generators.
+ */
+public class GenerationPlan {
+
+    public static final int DEFAULT_KEY_POOL_SIZE = 10000;
+
+    private static final long PROGRESS_INTERVAL = 1000;
+
+    /**
+     * Creates the generators of the columns not generated by the plan.
+     */
+    public interface ColumnGeneratorFactory {
+
+        ValueGenerator createGenerator(DatabaseTable table, DatabaseColumn column, Random random);
+
+    }
+
+    /**
+     * Receives the progress of the plan - called from the generating threads.
+     */
+    public interface Listener {
+
+        void tableStarted(DatabaseTable table, String query);
+
+        void tableProgress(DatabaseTable table, TestDataGenerator generator);
+
+        void tableFinished(DatabaseTable table, TestDataGenerator generator, long time);
+
+        void tableSkipped(DatabaseTable table, String reason);
+
+    }
+
+    private final DatabaseConnection databaseConnection;
+
+    private final ColumnGeneratorFactory generatorFactory;
+
+    private final long seed;
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    private final Map<String, Object[][]> keyPools = new ConcurrentHashMap<>();
+
+    private int parallelTables = 2;
+
+    private int threadCount = 1;
+
+    private int batchSize = 100;
+
+    private int commitSize;
+
+    private int keyPoolSize = DEFAULT_KEY_POOL_SIZE;
+
+    private boolean useFirebirdBatch;
+
+    private boolean stopOnError;
+
+    private Listener listener;
+
+    private TestDataGenerator.ErrorHandler errorHandler;
+
+    private final Map<String, TestDataGenerator> running = new ConcurrentHashMap<>();
+
+    private volatile boolean stopped;
+
+    public GenerationPlan(DatabaseConnection databaseConnection, ColumnGeneratorFactory generatorFactory, long seed) {
+        this.databaseConnection = databaseConnection;
+        this.generatorFactory = generatorFactory;
+        this.seed = seed;
+    }
+
+    /**
+     * Adds the table to fill with the specified number of rows.
+     */
+    public void addTable(DatabaseTable table, long rowCount) {
+        nodes.put(table.getName(), new Node(table, rowCount));
+    }
+
+    /**
+     * Sets the number of the tables filled at once.
+     */
+    public void setParallelTables(int parallelTables) {
+        this.parallelTables = Math.max(parallelTables, 1);
+    }
+
+    /**
+     * Sets the number of the threads filling each table.
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(threadCount, 1);
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setCommitSize(int commitSize) {
+        this.commitSize = commitSize;
+    }
+
+    public void setKeyPoolSize(int keyPoolSize) {
+        this.keyPoolSize = Math.max(keyPoolSize, 1);
+    }
+
+    public void setUseFirebirdBatch(boolean useFirebirdBatch) {
+        this.useFirebirdBatch = useFirebirdBatch;
+    }
+
+    public void setStopOnError(boolean stopOnError) {
+        this.stopOnError = stopOnError;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setErrorHandler(TestDataGenerator.ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Returns the tables in the order of filling - each table follows
+     * the tables it references.
+     *
+     * @throws DataSourceException if the tables reference each other in a cycle
+     */
+    public List<DatabaseTable> getOrder() {
+
+        Map<String, Integer> references = referenceCounts();
+        List<DatabaseTable> order = new ArrayList<>();
+
+        List<Node> ready = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (references.get(node.name()) == 0) {
+                ready.add(node);
+            }
+        }
+
+        while (!ready.isEmpty()) {
+
+            Node node = ready.remove(0);
+            order.add(node.table);
+            for (Node child : node.children) {
+                int count = references.get(child.name()) - 1;
+                references.put(child.name(), count);
+                if (count == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+
+        if (order.size() < nodes.size()) {
+
+            StringBuilder sb = new StringBuilder();
+            for (Node node : nodes.values()) {
+                if (!order.contains(node.table)) {
+                    if (sb.length() > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(node.name());
+                }
+            }
+            throw new DataSourceException("The tables reference each other in a cycle: " + sb);
+        }
+
+        return order;
+    }
+
+    /**
+     * Fills the tables of the plan, returns when all are filled
+     * or skipped.
+     */
+    public void execute() throws InterruptedException {
+
+        getOrder();
+        Map<String, Integer> references = referenceCounts();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelTables);
+        CompletionService<Node> completion = new ExecutorCompletionService<>(executor);
+        try {
+
+            int submitted = 0;
+            for (Node node : nodes.values()) {
+                if (references.get(node.name()) == 0) {
+                    completion.submit(task(node));
+                    submitted++;
+                }
+            }
+
+            while (submitted > 0) {
+
+                Future<Node> future = completion.take();
+                submitted--;
+
+                Node node;
+                try {
+                    node = future.get();
+                } catch (ExecutionException e) {
+                    throw new DataSourceException(e.getCause());
+                }
+
+                for (Node child : node.children) {
+
+                    if (!node.filled) {
+                        skip(child, "the referenced table " + node.name() + " was not filled");
+                        continue;
+                    }
+
+                    int count = references.get(child.name()) - 1;
+                    references.put(child.name(), count);
+                    if (count == 0 && !child.skipped) {
+                        completion.submit(task(child));
+                        submitted++;
+                    }
+                }
+            }
+
+        } finally {
+
+            executor.shutdownNow();
+            keyPools.clear();
+        }
+    }
+
+    /**
+     * Stops filling the tables.
+     */
+    public void stop() {
+        stopped = true;
+        for (TestDataGenerator generator : running.values()) {
+            generator.stop();
+        }
+    }
+
+    private void skip(Node node, String reason) {
+
+        if (node.skipped) {
+            return;
+        }
+        node.skipped = true;
+        if (listener != null) {
+            listener.tableSkipped(node.table, reason);
+        }
+        for (Node child : node.children) {
+            skip(child, "the referenced table " + node.name() + " was not filled");
+        }
+    }
+
+    /**
+     * Returns the number of the tables of the plan each table references,
+     * the references of a table to itself are not counted.
+     */
+    private Map<String, Integer> referenceCounts() {
+
+        for (Node node : nodes.values()) {
+            node.children.clear();
+            node.skipped = false;
+            node.filled = false;
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (Node node : nodes.values()) {
+
+            int count = 0;
+            for (ForeignKey key : node.foreignKeys()) {
+
+                Node parent = nodes.get(key.referencedTable);
+                if (parent != null && parent != node && !parent.children.contains(node)) {
+                    parent.children.add(node);
+                    count++;
+                }
+            }
+            counts.put(node.name(), count);
+        }
+        return counts;
+    }
+
+    private Callable<Node> task(final Node node) {
+
+        return new Callable<Node>() {
+            @Override
+            public Node call() throws Exception {
+                if (stopped || node.skipped) {
+                    skip(node, "the generation was stopped");
+                    return node;
+                }
+                try {
+                    fill(node);
+                } catch (DataSourceException e) {
+                    Log.error("Error generating the data of " + node.name(), e);
+                    skip(node, e.getMessage());
+                }
+                return node;
+            }
+        };
+    }
+
+    private void fill(Node node) throws InterruptedException {
+
+        DatabaseTable table = node.table;
+        Random random = new Random(seed ^ node.name().hashCode());
+
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        List<ValueGenerator> generators = new ArrayList<>();
+
+        Map<String, ValueGenerator> keyGenerators = foreignKeyGenerators(node);
+        ValueGenerator primaryKeyGenerator = primaryKeyGenerator(table);
+
+        for (DatabaseColumn column : table.getColumns()) {
+
+            if (column.isGenerated() || column.isIdentity()) {
+                continue;
+            }
+
+            ValueGenerator generator;
+            if (keyGenerators.containsKey(column.getName())) {
+                generator = keyGenerators.get(column.getName());
+            } else if (primaryKeyGenerator != null && column.isPrimaryKey()) {
+                generator = primaryKeyGenerator;
+            } else {
+                generator = generatorFactory.createGenerator(table, column, random);
+            }
+
+            if (columns.length() > 0) {
+                columns.append(", ");
+                values.append(", ");
+            }
+            columns.append("\"").append(column.getName()).append("\"");
+            values.append("?");
+            generators.add(generator);
+        }
+
+        String query = "INSERT INTO \"" + table.getName() + "\" (" + columns + ") VALUES (" + values + ")";
+        if (listener != null) {
+            listener.tableStarted(table, query);
+        }
+
+        TestDataGenerator generator = new TestDataGenerator(databaseConnection, query, generators, seed ^ (long) node.name().hashCode() << 32);
+        generator.setThreadCount(threadCount);
+        generator.setBatchSize(batchSize);
+        generator.setCommitSize(commitSize);
+        generator.setUseFirebirdBatch(useFirebirdBatch);
+        generator.setStopOnError(stopOnError);
+        generator.setErrorHandler(errorHandler);
+
+        long startTime = System.currentTimeMillis();
+        running.put(node.name(), generator);
+        try {
+
+            generator.start(node.rowCount);
+            while (!generator.awaitTermination(PROGRESS_INTERVAL)) {
+                if (stopped) {
+                    generator.stop();
+                }
+                if (listener != null) {
+                    listener.tableProgress(table, generator);
+                }
+            }
+
+        } finally {
+
+            running.remove(node.name());
+        }
+
+        if (listener != null) {
+            listener.tableFinished(table, generator, System.currentTimeMillis() - startTime);
+        }
+
+        Throwable failure = generator.getFailure();
+        if (failure != null) {
+            throw new DataSourceException(failure);
+        }
+        if (stopOnError && generator.getErrorCount() > 0) {
+            stopped = true;
+        }
+        node.filled = !stopped || generator.getInsertCount() > 0;
+    }
+
+    /**
+     * Returns the generators of the foreign key columns keyed by the column
+     * name. The columns of a key take the values of the same key of the pool.
+     */
+    private Map<String, ValueGenerator> foreignKeyGenerators(Node node) {
+
+        Map<String, ValueGenerator> generators = new HashMap<>();
+        for (ForeignKey key : node.foreignKeys()) {
+
+            final Object[][] pool = keyPool(key);
+            final long salt = key.name.hashCode();
+
+            boolean required = false;
+            for (String column : key.columns) {
+                required |= node.column(column) != null && node.column(column).isRequired();
+            }
+
+            if (pool.length == 0 && required) {
+                throw new DataSourceException("There are no keys in " + key.referencedTable
+                        + " for the foreign key " + key.name + " of " + node.name());
+            }
+
+            for (int i = 0; i < key.columns.size(); i++) {
+
+                final int index = i;
+                generators.put(key.columns.get(i), new ValueGenerator() {
+                    @Override
+                    public Object generate(long row, Random random) {
+                        if (pool.length == 0) {
+                            return null;
+                        }
+                        long hash = TestDataGenerator.chunkSeed(salt, row);
+                        return pool[(int) ((hash & Long.MAX_VALUE) % pool.length)][index];
+                    }
+                });
+            }
+        }
+        return generators;
+    }
+
+    /**
+     * Returns the generator continuing the single column integer primary
+     * key from the largest key of the table or null for the other keys.
+     */
+    private ValueGenerator primaryKeyGenerator(DatabaseTable table) {
+
+        List<String> keys = table.getPrimaryKeyColumnNames();
+        if (keys.size() != 1) {
+            return null;
+        }
+
+        DatabaseColumn column = null;
+        for (DatabaseColumn databaseColumn : table.getColumns()) {
+            if (databaseColumn.getName().equalsIgnoreCase(keys.get(0))) {
+                column = databaseColumn;
+            }
+        }
+        if (column == null || column.isForeignKey()) {
+            return null;
+        }
+
+        final int type = column.getTypeInt();
+        if (type != Types.SMALLINT && type != Types.INTEGER && type != Types.BIGINT) {
+            return null;
+        }
+
+        Object[][] max = query("SELECT MAX(\"" + column.getName() + "\") FROM \"" + table.getName() + "\"", 1);
+        final long start = (max.length > 0 && max[0][0] != null ? ((Number) max[0][0]).longValue() : 0) + 1;
+
+        return new ValueGenerator() {
+            @Override
+            public Object generate(long row, Random random) {
+                long value = start + row;
+                if (type == Types.SMALLINT) {
+                    return (short) value;
+                }
+                if (type == Types.INTEGER) {
+                    return (int) value;
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Returns the keys sampled from the referenced table of the foreign key,
+     * the pools are shared by the tables referencing the same key.
+     */
+    private Object[][] keyPool(ForeignKey key) {
+
+        String poolKey = key.referencedTable + "." + key.referencedColumns;
+        Object[][] pool = keyPools.get(poolKey);
+        if (pool == null) {
+
+            StringBuilder columns = new StringBuilder();
+            StringBuilder notNull = new StringBuilder();
+            for (String column : key.referencedColumns) {
+                if (columns.length() > 0) {
+                    columns.append(", ");
+                    notNull.append(" AND ");
+                }
+                columns.append("\"").append(column).append("\"");
+                notNull.append("\"").append(column).append("\" IS NOT NULL");
+            }
+
+            pool = query("SELECT " + columns + " FROM \"" + key.referencedTable + "\" WHERE " + notNull, keyPoolSize);
+            keyPools.put(poolKey, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the uniform random sample of the rows of the query
+     * of the specified size (reservoir sampling).
+     */
+    private Object[][] query(String query, int size) {
+
+        Random random = new Random(seed ^ query.hashCode());
+        Object[][] sample = new Object[size][];
+        long count = 0;
+
+        Connection connection = ConnectionManager.getTemporaryConnection(databaseConnection);
+        if (connection == null) {
+            throw new DataSourceException("Unable to open a connection to " + databaseConnection.getName());
+        }
+
+        try {
+
+            Statement statement = connection.createStatement();
+            try {
+
+                ResultSet rs = statement.executeQuery(query);
+                int columnCount = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+
+                    long index = count < size ? count : (long) (random.nextDouble() * (count + 1));
+                    if (index < size) {
+                        Object[] row = new Object[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            row[i] = rs.getObject(i + 1);
+                        }
+                        sample[(int) index] = row;
+                    }
+                    count++;
+                }
+                rs.close();
+
+            } finally {
+
+                statement.close();
+            }
+
+        } catch (SQLException e) {
+
+            throw new DataSourceException(e);
+
+        } finally {
+
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                Log.debug(e.getMessage());
+            }
+        }
+
+        if (count < size) {
+            Object[][] rows = new Object[(int) count][];
+            System.arraycopy(sample, 0, rows, 0, rows.length);
+            return rows;
+        }
+        return sample;
+    }
+
+    private static final class Node {
+
+        private final DatabaseTable table;
+
+        private final long rowCount;
+
+        private final List<Node> children = new ArrayList<>();
+
+        private List<ForeignKey> foreignKeys;
+
+        private volatile boolean skipped;
+
+        private volatile boolean filled;
+
+        Node(DatabaseTable table, long rowCount) {
+            this.table = table;
+            this.rowCount = rowCount;
+        }
+
+        String name() {
+            return table.getName();
+        }
+
+        DatabaseColumn column(String name) {
+            for (DatabaseColumn column : table.getColumns()) {
+                if (column.getName().equals(name)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the foreign keys with the columns of each key together.
+         */
+        List<ForeignKey> foreignKeys() {
+
+            if (foreignKeys == null) {
+
+                Map<String, ForeignKey> keys = new LinkedHashMap<>();
+                for (ColumnConstraint constraint : table.getForeignKeys()) {
+
+                    ForeignKey key = keys.get(constraint.getName());
+                    if (key == null) {
+                        key = new ForeignKey(constraint.getName(), constraint.getReferencedTable());
+                        keys.put(constraint.getName(), key);
+                    }
+                    key.columns.add(constraint.getColumnName());
+                    key.referencedColumns.add(constraint.getReferencedColumn());
+                }
+                foreignKeys = new ArrayList<>(keys.values());
+            }
+            return foreignKeys;
+        }
+
+    }
+
+    private static final class ForeignKey {
+
+        private final String name;
+
+        private final String referencedTable;
+
+        private final List<String> columns = new ArrayList<>();
+
+        private final List<String> referencedColumns = new ArrayList<>();
+
+        ForeignKey(String name, String referencedTable) {
+            this.name = name;
+            this.referencedTable = referencedTable;
+        }
+
+    }
+
+}
@@ -4,13 +4,13 @@ import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databaseobjects.DatabaseColumn;
 import org.executequery.gui.browser.GeneratorTestDataPanel;
 import org.executequery.gui.browser.generatortestdata.methodspanels.*;
-import org.executequery.log.Log;
 import org.underworldlabs.swing.layouts.GridBagHelper;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Random;
 
 public class MethodGeneratorPanel extends JPanel implements ActionListener {
 
@@ -101,16 +101,8 @@ public class MethodGeneratorPanel extends JPanel implements ActionListener {
         updateUI();
     }
 
-    public void setFirst() {
-        try {
-            methodPanel.setFirst(true);
-        } catch (NullPointerException e) {
-            Log.debug("methodPanel not exist");
-        }
-    }
-
-    public Object getTestDataObject() {
-        return methodPanel.getTestDataObject();
+    public ValueGenerator createGenerator(Random random) {
+        return methodPanel.createGenerator(random);
     }
 
     private String bundledString(String key) {
@@ -0,0 +1,501 @@
+package org.executequery.gui.browser.generatortestdata;
+
+import biz.redsoft.IFBBatch;
+import biz.redsoft.IFBBatchCompletionState;
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.datasource.ConnectionManager;
+import org.executequery.datasource.FirebirdBatches;
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates and inserts the rows of a table on several threads,
+ * each with its own connection.
+ * <p>
+ * The rows are split into the chunks of the fixed size taken by the
+ * threads in turn. The values of each chunk come from the random
+ * stream seeded with the seed of the run and the number of the chunk,
+ * so the same seed gives the same rows for any number of threads.
+ * <p>
+ * The rows are inserted with the Firebird batches where requested
+ * and available and with the JDBC batches otherwise.
+ */
+public class TestDataGenerator {
+
+    /**
+     * the rows generated from one random stream
+     */
+    public static final int CHUNK_SIZE = 10000;
+
+    /**
+     * Receives the errors of the rows - called from the generating threads.
+     */
+    public interface ErrorHandler {
+
+        void rowFailed(long row, Throwable e);
+
+    }
+
+    /**
+     * Receives the printed states of the executed Firebird batches.
+     */
+    public interface BatchStateHandler {
+
+        void batchExecuted(String states);
+
+    }
+
+    private final DatabaseConnection databaseConnection;
+
+    private final String query;
+
+    private final ValueGenerator[] generators;
+
+    private final long seed;
+
+    private int threadCount = 1;
+
+    private int batchSize = 100;
+
+    private int commitSize;
+
+    private boolean useFirebirdBatch;
+
+    private boolean stopOnError;
+
+    private ErrorHandler errorHandler;
+
+    private BatchStateHandler batchStateHandler;
+
+    private final AtomicLong nextChunk = new AtomicLong();
+
+    private final AtomicLong insertCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private long rowCount;
+
+    private ExecutorService executor;
+
+    private List<Future<Object>> workers;
+
+    private volatile boolean stopped;
+
+    private volatile Throwable failure;
+
+    /**
+     * Creates a new generator inserting the rows with the specified query.
+     *
+     * @param databaseConnection - the connection to open the connections of the threads for
+     * @param query              - the insert query with a parameter for each generator
+     * @param generators         - the generators of the parameter values, null for the null values
+     * @param seed               - the seed of the random streams
+     */
+    public TestDataGenerator(DatabaseConnection databaseConnection, String query,
+                             List<ValueGenerator> generators, long seed) {
+        this.databaseConnection = databaseConnection;
+        this.query = query;
+        this.generators = generators.toArray(new ValueGenerator[0]);
+        this.seed = seed;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(threadCount, 1);
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /**
+     * Sets the rows each thread commits after, 0 to commit on finish only.
+     */
+    public void setCommitSize(int commitSize) {
+        this.commitSize = Math.max(commitSize, 0);
+    }
+
+    public void setUseFirebirdBatch(boolean useFirebirdBatch) {
+        this.useFirebirdBatch = useFirebirdBatch;
+    }
+
+    public void setStopOnError(boolean stopOnError) {
+        this.stopOnError = stopOnError;
+    }
+
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    public void setBatchStateHandler(BatchStateHandler batchStateHandler) {
+        this.batchStateHandler = batchStateHandler;
+    }
+
+    /**
+     * Opens the connections and starts generating the specified number of rows.
+     */
+    public void start(long rowCount) {
+
+        this.rowCount = rowCount;
+
+        long chunks = (rowCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int count = (int) Math.max(Math.min(threadCount, chunks), 1);
+
+        List<Worker> prepared = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                Worker worker = new Worker(openConnection());
+                prepared.add(worker);
+                worker.prepare();
+            }
+        } catch (SQLException e) {
+            for (Worker worker : prepared) {
+                worker.close();
+            }
+            throw new DataSourceException(e);
+        }
+
+        executor = Executors.newFixedThreadPool(count);
+        workers = new ArrayList<>(count);
+        for (Worker worker : prepared) {
+            workers.add(executor.submit(worker));
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the generation to finish.
+     *
+     * @return true if finished within the timeout
+     */
+    public boolean awaitTermination(long timeout) throws InterruptedException {
+
+        if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+
+        for (Future<Object> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the generation after the batches being inserted,
+     * the inserted rows are committed.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the error the generation was stopped with or null.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public long getInsertCount() {
+        return insertCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    private Connection openConnection() throws SQLException {
+
+        Connection connection = ConnectionManager.getTemporaryConnection(databaseConnection);
+        if (connection == null) {
+            throw new SQLException("Unable to open a connection to " + databaseConnection.getName());
+        }
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    private void rowFailed(long row, Throwable e) {
+
+        errorCount.incrementAndGet();
+        if (errorHandler != null) {
+            errorHandler.rowFailed(row, e);
+        }
+        if (stopOnError) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Returns the seed of the random stream of the chunk - the bits
+     * of the seed of the run and the chunk number are mixed, so the
+     * streams of the neighbouring chunks are not related.
+     */
+    static long chunkSeed(long seed, long chunk) {
+
+        long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Generates and inserts the chunks of rows on its own connection.
+     */
+    private final class Worker implements Callable<Object> {
+
+        private final Connection connection;
+
+        private PreparedStatement statement;
+
+        private IFBBatch firebirdBatch;
+
+        private final Object[][] rows;
+
+        private final long[] rowNumbers;
+
+        private int size;
+
+        private long uncommittedCount;
+
+        Worker(Connection connection) {
+            this.connection = connection;
+            this.rows = new Object[batchSize][generators.length];
+            this.rowNumbers = new long[batchSize];
+        }
+
+        void prepare() throws SQLException {
+
+            if (useFirebirdBatch) {
+                firebirdBatch = FirebirdBatches.createBatch(connection, query);
+            }
+            if (firebirdBatch == null) {
+                statement = connection.prepareStatement(query);
+            }
+        }
+
+        public Object call() throws Exception {
+
+            try {
+
+                generateRows();
+                flush();
+                commit(false);
+                return null;
+
+            } catch (Exception e) {
+
+                stopped = true;
+                rollback();
+                throw e;
+
+            } finally {
+
+                close();
+            }
+        }
+
+        private void generateRows() throws SQLException {
+
+            Random random = new Random();
+            while (!stopped) {
+
+                long chunk = nextChunk.getAndIncrement();
+                long first = chunk * CHUNK_SIZE;
+                if (first >= rowCount) {
+                    return;
+                }
+
+                random.setSeed(chunkSeed(seed, chunk));
+                long last = Math.min(first + CHUNK_SIZE, rowCount);
+                for (long row = first; row < last && !stopped; row++) {
+
+                    Object[] values = rows[size];
+                    for (int i = 0; i < generators.length; i++) {
+                        values[i] = generators[i] != null ? generators[i].generate(row, random) : null;
+                    }
+                    rowNumbers[size++] = row;
+
+                    if (size == batchSize) {
+                        flush();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Inserts the rows of the batch. The rows after the one
+         * a batch stopped at are sent again in the next batch.
+         */
+        private void flush() throws SQLException {
+
+            int from = 0;
+            while (from < size) {
+
+                int[] counts;
+                SQLException error = null;
+                try {
+
+                    counts = execute(from);
+
+                } catch (BatchUpdateException e) {
+
+                    counts = e.getUpdateCounts();
+                    error = e;
+                }
+
+                int executed = counts != null ? Math.min(counts.length, size - from) : 0;
+                for (int i = 0; i < executed; i++) {
+
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        rowFailed(rowNumbers[from + i], error != null ? error : new SQLException("Batch execution failed"));
+                    } else {
+                        insertCount.incrementAndGet();
+                        uncommittedCount++;
+                    }
+                }
+
+                if (executed < size - from) {
+                    rowFailed(rowNumbers[from + executed], error != null ? error : new SQLException("Batch execution stopped"));
+                }
+                from += executed + 1;
+
+                if (stopped) {
+                    break;
+                }
+            }
+            size = 0;
+
+            if (commitSize > 0 && uncommittedCount >= commitSize) {
+                commit(true);
+            }
+        }
+
+        private int[] execute(int from) throws SQLException {
+
+            if (firebirdBatch != null) {
+
+                for (int i = from; i < size; i++) {
+
+                    Object[] values = rows[i];
+                    for (int j = 0; j < values.length; j++) {
+
+                        if (values[j] instanceof byte[]) {
+                            byte[] bytes = (byte[]) values[j];
+                            firebirdBatch.addBlob(j + 1, bytes.length == 0 ? new byte[1] : bytes);
+                        } else {
+                            firebirdBatch.setObject(j + 1, values[j]);
+                        }
+                    }
+                    firebirdBatch.addBatch();
+                }
+                IFBBatchCompletionState state = firebirdBatch.execute();
+                if (batchStateHandler != null) {
+                    batchStateHandler.batchExecuted(state.printAllStates());
+                }
+                return state.getAllStates();
+            }
+
+            try {
+
+                for (int i = from; i < size; i++) {
+
+                    Object[] values = rows[i];
+                    for (int j = 0; j < values.length; j++) {
+                        statement.setObject(j + 1, values[j]);
+                    }
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+
+            } finally {
+
+                statement.clearBatch();
+            }
+        }
+
+        private void commit(boolean restart) throws SQLException {
+
+            if (firebirdBatch != null) {
+
+                firebirdBatch.commit();
+                if (restart) {
+                    firebirdBatch.startTransaction();
+                }
+
+            } else {
+
+                connection.commit();
+            }
+            uncommittedCount = 0;
+        }
+
+        private void rollback() {
+
+            try {
+
+                if (firebirdBatch != null) {
+                    firebirdBatch.rollback();
+                } else {
+                    connection.rollback();
+                }
+
+            } catch (SQLException e) {
+
+                Log.debug("Error rolling back the generated rows: " + e.getMessage());
+            }
+        }
+
+        void close() {
+
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    Log.debug(e.getMessage());
+                }
+                statement = null;
+            }
+
+            if (firebirdBatch != null) {
+                try {
+                    firebirdBatch.cancel();
+                } catch (SQLException e) {
+                    Log.debug(e.getMessage());
+                }
+                firebirdBatch = null;
+            }
+
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                Log.debug(e.getMessage());
+            }
+        }
+
+    }
+
+}
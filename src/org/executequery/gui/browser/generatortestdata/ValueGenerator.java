@@ -0,0 +1,20 @@
+package org.executequery.gui.browser.generatortestdata;
+
+import java.util.Random;
+
+/**
+ * Generates the values of a column. The generator is shared by
+ * the generating threads, so it keeps no state changing per row -
+ * the value depends on the row number and the random stream only.
+ */
+public interface ValueGenerator {
+
+    /**
+     * Returns the value of the column for the row.
+     *
+     * @param row    - the zero based number of the generated row
+     * @param random - the random stream of the generating thread
+     */
+    Object generate(long row, Random random);
+
+}
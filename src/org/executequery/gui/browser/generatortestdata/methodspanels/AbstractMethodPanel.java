@@ -2,22 +2,24 @@ package org.executequery.gui.browser.generatortestdata.methodspanels;
 
 import org.executequery.databaseobjects.DatabaseColumn;
 import org.executequery.gui.browser.GeneratorTestDataPanel;
+import org.executequery.gui.browser.generatortestdata.ValueGenerator;
 
 import javax.swing.*;
+import java.util.Random;
 
 public abstract class AbstractMethodPanel extends JPanel {
     protected DatabaseColumn col;
-    protected boolean first = true;
 
     public AbstractMethodPanel(DatabaseColumn col) {
         this.col = col;
     }
 
-    public abstract Object getTestDataObject();
-
-    public void setFirst(boolean first) {
-        this.first = first;
-    }
+    /**
+     * Creates the generator of the column values with the current settings.
+     *
+     * @param random - the random stream for the values prepared in advance
+     */
+    public abstract ValueGenerator createGenerator(Random random);
 
     protected String bundles(String key) {
         return GeneratorTestDataPanel.bundles(key);
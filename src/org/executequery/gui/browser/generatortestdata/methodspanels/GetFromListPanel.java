@@ -3,6 +3,7 @@ package org.executequery.gui.browser.generatortestdata.methodspanels;
 import org.executequery.databaseobjects.DatabaseColumn;
 import org.executequery.databaseobjects.T;
 import org.executequery.gui.browser.GeneratorTestDataPanel;
+import org.executequery.gui.browser.generatortestdata.ValueGenerator;
 import org.executequery.gui.text.SimpleTextArea;
 import org.executequery.localization.Bundles;
 import org.underworldlabs.jdbc.DataSourceException;
@@ -18,8 +19,6 @@ import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -43,7 +42,6 @@ public class GetFromListPanel extends AbstractMethodPanel {
     private JLabel labelFile;
     String[] list;
     private JTextField fileField;
-    int index;
     private JButton fileSelectButton;
 
 
@@ -127,20 +125,20 @@ public class GetFromListPanel extends AbstractMethodPanel {
     }
 
     @Override
-
-    public Object getTestDataObject() {
-        if (first) {
-            fillList();
-            first = false;
-            index = 0;
-        }
-        if (index >= list.length)
-            index = 0;
-        if (orderBox.getSelectedIndex() == 1) {
-            index = new Random().nextInt(list.length);
-        }
-        index++;
-        return listObject[index - 1];
+    public ValueGenerator createGenerator(Random random) {
+        fillList();
+        final Object[] values = listObject;
+        if (values.length == 0)
+            throw new DataSourceException("The list of values is empty for column \"" + col.getName() + "\"");
+        final boolean randomOrder = orderBox.getSelectedIndex() == 1;
+        return new ValueGenerator() {
+            @Override
+            public Object generate(long row, Random random) {
+                if (randomOrder)
+                    return values[random.nextInt(values.length)];
+                return values[(int) (row % values.length)];
+            }
+        };
     }
 
     private void fillList() {
@@ -216,10 +214,11 @@ public class GetFromListPanel extends AbstractMethodPanel {
             return str;
         }
         if (col.getFormattedDataType().contains("BLOB")) {
+            // the values are shared by the generating threads
             try {
-                return new FileInputStream(str);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
+                return Files.readAllBytes(Paths.get(str));
+            } catch (IOException e) {
+                throw new DataSourceException(e);
             }
         }
         if (col.getFormattedDataType().contentEquals("BOOLEAN")) {
@@ -6,7 +6,9 @@ import org.executequery.databaseobjects.DatabaseColumn;
 import org.executequery.databaseobjects.DatabaseHost;
 import org.executequery.databaseobjects.NamedObject;
 import org.executequery.gui.browser.ConnectionsTreePanel;
+import org.executequery.gui.browser.generatortestdata.ValueGenerator;
 import org.executequery.sql.SqlStatementResult;
+import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.swing.DynamicComboBoxModel;
 import org.underworldlabs.swing.NumberTextField;
 import org.underworldlabs.swing.layouts.GridBagHelper;
@@ -17,7 +19,6 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.Vector;
@@ -29,8 +30,6 @@ public class GetFromOtherTablePanel extends AbstractMethodPanel {
     private JComboBox colBox;
     private DynamicComboBoxModel tableBoxModel;
     private DynamicComboBoxModel colBoxModel;
-    Random random;
-    private List<Object> objList;
 
     private void init() {
         setLayout(new GridBagLayout());
@@ -83,27 +82,51 @@ public class GetFromOtherTablePanel extends AbstractMethodPanel {
     }
 
     @Override
-    public Object getTestDataObject() {
-        if (first) {
-            first = false;
-            objList = new ArrayList<>();
-            String query = "Select first " + countRowsField.getStringValue() + " \n" + ((DatabaseColumn) colBox.getSelectedItem()).getName() + " from " + tableBox.getSelectedItem();
-            try {
-                ResultSet rs = executor.getResultSet(query).getResultSet();
-                random = new Random();
-                int count = countRowsField.getValue();
-                for (int i = 0; i < count && rs.next(); i++) {
-                    objList.add(rs.getObject(1));
+    public ValueGenerator createGenerator(Random random) {
+        final Object[] values = sampleValues(random);
+        if (values.length == 0)
+            throw new DataSourceException("There are no values in " + tableBox.getSelectedItem() + " to use for column \"" + col.getName() + "\"");
+        return new ValueGenerator() {
+            @Override
+            public Object generate(long row, Random random) {
+                return values[random.nextInt(values.length)];
+            }
+        };
+    }
+
+    /**
+     * Reads the values of the selected column keeping the uniform
+     * random sample of the set size (reservoir sampling), so the
+     * memory used does not depend on the size of the table.
+     */
+    private Object[] sampleValues(Random random) {
+        int size = countRowsField.getValue();
+        Object[] sample = new Object[Math.max(size, 0)];
+        String query = "Select " + ((DatabaseColumn) colBox.getSelectedItem()).getName() + " from " + tableBox.getSelectedItem();
+        long count = 0;
+        try {
+            ResultSet rs = executor.getResultSet(query).getResultSet();
+            while (rs.next()) {
+                if (count < size) {
+                    sample[(int) count] = rs.getObject(1);
+                } else {
+                    long index = (long) (random.nextDouble() * (count + 1));
+                    if (index < size)
+                        sample[(int) index] = rs.getObject(1);
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                return null;
-            } finally {
-                executor.releaseResources();
+                count++;
             }
+        } catch (SQLException e) {
+            throw new DataSourceException(e);
+        } finally {
+            executor.releaseResources();
+        }
+        if (count < size) {
+            Object[] values = new Object[(int) count];
+            System.arraycopy(sample, 0, values, 0, values.length);
+            return values;
         }
-        int rand = random.nextInt(objList.size());
-        return objList.get(rand);
+        return sample;
     }
 
     private Vector<String> fillTables() {
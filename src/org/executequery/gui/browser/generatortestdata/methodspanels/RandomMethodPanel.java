@@ -3,6 +3,7 @@ package org.executequery.gui.browser.generatortestdata.methodspanels;
 import com.github.lgooddatepicker.components.DatePicker;
 import org.executequery.databaseobjects.DatabaseColumn;
 import org.executequery.databaseobjects.T;
+import org.executequery.gui.browser.generatortestdata.ValueGenerator;
 import org.executequery.gui.text.SimpleTextArea;
 import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.swing.EQDateTimePicker;
@@ -217,227 +218,217 @@ public class RandomMethodPanel extends AbstractMethodPanel {
 
     }
 
-    private BigInteger getBigint() {
-        BigInteger bigint = new BigInteger(62, new Random());
-        BigInteger max = new BigInteger(maxField.getText());
-        BigInteger min = new BigInteger(minField.getText());
-        if (max.compareTo(min) == -1)
-            throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-        BigInteger zero = new BigInteger("0");
-        BigInteger diapason;
-        if (min.compareTo(zero) < 0 && max.compareTo(zero) > 0) {
-            Random random = new Random();
-            int x = random.nextInt();
-            x = x % 2;
-            if (x == 0) {
-                diapason = min.multiply(new BigInteger("-1"));
-                bigint = bigint.mod(diapason).multiply(new BigInteger("-1"));
-            } else {
-                diapason = max;
-                bigint = bigint.mod(diapason);
+    @Override
+    public ValueGenerator createGenerator(Random random) {
+
+        final boolean useNull = nullBox.isSelected();
+        final ValueGenerator generator = createValueGenerator();
+        if (!useNull || generator == null)
+            return generator;
+
+        return new ValueGenerator() {
+            @Override
+            public Object generate(long row, Random random) {
+                if (random.nextInt(10) == 0)
+                    return null;
+                return generator.generate(row, random);
             }
-        } else {
-            diapason = max.subtract(min);
-            bigint = min.add(bigint.mod(diapason));
-        }
-        return bigint;
+        };
     }
 
-
-    public Object getTestDataObject() {
-        if (nullBox.isSelected()) {
-            if (new Random().nextInt(10) == 0)
-                return null;
-        }
-        if (col.getFormattedDataType().contentEquals(T.BIGINT) || col.getFormattedDataType().contentEquals(T.INT128)) {
-            return getBigint();
+    private ValueGenerator createValueGenerator() {
+        String type = col.getFormattedDataType();
+        if (type.contentEquals(T.BIGINT) || type.contentEquals(T.INT128)) {
+            final BigInteger max = new BigInteger(maxField.getText());
+            final BigInteger min = new BigInteger(minField.getText());
+            checkRange(min.compareTo(max) > 0);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    return getBigint(random, min, max);
+                }
+            };
         }
-        if (col.getFormattedDataType().contentEquals(T.TIME)) {
-            long value = new Random().nextLong();
-            if (value < 0)
-                value *= -1;
-
-            long max = maxTime.getLocalTime().atDate(LocalDate.of(1970, 1, 1)).toInstant(ZoneOffset.of(ZoneId.systemDefault().getId())).toEpochMilli();
-            long min = minTime.getLocalTime().atDate(LocalDate.of(1970, 1, 1)).toInstant(ZoneOffset.of(ZoneId.systemDefault().getId())).toEpochMilli();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                value = max;
-            } else
-                value = (min + (value % diapason));
-            LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault());
-            return dateTime.toLocalTime();
+        if (type.contentEquals(T.TIME)) {
+            final long max = epochMilli(maxTime.getLocalTime());
+            final long min = epochMilli(minTime.getLocalTime());
+            checkRange(min > max);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    long value = nextLong(random, min, max);
+                    return LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault()).toLocalTime();
+                }
+            };
         }
-
-        if (col.getFormattedDataType().contentEquals(T.TIME_WITH_TIMEZONE)) {
-            long value = new Random().nextLong();
-            if (value < 0)
-                value *= -1;
-
-            long max = maxTime.getOffsetTime().atDate(LocalDate.of(1970, 1, 1)).toInstant().toEpochMilli();
-            long min = minTime.getOffsetTime().atDate(LocalDate.of(1970, 1, 1)).toInstant().toEpochMilli();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                value = max;
-            } else
-                value = (min + (value % diapason));
-            OffsetDateTime dateTime = OffsetDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault());
-            return dateTime.toOffsetTime();
+        if (type.contentEquals(T.TIME_WITH_TIMEZONE)) {
+            final long max = maxTime.getOffsetTime().atDate(LocalDate.of(1970, 1, 1)).toInstant().toEpochMilli();
+            final long min = minTime.getOffsetTime().atDate(LocalDate.of(1970, 1, 1)).toInstant().toEpochMilli();
+            checkRange(min > max);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    long value = nextLong(random, min, max);
+                    return OffsetDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault()).toOffsetTime();
+                }
+            };
         }
-
-        if (col.getFormattedDataType().contentEquals(T.DATE)) {
-            long value = new Random().nextLong();
-            if (value < 0)
-                value *= -1;
-            long max = maxDate.getDate().toEpochDay();
-            long min = minDate.getDate().toEpochDay();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                value = max;
-            } else
-                value = (min + (value % diapason));
-            LocalDate temp = LocalDate.ofEpochDay(value);
-            return temp;
+        if (type.contentEquals(T.DATE)) {
+            final long max = maxDate.getDate().toEpochDay();
+            final long min = minDate.getDate().toEpochDay();
+            checkRange(min > max);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    return LocalDate.ofEpochDay(nextLong(random, min, max));
+                }
+            };
         }
-        if (col.getFormattedDataType().contentEquals(T.TIMESTAMP)) {
-            long value = new Random().nextLong();
-            if (value < 0)
-                value *= -1;
-            long max = maxDateTime.getDateTime().toInstant(ZoneOffset.of(ZoneId.systemDefault().getId())).toEpochMilli();
-            long min = minDateTime.getDateTime().toInstant(ZoneOffset.of(ZoneId.systemDefault().getId())).toEpochMilli();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                value = max;
-            } else
-                value = (min + (value % diapason));
-            LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault());
-            return dateTime;
+        if (type.contentEquals(T.TIMESTAMP)) {
+            final long max = maxDateTime.getDateTime().toInstant(ZoneOffset.of(ZoneId.systemDefault().getId())).toEpochMilli();
+            final long min = minDateTime.getDateTime().toInstant(ZoneOffset.of(ZoneId.systemDefault().getId())).toEpochMilli();
+            checkRange(min > max);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    return LocalDateTime.ofInstant(Instant.ofEpochMilli(nextLong(random, min, max)), ZoneId.systemDefault());
+                }
+            };
         }
-        if (col.getFormattedDataType().contentEquals(T.TIMESTAMP_WITH_TIMEZONE)) {
-            long value = new Random().nextLong();
-            if (value < 0)
-                value *= -1;
-            long max = maxDateTime.getOffsetDateTime().toInstant().toEpochMilli();
-            long min = minDateTime.getOffsetDateTime().toInstant().toEpochMilli();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                value = max;
-            } else
-                value = (min + (value % diapason));
-            OffsetDateTime dateTime = OffsetDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault());
-            return dateTime;
+        if (type.contentEquals(T.TIMESTAMP_WITH_TIMEZONE)) {
+            final long max = maxDateTime.getOffsetDateTime().toInstant().toEpochMilli();
+            final long min = minDateTime.getOffsetDateTime().toInstant().toEpochMilli();
+            checkRange(min > max);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    return OffsetDateTime.ofInstant(Instant.ofEpochMilli(nextLong(random, min, max)), ZoneId.systemDefault());
+                }
+            };
         }
-        if (col.getFormattedDataType().contentEquals(T.INTEGER)
-                || col.getFormattedDataType().contentEquals(T.SMALLINT)) {
-            long value = new Random().nextLong();
-            if (value < 0)
-                value *= -1;
-            long max = ((NumberTextField) maxField).getValue();
-            long min = ((NumberTextField) minField).getValue();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                value = max;
-            } else
-                value = (min + (value % diapason));
-            if (col.getFormattedDataType().contentEquals(T.SMALLINT))
-                return (short) value;
-            return (int) value;
+        if (type.contentEquals(T.INTEGER) || type.contentEquals(T.SMALLINT)) {
+            final long max = ((NumberTextField) maxField).getValue();
+            final long min = ((NumberTextField) minField).getValue();
+            final boolean smallint = type.contentEquals(T.SMALLINT);
+            checkRange(min > max);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    long value = nextLong(random, min, max);
+                    if (smallint)
+                        return (short) value;
+                    return (int) value;
+                }
+            };
         }
-        if (col.getFormattedDataType().contentEquals(T.DOUBLE_PRECISION)
-                || col.getFormattedDataType().contentEquals(T.FLOAT)
-                || col.getFormattedDataType().startsWith(T.DECIMAL)
-                || col.getFormattedDataType().startsWith(T.NUMERIC)
-                || col.getFormattedDataType().startsWith(T.DECFLOAT)
+        if (type.contentEquals(T.DOUBLE_PRECISION)
+                || type.contentEquals(T.FLOAT)
+                || type.startsWith(T.DECIMAL)
+                || type.startsWith(T.NUMERIC)
+                || type.startsWith(T.DECFLOAT)
         ) {
-            long value = new Random().nextLong();
-            if (value < 0)
-                value *= -1;
-            long power = (long) Math.pow(10, countSymbolsAfterComma.getLongValue());
-            long max = Long.parseLong(maxField.getText()) * power;
-            long min = Long.parseLong(minField.getText()) * power;
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                value = max;
-            } else
-                value = (min + (value % diapason));
-            return ((double) value) / ((double) power);
-        }
-        if (col.getFormattedDataType().contains(T.CHAR)) {
-            long n = new Random().nextLong();
-            if (n < 0)
-                n *= -1;
-            long max = ((NumberTextField) maxField).getLongValue() + 1;
-            long min = ((NumberTextField) minField).getLongValue();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            long diapason = max - min;
-            if (diapason == 0) {
-                n = max;
-            } else
-                n = (min + (n % diapason));
-            StringBuilder result = new StringBuilder();
-            if (useOnlyThisSymbolsBox.isSelected()) {
-                String charset = useOnlyThisSymbolsField.getTextAreaComponent().getText();
-                int length = charset.length();
-                for (int i = 0; i < n; i++) {
-                    int x = new Random().nextInt(length);
-                    result.append(charset.charAt(x));
+            final long power = (long) Math.pow(10, countSymbolsAfterComma.getLongValue());
+            final long max = Long.parseLong(maxField.getText()) * power;
+            final long min = Long.parseLong(minField.getText()) * power;
+            checkRange(min > max);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    return ((double) nextLong(random, min, max)) / ((double) power);
                 }
-            } else {
-                for (int i = 0; i < n; i++) {
-                    int x = new Random().nextInt(127);
-                    result.append((char) x);
+            };
+        }
+        if (type.contains(T.CHAR)) {
+            final long max = ((NumberTextField) maxField).getLongValue() + 1;
+            final long min = ((NumberTextField) minField).getLongValue();
+            checkRange(min > max);
+            final String charset = useOnlyThisSymbolsBox.isSelected()
+                    ? useOnlyThisSymbolsField.getTextAreaComponent().getText() : null;
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    long n = nextLong(random, min, max);
+                    StringBuilder result = new StringBuilder();
+                    for (int i = 0; i < n; i++) {
+                        if (charset != null)
+                            result.append(charset.charAt(random.nextInt(charset.length())));
+                        else
+                            result.append((char) random.nextInt(127));
+                    }
+                    return result.toString();
                 }
-            }
-            return result.toString();
+            };
         }
-        if (col.getFormattedDataType().contains(T.BLOB)) {
-            int n = new Random().nextInt();
-            if (n < 0)
-                n *= -1;
-            int max = ((NumberTextField) maxField).getValue() + 1;
-            int min = ((NumberTextField) minField).getValue();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            int diapason = max - min;
-            if (diapason == 0) {
-                n = max;
-            } else
-                n = (min + (n % diapason));
-            max = ((NumberTextField) maxByteField).getValue() + 1;
-            min = ((NumberTextField) minByteField).getValue();
-            if (min > max)
-                throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
-            diapason = max - min;
-            byte[] bytes = new byte[n];
-            for (int i = 0; i < n; i++) {
-                if (diapason == 0)
-                    bytes[i] = (byte) max;
-                int x = new Random().nextInt();
-                if (x < 0)
-                    x *= -1;
-                x = min + (x % diapason);
-                bytes[i] = (byte) x;
-            }
-            return bytes;
+        if (type.contains(T.BLOB)) {
+            final int maxLength = ((NumberTextField) maxField).getValue() + 1;
+            final int minLength = ((NumberTextField) minField).getValue();
+            checkRange(minLength > maxLength);
+            final int maxByte = ((NumberTextField) maxByteField).getValue() + 1;
+            final int minByte = ((NumberTextField) minByteField).getValue();
+            checkRange(minByte > maxByte);
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    int n = (int) nextLong(random, minLength, maxLength);
+                    byte[] bytes = new byte[n];
+                    for (int i = 0; i < n; i++) {
+                        bytes[i] = (byte) nextLong(random, minByte, maxByte);
+                    }
+                    return bytes;
+                }
+            };
         }
-        if (col.getFormattedDataType().contains(T.BOOLEAN)) {
-            return new Random().nextInt(2) == 1;
+        if (type.contains(T.BOOLEAN)) {
+            return new ValueGenerator() {
+                @Override
+                public Object generate(long row, Random random) {
+                    return random.nextInt(2) == 1;
+                }
+            };
         }
         return null;
     }
 
+    private static BigInteger getBigint(Random random, BigInteger min, BigInteger max) {
+        BigInteger bigint = new BigInteger(62, random);
+        BigInteger zero = BigInteger.ZERO;
+        BigInteger diapason;
+        if (min.compareTo(zero) < 0 && max.compareTo(zero) > 0) {
+            if (random.nextInt(2) == 0) {
+                diapason = min.negate();
+                bigint = bigint.mod(diapason).negate();
+            } else {
+                diapason = max;
+                bigint = bigint.mod(diapason);
+            }
+        } else {
+            diapason = max.subtract(min);
+            if (diapason.signum() == 0)
+                return max;
+            bigint = min.add(bigint.mod(diapason));
+        }
+        return bigint;
+    }
+
+    /**
+     * Returns the random value from min inclusive to max exclusive
+     * or max if they are equal.
+     */
+    private static long nextLong(Random random, long min, long max) {
+        long diapason = max - min;
+        if (diapason == 0)
+            return max;
+        long value = random.nextLong() & Long.MAX_VALUE;
+        return min + (value % diapason);
+    }
+
+    private static long epochMilli(LocalTime time) {
+        return time.atDate(LocalDate.of(1970, 1, 1)).toInstant(ZoneOffset.of(ZoneId.systemDefault().getId())).toEpochMilli();
+    }
+
+    private void checkRange(boolean minGreaterThanMax) {
+        if (minGreaterThanMax)
+            throw new DataSourceException("minimum greater than maximum for column \"" + col.getName() + "\"");
+    }
+
 }
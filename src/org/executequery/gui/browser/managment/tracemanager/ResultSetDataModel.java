@@ -7,17 +7,71 @@ import org.underworldlabs.swing.DynamicComboBoxModel;
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.sql.Timestamp;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 
 class ResultSetDataModel extends AbstractTableModel {
 
+    /**
+     * runs the filter scans over the log file events one at a time
+     */
+    private static final ExecutorService FILTER_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "TraceEventFilter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private List<String> columnNames = new ArrayList<>();
     private List<String> visibleColumnNames = new ArrayList<>();
     private List<LogMessage> rows = new ArrayList<>();
-    private List<LogMessage> visibleRows = new ArrayList<>();
+    /**
+     * the opened log file - its events precede the added rows
+     */
+    private TraceLogFile logFile;
+    /**
+     * indexes of the visible rows among the log file events and the added rows
+     */
+    private int[] visibleRows = new int[0];
+    private int visibleRowCount;
+    private BitSet highlightedRows = new BitSet();
+    /**
+     * inverted indexes of the first rows - extended when a filter needs them
+     */
+    private TraceEventIndex index = new TraceEventIndex();
+    /**
+     * the latest filter scan not yet applied
+     */
+    private FilterScan filterScan;
+    /**
+     * the number of the submitted scans still running - the index is
+     * only read and extended by the scans while there are any
+     */
+    private int runningScans;
+    private TraceEventFilter conditions = TraceEventFilter.EMPTY;
+    private final TraceEventFilter.MessageSource messageSource = new TraceEventFilter.MessageSource() {
+        @Override
+        public LogMessage getMessage(int row) {
+            return ResultSetDataModel.this.getMessage(row);
+        }
+    };
+    // the applied filter state
+    private String filterColumn;
+    private String filterText = "";
+    private boolean filterHighlight;
+    private TraceEventFilter filterConditions = TraceEventFilter.EMPTY;
     private JComboBox filterTypeBox;
     private JComboBox filterColumnBox;
     private JComboBox rawSqlBox;
@@ -36,16 +90,43 @@ class ResultSetDataModel extends AbstractTableModel {
     }
 
     public void rebuildModel() {
+        buildVisibleColumns();
+        applyFilter();
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Rebuilds the visible columns keeping the filtered rows.
+     */
+    public void rebuildColumns() {
+        buildVisibleColumns();
+        if (!Objects.equals(filterColumnBox.getSelectedItem(), filterColumn))
+            applyFilter();
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Applies the filter widgets state to the rows.
+     */
+    public void refilter() {
+        applyFilter();
+        fireTableDataChanged();
+    }
 
+    /**
+     * Sets the compound conditions applied next to the text filter.
+     */
+    public void setConditions(TraceEventFilter conditions) {
+        this.conditions = conditions;
+        refilter();
+    }
+
+    private void buildVisibleColumns() {
         visibleColumnNames = new ArrayList<>();
         for (int i = 0; i < columnNames.size(); i++) {
             if (mapCheckBox.get(columnNames.get(i)).isSelected())
                 visibleColumnNames.add(columnNames.get(i));
         }
-        visibleRows = new ArrayList<>();
-        for (int i = 0; i < rows.size(); i++) {
-            checkFilterMessage(rows.get(i));
-        }
         DynamicComboBoxModel model = (DynamicComboBoxModel) filterColumnBox.getModel();
         Object selectedItem = filterColumnBox.getSelectedItem();
         model.setElements(visibleColumnNames);
@@ -56,27 +137,272 @@ class ResultSetDataModel extends AbstractTableModel {
         model.setElements(visibleColumnNames);
         if (visibleColumnNames.contains(selectedItem))
             rawSqlBox.setSelectedItem(selectedItem);
-        fireTableStructureChanged();
     }
 
-    private void checkFilterMessage(LogMessage message) {
-        String filter = filterTextField.getText();
-        if (filterColumnBox.getSelectedItem() != null) {
-            String field = String.valueOf(message.getFieldOfName((String) filterColumnBox.getSelectedItem()));
-            if (filterTypeBox.getSelectedItem() == Filter.FilterType.FILTER) {
-                if (field.contains(filter))
-                    visibleRows.add(message);
-                message.setHighlight(false);
+    /**
+     * Applies the filter widgets state to the rows. With a log file opened
+     * the rows are scanned on the filter thread - the rows of the applied
+     * filter stay visible until the scan is done.
+     */
+    private void applyFilter() {
+
+        String column = (String) filterColumnBox.getSelectedItem();
+        String text = filterTextField.getText();
+        boolean highlight = filterTypeBox.getSelectedItem() != Filter.FilterType.FILTER;
+
+        if (filterScan != null) {
+            filterScan.cancel();
+            filterScan = null;
+        }
+
+        if (column == null) {
+            filterColumn = null;
+            filterText = text;
+            filterHighlight = highlight;
+            filterConditions = conditions;
+            visibleRows = new int[16];
+            visibleRowCount = 0;
+            highlightedRows = new BitSet();
+            return;
+        }
+
+        // typing on narrows the rows matched by the applied filter
+        boolean narrowing = column.equals(filterColumn)
+                && highlight == filterHighlight && conditions == filterConditions
+                && text.contains(filterText) && (!highlight || !filterText.isEmpty());
+
+        final FilterScan scan = new FilterScan(column, text, highlight, conditions, index,
+                logFile, new ArrayList<>(rows), getMessageCount());
+        if (narrowing)
+            scan.narrow(Arrays.copyOf(visibleRows, visibleRowCount), (BitSet) highlightedRows.clone());
+
+        if (logFile == null && runningScans == 0) {
+            // the added rows are parsed already
+            scan.run();
+            applyScan(scan);
+            return;
+        }
+
+        filterScan = scan;
+        runningScans++;
+        FILTER_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scan.run();
+                } finally {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            scanFinished(scan);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void scanFinished(FilterScan scan) {
+
+        if (scan.index == index)
+            runningScans--;
+
+        if (scan == filterScan && !scan.isCancelled()) {
+            filterScan = null;
+            applyScan(scan);
+            fireTableDataChanged();
+        }
+    }
+
+    private void applyScan(FilterScan scan) {
+
+        filterColumn = scan.column;
+        filterText = scan.text;
+        filterHighlight = scan.highlight;
+        filterConditions = scan.conditions;
+        visibleRows = scan.visibleRows;
+        visibleRowCount = scan.visibleRowCount;
+        highlightedRows = scan.highlightedRows;
+
+        // the rows added while the scan ran
+        for (int row = scan.messageCount, n = getMessageCount(); row < n; row++) {
+            LogMessage message = getMessage(row);
+            if (index.size() == row)
+                index.add(message);
+            checkFilterMessage(row, message);
+        }
+    }
+
+    /**
+     * Checks the added row against the applied filter.
+     */
+    private void checkFilterMessage(int row, LogMessage message) {
+        if (filterColumn == null || filterScan != null)
+            return;
+        if (!filterConditions.isEmpty() && !filterConditions.matchesAll(row, index, messageSource))
+            return;
+        boolean matches = filterText.isEmpty()
+                || String.valueOf(message.getFieldOfName(filterColumn)).contains(filterText);
+        if (filterHighlight) {
+            if (matches && !filterText.isEmpty())
+                highlightedRows.set(visibleRowCount);
+            addVisibleRow(row);
+        } else if (matches)
+            addVisibleRow(row);
+    }
+
+    private void resetIndex() {
+        if (filterScan != null) {
+            filterScan.cancel();
+            filterScan = null;
+        }
+        // the running scans keep the index they started with
+        runningScans = 0;
+        index = new TraceEventIndex();
+    }
+
+    private static BitSet rowSet(int[] rows) {
+        BitSet bits = new BitSet();
+        for (int row : rows)
+            bits.set(row);
+        return bits;
+    }
+
+    private void addVisibleRow(int index) {
+        if (visibleRowCount == visibleRows.length)
+            visibleRows = Arrays.copyOf(visibleRows, Math.max(16, visibleRowCount * 2));
+        visibleRows[visibleRowCount++] = index;
+    }
+
+    /**
+     * One run of the filter over the rows. A scan on the filter thread
+     * reads only what it was given and the index, which the model does
+     * not touch while scans run.
+     */
+    private static class FilterScan implements TraceEventFilter.MessageSource {
+
+        private final String column;
+        private final String text;
+        private final boolean highlight;
+        private final TraceEventFilter conditions;
+        private final TraceEventIndex index;
+        private final TraceLogFile logFile;
+        private final List<LogMessage> addedRows;
+        private final int messageCount;
+        private int[] narrowRows;
+        private BitSet narrowHighlighted;
+        private int[] visibleRows = new int[16];
+        private int visibleRowCount;
+        private BitSet highlightedRows = new BitSet();
+        private volatile boolean cancelled;
+
+        FilterScan(String column, String text, boolean highlight, TraceEventFilter conditions,
+                   TraceEventIndex index, TraceLogFile logFile, List<LogMessage> addedRows, int messageCount) {
+            this.column = column;
+            this.text = text;
+            this.highlight = highlight;
+            this.conditions = conditions;
+            this.index = index;
+            this.logFile = logFile;
+            this.addedRows = addedRows;
+            this.messageCount = messageCount;
+        }
+
+        /**
+         * Narrows the rows matched by the applied filter instead of all the rows.
+         */
+        void narrow(int[] rows, BitSet highlighted) {
+            narrowRows = rows;
+            narrowHighlighted = highlighted;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public LogMessage getMessage(int row) {
+            int eventCount = logFile != null ? logFile.getEventCount() : 0;
+            return row < eventCount ? logFile.getMessage(row) : addedRows.get(row - eventCount);
+        }
+
+        void run() {
+
+            boolean indexedText = !text.isEmpty() && TraceEventIndex.isIndexed(column);
+            if (!conditions.isEmpty() || indexedText) {
+                for (int row = index.size(); row < messageCount; row++) {
+                    if (cancelled)
+                        return;
+                    index.add(getMessage(row));
+                }
+            }
+            BitSet textRows = indexedText ? rowSet(index.rows(column, text, true)) : null;
+
+            if (narrowRows != null && highlight) {
+                for (int i = narrowHighlighted.nextSetBit(0); i >= 0 && !cancelled; i = narrowHighlighted.nextSetBit(i + 1)) {
+                    if (textMatches(narrowRows[i], textRows))
+                        highlightedRows.set(i);
+                }
+                visibleRows = narrowRows;
+                visibleRowCount = narrowRows.length;
+                return;
+            }
+
+            int[] candidates;
+            int candidateCount;
+            if (narrowRows != null) {
+                candidates = narrowRows;
+                candidateCount = narrowRows.length;
             } else {
-                visibleRows.add(message);
-                message.setHighlight(field.contains(filter) && !filter.isEmpty());
+                candidates = conditions.candidateRows(index);
+                candidateCount = candidates != null ? candidates.length : messageCount;
             }
+
+            visibleRows = new int[Math.max(16, candidateCount)];
+            for (int i = 0; i < candidateCount && !cancelled; i++) {
+
+                int row = candidates != null ? candidates[i] : i;
+                if (narrowRows == null && !conditions.matches(row, index, this))
+                    continue;
+
+                boolean matches = text.isEmpty() || textMatches(row, textRows);
+                if (highlight) {
+                    if (matches && !text.isEmpty())
+                        highlightedRows.set(visibleRowCount);
+                    visibleRows[visibleRowCount++] = row;
+                } else if (matches)
+                    visibleRows[visibleRowCount++] = row;
+            }
+        }
+
+        private boolean textMatches(int row, BitSet textRows) {
+            if (textRows != null)
+                return textRows.get(row);
+            return String.valueOf(getMessage(row).getFieldOfName(column)).contains(text);
         }
+
+    }
+
+    private int getMessageCount() {
+        return (logFile != null ? logFile.getEventCount() : 0) + rows.size();
+    }
+
+    private LogMessage getMessage(int index) {
+        if (logFile != null) {
+            if (index < logFile.getEventCount())
+                return logFile.getMessage(index);
+            index -= logFile.getEventCount();
+        }
+        return rows.get(index);
     }
 
     @Override
     public int getRowCount() {
-        return visibleRows.size();
+        return visibleRowCount;
     }
 
     @Override
@@ -105,7 +431,15 @@ class ResultSetDataModel extends AbstractTableModel {
     }
 
     public Object getValueAt(final int rowIndex, final String columnName) {
-        return visibleRows.get(rowIndex).getFieldOfName(columnName);
+        return getVisibleMessage(rowIndex).getFieldOfName(columnName);
+    }
+
+    public LogMessage getVisibleMessage(int rowIndex) {
+        return getMessage(visibleRows[rowIndex]);
+    }
+
+    public boolean isHighlighted(int rowIndex) {
+        return highlightedRows.get(rowIndex);
     }
 
     private String visibleColumnNameFromIndex(int i) {
@@ -113,9 +447,38 @@ class ResultSetDataModel extends AbstractTableModel {
     }
 
     public void addRow(LogMessage message) {
-        rows.add(message);
-        checkFilterMessage(message);
-        fireTableDataChanged();
+        addRows(Collections.singletonList(message));
+    }
+
+    public void addRows(List<LogMessage> messages) {
+        int firstRow = visibleRowCount;
+        int row = getMessageCount();
+        rows.addAll(messages);
+        for (LogMessage message : messages) {
+            if (runningScans == 0 && index.size() == row)
+                index.add(message);
+            checkFilterMessage(row++, message);
+        }
+        if (visibleRowCount > firstRow)
+            fireTableRowsInserted(firstRow, visibleRowCount - 1);
+    }
+
+    /**
+     * Replaces the rows with the events of the log file.
+     */
+    public void setLogFile(TraceLogFile logFile) {
+        resetIndex();
+        closeLogFile();
+        rows = new ArrayList<>();
+        this.logFile = logFile;
+        refilter();
+    }
+
+    private void closeLogFile() {
+        if (logFile != null) {
+            logFile.close();
+            logFile = null;
+        }
     }
 
     public List<String> getColumnNames() {
@@ -138,8 +501,10 @@ class ResultSetDataModel extends AbstractTableModel {
     }
 
     public void clearAll() {
+        resetIndex();
+        closeLogFile();
         rows.clear();
-        rebuildModel();
+        refilter();
     }
 
     public void setColumnNames(List<String> columnNames) {
@@ -163,10 +528,16 @@ class ResultSetDataModel extends AbstractTableModel {
     }
 
     public List<LogMessage> getVisibleRows() {
-        return visibleRows;
-    }
+        return new AbstractList<LogMessage>() {
+            @Override
+            public LogMessage get(int index) {
+                return getVisibleMessage(index);
+            }
 
-    public void setVisibleRows(List<LogMessage> visibleRows) {
-        this.visibleRows = visibleRows;
+            @Override
+            public int size() {
+                return visibleRowCount;
+            }
+        };
     }
 }
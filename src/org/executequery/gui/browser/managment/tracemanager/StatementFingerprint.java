@@ -0,0 +1,187 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+/**
+ * Normalized statement text grouping the executions of the same statement.
+ * <p>
+ * String and numeric literals and the named parameters are replaced with
+ * <code>?</code>, lists of placeholders are collapsed to <code>?, ...</code>,
+ * comments are removed, the tokens are separated by single spaces in the same
+ * way whatever the original formatting and the text outside the quoted
+ * identifiers is upper cased.
+ */
+final class StatementFingerprint {
+
+    private static final String LIST_TAIL = "...";
+
+    private static final String OPERATORS = "=<>!+-*/|~^%";
+
+    private StatementFingerprint() {
+    }
+
+    static String of(String statementText) {
+
+        String text = statementText;
+        int length = text.length();
+        StringBuilder sb = new StringBuilder(Math.min(length, 1024));
+        boolean space = false;
+
+        int i = 0;
+        while (i < length) {
+
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+
+            } else if (c == '-' && i + 1 < length && text.charAt(i + 1) == '-') {
+                while (i < length && text.charAt(i) != '\n')
+                    i++;
+                space = true;
+
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                space = true;
+
+            } else if (c == '\'') {
+                i = skipQuoted(text, i, '\'');
+                space = appendSpace(sb, space, '?');
+                appendPlaceholder(sb);
+
+            } else if (c == '"') {
+                int end = skipQuoted(text, i, '"');
+                space = appendSpace(sb, space, c);
+                sb.append(text, i, end);
+                i = end;
+
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(text.charAt(i + 1))) {
+                i++;
+                while (i < length && Character.isJavaIdentifierPart(text.charAt(i)))
+                    i++;
+                space = appendSpace(sb, space, '?');
+                appendPlaceholder(sb);
+
+            } else if (c == '?') {
+                i++;
+                space = appendSpace(sb, space, c);
+                appendPlaceholder(sb);
+
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(text.charAt(i + 1)))
+                    || (c == '-' && i + 1 < length && Character.isDigit(text.charAt(i + 1)) && isUnary(sb))) {
+                i++;
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '.'))
+                    i++;
+                space = appendSpace(sb, space, '?');
+                appendPlaceholder(sb);
+
+            } else if (Character.isLetter(c) || c == '_' || c == '$') {
+                space = appendSpace(sb, space, c);
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_' || text.charAt(i) == '$'))
+                    sb.append(Character.toUpperCase(text.charAt(i++)));
+
+            } else {
+                space = appendSpace(sb, space, c);
+                sb.append(c);
+                if (c == ',')
+                    space = true;
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Separates the next token - operators are surrounded by spaces, there
+     * are no spaces around the parentheses and before the commas, other
+     * tokens keep a single space if they were separated.
+     */
+    private static boolean appendSpace(StringBuilder sb, boolean space, char next) {
+
+        if (sb.length() == 0)
+            return false;
+
+        char previous = sb.charAt(sb.length() - 1);
+        if (next == ',' || next == ')' || next == '(' || previous == '(')
+            return false;
+
+        boolean operator = isOperator(previous);
+        if (operator && isOperator(next))
+            return false;
+
+        if (space || operator || isOperator(next) || previous == ',')
+            sb.append(' ');
+        return false;
+    }
+
+    private static boolean isOperator(char c) {
+        return OPERATORS.indexOf(c) >= 0;
+    }
+
+    /**
+     * Checks whether a minus at the current position is the sign of a number.
+     */
+    private static boolean isUnary(StringBuilder sb) {
+
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == ' ')
+            end--;
+
+        if (end == 0)
+            return true;
+
+        char previous = sb.charAt(end - 1);
+        return previous == '(' || previous == ',' || isOperator(previous);
+    }
+
+    /**
+     * Appends a placeholder, the placeholders following a placeholder
+     * and a comma are collapsed.
+     */
+    private static void appendPlaceholder(StringBuilder sb) {
+
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == ' ')
+            end--;
+
+        if (end > 0 && sb.charAt(end - 1) == ',') {
+
+            int comma = end - 1;
+            int previous = comma;
+            while (previous > 0 && sb.charAt(previous - 1) == ' ')
+                previous--;
+
+            if (endsWith(sb, previous, LIST_TAIL)) {
+                sb.setLength(comma);
+                return;
+            }
+            if (endsWith(sb, previous, "?")) {
+                sb.setLength(comma);
+                sb.append(", ").append(LIST_TAIL);
+                return;
+            }
+        }
+        sb.append('?');
+    }
+
+    private static boolean endsWith(StringBuilder sb, int end, String suffix) {
+        int start = end - suffix.length();
+        return start >= 0 && sb.substring(start, end).equals(suffix);
+    }
+
+    private static int skipQuoted(String text, int start, char quote) {
+
+        int i = start + 1;
+        while (i < text.length()) {
+            if (text.charAt(i) == quote) {
+                // doubled quote inside the literal
+                if (i + 1 < text.length() && text.charAt(i + 1) == quote)
+                    i += 2;
+                else
+                    return i + 1;
+            } else
+                i++;
+        }
+        return i;
+    }
+
+}
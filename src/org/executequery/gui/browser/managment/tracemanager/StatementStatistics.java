@@ -0,0 +1,179 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of the finished statements grouped by the statement fingerprint.
+ * <p>
+ * The number of the tracked fingerprints is bounded, the executions of the
+ * statements beyond the limit are accumulated under a single entry.
+ */
+class StatementStatistics {
+
+    static final int MAX_STATEMENTS = 10000;
+
+    static final String OTHER_STATEMENTS = "<other statements>";
+
+    private static final int MAX_EXAMPLE_LENGTH = 10000;
+
+    private final Map<String, Statement> statements = new HashMap<>();
+
+    /**
+     * Adds the finished statement execution.
+     *
+     * @return false if the message is not a finished statement
+     */
+    boolean add(LogMessage message) {
+
+        if (message.getTypeEventTrace() != LogMessage.TypeEventTrace.STATEMENT_EVENT
+                || message.getStatementText() == null)
+            return false;
+
+        long time = TraceEventIndex.parseNumber(message.getTimeExecution());
+        if (time == TraceEventIndex.NO_VALUE)
+            return false;
+
+        String statementText = message.getStatementText();
+        statement(StatementFingerprint.of(statementText), statementText).add(message, time);
+        return true;
+    }
+
+    /**
+     * Adds the statistics collected separately.
+     */
+    void add(StatementStatistics other) {
+        for (Statement statement : other.statements.values())
+            statement(statement.fingerprint, statement.example).add(statement);
+    }
+
+    private Statement statement(String fingerprint, String statementText) {
+
+        Statement statement = statements.get(fingerprint);
+        if (statement == null) {
+
+            if (statements.size() >= MAX_STATEMENTS) {
+                fingerprint = OTHER_STATEMENTS;
+                statement = statements.get(fingerprint);
+            }
+            if (statement == null) {
+                statement = new Statement(fingerprint, statementText.length() > MAX_EXAMPLE_LENGTH ?
+                        statementText.substring(0, MAX_EXAMPLE_LENGTH) : statementText);
+                statements.put(fingerprint, statement);
+            }
+        }
+        return statement;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    void clear() {
+        statements.clear();
+    }
+
+    /**
+     * Returns the statements in the order of the total execution time.
+     */
+    List<Statement> getStatements() {
+
+        List<Statement> list = new ArrayList<>(statements.values());
+        Collections.sort(list, new Comparator<Statement>() {
+            @Override
+            public int compare(Statement o1, Statement o2) {
+                return Long.compare(o2.time.getTotal(), o1.time.getTotal());
+            }
+        });
+        return list;
+    }
+
+    static class Statement {
+
+        private final String fingerprint;
+
+        /**
+         * the text of the first execution
+         */
+        private final String example;
+
+        private final TraceHistogram time = new TraceHistogram();
+
+        private final TraceHistogram reads = new TraceHistogram();
+
+        private final TraceHistogram writes = new TraceHistogram();
+
+        private final TraceHistogram fetches = new TraceHistogram();
+
+        private long failed;
+
+        Statement(String fingerprint, String example) {
+            this.fingerprint = fingerprint;
+            this.example = example;
+        }
+
+        private void add(LogMessage message, long timeExecution) {
+
+            time.add(timeExecution);
+            addCounter(reads, message.getCountReads());
+            addCounter(writes, message.getCountWrites());
+            addCounter(fetches, message.getCountFetches());
+            if (message.isFailed())
+                failed++;
+        }
+
+        private void add(Statement other) {
+
+            time.add(other.time);
+            reads.add(other.reads);
+            writes.add(other.writes);
+            fetches.add(other.fetches);
+            failed += other.failed;
+        }
+
+        private static void addCounter(TraceHistogram histogram, String value) {
+            long number = TraceEventIndex.parseNumber(value);
+            histogram.add(number != TraceEventIndex.NO_VALUE ? number : 0);
+        }
+
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        String getExample() {
+            return example;
+        }
+
+        long getCount() {
+            return time.getCount();
+        }
+
+        long getFailed() {
+            return failed;
+        }
+
+        TraceHistogram getTime() {
+            return time;
+        }
+
+        TraceHistogram getReads() {
+            return reads;
+        }
+
+        TraceHistogram getWrites() {
+            return writes;
+        }
+
+        TraceHistogram getFetches() {
+            return fetches;
+        }
+
+    }
+
+}
@@ -0,0 +1,200 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
+import org.executequery.gui.text.SimpleSqlTextPanel;
+import org.executequery.log.Log;
+import org.underworldlabs.swing.util.SwingWorker;
+
+import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Statistics of the traced statements grouped by the normalized text and
+ * sorted by the total execution time.
+ * <p>
+ * The live events are aggregated as they arrive and the table is refreshed
+ * at most once per second. An opened log file is aggregated in the
+ * background, partitioned between the available processors.
+ */
+public class StatementStatisticsPanel extends JPanel {
+
+    private static final int REFRESH_DELAY = 1000;
+
+    /**
+     * The text searched in the event header before parsing a log file event
+     */
+    private static final String STATEMENT_FINISH_EVENT = "EXECUTE_STATEMENT_FINISH";
+
+    private StatementStatistics statistics;
+    private StatementStatisticsTableModel tableModel;
+    private JTable table;
+    private SimpleSqlTextPanel txtFieldStatement;
+    private Timer refreshTimer;
+    /**
+     * incremented to discard the log file aggregation in progress
+     */
+    private volatile int generation;
+
+    public StatementStatisticsPanel() {
+        super(new BorderLayout());
+        init();
+    }
+
+    private void init() {
+        statistics = new StatementStatistics();
+        tableModel = new StatementStatisticsTableModel();
+        table = new JTable(tableModel);
+        table.setRowSorter(new TableRowSorter<>(tableModel));
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        table.getColumnModel().getColumn(tableModel.getColumnCount() - 1).setPreferredWidth(600);
+        table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                int row = table.getSelectedRow();
+                if (row >= 0)
+                    txtFieldStatement.setSQLText(tableModel.getStatement(table.convertRowIndexToModel(row)).getExample());
+            }
+        });
+
+        refreshTimer = new Timer(REFRESH_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        });
+        refreshTimer.setRepeats(false);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
+        splitPane.setOneTouchExpandable(true);
+        splitPane.setBorder(null);
+        splitPane.setContinuousLayout(true);
+        splitPane.setResizeWeight(0.8);
+        splitPane.setTopComponent(new JScrollPane(table));
+        txtFieldStatement = new SimpleSqlTextPanel();
+        splitPane.setBottomComponent(txtFieldStatement);
+        add(splitPane, BorderLayout.CENTER);
+    }
+
+    /**
+     * Aggregates the parsed live events - called on the event dispatch thread.
+     */
+    public void addMessages(List<LogMessage> messages) {
+
+        boolean added = false;
+        for (LogMessage message : messages)
+            added |= statistics.add(message);
+
+        if (added && !refreshTimer.isRunning())
+            refreshTimer.start();
+    }
+
+    /**
+     * Aggregates the events of the opened log file in the background.
+     */
+    public void addLogFile(final TraceLogFile logFile) {
+
+        final int fileGeneration = generation;
+        SwingWorker worker = new SwingWorker() {
+            @Override
+            public Object construct() {
+                return aggregate(logFile, fileGeneration);
+            }
+
+            @Override
+            public void finished() {
+                Object result = get();
+                if (result instanceof StatementStatistics && fileGeneration == generation) {
+                    statistics.add((StatementStatistics) result);
+                    refresh();
+                }
+            }
+        };
+        worker.start();
+    }
+
+    public void clearAll() {
+        generation++;
+        statistics.clear();
+        refreshTimer.stop();
+        refresh();
+    }
+
+    private StatementStatistics aggregate(final TraceLogFile logFile, final int fileGeneration) {
+
+        final int eventCount = logFile.getEventCount();
+        final int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), eventCount / 1000));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<StatementStatistics>> partitions = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+
+                final int start = (int) ((long) eventCount * i / threads);
+                final int end = (int) ((long) eventCount * (i + 1) / threads);
+                partitions.add(executor.submit(new Callable<StatementStatistics>() {
+                    @Override
+                    public StatementStatistics call() {
+
+                        StatementStatistics partition = new StatementStatistics();
+                        for (int event = start; event < end && fileGeneration == generation; event++) {
+
+                            String text = logFile.getEventText(event);
+                            int headerEnd = text.indexOf('\n');
+                            if (text.lastIndexOf(STATEMENT_FINISH_EVENT, headerEnd < 0 ? text.length() : headerEnd) >= 0)
+                                partition.add(new LogMessage(text));
+                        }
+                        return partition;
+                    }
+                }));
+            }
+
+            StatementStatistics result = new StatementStatistics();
+            for (Future<StatementStatistics> partition : partitions)
+                result.add(partition.get());
+            return result;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+
+        } catch (ExecutionException e) {
+            Log.error("Error collecting statement statistics of " + logFile.getFile().getAbsolutePath(), e.getCause());
+            return null;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void refresh() {
+
+        String selected = null;
+        int row = table.getSelectedRow();
+        if (row >= 0)
+            selected = tableModel.getStatement(table.convertRowIndexToModel(row)).getFingerprint();
+
+        tableModel.setStatements(statistics.size() > 0 ?
+                statistics.getStatements() : Collections.<StatementStatistics.Statement>emptyList());
+
+        if (selected != null) {
+            row = tableModel.indexOf(selected);
+            if (row >= 0) {
+                row = table.convertRowIndexToView(row);
+                table.getSelectionModel().setSelectionInterval(row, row);
+            }
+        }
+    }
+
+}
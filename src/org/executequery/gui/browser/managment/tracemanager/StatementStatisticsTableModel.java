@@ -0,0 +1,99 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+
+class StatementStatisticsTableModel extends AbstractTableModel {
+
+    static final String STATEMENT_COLUMN = "STATEMENT";
+    static final String COUNT_COLUMN = "COUNT";
+    static final String FAILED_COLUMN = "FAILED";
+
+    private static final String[] METRICS = {"TIME", "READS", "WRITES", "FETCHES"};
+    private static final String[] AGGREGATES = {"TOTAL", "MEAN", "P95", "P99"};
+
+    private static final int FIRST_METRIC_COLUMN = 2;
+
+    private final String[] columnNames;
+    private List<StatementStatistics.Statement> statements = new ArrayList<>();
+
+    StatementStatisticsTableModel() {
+        columnNames = new String[FIRST_METRIC_COLUMN + METRICS.length * AGGREGATES.length + 1];
+        columnNames[0] = COUNT_COLUMN;
+        columnNames[1] = FAILED_COLUMN;
+        int col = FIRST_METRIC_COLUMN;
+        for (String metric : METRICS) {
+            for (String aggregate : AGGREGATES)
+                columnNames[col++] = aggregate + "_" + metric;
+        }
+        columnNames[col] = STATEMENT_COLUMN;
+    }
+
+    void setStatements(List<StatementStatistics.Statement> statements) {
+        this.statements = statements;
+        fireTableDataChanged();
+    }
+
+    StatementStatistics.Statement getStatement(int row) {
+        return statements.get(row);
+    }
+
+    int indexOf(String fingerprint) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i).getFingerprint().equals(fingerprint))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int getRowCount() {
+        return statements.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return columnIndex == columnNames.length - 1 ? String.class : Long.class;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+
+        StatementStatistics.Statement statement = statements.get(rowIndex);
+        if (columnIndex == 0)
+            return statement.getCount();
+        if (columnIndex == 1)
+            return statement.getFailed();
+        if (columnIndex == columnNames.length - 1)
+            return statement.getFingerprint();
+
+        int metric = (columnIndex - FIRST_METRIC_COLUMN) / AGGREGATES.length;
+        TraceHistogram histogram = metric == 0 ? statement.getTime()
+                : metric == 1 ? statement.getReads()
+                : metric == 2 ? statement.getWrites()
+                : statement.getFetches();
+
+        switch ((columnIndex - FIRST_METRIC_COLUMN) % AGGREGATES.length) {
+            case 0:
+                return histogram.getTotal();
+            case 1:
+                return Math.round(histogram.getMean());
+            case 2:
+                return histogram.getPercentile(0.95);
+            default:
+                return histogram.getPercentile(0.99);
+        }
+    }
+
+}
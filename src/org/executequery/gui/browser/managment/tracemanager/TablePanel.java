@@ -20,6 +20,7 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.sql.Timestamp;
 import java.util.EnumSet;
+import java.util.List;
 
 public class TablePanel extends JPanel {
 
@@ -31,6 +32,7 @@ public class TablePanel extends JPanel {
     private JComboBox<String> comboBoxRawSql;
     private JComboBox<String> comboBoxFilterColumn;
     private JTextField txtFldSqlFilter;
+    private JTextField txtFldConditions;
     private CheckBoxPanel columnsCheckPanel;
 
 
@@ -54,8 +56,7 @@ public class TablePanel extends JPanel {
             checkBox.addItemListener(new ItemListener() {
                 @Override
                 public void itemStateChanged(ItemEvent e) {
-                    dataModel.rebuildModel();
-                    dataModel.fireTableStructureChanged();
+                    dataModel.rebuildColumns();
                 }
             });
         }
@@ -98,7 +99,7 @@ public class TablePanel extends JPanel {
         comboBoxFilterType.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(final ActionEvent e) {
-                dataModel.rebuildModel();
+                dataModel.refilter();
             }
         });
 
@@ -176,7 +177,36 @@ public class TablePanel extends JPanel {
         txtFldSqlFilter.getDocument().addUndoableEditListener(new UndoableEditListener() {
             @Override
             public void undoableEditHappened(final UndoableEditEvent e) {
-                dataModel.rebuildModel();
+                dataModel.refilter();
+            }
+        });
+
+        lblText = new JLabel(TraceManagerPanel.bundleString("Conditions"));
+        gbc_lblText = new GridBagConstraints();
+        gbc_lblText.anchor = GridBagConstraints.NORTHWEST;
+        gbc_lblText.insets = new Insets(0, 0, 5, 5);
+        gbc_lblText.gridx = 1;
+        gbc_lblText.gridy = 1;
+        gbc_lblText.gridwidth = 1;
+        gbc_lblText.gridheight = 1;
+        filterPanel.add(lblText, gbc_lblText);
+
+        txtFldConditions = new JTextField();
+        txtFldConditions.setToolTipText(TraceManagerPanel.bundleString("ConditionsHint"));
+        GridBagConstraints gbc_txtFldConditions = new GridBagConstraints();
+        gbc_txtFldConditions.anchor = GridBagConstraints.NORTHWEST;
+        gbc_txtFldConditions.fill = GridBagConstraints.HORIZONTAL;
+        gbc_txtFldConditions.insets = new Insets(0, 0, 5, 5);
+        gbc_txtFldConditions.gridx = 2;
+        gbc_txtFldConditions.gridy = 1;
+        gbc_txtFldConditions.gridwidth = 5;
+        gbc_txtFldConditions.weightx = 1;
+        filterPanel.add(txtFldConditions, gbc_txtFldConditions);
+
+        txtFldConditions.getDocument().addUndoableEditListener(new UndoableEditListener() {
+            @Override
+            public void undoableEditHappened(final UndoableEditEvent e) {
+                applyConditions();
             }
         });
 
@@ -247,11 +277,35 @@ public class TablePanel extends JPanel {
 
     }
 
+    private void applyConditions() {
+
+        try {
+            dataModel.setConditions(TraceEventFilter.parse(txtFldConditions.getText()));
+            txtFldConditions.setForeground(UIManager.getColor("TextField.foreground"));
+            txtFldConditions.setToolTipText(TraceManagerPanel.bundleString("ConditionsHint"));
+
+        } catch (IllegalArgumentException e) {
+            // keeps the rows filtered by the last valid conditions
+            txtFldConditions.setForeground(Color.RED);
+            txtFldConditions.setToolTipText(e.getMessage());
+        }
+    }
+
     public void addRow(LogMessage message) {
 
         dataModel.addRow(message);
     }
 
+    public void addRows(List<LogMessage> messages) {
+
+        dataModel.addRows(messages);
+    }
+
+    public void setLogFile(TraceLogFile logFile) {
+
+        dataModel.setLogFile(logFile);
+    }
+
     public void clearAll() {
         dataModel.clearAll();
     }
@@ -0,0 +1,275 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compound filter of the trace events.
+ * <p>
+ * The conditions are written as <code>COLUMN op value</code> joined with
+ * <code>and</code>, for example
+ * <code>EVENT_TYPE = EXECUTE_STATEMENT_FINISH and COUNT_READS >= 1000</code>.
+ * The operators are <code>= != ~</code> (contains) for any column and
+ * <code>&gt; &gt;= &lt; &lt;=</code> for the execution time and the counters.
+ * Values may be quoted with <code>'</code> or <code>"</code> to contain
+ * <code>and</code> or an operator, a quote is doubled inside the value.
+ * Conditions on the indexed columns select the candidate rows from the
+ * index, numeric conditions are checked against the indexed numbers.
+ */
+class TraceEventFilter {
+
+    static final TraceEventFilter EMPTY = new TraceEventFilter(Collections.<Condition>emptyList());
+
+    private static final String[] OPERATORS = {">=", "<=", "!=", "=", "~", ">", "<"};
+
+    private final List<Condition> conditions;
+
+    private TraceEventFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * Parses the conditions text.
+     *
+     * @throws IllegalArgumentException for an invalid condition
+     */
+    static TraceEventFilter parse(String text) {
+
+        if (text == null || text.trim().isEmpty())
+            return EMPTY;
+
+        List<Condition> conditions = new ArrayList<>();
+        for (String term : splitTerms(text.trim()))
+            conditions.add(parseCondition(term.trim()));
+
+        return new TraceEventFilter(conditions);
+    }
+
+    /**
+     * Splits the text on the <code>and</code> keywords outside the quoted values.
+     */
+    private static List<String> splitTerms(String text) {
+
+        List<String> terms = new ArrayList<>();
+        int termStart = 0;
+        char quote = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0; // a doubled quote closes and opens again
+                continue;
+            }
+
+            if ((c == '\'' || c == '"') && followsOperator(text, i)) {
+                quote = c;
+
+            } else if (Character.isWhitespace(c) && i + 4 < n
+                    && text.regionMatches(true, i + 1, "and", 0, 3)
+                    && Character.isWhitespace(text.charAt(i + 4))) {
+
+                terms.add(text.substring(termStart, i));
+                termStart = i + 4;
+                i += 3;
+            }
+        }
+
+        if (quote != 0)
+            throw new IllegalArgumentException("Unterminated quoted value " + text.substring(termStart).trim());
+
+        terms.add(text.substring(termStart));
+        return terms;
+    }
+
+    /**
+     * Checks whether the character starts a value - quotes inside an
+     * unquoted value are taken as is.
+     */
+    private static boolean followsOperator(String text, int index) {
+
+        int i = index - 1;
+        while (i >= 0 && Character.isWhitespace(text.charAt(i)))
+            i--;
+        return i >= 0 && "=~<>".indexOf(text.charAt(i)) >= 0;
+    }
+
+    private static Condition parseCondition(String term) {
+
+        // the operator follows the column name - take the earliest one,
+        // the longest where several start at the same position
+        for (int index = 1, n = term.length(); index < n; index++) {
+
+            String operator = operatorAt(term, index);
+            if (operator == null)
+                continue;
+
+            String column = term.substring(0, index).trim().toUpperCase(Locale.ENGLISH);
+            String value = unquote(term.substring(index + operator.length()).trim());
+            if (!Arrays.asList(LogConstants.COLUMNS).contains(column))
+                throw new IllegalArgumentException("Unknown column " + column);
+
+            boolean numeric = TraceEventIndex.isNumeric(column);
+            if (operator.startsWith(">") || operator.startsWith("<")) {
+                if (!numeric)
+                    throw new IllegalArgumentException("Column " + column + " is not numeric");
+            }
+
+            long number = TraceEventIndex.NO_VALUE;
+            if (numeric && !operator.equals("~")) {
+                number = TraceEventIndex.parseNumber(value);
+                if (number == TraceEventIndex.NO_VALUE)
+                    throw new IllegalArgumentException("Number expected for " + column);
+            }
+
+            return new Condition(column, operator, value, number);
+        }
+
+        throw new IllegalArgumentException("Invalid condition " + term);
+    }
+
+    private static String operatorAt(String term, int index) {
+
+        for (String operator : OPERATORS) {
+            if (term.startsWith(operator, index))
+                return operator;
+        }
+        return null;
+    }
+
+    private static String unquote(String value) {
+
+        if (value.length() < 2)
+            return value;
+
+        char quote = value.charAt(0);
+        if ((quote != '\'' && quote != '"') || value.charAt(value.length() - 1) != quote)
+            return value;
+
+        String doubled = String.valueOf(quote) + quote;
+        return value.substring(1, value.length() - 1).replace(doubled, String.valueOf(quote));
+    }
+
+    boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    /**
+     * Returns the sorted candidate rows selected by the conditions on the
+     * indexed columns or null when there are no such conditions.
+     */
+    int[] candidateRows(TraceEventIndex index) {
+
+        int[] rows = null;
+        for (Condition condition : conditions) {
+
+            if (!condition.isIndexed())
+                continue;
+
+            int[] conditionRows = index.rows(condition.column, condition.value, condition.operator.equals("~"));
+            rows = rows == null ? conditionRows : TraceEventIndex.intersection(rows, conditionRows);
+        }
+        return rows;
+    }
+
+    /**
+     * Checks the conditions not covered by the candidate rows.
+     *
+     * @param row     the row of the message covered by the index
+     * @param message the message supplier - parsed only when needed
+     */
+    boolean matches(int row, TraceEventIndex index, MessageSource message) {
+
+        for (Condition condition : conditions) {
+
+            if (condition.isIndexed())
+                continue;
+
+            if (!condition.matches(row, index, message))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks all the conditions for a row just added to the index.
+     */
+    boolean matchesAll(int row, TraceEventIndex index, MessageSource message) {
+
+        for (Condition condition : conditions) {
+            if (!condition.matches(row, index, message))
+                return false;
+        }
+        return true;
+    }
+
+    interface MessageSource {
+
+        LogMessage getMessage(int row);
+
+    }
+
+    private static class Condition {
+
+        private final String column;
+
+        private final String operator;
+
+        private final String value;
+
+        private final long number;
+
+        Condition(String column, String operator, String value, long number) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+            this.number = number;
+        }
+
+        boolean isIndexed() {
+            return TraceEventIndex.isIndexed(column) && (operator.equals("=") || operator.equals("~"));
+        }
+
+        boolean matches(int row, TraceEventIndex index, MessageSource messages) {
+
+            if (number != TraceEventIndex.NO_VALUE) {
+
+                long rowNumber = index.numericValue(column, row);
+                if (rowNumber == TraceEventIndex.NO_VALUE)
+                    return operator.equals("!=");
+
+                switch (operator) {
+                    case "=":
+                        return rowNumber == number;
+                    case "!=":
+                        return rowNumber != number;
+                    case ">":
+                        return rowNumber > number;
+                    case ">=":
+                        return rowNumber >= number;
+                    case "<":
+                        return rowNumber < number;
+                    default:
+                        return rowNumber <= number;
+                }
+            }
+
+            String field = String.valueOf(messages.getMessage(row).getFieldOfName(column));
+            switch (operator) {
+                case "=":
+                    return field.equals(value);
+                case "!=":
+                    return !field.equals(value);
+                default:
+                    return field.contains(value);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted indexes over the trace events for the filter.
+ * <p>
+ * The values of the low cardinality columns map to the sorted rows having
+ * the value, the counters and the execution time are kept as numbers.
+ * Rows are added in order and the index covers the first {@link #size()}
+ * rows of the model.
+ */
+class TraceEventIndex {
+
+    static final String[] INDEXED_COLUMNS = {
+            LogConstants.EVENT_TYPE_COLUMN,
+            LogConstants.USERNAME_COLUMN,
+            LogConstants.DATABASE_COLUMN,
+            LogConstants.CLIENT_PROCESS_COLUMN,
+            LogConstants.ID_STATEMENT_COLUMN
+    };
+
+    static final String[] NUMERIC_COLUMNS = {
+            LogConstants.TIME_EXECUTION_COLUMN,
+            LogConstants.COUNT_READS_COLUMN,
+            LogConstants.COUNT_WRITES_COLUMN,
+            LogConstants.COUNT_FETCHES_COLUMN
+    };
+
+    /**
+     * The numeric value of the rows without the value
+     */
+    static final long NO_VALUE = Long.MIN_VALUE;
+
+    private final Map<String, Map<String, RowList>> postings;
+
+    private long[][] numericValues;
+
+    private int size;
+
+    TraceEventIndex() {
+        postings = new HashMap<>();
+        for (String column : INDEXED_COLUMNS)
+            postings.put(column, new HashMap<String, RowList>());
+        numericValues = new long[NUMERIC_COLUMNS.length][256];
+    }
+
+    static boolean isIndexed(String column) {
+        return indexOf(INDEXED_COLUMNS, column) >= 0;
+    }
+
+    static boolean isNumeric(String column) {
+        return indexOf(NUMERIC_COLUMNS, column) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(LogMessage message) {
+
+        int row = size++;
+        for (String column : INDEXED_COLUMNS) {
+
+            String value = String.valueOf(message.getFieldOfName(column));
+            Map<String, RowList> values = postings.get(column);
+            RowList rows = values.get(value);
+            if (rows == null) {
+                rows = new RowList();
+                values.put(value, rows);
+            }
+            rows.add(row);
+        }
+
+        if (row == numericValues[0].length) {
+            for (int i = 0; i < numericValues.length; i++)
+                numericValues[i] = Arrays.copyOf(numericValues[i], row * 2);
+        }
+        for (int i = 0; i < NUMERIC_COLUMNS.length; i++)
+            numericValues[i][row] = parseNumber(message.getFieldOfName(NUMERIC_COLUMNS[i]));
+    }
+
+    void clear() {
+        for (Map<String, RowList> values : postings.values())
+            values.clear();
+        numericValues = new long[NUMERIC_COLUMNS.length][256];
+        size = 0;
+    }
+
+    /**
+     * Returns the sorted rows with the indexed column value equal
+     * (or containing the text) to the specified one.
+     */
+    int[] rows(String column, String value, boolean contains) {
+
+        Map<String, RowList> values = postings.get(column);
+        if (!contains) {
+            RowList rows = values.get(value);
+            return rows != null ? rows.toArray() : new int[0];
+        }
+
+        BitSet matching = new BitSet(size);
+        for (Map.Entry<String, RowList> entry : values.entrySet()) {
+            if (entry.getKey().contains(value))
+                entry.getValue().addTo(matching);
+        }
+        return matching.stream().toArray();
+    }
+
+    long numericValue(String column, int row) {
+        return numericValues[indexOf(NUMERIC_COLUMNS, column)][row];
+    }
+
+    /**
+     * Returns the leading number of the field value - the time is
+     * written as 'N ms' and the counters as plain numbers.
+     */
+    static long parseNumber(Object value) {
+
+        if (value == null)
+            return NO_VALUE;
+
+        String text = value.toString();
+        int i = 0;
+        while (i < text.length() && text.charAt(i) == ' ')
+            i++;
+
+        long number = 0;
+        int start = i;
+        for (; i < text.length() && Character.isDigit(text.charAt(i)); i++)
+            number = number * 10 + (text.charAt(i) - '0');
+
+        return i > start ? number : NO_VALUE;
+    }
+
+    static int[] intersection(int[] first, int[] second) {
+
+        int[] result = new int[Math.min(first.length, second.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j])
+                i++;
+            else if (first[i] > second[j])
+                j++;
+            else {
+                result[k++] = first[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    private static int indexOf(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column))
+                return i;
+        }
+        return -1;
+    }
+
+    private static class RowList {
+
+        private int[] rows = new int[4];
+
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length)
+                rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++)
+                bits.set(rows[i]);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+
+    }
+
+}
@@ -0,0 +1,199 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+/**
+ * Splits the trace output into events without regular expressions.
+ * <p>
+ * Characters are fed in chunks as they arrive. Each line is trimmed and
+ * checked for an event boundary - a log event header starting with the
+ * event timestamp, a session info block or a trace session state line.
+ * Lines before the first boundary are skipped.
+ */
+public class TraceEventScanner {
+
+    private static final String SESSION_STATE_PREFIX = "trace session id";
+
+    private static final String SESSION_INFO_PREFIX = "Session ID:";
+
+    private final Listener listener;
+
+    private final StringBuilder line;
+
+    private final StringBuilder event;
+
+    private boolean sessionInfo;
+
+    private boolean inEvent;
+
+    public TraceEventScanner(Listener listener) {
+        this.listener = listener;
+        line = new StringBuilder(256);
+        event = new StringBuilder(4096);
+    }
+
+    public void scan(char[] chars, int offset, int length) {
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+
+            char c = chars[i];
+            if (c == '\n') {
+                lineScanned();
+                line.setLength(0);
+
+            } else if (c != '\r')
+                line.append(c);
+        }
+    }
+
+    /**
+     * Completes the pending line and event - called once the output is
+     * finished or stays idle.
+     */
+    public void flush() {
+
+        if (line.length() > 0) {
+            lineScanned();
+            line.setLength(0);
+        }
+        emitEvent();
+    }
+
+    public boolean hasPendingEvent() {
+        return inEvent || line.length() > 0;
+    }
+
+    private void lineScanned() {
+
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ')
+            start++;
+        while (end > start && line.charAt(end - 1) <= ' ')
+            end--;
+
+        if (regionMatches(start, end, SESSION_STATE_PREFIX, true)) {
+            emitEvent();
+            sessionStateScanned(start + SESSION_STATE_PREFIX.length(), end);
+
+        } else if (isTimestamp(start, end) || isTimestamp(start + 1, end)) {
+            emitEvent();
+            startEvent(false);
+
+        } else if (regionMatches(start, end, SESSION_INFO_PREFIX, false)) {
+            emitEvent();
+            startEvent(true);
+        }
+
+        if (inEvent)
+            event.append(line, start, end).append('\n');
+    }
+
+    private void startEvent(boolean sessionInfo) {
+        this.sessionInfo = sessionInfo;
+        inEvent = true;
+    }
+
+    private void emitEvent() {
+
+        if (!inEvent)
+            return;
+
+        String text = event.toString();
+        event.setLength(0);
+        inEvent = false;
+
+        if (sessionInfo)
+            listener.sessionInfoScanned(text);
+        else
+            listener.logEventScanned(text);
+    }
+
+    private void sessionStateScanned(int start, int end) {
+
+        int id = 0;
+        boolean digits = false;
+        int i = start;
+        while (i < end && line.charAt(i) == ' ')
+            i++;
+        for (; i < end && Character.isDigit(line.charAt(i)); i++) {
+            id = id * 10 + (line.charAt(i) - '0');
+            digits = true;
+        }
+
+        if (!digits)
+            return;
+
+        if (regionContains(i, end, "started"))
+            listener.sessionStateScanned(id, true);
+        else if (regionContains(i, end, "stopped"))
+            listener.sessionStateScanned(id, false);
+    }
+
+    /**
+     * Checks for the yyyy-MM-ddTHH:mm:ss.SSS event timestamp at the position.
+     */
+    private boolean isTimestamp(int start, int end) {
+
+        if (end - start < 23)
+            return false;
+
+        for (int i = 0; i < 23; i++) {
+
+            char c = line.charAt(start + i);
+            switch (i) {
+                case 4:
+                case 7:
+                    if (c != '-')
+                        return false;
+                    break;
+                case 10:
+                    if (c != 'T')
+                        return false;
+                    break;
+                case 13:
+                case 16:
+                    if (c != ':')
+                        return false;
+                    break;
+                case 19:
+                    if (c != '.')
+                        return false;
+                    break;
+                default:
+                    if (c < '0' || c > '9')
+                        return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean regionMatches(int start, int end, String prefix, boolean ignoreCase) {
+        if (end - start < prefix.length())
+            return false;
+
+        for (int i = 0; i < prefix.length(); i++) {
+
+            char c = line.charAt(start + i);
+            char p = prefix.charAt(i);
+            if (c != p && (!ignoreCase || Character.toLowerCase(c) != Character.toLowerCase(p)))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean regionContains(int start, int end, String text) {
+        int index = line.indexOf(text, start);
+        return index >= 0 && index + text.length() <= end;
+    }
+
+    public interface Listener {
+
+        void logEventScanned(String text);
+
+        void sessionInfoScanned(String text);
+
+        void sessionStateScanned(int sessionId, boolean started);
+
+    }
+
+}
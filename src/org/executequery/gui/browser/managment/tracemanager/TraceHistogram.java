@@ -0,0 +1,114 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import java.util.Arrays;
+
+/**
+ * Streaming histogram of non-negative values with bounded memory.
+ * <p>
+ * Values below 16 are counted exactly, larger values fall into 8 buckets per
+ * power of two so the percentiles are estimated within 6.25% while the
+ * histogram never holds more than a few hundred counters.
+ */
+class TraceHistogram {
+
+    private static final int EXACT_VALUES = 16;
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private long[] counts = new long[EXACT_VALUES];
+
+    private long count;
+
+    private long total;
+
+    private long max;
+
+    void add(long value) {
+
+        if (value < 0)
+            value = 0;
+
+        int bucket = bucket(value);
+        if (bucket >= counts.length)
+            counts = Arrays.copyOf(counts, bucket + SUB_BUCKETS);
+        counts[bucket]++;
+
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values counted by the other histogram.
+     */
+    void add(TraceHistogram other) {
+
+        if (other.counts.length > counts.length)
+            counts = Arrays.copyOf(counts, other.counts.length);
+        for (int i = 0; i < other.counts.length; i++)
+            counts[i] += other.counts[i];
+
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return count > 0 ? (double) total / count : 0;
+    }
+
+    /**
+     * Returns the estimated value below which the specified fraction
+     * of the values falls.
+     */
+    long getPercentile(double fraction) {
+
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(max, middle(i));
+        }
+        return max;
+    }
+
+    private static int bucket(long value) {
+
+        if (value < EXACT_VALUES)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT_VALUES + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long middle(int bucket) {
+
+        if (bucket < EXACT_VALUES)
+            return bucket;
+
+        int exponent = (bucket - EXACT_VALUES) / SUB_BUCKETS + 4;
+        long subBucket = (bucket - EXACT_VALUES) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + subBucket * width + (width - 1) / 2;
+    }
+
+}
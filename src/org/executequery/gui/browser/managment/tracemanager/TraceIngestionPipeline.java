@@ -0,0 +1,332 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
+import org.executequery.gui.browser.managment.tracemanager.net.SessionInfo;
+import org.executequery.log.Log;
+
+import javax.swing.Timer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming ingestion of the trace session output.
+ * <p>
+ * The trace manager writes to a {@link TraceOutputStream}. A scanner thread
+ * decodes the output, splits it into events with the {@link TraceEventScanner}
+ * and submits each event to a pool of parser threads. The parse results are
+ * queued in the output order and handed to the listener in batches on the
+ * event dispatch thread. The bounded buffers throttle the trace output when
+ * parsing or the table fall behind.
+ */
+public class TraceIngestionPipeline {
+
+    private static final int BUFFER_CAPACITY = 4 * 1024 * 1024;
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    private static final int MAX_PENDING_EVENTS = 16384;
+
+    private static final int MAX_DELIVERED_EVENTS = 10000;
+
+    /**
+     * The time without output after which the pending event is completed
+     */
+    private static final int IDLE_TIMEOUT = 1000;
+
+    private static final int DELIVERY_DELAY = 250;
+
+    private final Listener listener;
+
+    private final BlockingQueue<Future<?>> pendingEvents;
+
+    private final Timer deliveryTimer;
+
+    private ExecutorService parserPool;
+
+    private TraceOutputStream outputStream;
+
+    private Thread scannerThread;
+
+    public TraceIngestionPipeline(Listener listener) {
+        this.listener = listener;
+        pendingEvents = new ArrayBlockingQueue<>(MAX_PENDING_EVENTS);
+        deliveryTimer = new Timer(DELIVERY_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                deliver();
+            }
+        });
+    }
+
+    /**
+     * Starts the ingestion of a new trace output.
+     *
+     * @param charset the charset of the trace output
+     * @param copy    the stream receiving a copy of the output - may be null
+     * @return the stream for the trace manager to write the output to
+     */
+    public OutputStream start(final Charset charset, OutputStream copy) {
+
+        stop();
+        if (parserPool == null)
+            parserPool = createParserPool();
+
+        final TraceOutputStream stream = new TraceOutputStream(BUFFER_CAPACITY, copy);
+        outputStream = stream;
+        scannerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                scan(stream, charset);
+            }
+        }, "TraceEventScanner");
+        scannerThread.setDaemon(true);
+        scannerThread.start();
+        deliveryTimer.start();
+
+        return stream;
+    }
+
+    /**
+     * Closes the current trace output - the output already written is
+     * still scanned, parsed and delivered.
+     */
+    public void stop() {
+
+        if (outputStream != null) {
+            outputStream.close();
+            outputStream = null;
+        }
+    }
+
+    /**
+     * Stops the ingestion discarding any output not delivered yet.
+     */
+    public void shutdown() {
+
+        stop();
+        deliveryTimer.stop();
+        if (scannerThread != null) {
+            scannerThread.interrupt();
+            scannerThread = null;
+        }
+        if (parserPool != null) {
+            parserPool.shutdownNow();
+            parserPool = null;
+        }
+        pendingEvents.clear();
+    }
+
+    private void scan(TraceOutputStream stream, Charset charset) {
+
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(READ_SIZE);
+        CharBuffer chars = CharBuffer.allocate(READ_SIZE);
+        TraceEventScanner scanner = new TraceEventScanner(new ScannedEventQueue(parserPool));
+
+        try {
+            while (true) {
+
+                int count = stream.read(bytes.array(), bytes.position(), bytes.remaining(), IDLE_TIMEOUT);
+                if (count < 0)
+                    break;
+
+                if (count == 0) {
+                    if (scanner.hasPendingEvent())
+                        scanner.flush();
+                    continue;
+                }
+
+                bytes.position(bytes.position() + count);
+                bytes.flip();
+                decode(decoder, bytes, chars, scanner, false);
+                bytes.compact();
+            }
+
+            bytes.flip();
+            decode(decoder, bytes, chars, scanner, true);
+            decoder.flush(chars);
+            chars.flip();
+            scanner.scan(chars.array(), 0, chars.limit());
+            scanner.flush();
+
+        } catch (InterruptedException | RejectedExecutionException e) {
+            Log.debug("Trace event scanning stopped");
+
+        } catch (RuntimeException e) {
+            Log.error("Error scanning trace output", e);
+        }
+    }
+
+    private void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars,
+                        TraceEventScanner scanner, boolean endOfInput) {
+
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            chars.flip();
+            scanner.scan(chars.array(), 0, chars.limit());
+            chars.clear();
+
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Hands the parsed events to the listener in the output order -
+     * called on the event dispatch thread.
+     */
+    private void deliver() {
+
+        List<LogMessage> messages = new ArrayList<>();
+        for (int i = 0; i < MAX_DELIVERED_EVENTS; i++) {
+
+            Future<?> future = pendingEvents.peek();
+            if (future == null || !future.isDone())
+                break;
+
+            pendingEvents.poll();
+            Object event = parsedEvent(future);
+            if (event instanceof LogMessage) {
+                messages.add((LogMessage) event);
+                continue;
+            }
+
+            if (!messages.isEmpty()) {
+                listener.logMessagesParsed(messages);
+                messages = new ArrayList<>();
+            }
+
+            if (event instanceof SessionInfo)
+                listener.sessionInfoParsed((SessionInfo) event);
+            else if (event instanceof SessionState)
+                listener.sessionStateChanged(((SessionState) event).sessionId, ((SessionState) event).started);
+        }
+
+        if (!messages.isEmpty())
+            listener.logMessagesParsed(messages);
+    }
+
+    private Object parsedEvent(Future<?> future) {
+
+        try {
+            return future.get();
+
+        } catch (ExecutionException e) {
+            Log.error("Error parsing trace event", e.getCause());
+
+        } catch (Exception e) {
+            Log.debug("Trace event parsing cancelled", e);
+        }
+        return null;
+    }
+
+    private ExecutorService createParserPool() {
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TraceEventParser-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Submits the scanned events for parsing and queues the results.
+     */
+    private class ScannedEventQueue implements TraceEventScanner.Listener {
+
+        private final ExecutorService parserPool;
+
+        ScannedEventQueue(ExecutorService parserPool) {
+            this.parserPool = parserPool;
+        }
+
+        @Override
+        public void logEventScanned(final String text) {
+            enqueue(parserPool.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return new LogMessage(text);
+                }
+            }));
+        }
+
+        @Override
+        public void sessionInfoScanned(final String text) {
+            enqueue(parserPool.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return new SessionInfo(text);
+                }
+            }));
+        }
+
+        @Override
+        public void sessionStateScanned(int sessionId, boolean started) {
+            enqueue(CompletableFuture.completedFuture(new SessionState(sessionId, started)));
+        }
+
+        private void enqueue(Future<?> future) {
+
+            try {
+                pendingEvents.put(future);
+
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    private static class SessionState {
+
+        private final int sessionId;
+
+        private final boolean started;
+
+        SessionState(int sessionId, boolean started) {
+            this.sessionId = sessionId;
+            this.started = started;
+        }
+
+    }
+
+    public interface Listener {
+
+        void logMessagesParsed(List<LogMessage> messages);
+
+        void sessionInfoParsed(SessionInfo sessionInfo);
+
+        void sessionStateChanged(int sessionId, boolean started);
+
+    }
+
+}
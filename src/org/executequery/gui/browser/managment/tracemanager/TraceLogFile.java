@@ -0,0 +1,293 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
+import org.executequery.log.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Trace log file opened for viewing.
+ * <p>
+ * The file is memory mapped in segments and indexed in one pass over the
+ * bytes - the index holds the offset of each event start (a line starting
+ * with the event timestamp). Events are decoded and parsed on request only
+ * and the parsed messages are kept in a bounded cache.
+ */
+public class TraceLogFile {
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final int MAX_CACHED_MESSAGES = 20000;
+
+    /**
+     * The number of bytes checked at a line start for the event timestamp
+     */
+    private static final int TIMESTAMP_LOOKAHEAD = 64;
+
+    private final File file;
+
+    private final Charset charset;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    private final long length;
+
+    /**
+     * The mapped segments - replaced by an empty array on close while
+     * background readers may still be reading
+     */
+    private volatile MappedByteBuffer[] segments;
+
+    private long[] eventOffsets;
+
+    private int eventCount;
+
+    private final Map<Integer, LogMessage> messages;
+
+    public TraceLogFile(File file, Charset charset) throws IOException {
+
+        this.file = file;
+        this.charset = charset;
+        randomAccessFile = new RandomAccessFile(file, "r");
+        channel = randomAccessFile.getChannel();
+        length = channel.size();
+        eventOffsets = new long[1024];
+        messages = new LinkedHashMap<Integer, LogMessage>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, LogMessage> eldest) {
+                return size() > MAX_CACHED_MESSAGES;
+            }
+        };
+
+        try {
+            map();
+            buildIndex();
+
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the parsed event, the message id is the event number.
+     */
+    public synchronized LogMessage getMessage(int index) {
+
+        LogMessage message = messages.get(index);
+        if (message == null) {
+            message = new LogMessage(getEventText(index));
+            message.setId(index + 1);
+            messages.put(index, message);
+        }
+        return message;
+    }
+
+    /**
+     * Returns the event text with the lines trimmed, or an empty text
+     * once the file is closed.
+     */
+    public String getEventText(int index) {
+
+        long start = eventOffsets[index];
+        long end = index + 1 < eventCount ? eventOffsets[index + 1] : length;
+        return trimLines(charset.decode(bytes(start, (int) (end - start))));
+    }
+
+    public void close() {
+
+        synchronized (this) {
+            messages.clear();
+        }
+        segments = new MappedByteBuffer[0];
+        try {
+            channel.close();
+            randomAccessFile.close();
+
+        } catch (IOException e) {
+            Log.debug("Error closing trace log file " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private void map() throws IOException {
+
+        int count = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long position = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+        }
+    }
+
+    private void buildIndex() {
+
+        boolean lineStart = true;
+        for (int i = 0; i < segments.length; i++) {
+
+            MappedByteBuffer segment = segments[i];
+            long segmentStart = i * SEGMENT_SIZE;
+            int limit = segment.limit();
+            for (int position = 0; position < limit; position++) {
+
+                if (lineStart && isEventStart(segment, position, segmentStart))
+                    addEvent(segmentStart + position);
+
+                lineStart = segment.get(position) == '\n';
+            }
+        }
+
+        eventOffsets = Arrays.copyOf(eventOffsets, eventCount);
+    }
+
+    /**
+     * Checks the line for the yyyy-MM-ddTHH:mm:ss.SSS event timestamp
+     * after the leading white space and at most one other character.
+     */
+    private boolean isEventStart(MappedByteBuffer segment, int position, long segmentStart) {
+
+        ByteBuffer line;
+        int offset;
+        if (position + TIMESTAMP_LOOKAHEAD <= segment.limit()) {
+            line = segment;
+            offset = position;
+
+        } else {
+            // the line start is close to the segment end
+            long start = segmentStart + position;
+            line = bytes(start, (int) Math.min(TIMESTAMP_LOOKAHEAD, length - start));
+            offset = 0;
+        }
+
+        int end = offset + Math.min(TIMESTAMP_LOOKAHEAD, line.limit() - offset);
+        if (end - offset >= 3 && line.get(offset) == (byte) 0xEF
+                && line.get(offset + 1) == (byte) 0xBB && line.get(offset + 2) == (byte) 0xBF)
+            offset += 3; // UTF-8 byte order mark
+        while (offset < end && (line.get(offset) == ' ' || line.get(offset) == '\t'))
+            offset++;
+
+        if (offset == end || line.get(offset) == '\n' || line.get(offset) == '\r')
+            return false;
+
+        return isTimestamp(line, offset, end) || isTimestamp(line, offset + 1, end);
+    }
+
+    private static boolean isTimestamp(ByteBuffer line, int offset, int end) {
+
+        if (end - offset < 23)
+            return false;
+
+        for (int i = 0; i < 23; i++) {
+
+            byte b = line.get(offset + i);
+            switch (i) {
+                case 4:
+                case 7:
+                    if (b != '-')
+                        return false;
+                    break;
+                case 10:
+                    if (b != 'T')
+                        return false;
+                    break;
+                case 13:
+                case 16:
+                    if (b != ':')
+                        return false;
+                    break;
+                case 19:
+                    if (b != '.')
+                        return false;
+                    break;
+                default:
+                    if (b < '0' || b > '9')
+                        return false;
+            }
+        }
+        return true;
+    }
+
+    private void addEvent(long offset) {
+
+        if (eventCount == eventOffsets.length)
+            eventOffsets = Arrays.copyOf(eventOffsets, eventCount * 2);
+        eventOffsets[eventCount++] = offset;
+    }
+
+    /**
+     * Returns the bytes of the file region - sliced from the mapped segment
+     * or read when the region crosses the segment boundary. Nothing is
+     * returned once the file is closed.
+     */
+    private ByteBuffer bytes(long start, int count) {
+
+        MappedByteBuffer[] mapped = segments;
+        int segment = (int) (start / SEGMENT_SIZE);
+        if (segment >= mapped.length)
+            return ByteBuffer.allocate(0);
+
+        int position = (int) (start - segment * SEGMENT_SIZE);
+        if (position + count <= mapped[segment].limit()) {
+            ByteBuffer buffer = mapped[segment].duplicate();
+            buffer.position(position);
+            buffer.limit(position + count);
+            return buffer.slice();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(count);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0)
+                    break;
+            }
+
+        } catch (IOException e) {
+            if (channel.isOpen())
+                Log.error("Error reading trace log file " + file.getAbsolutePath(), e);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String trimLines(CharSequence text) {
+
+        StringBuilder sb = new StringBuilder(text.length());
+        int lineStart = 0;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+
+            if (i == n || text.charAt(i) == '\n') {
+
+                int start = lineStart;
+                int end = i;
+                while (start < end && text.charAt(start) <= ' ')
+                    start++;
+                while (end > start && text.charAt(end - 1) <= ' ')
+                    end--;
+
+                if (i < n || start < end)
+                    sb.append(text, start, end).append('\n');
+                lineStart = i + 1;
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,145 @@
+package org.executequery.gui.browser.managment.tracemanager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Trace service output stream backed by a fixed size ring buffer.
+ * <p>
+ * The trace manager writes the session output here while the event
+ * scanner thread reads it back in bulk. Writers block while the buffer
+ * is full so a slow consumer throttles the service reading instead of
+ * growing the heap. The output may also be copied to a log file.
+ */
+public class TraceOutputStream extends OutputStream {
+
+    private final byte[] buffer;
+
+    private final OutputStream copy;
+
+    private final ReentrantLock lock;
+
+    private final Condition notEmpty;
+
+    private final Condition notFull;
+
+    private int readPosition;
+
+    private int size;
+
+    private boolean closed;
+
+    /**
+     * @param capacity the ring buffer capacity in bytes
+     * @param copy     the stream receiving a copy of the output - may be null
+     */
+    public TraceOutputStream(int capacity, OutputStream copy) {
+        this.copy = copy;
+        buffer = new byte[capacity];
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+        notFull = lock.newCondition();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+
+        if (copy != null)
+            copy.write(bytes, offset, length);
+
+        lock.lock();
+        try {
+            while (length > 0) {
+
+                while (size == buffer.length && !closed)
+                    notFull.await();
+
+                // the output written after the ingestion stopped is dropped
+                if (closed)
+                    return;
+
+                int writePosition = (readPosition + size) % buffer.length;
+                int count = Math.min(length, Math.min(buffer.length - size, buffer.length - writePosition));
+                System.arraycopy(bytes, offset, buffer, writePosition, count);
+                size += count;
+                offset += count;
+                length -= count;
+                notEmpty.signal();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing trace output", e);
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (copy != null)
+            copy.flush();
+    }
+
+    /**
+     * Reads the available bytes waiting for the output up to the specified time.
+     *
+     * @return the number of bytes read, 0 if no output arrived within the
+     * timeout or -1 once the stream is closed and fully read
+     */
+    public int read(byte[] bytes, int offset, int length, long timeoutMillis) throws InterruptedException {
+
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (size == 0) {
+
+                if (closed)
+                    return -1;
+
+                if (nanos <= 0)
+                    return 0;
+
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            int count = Math.min(length, Math.min(size, buffer.length - readPosition));
+            System.arraycopy(buffer, readPosition, bytes, offset, count);
+            readPosition = (readPosition + count) % buffer.length;
+            size -= count;
+            notFull.signalAll();
+            return count;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the stream for writing - the buffered output remains readable
+     * while any further output is only copied.
+     */
+    @Override
+    public void close() {
+
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
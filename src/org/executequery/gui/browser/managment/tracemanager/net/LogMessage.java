@@ -73,7 +73,6 @@ public class LogMessage {
     private String oldestSnapshot;
     private String nextTransaction;
     private boolean failed;
-    private boolean highlight;
     public LogMessage(String body) {
         init(body);
     }
@@ -839,14 +838,6 @@ public class LogMessage {
         this.failed = failed;
     }
 
-    public boolean isHighlight() {
-        return highlight;
-    }
-
-    public void setHighlight(boolean highlight) {
-        this.highlight = highlight;
-    }
-
     public String getProcedureName() {
         return procedureName;
     }
@@ -177,14 +177,33 @@ public class DatabaseObjectNode extends DefaultMutableTreeNode {
      */
     public void populateChildren() throws DataSourceException {
         if (!childrenRetrieved) {
-            List<DatabaseObjectNode> children = getChildObjects();
-            if (children != null) {
-                for (int i = 0, n = children.size(); i < n; i++) {
-                    add(children.get(i));
-                }
+            populateChildren(getChildObjects());
+        }
+    }
+
+    /**
+     * Adds the specified children, as loaded with getChildObjects(),
+     * as expanded nodes.
+     *
+     * @param children the loaded children or null
+     */
+    public void populateChildren(List<DatabaseObjectNode> children) {
+        if (children != null) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                add(children.get(i));
             }
-            childrenRetrieved = true;
         }
+        childrenRetrieved = true;
+    }
+
+    /**
+     * Indicates whether the children of this node were added -
+     * also true for the node without children.
+     *
+     * @return true | false
+     */
+    public boolean isChildrenRetrieved() {
+        return childrenRetrieved;
     }
 
     /**
@@ -288,6 +288,19 @@ public class QueryEditorResultsPanel extends SimpleCloseTabbedPane
         setVisible(true);
     }
 
+    @Override
+    public void removeTabAt(int index) {
+
+        Component component = getComponentAt(index);
+        super.removeTabAt(index);
+
+        if (component instanceof ResultSetPanel) {
+
+            // releases the rows of the closed tab including any spilled to disk
+            ((ResultSetPanel) component).destroyTable();
+        }
+    }
+
     public boolean hasOutputPane() {
 
         return getResultSetTabCount() == (getTabCount() - 1);
@@ -129,6 +129,9 @@ public class ResultSetPanel extends JPanel {
     }
 
     public void destroyTable() {
+        if (model != null) {
+            model.close();
+        }
         table = null;
         if (popupMenu != null) {
             popupMenu.removeAll();
@@ -147,15 +150,9 @@ public class ResultSetPanel extends JPanel {
         List<List<RecordDataItem>> filteredRows = new ArrayList<List<RecordDataItem>>();
         for (int i = 0, n = model.getRowCount(); i < n; i++) {
 
-            List<RecordDataItem> row = model.getRowDataForRow(i);
-            for (RecordDataItem recordDataItem : row) {
-
-                if (recordDataItem.valueContains(pattern)) {
-
-                    filteredRows.add(row);
-                    break;
-                }
+            if (model.rowContains(i, pattern)) {
 
+                filteredRows.add(model.getRowDataForRow(i));
             }
 
         }
@@ -0,0 +1,172 @@
+/*
+ * AutoCompleteIndex.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.editor.autocomplete;
+
+import java.util.*;
+
+/**
+ * Prefix index over autocomplete list items. Items are held in an array
+ * sorted by their upper case insertion value so the items for a prefix
+ * are found with a binary search instead of a scan of every item.
+ * <p>
+ * Items may be added from the loading thread while the popup reads the
+ * index - added items are merged in on the next lookup.
+ */
+class AutoCompleteIndex {
+
+    private static final AutoCompleteListItem[] NO_ITEMS = new AutoCompleteListItem[0];
+
+    private static final String[] NO_KEYS = new String[0];
+
+    private AutoCompleteListItem[] items = NO_ITEMS;
+
+    private String[] keys = NO_KEYS;
+
+    private final List<AutoCompleteListItem> added = new ArrayList<AutoCompleteListItem>();
+
+    public synchronized void addAll(Collection<AutoCompleteListItem> values) {
+
+        added.addAll(values);
+    }
+
+    public synchronized void clear() {
+
+        items = NO_ITEMS;
+        keys = NO_KEYS;
+        added.clear();
+    }
+
+    public synchronized boolean isEmpty() {
+
+        return items.length == 0 && added.isEmpty();
+    }
+
+    public synchronized int size() {
+
+        return items.length + added.size();
+    }
+
+    /**
+     * Returns the items whose insertion value starts with the specified
+     * prefix, ignoring case, in index order.
+     *
+     * @param prefix         the prefix to match
+     * @param prefixHadAlias whether the prefix followed a table name or
+     *                       alias - keywords and tables are then excluded
+     * @return the matching items
+     */
+    public synchronized List<AutoCompleteListItem> startingWith(String prefix, boolean prefixHadAlias) {
+
+        mergeAdded();
+
+        String key = prefix.toUpperCase();
+        List<AutoCompleteListItem> matches = new ArrayList<AutoCompleteListItem>();
+
+        for (int i = lowerBound(key); i < keys.length && keys[i].startsWith(key); i++) {
+
+            AutoCompleteListItem item = items[i];
+            if (prefixHadAlias && (item.isKeyword() || item.isTable())) {
+
+                continue;
+            }
+            matches.add(item);
+        }
+
+        return matches;
+    }
+
+    private int lowerBound(String key) {
+
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+
+                low = middle + 1;
+
+            } else {
+
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private void mergeAdded() {
+
+        if (added.isEmpty()) {
+
+            return;
+        }
+
+        int count = added.size();
+        String[] addedKeys = new String[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+
+            addedKeys[i] = keyFor(added.get(i));
+            order[i] = i;
+        }
+
+        final String[] sortKeys = addedKeys;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return sortKeys[o1].compareTo(sortKeys[o2]);
+            }
+        });
+
+        // merge the sorted additions into the existing arrays
+        AutoCompleteListItem[] mergedItems = new AutoCompleteListItem[items.length + count];
+        String[] mergedKeys = new String[mergedItems.length];
+
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < mergedItems.length; k++) {
+
+            if (j >= count || (i < keys.length && keys[i].compareTo(addedKeys[order[j]]) <= 0)) {
+
+                mergedItems[k] = items[i];
+                mergedKeys[k] = keys[i];
+                i++;
+
+            } else {
+
+                mergedItems[k] = added.get(order[j]);
+                mergedKeys[k] = addedKeys[order[j]];
+                j++;
+            }
+        }
+
+        items = mergedItems;
+        keys = mergedKeys;
+        added.clear();
+    }
+
+    private String keyFor(AutoCompleteListItem item) {
+
+        return item.getInsertionValue().toUpperCase();
+    }
+
+}
+
@@ -24,6 +24,8 @@ import biz.redsoft.IFBDatabaseConnection;
 import org.apache.commons.lang.StringUtils;
 import org.executequery.databasemediators.DatabaseConnection;
 import org.executequery.databasemediators.DatabaseDriver;
+import org.executequery.databasemediators.SchemaSnapshot;
+import org.executequery.databasemediators.SchemaSnapshots;
 import org.executequery.databaseobjects.DatabaseHost;
 import org.executequery.databaseobjects.DatabaseSource;
 import org.executequery.databaseobjects.NamedObject;
@@ -38,11 +40,8 @@ import org.executequery.gui.text.SQLTextArea;
 import org.executequery.log.Log;
 import org.executequery.repository.KeywordRepository;
 import org.executequery.repository.RepositoryCache;
-import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.DynamicLibraryLoader;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.*;
 import java.util.*;
 
@@ -60,19 +59,45 @@ public class AutoCompleteSelectionsFactory {
 
     private static final String DATABASE_SYSTEM_FUNCTION_DESCRIPTION = "System Function";
 
+    /**
+     * the most per-table column lists kept for dotted completions
+     */
+    private static final int MAX_CACHED_TABLES = 64;
+
     private final AutoCompletePopupProvider provider;
 
     private List<AutoCompleteListItem> tables;
 
+    private final Map<String, List<AutoCompleteListItem>> tableColumns =
+            new LinkedHashMap<String, List<AutoCompleteListItem>>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<AutoCompleteListItem>> eldest) {
+                    return size() > MAX_CACHED_TABLES;
+                }
+            };
+
     public AutoCompleteSelectionsFactory(AutoCompletePopupProvider provider) {
         super();
         this.provider = provider;
     }
 
+    /**
+     * Drops the cached column lists of all tables.
+     */
+    public void clearCache() {
+
+        synchronized (tableColumns) {
+
+            tableColumns.clear();
+        }
+    }
+
     public void build(DatabaseHost databaseHost, boolean autoCompleteKeywords, boolean autoCompleteSchema,
                       QueryEditor queryEditor) {
 
         tables = new ArrayList<AutoCompleteListItem>();
+        clearCache();
 
         List<AutoCompleteListItem> listSelections = new ArrayList<AutoCompleteListItem>();
         if (autoCompleteKeywords) {
@@ -105,22 +130,11 @@ public class AutoCompleteSelectionsFactory {
                         e.printStackTrace();
                     }
 
-                    URL[] urls = new URL[0];
-                    Class clazzdb = null;
                     Object odb = null;
                     try {
-                        urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                        ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-                        clazzdb = cl.loadClass("biz.redsoft.FBDatabaseConnectionImpl");
-                        odb = clazzdb.newInstance();
+                        odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBDatabaseConnectionImpl");
                     } catch (ClassNotFoundException e) {
                         e.printStackTrace();
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    } catch (InstantiationException e) {
-                        e.printStackTrace();
-                    } catch (MalformedURLException e) {
-                        e.printStackTrace();
                     }
 
                     IFBDatabaseConnection db = (IFBDatabaseConnection) odb;
@@ -141,6 +155,8 @@ public class AutoCompleteSelectionsFactory {
 
             if (autoCompleteSchema) {
 
+                // load the column snapshot here, off the popup path
+                SchemaSnapshots.get(databaseHost.getDatabaseConnection());
                 databaseTablesForHost(databaseHost);
 //                databaseColumnsForTables(databaseHost, tables);
                 databaseFunctionsAndProceduresForHost(databaseHost);
@@ -154,6 +170,7 @@ public class AutoCompleteSelectionsFactory {
                       SQLTextArea queryEditor) {
 
         tables = new ArrayList<AutoCompleteListItem>();
+        clearCache();
 
         List<AutoCompleteListItem> listSelections = new ArrayList<AutoCompleteListItem>();
         if (autoCompleteKeywords) {
@@ -186,22 +203,11 @@ public class AutoCompleteSelectionsFactory {
                         e.printStackTrace();
                     }
 
-                    URL[] urls = new URL[0];
-                    Class clazzdb = null;
                     Object odb = null;
                     try {
-                        urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                        ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-                        clazzdb = cl.loadClass("biz.redsoft.FBDatabaseConnectionImpl");
-                        odb = clazzdb.newInstance();
+                        odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBDatabaseConnectionImpl");
                     } catch (ClassNotFoundException e) {
                         e.printStackTrace();
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    } catch (InstantiationException e) {
-                        e.printStackTrace();
-                    } catch (MalformedURLException e) {
-                        e.printStackTrace();
                     }
 
                     IFBDatabaseConnection db = (IFBDatabaseConnection) odb;
@@ -222,6 +228,8 @@ public class AutoCompleteSelectionsFactory {
 
             if (autoCompleteSchema) {
 
+                // load the column snapshot here, off the popup path
+                SchemaSnapshots.get(databaseHost.getDatabaseConnection());
                 databaseTablesForHost(databaseHost);
 //                databaseColumnsForTables(databaseHost, tables);
                 databaseFunctionsAndProceduresForHost(databaseHost);
@@ -452,6 +460,7 @@ public class AutoCompleteSelectionsFactory {
         String catalog = databaseHost.getCatalogNameForQueries(defaultCatalogForHost(databaseHost));
         String schema = databaseHost.getSchemaNameForQueries(defaultSchemaForHost(databaseHost));
         DatabaseMetaData dmd = databaseHost.getDatabaseMetaData();
+        SchemaSnapshot snapshot = SchemaSnapshots.get(databaseHost.getDatabaseConnection());
 
         for (int i = 0, n = tables.size(); i < n; i++) {
 
@@ -471,6 +480,13 @@ public class AutoCompleteSelectionsFactory {
 
             trace("Retrieving column names for table [ " + table.getValue() + " ]");
 
+            if (addSnapshotColumns(snapshot, table.getValue(), list)) {
+
+                provider.addListItems(list);
+                list.clear();
+                continue;
+            }
+
             try {
 
                 rs = dmd.getColumns(catalog, schema, table.getValue(), null);
@@ -604,7 +620,36 @@ public class AutoCompleteSelectionsFactory {
         return (KeywordRepository) RepositoryCache.load(KeywordRepository.REPOSITORY_ID);
     }
 
+    /**
+     * Returns the column items of the specified table, read once and
+     * then served from a small LRU cache. Names that are not tables -
+     * aliases tried as table names - are cached as empty lists.
+     *
+     * @param databaseHost the database host
+     * @param tableString  the table name
+     * @return a new list of the column items of the table
+     */
     public List<AutoCompleteListItem> buildItemsForTable(DatabaseHost databaseHost, String tableString) {
+
+        String key = tableString.toUpperCase();
+        synchronized (tableColumns) {
+
+            List<AutoCompleteListItem> cached = tableColumns.get(key);
+            if (cached != null) {
+
+                return new ArrayList<AutoCompleteListItem>(cached);
+            }
+        }
+
+        List<AutoCompleteListItem> list = loadItemsForTable(databaseHost, tableString);
+        synchronized (tableColumns) {
+
+            tableColumns.put(key, Collections.unmodifiableList(new ArrayList<AutoCompleteListItem>(list)));
+        }
+        return list;
+    }
+
+    private List<AutoCompleteListItem> loadItemsForTable(DatabaseHost databaseHost, String tableString) {
         ResultSet rs = null;
         List<ColumnInformation> columns = new ArrayList<ColumnInformation>();
         List<AutoCompleteListItem> list = new ArrayList<AutoCompleteListItem>();
@@ -613,6 +658,11 @@ public class AutoCompleteSelectionsFactory {
         String schema = databaseHost.getSchemaNameForQueries(defaultSchemaForHost(databaseHost));
         DatabaseMetaData dmd = databaseHost.getDatabaseMetaData();
 
+        if (addSnapshotColumns(SchemaSnapshots.getLoaded(databaseHost.getDatabaseConnection()), tableString, list)) {
+
+            return list;
+        }
+
         try {
 
             rs = dmd.getColumns(catalog, schema, tableString, null);
@@ -653,6 +703,36 @@ public class AutoCompleteSelectionsFactory {
 
     }
 
+    private boolean addSnapshotColumns(SchemaSnapshot snapshot, String tableName, List<AutoCompleteListItem> list) {
+
+        SchemaSnapshot.Relation relation = snapshot != null ? snapshot.getRelation(tableName) : null;
+        if (relation == null) {
+
+            return false;
+        }
+
+        for (SchemaSnapshot.Field field : relation.getFields()) {
+
+            ColumnInformation column = columnInformationFactory.build(
+                    tableName,
+                    field.getName(),
+                    field.getTypeName(),
+                    field.getSqlType(),
+                    field.getSize(),
+                    field.getScale(),
+                    field.isRequired());
+
+            list.add(new AutoCompleteListItem(
+                    column.getName(),
+                    tableName,
+                    column.getDescription(),
+                    DATABASE_COLUMN_DESCRIPTION,
+                    AutoCompleteListItemType.DATABASE_TABLE_COLUMN));
+        }
+
+        return true;
+    }
+
     static class AutoCompleteListItemComparator implements Comparator<AutoCompleteListItem> {
 
         public int compare(AutoCompleteListItem o1, AutoCompleteListItem o2) {
@@ -9,10 +9,13 @@ import org.executequery.databaseobjects.impl.DatabaseObjectFactoryImpl;
 import org.executequery.gui.editor.ConnectionChangeListener;
 import org.executequery.gui.editor.QueryWithPosition;
 import org.executequery.gui.text.SQLTextArea;
+import org.executequery.gui.text.StatementParseIndex;
 import org.executequery.log.Log;
-import org.executequery.repository.spi.KeywordRepositoryImpl;
+import org.executequery.repository.KeywordRepository;
+import org.executequery.repository.RepositoryCache;
 import org.executequery.sql.DerivedQuery;
 import org.executequery.sql.QueryTable;
+import org.executequery.sql.StatementSymbols;
 import org.executequery.util.UserProperties;
 import org.underworldlabs.swing.util.SwingWorker;
 import org.underworldlabs.util.MiscUtils;
@@ -25,6 +28,7 @@ import javax.swing.event.PopupMenuListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Caret;
 import javax.swing.text.Document;
+import javax.swing.text.Element;
 import javax.swing.text.JTextComponent;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -34,7 +38,9 @@ import java.awt.event.KeyEvent;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -76,7 +82,15 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
 
     private DatabaseHost databaseHost;
 
-    private List<AutoCompleteListItem> autoCompleteListItems;
+    private final AutoCompleteIndex autoCompleteListItems;
+
+    /**
+     * keywords and system functions offered for short prefixes,
+     * built once per connection
+     */
+    private final AutoCompleteIndex keywordItems;
+
+    private Set<String> sql92Keywords;
 
     private boolean autoCompleteKeywords;
 
@@ -99,7 +113,8 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
         queryEditorTextComponent().addFocusListener(this);
 
         autoCompletePopupAction = new AutoCompletePopupAction(this);
-        autoCompleteListItems = new ArrayList<AutoCompleteListItem>();
+        autoCompleteListItems = new AutoCompleteIndex();
+        keywordItems = new AutoCompleteIndex();
     }
 
     public void setAutoCompleteOptionFlags() {
@@ -267,7 +282,7 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
     private String getWordEndingAt(int position) {
         addingQuote = false;
 
-        String text = sqlTextPane.getText();
+        String text = lineTextEndingAt(position);
 
         if (MiscUtils.isNull(text)) {
 
@@ -277,7 +292,7 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
         char[] chars = text.toCharArray();
 
         int start = -1;
-        int end = position;
+        int end = chars.length;
 
         for (int i = end - 1; i >= 0; i--) {
 
@@ -308,6 +323,51 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
         return text.substring(start, end).trim();
     }
 
+    /**
+     * Returns the text of the line up to the specified position - words
+     * never span lines so the rest of the document is not copied.
+     */
+    private String lineTextEndingAt(int position) {
+
+        Document document = sqlTextPane.getDocument();
+        Element root = document.getDefaultRootElement();
+        int lineStart = root.getElement(root.getElementIndex(position)).getStartOffset();
+
+        try {
+
+            return document.getText(lineStart, position - lineStart);
+
+        } catch (BadLocationException e) {
+
+            return Constants.EMPTY;
+        }
+    }
+
+    /**
+     * Returns the current text of the specified statement - read from
+     * the document where it was edited since the last parse.
+     */
+    private String statementText(StatementParseIndex.ParsedStatement statement) {
+
+        if (!statement.isChanged()) {
+
+            return statement.getText();
+        }
+
+        Document document = sqlTextPane.getDocument();
+        int start = Math.min(statement.getStart(), document.getLength());
+        int end = Math.min(statement.getEnd(), document.getLength());
+
+        try {
+
+            return document.getText(start, end - start).trim();
+
+        } catch (BadLocationException e) {
+
+            return getQueryAt(sqlTextPane.getCaretPosition()).getQuery();
+        }
+    }
+
     private QueryWithPosition getQueryAt(int position) {
 
         String text = sqlTextPane.getText();
@@ -456,9 +516,9 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
         return (tables != null && !tables.isEmpty());
     }*/
 
-    private List<AutoCompleteListItem> itemsStartingWith(List<QueryTable> tables, String prefix) {
+    private List<AutoCompleteListItem> itemsStartingWith(
+            List<QueryTable> tables, String prefix, String query, StatementSymbols symbols) {
 
-        String editorText = sqlTextPane.getText();
         if (StringUtils.isBlank(prefix)) {
             return new ArrayList<>();
         }
@@ -466,7 +526,6 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
 
         trace("Building list of items starting with [ " + prefix + " ] from table list with size " + tables.size());
 
-        List<AutoCompleteListItem> searchList = autoCompleteListItems;
         String wordPrefix = prefix.trim().toUpperCase();
         String tableString = "";
 
@@ -479,14 +538,13 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
             wordPrefix = wordPrefix.substring(dotIndex + 1);
 
         } else if (wordPrefix.length() < MINIMUM_CHARS_FOR_DATABASE_LOOKUP /*&& !hasTables*/) {
-            return buildItemsStartingWithForList(
-                    selectionsFactory.buildKeywords(databaseHost, autoCompleteKeywords), tables, wordPrefix, false);
+            return sortedItemsStartingWith(keywordItems(), wordPrefix, false);
         }
 
         // try to get columns for table
         if (hasDotIndex) {
             List<AutoCompleteListItem> itemsForTable =
-                    selectionsFactory.buildItemsForTable(databaseHost, tableString.toUpperCase());
+                    selectionsFactory.buildItemsForTable(databaseHost, tableString);
 
             if (!itemsForTable.isEmpty()) {
                 itemsForTable =
@@ -500,27 +558,8 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
 
         // maybe alias?
         if (hasDotIndex) {
-            KeywordRepositoryImpl kw = new KeywordRepositoryImpl();
-            List<String> sql92 = kw.getSQL92();
-            Pattern pattern = Pattern.compile("([A-z]*\\$\\w+)\\s("
-                            + tableString
-                            + "\\b)|(\\w+)\\s("
-                            + tableString
-                            + "\\b)",
-                    Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(editorText);
-            while (matcher.find()) {
-                String tableFromAlias = "";
-                String tableFromAlias1 = matcher.group(1);
-                String tableFromAlias3 = matcher.group(3);
-
-                if (tableFromAlias1 != null)
-                    tableFromAlias = tableFromAlias1;
-                else if (tableFromAlias3 != null)
-                    tableFromAlias = tableFromAlias3;
-
-                if (sql92.contains(tableFromAlias.toUpperCase()))
-                    continue;
+            String tableFromAlias = tableForAlias(symbols, tables, tableString, query);
+            if (tableFromAlias != null) {
 
                 List<AutoCompleteListItem> itemsForTable =
                         selectionsFactory.buildItemsForTable(databaseHost, tableFromAlias.toUpperCase());
@@ -534,17 +573,11 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
         }
 
         List<AutoCompleteListItem> itemsStartingWith =
-                buildItemsStartingWithForList(searchList, tables, wordPrefix, hasDotIndex);
+                sortedItemsStartingWith(autoCompleteListItems, wordPrefix, hasDotIndex);
 
         if (itemsStartingWith.isEmpty()) {
 
-            // do it one more time without the tables...
-            itemsStartingWith = buildItemsStartingWithForList(searchList, null, wordPrefix, hasDotIndex);
-
-            if (itemsStartingWith.isEmpty()) { // now bail...
-                noProposalsAvailable(itemsStartingWith);
-            }
-
+            noProposalsAvailable(itemsStartingWith);
             return itemsStartingWith;
         }
 
@@ -556,6 +589,99 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
         return itemsStartingWith;
     }
 
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][\\w$]*");
+
+    /**
+     * Resolves the specified alias to its table using the symbols of the
+     * current statement, the tables derived for it, then the names of the
+     * current statement alone - as in <code>FROM table alias</code> or
+     * <code>FROM table AS alias</code>.
+     */
+    private String tableForAlias(StatementSymbols symbols, List<QueryTable> tables, String alias, String query) {
+
+        QueryTable table = symbols.getTableForNameOrAlias(alias);
+        if (table != null) {
+
+            return table.getCompareName();
+        }
+
+        if (tables != null && !tables.isEmpty()) {
+
+            return tables.get(0).getCompareName();
+        }
+
+        if (StringUtils.isBlank(query)) {
+
+            return null;
+        }
+
+        List<String> names = new ArrayList<String>();
+        Matcher matcher = NAME_PATTERN.matcher(query);
+        while (matcher.find()) {
+
+            names.add(matcher.group());
+        }
+
+        Set<String> keywords = sql92Keywords();
+        for (int i = 1, n = names.size(); i < n; i++) {
+
+            if (!names.get(i).equalsIgnoreCase(alias)) {
+
+                continue;
+            }
+
+            int tableIndex = i - 1;
+            if (tableIndex > 0 && names.get(tableIndex).equalsIgnoreCase("AS")) {
+
+                tableIndex--;
+            }
+
+            String tableName = names.get(tableIndex);
+            if (!keywords.contains(tableName.toUpperCase())) {
+
+                return tableName;
+            }
+        }
+
+        return null;
+    }
+
+    private Set<String> sql92Keywords() {
+
+        if (sql92Keywords == null) {
+
+            KeywordRepository keywordRepository =
+                    (KeywordRepository) RepositoryCache.load(KeywordRepository.REPOSITORY_ID);
+            sql92Keywords = new HashSet<String>(keywordRepository.getSQL92());
+        }
+
+        return sql92Keywords;
+    }
+
+    private AutoCompleteIndex keywordItems() {
+
+        if (keywordItems.isEmpty()) {
+
+            keywordItems.addAll(selectionsFactory.buildKeywords(databaseHost, autoCompleteKeywords));
+        }
+
+        return keywordItems;
+    }
+
+    private List<AutoCompleteListItem> sortedItemsStartingWith(
+            AutoCompleteIndex index, String prefix, boolean prefixHadAlias) {
+
+        String searchPattern = prefix;
+        if (prefix.startsWith("(")) {
+
+            searchPattern = prefix.substring(1);
+        }
+
+        List<AutoCompleteListItem> itemsStartingWith = index.startingWith(searchPattern, prefixHadAlias);
+        Collections.sort(itemsStartingWith, autoCompleteListItemComparator);
+        return itemsStartingWith;
+    }
+
     private final DefaultAutoCompletePopupProvider.AutoCompleteListItemComparator autoCompleteListItemComparator = new DefaultAutoCompletePopupProvider.AutoCompleteListItemComparator();
 
     static class AutoCompleteListItemComparator implements Comparator<AutoCompleteListItem> {
@@ -585,9 +711,18 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
         int dot = sqlTextPane.getCaretPosition();
         String wordAtCursor = getWordEndingAt(dot);
         trace("Capturing and resetting list values for word [ " + wordAtCursor + " ]");
-        DerivedQuery derivedQuery = new DerivedQuery(getQueryAt(sqlTextPane.getCaretPosition()).getQuery());
+        // the statement and its symbols as kept by the background parse - stale
+        // or pending symbols are not used and the derived query tables apply
+        StatementParseIndex.ParsedStatement statement = sqlTextPane.getStatementAt(dot);
+        String query = statement != null ? statementText(statement) : getQueryAt(dot).getQuery();
+        StatementSymbols symbols = statement != null ? statement.getParsedSymbols() : null;
+        if (symbols == null) {
+            symbols = StatementSymbols.EMPTY;
+        }
+
+        DerivedQuery derivedQuery = new DerivedQuery(query);
         List<QueryTable> tables = derivedQuery.tableForWord(wordAtCursor);
-        List<AutoCompleteListItem> itemsStartingWith = itemsStartingWith(tables, wordAtCursor);
+        List<AutoCompleteListItem> itemsStartingWith = itemsStartingWith(tables, wordAtCursor, query, symbols);
         if (itemsStartingWith.isEmpty()) {
             //noProposals = true;
             noProposalsAvailable(itemsStartingWith);
@@ -866,12 +1001,12 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
             worker.interrupt();
         }
 
-        if (autoCompleteListItems != null) {
-            if (worker != null)
-                worker.interrupt();
-            rebuildingList = false;
-            autoCompleteListItems.clear();
-        }
+        if (worker != null)
+            worker.interrupt();
+        rebuildingList = false;
+        autoCompleteListItems.clear();
+        keywordItems.clear();
+        selectionsFactory.clearCache();
 
         if (databaseConnection != null) {
 
@@ -909,11 +1044,6 @@ public class DefaultAutoCompletePopupProvider implements AutoCompletePopupProvid
 
     public void addListItems(List<AutoCompleteListItem> items) {
 
-        if (autoCompleteListItems == null) {
-
-            autoCompleteListItems = new ArrayList<AutoCompleteListItem>();
-        }
-
         autoCompleteListItems.addAll(items);
 //        Collections.sort(autoCompleteListItems, autoCompleteListItemComparatorByValue);
         reapplyIfVisible();
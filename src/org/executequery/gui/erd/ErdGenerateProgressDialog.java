@@ -23,6 +23,8 @@ package org.executequery.gui.erd;
 import org.executequery.GUIUtilities;
 import org.executequery.databasemediators.DatabaseConnection;
 import org.executequery.databasemediators.MetaDataValues;
+import org.executequery.databasemediators.SchemaSnapshot;
+import org.executequery.databasemediators.SchemaSnapshots;
 import org.executequery.gui.GenerateErdPanel;
 import org.executequery.gui.browser.ColumnData;
 import org.executequery.localization.Bundles;
@@ -191,6 +193,9 @@ public class ErdGenerateProgressDialog extends AbstractBaseDialog {
 
             int count = 0;
 
+            // one bulk load for all tables where the database supports it
+            SchemaSnapshot snapshot = SchemaSnapshots.reload(databaseConnection);
+
             for (int i = 0; i < v_size; i++) {
                 progressBar.setValue(count++);
 
@@ -198,12 +203,16 @@ public class ErdGenerateProgressDialog extends AbstractBaseDialog {
                     throw new InterruptedException();
                 }
 
-                try {
-                    columnData.add(metaData.getColumnMetaData(
-                            (String) selectedTables.elementAt(i), schema));
-                } catch (DataSourceException e) {
-                    columnData.add(new ColumnData[0]);
+                String table = (String) selectedTables.elementAt(i);
+                ColumnData[] columns = snapshot != null ? snapshot.getColumnData(table) : null;
+                if (columns == null) {
+                    try {
+                        columns = metaData.getColumnMetaData(table, schema);
+                    } catch (DataSourceException e) {
+                        columns = new ColumnData[0];
+                    }
                 }
+                columnData.add(columns);
 
                 progressBar.setValue(count++);
             }
@@ -45,6 +45,7 @@ import java.math.BigDecimal;
 import java.sql.*;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
@@ -182,13 +183,7 @@ public abstract class AbstractImportExportWorker implements ImportExportWorker {
         try {
 
             StringBuilder query = new StringBuilder("SELECT COUNT(*) FROM ");
-
-            String schema = parent.getSchemaName();
-            if (!MiscUtils.isNull(schema)) {
-                query.append(schema).append('.');
-            }
-
-            query.append(formatTableName(tableName));
+            query.append(qualifiedTableName(tableName));
 
             appendProgressText("Retrieving row count for table [ " + tableName + " ] ...");
 
@@ -236,17 +231,7 @@ public abstract class AbstractImportExportWorker implements ImportExportWorker {
             columns = getColumns(table);
         }
 
-        // build the SQL statement
-        StringBuilder query = new StringBuilder("SELECT ");
-        query.append(columnNamesAsCommaSeparatedString(table, columns));
-        query.append(" FROM ");
-
-        String schema = parent.getSchemaName();
-        if (!MiscUtils.isNull(schema)) {
-            query.append(schema).append('.');
-        }
-
-        query.append(formatTableName(table));
+        String query = selectQuery(table, columns);
 
         if (stmnt != null) {
             try {
@@ -263,10 +248,46 @@ public abstract class AbstractImportExportWorker implements ImportExportWorker {
 
         Log.info("Executing query for export: [ " + query + " ]");
 
-        return stmnt.executeQuery(query.toString());
+        return stmnt.executeQuery(query);
+    }
+
+    /**
+     * Returns the query selecting the specified columns of the table.
+     *
+     * @param table   - the database table name
+     * @param columns - the columns to select from the table
+     */
+    protected String selectQuery(String table, List<?> columns) throws SQLException {
+
+        StringBuilder query = new StringBuilder("SELECT ");
+        query.append(columnNamesAsCommaSeparatedString(table, columns));
+        query.append(" FROM ");
+        query.append(qualifiedTableName(table));
+
+        return query.toString();
+    }
+
+    /**
+     * Returns the table name quoted and prefixed
+     * with the schema name if any.
+     *
+     * @param table - the database table name
+     */
+    protected String qualifiedTableName(String table) {
+
+        StringBuilder name = new StringBuilder();
+
+        String schema = parent.getSchemaName();
+        if (!MiscUtils.isNull(schema)) {
+            name.append(schema).append('.');
+        }
+
+        name.append(formatTableName(table));
+
+        return name.toString();
     }
 
-    private String columnNamesAsCommaSeparatedString(String table, List<?> columns) throws DataSourceException, SQLException {
+    private String columnNamesAsCommaSeparatedString(String table, List<?> columns) throws SQLException {
 
         StringBuilder sb = new StringBuilder();
 
@@ -309,20 +330,38 @@ public abstract class AbstractImportExportWorker implements ImportExportWorker {
      */
     protected void prepareStatement(String table, Vector<?> columns) throws DataSourceException, SQLException {
 
+        String query = insertQuery(table, columns);
+
+        // make sure it was closed from a possible previous run
+        if (prepStmnt != null) {
+            try {
+                prepStmnt.close();
+            } catch (SQLException e) {
+            }
+        }
+
+        conn = getConnection();
+        conn.setAutoCommit(false);
+        prepStmnt = conn.prepareStatement(query, java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
+        prepStmnt.setFetchSize(fetchSizeForDatabaseProduct(conn.getMetaData()));
+    }
+
+    /**
+     * Returns the insert query for an import process.
+     *
+     * @param table   - the database table name
+     * @param columns - the columns to insert or null for all
+     */
+    protected String insertQuery(String table, Vector<?> columns) throws SQLException {
+
         // check the columns and retrieve if null
         if (columns == null) {
             columns = getColumns(table);
         }
 
-        String schema = parent.getSchemaName();
         StringBuffer query = new StringBuffer();
         query.append("INSERT INTO ");
-
-        if (!MiscUtils.isNull(schema)) {
-            query.append(schema).append('.');
-        }
-
-        query.append(formatTableName(table));
+        query.append(qualifiedTableName(table));
         query.append(" (");
         query.append(columnNamesAsCommaSeparatedString(table, columns));
         query.append(") VALUES (");
@@ -337,21 +376,10 @@ public abstract class AbstractImportExportWorker implements ImportExportWorker {
         }
         query.append(")");
 
-        // make sure it was closed from a possible previous run
-        if (prepStmnt != null) {
-            try {
-                prepStmnt.close();
-            } catch (SQLException e) {
-            }
-        }
-
-        conn = getConnection();
-        conn.setAutoCommit(false);
-        prepStmnt = conn.prepareStatement(query.toString(), java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
-        prepStmnt.setFetchSize(fetchSizeForDatabaseProduct(conn.getMetaData()));
+        return query.toString();
     }
 
-    private int fetchSizeForDatabaseProduct(DatabaseMetaData metaData) throws SQLException {
+    protected int fetchSizeForDatabaseProduct(DatabaseMetaData metaData) throws SQLException {
 
         // we only care about mysql right now which needs Integer.MIN_VALUE
         // to provide row-by-row return on the result set cursor
@@ -421,124 +449,174 @@ public abstract class AbstractImportExportWorker implements ImportExportWorker {
                             int sqlType, boolean trim, DateFormat df)
             throws Exception {
 
+        bindValue(prepStmnt, index, convertValue(value, sqlType, trim, df), sqlType);
+    }
+
+    /**
+     * Converts the specified value read from the file to the object
+     * bound for the specified java.sql.Type.
+     *
+     * @param value   - the value
+     * @param sqlType - the SQL type
+     * @param trim    - whether to trim the whitespace from the value
+     * @param df      - the DataFormat object for date values
+     * @return the converted value or null
+     */
+    static Object convertValue(String value, int sqlType, boolean trim, DateFormat df)
+            throws ParseException {
+
         if (value == null) {
+            return null;
+        }
 
-            prepStmnt.setNull(index, sqlType);
+        switch (sqlType) {
 
-        } else {
+            case Types.TINYINT:
+                return Short.valueOf(Byte.valueOf(value).byteValue());
+
+            case Types.BIGINT:
+                return Long.valueOf(value);
+
+            case Types.SMALLINT:
+                return Short.valueOf(value);
+
+            case Types.LONGVARCHAR:
+            case Types.CHAR:
+            case Types.VARCHAR:
+                if (trim) {
+                    value = value.trim();
+                }
+                return value;
+
+            case Types.BIT:
+            case Types.BOOLEAN:
+
+                String booleanValue = value;
+                if ("t".equalsIgnoreCase(value)) {
+
+                    booleanValue = "true";
+
+                } else if ("f".equalsIgnoreCase(value)) {
+
+                    booleanValue = "false";
+                }
+
+                return Boolean.valueOf(booleanValue);
+
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return new BigDecimal(value);
+
+            case Types.REAL:
+                return Float.valueOf(value);
+
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return Double.valueOf(value);
+
+            case Types.INTEGER:
+                return Integer.valueOf(value);
+
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                // if the date format is null, insert as a char value
+                if (df != null) {
+                    return new java.sql.Date(df.parse(value).getTime());
+                }
+                return value;
+
+            case Types.LONGVARBINARY:
+            case Types.BINARY:
+            case Types.BLOB:
+            case Types.CLOB:
+                return Base64.decode(value);
+
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Sets the value converted with <code>convertValue</code> in the
+     * specified position for the specified java.sql.Type within the
+     * specified statement.
+     *
+     * @param statement - the prepared statement
+     * @param index     - the position within the statement
+     * @param value     - the converted value
+     * @param sqlType   - the SQL type
+     */
+    static void bindValue(PreparedStatement statement, int index,
+                          Object value, int sqlType) throws SQLException {
 
-            switch (sqlType) {
-
-                case Types.TINYINT:
-                    byte _byte = Byte.valueOf(value).byteValue();
-                    prepStmnt.setShort(index, _byte);
-                    break;
-
-                case Types.BIGINT:
-                    long _long = Long.valueOf(value).longValue();
-                    prepStmnt.setLong(index, _long);
-                    break;
-
-                case Types.SMALLINT:
-                    short _short = Short.valueOf(value).shortValue();
-                    prepStmnt.setShort(index, _short);
-                    break;
-
-                case Types.LONGVARCHAR:
-                case Types.CHAR:
-                case Types.VARCHAR:
-                    if (trim) {
-                        value = value.trim();
-                    }
-                    prepStmnt.setString(index, value);
-                    break;
-
-                case Types.BIT:
-                case Types.BOOLEAN:
-
-                    String booleanValue = value;
-                    if ("t".equalsIgnoreCase(value)) {
-
-                        booleanValue = "true";
-
-                    } else if ("f".equalsIgnoreCase(value)) {
-
-                        booleanValue = "false";
-                    }
-
-                    boolean _boolean = Boolean.valueOf(booleanValue).booleanValue();
-                    prepStmnt.setBoolean(index, _boolean);
-                    break;
-
-                case Types.NUMERIC:
-                case Types.DECIMAL:
-                    prepStmnt.setBigDecimal(index, new BigDecimal(value));
-                    break;
-
-                case Types.REAL:
-                    float _float = Float.valueOf(value).floatValue();
-                    prepStmnt.setFloat(index, _float);
-                    break;
-
-                case Types.FLOAT:
-                case Types.DOUBLE:
-                    prepStmnt.setDouble(index, Double.parseDouble(value));
-                    break;
-
-                case Types.INTEGER:
-                    prepStmnt.setInt(index, Integer.parseInt(value));
-                    break;
-
-                case Types.DATE:
-                case Types.TIME:
-                case Types.TIMESTAMP:
-                    // if the date format is null, insert as a char value
-                    if (df != null) {
-                        java.util.Date j_datetime = df.parse(value);
-                        prepStmnt.setDate(index,
-                                new java.sql.Date(j_datetime.getTime()));
-                    } else {
-                        try {
-                            prepStmnt.setObject(index, value, sqlType);
-                            /*
-                            if (sqlType == Types.TIMESTAMP) {
-                                prepStmnt.setTimestamp(index,
-                                        java.sql.Timestamp.valueOf(value));
-                            }
-                            else if (sqlType == Types.TIME) {
-                                prepStmnt.setTime(index,
-                                        java.sql.Time.valueOf(value));
-                            }
-                            else {
-                                prepStmnt.setDate(index,
-                                        java.sql.Date.valueOf(value));
-                            }
-                             */
-                        }
-                        // want a more useful message here than what will likely
-                        // be returned due to internal driver code on formatting
-                        // a SQL date value from string
-                        // (ie. could be parsing error, number format etc...)
-                        catch (Exception e) {
-                            throw new IllegalArgumentException(
-                                    "[ " + MiscUtils.getExceptionName(e) + " ] " +
-                                            Bundles.get("AbstractImportExportWorker.dateConversionError"));
-                        }
-
-                    }
-                    break;
-
-                case Types.LONGVARBINARY:
-                case Types.BINARY:
-                case Types.BLOB:
-                case Types.CLOB:
-                    prepStmnt.setBytes(index, Base64.decode(value));
-                    break;
-
-                default:
-                    prepStmnt.setObject(index, value);
-                    break;
+        if (value == null) {
+
+            statement.setNull(index, sqlType);
+
+        } else if (value instanceof String
+                && (sqlType == Types.DATE || sqlType == Types.TIME || sqlType == Types.TIMESTAMP)) {
+
+            try {
+                statement.setObject(index, value, sqlType);
+            }
+            // want a more useful message here than what will likely
+            // be returned due to internal driver code on formatting
+            // a SQL date value from string
+            // (ie. could be parsing error, number format etc...)
+            catch (Exception e) {
+                throw new IllegalArgumentException(
+                        "[ " + MiscUtils.getExceptionName(e) + " ] " +
+                                Bundles.get("AbstractImportExportWorker.dateConversionError"));
+            }
+
+        } else if (value instanceof java.sql.Date) {
+
+            statement.setDate(index, (java.sql.Date) value);
+
+        } else if (value instanceof byte[]) {
+
+            statement.setBytes(index, (byte[]) value);
+
+        } else if (value instanceof String) {
+
+            if (sqlType == Types.LONGVARCHAR || sqlType == Types.CHAR || sqlType == Types.VARCHAR) {
+                statement.setString(index, (String) value);
+            } else {
+                statement.setObject(index, value);
             }
+
+        } else if (value instanceof BigDecimal) {
+
+            statement.setBigDecimal(index, (BigDecimal) value);
+
+        } else if (value instanceof Long) {
+
+            statement.setLong(index, ((Long) value).longValue());
+
+        } else if (value instanceof Integer) {
+
+            statement.setInt(index, ((Integer) value).intValue());
+
+        } else if (value instanceof Short) {
+
+            statement.setShort(index, ((Short) value).shortValue());
+
+        } else if (value instanceof Double) {
+
+            statement.setDouble(index, ((Double) value).doubleValue());
+
+        } else if (value instanceof Float) {
+
+            statement.setFloat(index, ((Float) value).floatValue());
+
+        } else if (value instanceof Boolean) {
+
+            statement.setBoolean(index, ((Boolean) value).booleanValue());
+
+        } else {
+
+            statement.setObject(index, value);
         }
     }
 
@@ -657,6 +735,13 @@ public abstract class AbstractImportExportWorker implements ImportExportWorker {
         progress.setMaximum(value);
     }
 
+    /**
+     * Sets the text of the status line below the progress bar.
+     */
+    protected void setProgressStatusText(String text) {
+        progress.setStatusText(text);
+    }
+
     /**
      * Sets the progress bar's position during the process.
      *
@@ -24,6 +24,7 @@ import org.apache.poi.hssf.usermodel.*;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -31,6 +32,13 @@ import java.util.List;
  */
 public class DefaultExcelWorkbookBuilder implements ExcelWorkbookBuilder {
 
+    /**
+     * the last row index of a sheet
+     */
+    private static final int MAX_ROW_INDEX = 65535;
+
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+
     private int currentRow;
 
     private HSSFWorkbook workbook;
@@ -39,6 +47,14 @@ public class DefaultExcelWorkbookBuilder implements ExcelWorkbookBuilder {
 
     private HSSFCellStyle defaultCellStyle;
 
+    private HSSFCellStyle headerCellStyle;
+
+    private String sheetName;
+
+    private int sheetCount;
+
+    private List<String> header;
+
     public DefaultExcelWorkbookBuilder() {
 
         workbook = new HSSFWorkbook();
@@ -49,6 +65,7 @@ public class DefaultExcelWorkbookBuilder implements ExcelWorkbookBuilder {
 
         currentRow = 0;
         currentSheet = null;
+        header = null;
     }
 
     public void writeTo(OutputStream outputStream) throws IOException {
@@ -58,11 +75,23 @@ public class DefaultExcelWorkbookBuilder implements ExcelWorkbookBuilder {
 
     public void createSheet(String sheetName) {
 
+        this.sheetName = sheetName;
+        sheetCount = 1;
+        header = null;
         currentSheet = workbook.createSheet(sheetName);
     }
 
     public void addRow(List<String> values) {
 
+        // continue on a new sheet at the rows limit of the format
+        if (currentRow == MAX_ROW_INDEX) {
+
+            nextSheet();
+            if (header != null) {
+                fillRow(header, createRow(currentRow), getHeaderCellStyle());
+            }
+        }
+
         fillRow(values, createRow(++currentRow), defaultCellStyle);
     }
 
@@ -73,13 +102,36 @@ public class DefaultExcelWorkbookBuilder implements ExcelWorkbookBuilder {
             currentRow++;
         }
 
-        HSSFFont font = createFont();
-        font.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+        header = new ArrayList<String>(values);
+        fillRow(values, createRow(currentRow), getHeaderCellStyle());
+    }
+
+    private void nextSheet() {
 
-        HSSFCellStyle style = createStyle();
-        style.setFont(font);
+        sheetCount++;
+        String suffix = " (" + sheetCount + ")";
+
+        String name = sheetName;
+        if (name.length() + suffix.length() > MAX_SHEET_NAME_LENGTH) {
+            name = name.substring(0, MAX_SHEET_NAME_LENGTH - suffix.length());
+        }
+
+        currentSheet = workbook.createSheet(name + suffix);
+        currentRow = 0;
+    }
+
+    private HSSFCellStyle getHeaderCellStyle() {
+
+        if (headerCellStyle == null) {
+
+            HSSFFont font = createFont();
+            font.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+
+            headerCellStyle = createStyle();
+            headerCellStyle.setFont(font);
+        }
 
-        fillRow(values, createRow(currentRow), style);
+        return headerCellStyle;
     }
 
     private HSSFRow createRow(int rowNumber) {
@@ -0,0 +1,367 @@
+/*
+ * DelimitedFileParser.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.importexport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the records of a delimited file as described by RFC 4180 -
+ * the fields enclosed in double quotes may contain the delimiters,
+ * the line breaks and the doubled double quotes. The quotes within
+ * the fields not starting with a quote are read as they are.
+ * <p>
+ * The record is kept in a char buffer reused for all the records,
+ * the strings are created only for the fields asked for.
+ */
+class DelimitedFileParser implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+
+    private final char[] delimiter;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private boolean firstFill = true;
+
+    private long charsRead;
+
+    private int line = 1;
+
+    private int recordLine;
+
+    // the current record
+
+    private char[] record = new char[1024];
+
+    private int length;
+
+    private int[] starts = new int[32];
+
+    private int[] ends = new int[32];
+
+    private boolean[] quoted = new boolean[32];
+
+    private int fieldCount;
+
+    DelimitedFileParser(Reader reader, String delimiter) {
+
+        this.reader = reader;
+        this.delimiter = delimiter.toCharArray();
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at the end of the file
+     */
+    boolean next() throws IOException {
+
+        length = 0;
+        fieldCount = 0;
+
+        recordLine = line;
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+
+        int fieldStart = 0;
+        int quotedEnd = 0;
+        boolean fieldQuoted = false;
+        boolean inQuotes = false;
+
+        char lastDelimiterChar = delimiter[delimiter.length - 1];
+
+        while (true) {
+
+            if (c == -1) {
+                addField(fieldStart, length, fieldQuoted);
+                return true;
+            }
+
+            if (inQuotes) {
+
+                if (c == '"') {
+
+                    c = read();
+                    if (c == '"') {
+
+                        append('"');
+                        c = read();
+
+                    } else {
+
+                        inQuotes = false;
+                        quotedEnd = length;
+                    }
+                    continue;
+                }
+
+                append((char) c);
+                c = read();
+                continue;
+            }
+
+            if (c == '"' && length == fieldStart && !fieldQuoted) {
+
+                inQuotes = true;
+                fieldQuoted = true;
+                c = read();
+                continue;
+            }
+
+            if (c == '\n' || c == '\r') {
+
+                if (c == '\r') {
+
+                    if (peek() == '\n') {
+                        read();
+                    } else {
+                        line++;
+                    }
+                }
+                addField(fieldStart, length, fieldQuoted);
+                return true;
+            }
+
+            append((char) c);
+            if (c == lastDelimiterChar && endsWithDelimiter(Math.max(fieldStart, quotedEnd))) {
+
+                addField(fieldStart, length - delimiter.length, fieldQuoted);
+                fieldStart = length;
+                fieldQuoted = false;
+            }
+
+            c = read();
+        }
+    }
+
+    /**
+     * Returns the number of the fields of the current record.
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the value of the field of the current record.
+     */
+    String getField(int index) {
+        return new String(record, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Returns whether the field is empty or has the whitespace only.
+     */
+    boolean isBlank(int index) {
+
+        for (int i = starts[index], n = ends[index]; i < n; i++) {
+            if (record[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the record is an empty line.
+     */
+    boolean isEmptyLine() {
+        return fieldCount == 1 && ends[0] == starts[0] && !quoted[0];
+    }
+
+    /**
+     * Parses the integer value of the field without creating the string.
+     *
+     * @throws NumberFormatException if the field is not an integer
+     */
+    long getLong(int index) {
+
+        int start = starts[index];
+        int end = ends[index];
+
+        while (start < end && record[start] <= ' ') {
+            start++;
+        }
+        while (end > start && record[end - 1] <= ' ') {
+            end--;
+        }
+
+        boolean negative = false;
+        if (start < end && (record[start] == '-' || record[start] == '+')) {
+            negative = record[start] == '-';
+            start++;
+        }
+
+        if (start == end || end - start > 19) {
+            throw new NumberFormatException("For input string: \"" + getField(index) + "\"");
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+
+            int digit = record[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + getField(index) + "\"");
+            }
+
+            // accumulated negatively to reach Long.MIN_VALUE
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + getField(index) + "\"");
+            }
+            value = value * 10 - digit;
+        }
+
+        if (!negative) {
+
+            if (value == Long.MIN_VALUE) {
+                throw new NumberFormatException("For input string: \"" + getField(index) + "\"");
+            }
+            value = -value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the line the current record starts on.
+     */
+    int getLine() {
+        return recordLine;
+    }
+
+    /**
+     * Returns the number of the characters read so far.
+     */
+    long getPosition() {
+        return charsRead;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean endsWithDelimiter(int fieldStart) {
+
+        int start = length - delimiter.length;
+        if (start < fieldStart) {
+            return false;
+        }
+
+        for (int i = 0; i < delimiter.length; i++) {
+            if (record[start + i] != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addField(int start, int end, boolean fieldQuoted) {
+
+        if (fieldCount == starts.length) {
+
+            int size = fieldCount * 2;
+            starts = copyOf(starts, size);
+            ends = copyOf(ends, size);
+
+            boolean[] newQuoted = new boolean[size];
+            System.arraycopy(quoted, 0, newQuoted, 0, fieldCount);
+            quoted = newQuoted;
+        }
+
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        quoted[fieldCount] = fieldQuoted;
+        fieldCount++;
+    }
+
+    private static int[] copyOf(int[] array, int size) {
+
+        int[] copy = new int[size];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private void append(char c) {
+
+        if (length == record.length) {
+
+            char[] newRecord = new char[record.length * 2];
+            System.arraycopy(record, 0, newRecord, 0, length);
+            record = newRecord;
+        }
+        record[length++] = c;
+    }
+
+    private int read() throws IOException {
+
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        char c = buffer[position++];
+        charsRead++;
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+
+        if (count < 0) {
+            return false;
+        }
+
+        position = 0;
+        limit = count;
+
+        // the byte order mark of the file
+        if (firstFill && buffer[0] == '\uFEFF') {
+            position = 1;
+        }
+        firstFill = false;
+
+        return position < limit || fill();
+    }
+
+}
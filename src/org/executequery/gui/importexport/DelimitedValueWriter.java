@@ -0,0 +1,153 @@
+/*
+ * DelimitedValueWriter.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.importexport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the rows of a delimited file through a char buffer reused
+ * for all the rows. The line breaks within the values are written
+ * as <code>\n</code> and <code>\r</code>.
+ */
+class DelimitedValueWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final Writer writer;
+
+    private final String delimiter;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private boolean rowStarted;
+
+    DelimitedValueWriter(Writer writer, String delimiter) {
+
+        this.writer = writer;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Writes the value of the next column of the row.
+     *
+     * @param value - the value or null for an empty value
+     * @param quote - whether to enclose the value in double quotes
+     * @param trim  - whether to trim the whitespace from the value
+     */
+    void writeValue(String value, boolean quote, boolean trim) throws IOException {
+
+        if (rowStarted) {
+            write(delimiter);
+        }
+        rowStarted = true;
+
+        if (quote) {
+            write('"');
+        }
+
+        if (value != null) {
+
+            int start = 0;
+            int end = value.length();
+
+            if (trim) {
+
+                while (start < end && value.charAt(start) <= ' ') {
+                    start++;
+                }
+                while (end > start && value.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+            }
+
+            for (int i = start; i < end; i++) {
+
+                char c = value.charAt(i);
+                if (c == '\n') {
+
+                    write('\\');
+                    write('n');
+
+                } else if (c == '\r') {
+
+                    write('\\');
+                    write('r');
+
+                } else {
+
+                    write(c);
+                }
+            }
+        }
+
+        if (quote) {
+            write('"');
+        }
+    }
+
+    /**
+     * Ends the current row.
+     */
+    void endRow() throws IOException {
+
+        write(LINE_SEPARATOR);
+        rowStarted = false;
+    }
+
+    public void close() throws IOException {
+
+        try {
+            flushBuffer();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void write(String text) throws IOException {
+
+        for (int i = 0, n = text.length(); i < n; i++) {
+            write(text.charAt(i));
+        }
+    }
+
+    private void write(char c) throws IOException {
+
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = c;
+    }
+
+    private void flushBuffer() throws IOException {
+
+        if (position > 0) {
+            writer.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+}
@@ -20,39 +20,76 @@
 
 package org.executequery.gui.importexport;
 
-import org.apache.commons.lang.StringUtils;
-import org.executequery.Constants;
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.datasource.ConnectionManager;
 import org.executequery.gui.browser.ColumnData;
 import org.executequery.log.Log;
 import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.swing.util.SwingWorker;
+import org.underworldlabs.util.SystemProperties;
 
-import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 /**
+ * Exports the tables to the delimited files - several tables
+ * at once each on its own connection.
+ *
  * @author Takis Diakoumis
  */
 public class ExportDelimitedWorker extends AbstractImportExportWorker {
 
+    /**
+     * the number of the exported rows the progress is reported after
+     */
+    private static final int PROGRESS_ROWS = 1000;
+
+    /**
+     * the minimal interval of the progress bar updates
+     */
+    private static final long PROGRESS_UPDATE_INTERVAL = 250;
+
     /**
      * The thread worker object for this process
      */
     private SwingWorker worker;
 
+    /**
+     * the table exports of this process
+     */
+    private final List<TableExport> tableExports = new ArrayList<TableExport>();
+
+    /**
+     * the records found in the tables counted so far
+     */
+    private final AtomicLong totalRecords = new AtomicLong();
+
+    /**
+     * the records exported so far
+     */
+    private final AtomicLong exportedRecords = new AtomicLong();
+
+    private long lastProgressUpdate;
+
     /**
      * Constructs a new instance with the specified parent object
      * and progress output panel.
@@ -101,8 +138,6 @@ public class ExportDelimitedWorker extends AbstractImportExportWorker {
 
         // counter variables
         int tableCount = 0;
-        int totalRecordCount = 0;
-        int errorCount = 0;
 
         appendProgressText("Beginning export to delimited file process...");
         appendProgressText("Using connection: " +
@@ -115,236 +150,365 @@ public class ExportDelimitedWorker extends AbstractImportExportWorker {
         // --- begin the export process ---
         // --------------------------------
 
-        ResultSet rset = null;
-//        PrintWriter writer = null;
-
-        BufferedWriter writer = null;
+        ExecutorService executor = null;
         try {
 
-            // define the delimiter
-            String delim = getParent().getDelimiter();
-
-            // whether to trim whitespace
-            boolean trimWhitespace = getParent().trimWhitespace();
-
-            // include the column names
-            boolean includeColumnNames = getParent().includeColumnNames();
-
-            boolean quoteCharacterValues = getParent().quoteCharacterValues();
-
-            // row data output buffer
-            StringBuilder rowData = new StringBuilder(5000);
-
             // retrieve the export to files
             Vector<DataTransferObject> files = getParent().getDataFileVector();
             int fileCount = files.size();
 
-            // ---------------------------
-            // --- initialise counters ---
-            // ---------------------------
-
-            int columnCount = -1;
-            int recordCount = 0;
-            int totalRecords = 0;
+            // the queries are built here as the meta data
+            // utility is not to be shared between the threads
+            for (int i = 0; i < fileCount; i++) {
 
-            DateFormat dateFormat = null;
+                DataTransferObject dto = files.elementAt(i);
+                String tableName = dto.getTableName();
 
-            boolean parseDateValues = parseDateValues();
-            if (parseDateValues) {
+                List<ColumnData> columns = new ArrayList<ColumnData>(getColumns(tableName));
+                tableExports.add(new TableExport(dto, columns,
+                        selectQuery(tableName, columns),
+                        "SELECT COUNT(*) FROM " + qualifiedTableName(tableName)));
+            }
 
-                dateFormat = createDateFormatter();
+            int threadCount = Math.max(1, Math.min(fileCount, getParallelTableCount()));
+            if (threadCount > 1) {
+                appendProgressText("Exporting " + threadCount + " tables at once...");
             }
 
-            // ----------------------------------------
-            // --- begin looping through the tables ---
-            // ----------------------------------------
+            setProgressBarMaximum(1);
+            executor = Executors.newFixedThreadPool(threadCount);
 
+            List<Future<Object>> results = new ArrayList<Future<Object>>(fileCount);
+            for (TableExport tableExport : tableExports) {
+                results.add(executor.submit(tableExport));
+            }
+            executor.shutdown();
+
+            boolean failed = false;
             for (int i = 0; i < fileCount; i++) {
 
-                tableCount++;
-                setProgressStatus(0);
-
-                DataTransferObject dto = (DataTransferObject) files.elementAt(i);
-
-                totalRecords = getTableRecordCount(dto.getTableName());
-                setProgressBarMaximum(totalRecords);
-
-                // initialise the file object
-                File exportFile = new File(dto.getFileName());
-
-                // append some output
-                outputBuffer.append("---------------------------\nTable: ");
-                outputBuffer.append(dto.getTableName());
-                outputBuffer.append("\nRecords found: ");
-                outputBuffer.append(totalRecords);
-                outputBuffer.append("\nExport file: ");
-                outputBuffer.append(exportFile.getName());
-                appendProgressText(outputBuffer);
-
-                // retrieve the columns to be exported (or all)
-                List<ColumnData> columns = new ArrayList<>(getColumns(dto.getTableName()));
-                columnCount = columns.size();
-
-                // initialise the writer
-                Path path = Paths.get(exportFile.getAbsolutePath());
-                writer = Files.newBufferedWriter(path, Charset.forName("UTF-8"));
-
-                // print the column names if specified to do so
-                if (includeColumnNames) {
-                    for (int k = 0, n = columnCount - 1; k < columnCount; k++) {
-                        rowData.append(columns.get(k));
-                        if (k != n) {
-                            rowData.append(delim);
-                        }
+                try {
+
+                    results.get(i).get();
+                    tableCount++;
+
+                } catch (ExecutionException e) {
+
+                    failed = true;
+
+                    Throwable cause = e.getCause();
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
                     }
-                    writer.write(rowData.toString());
-                    writer.newLine();
 
-                    rowData.setLength(0);
+                    logException(cause);
+                    outputExceptionError("Error exporting table " +
+                            files.elementAt(i).getTableName() + " to file", cause);
+
+                    if (getParent().getOnError() == ImportExportDataProcess.STOP_TRANSFER) {
+                        cancelTableExports(executor);
+                        break;
+                    }
                 }
 
-                appendProgressText("Exporting data...");
+            }
 
-                // retrieve the result set
-                rset = getResultSet(dto.getTableName(), columns);
+            updateProgress(true);
+            return failed ? FAILED : SUCCESS;
 
-                // start the loop over results
-                while (rset.next()) {
+        } catch (InterruptedException e) {
+            cancelTableExports(executor);
+            return CANCELLED;
+        } catch (SQLException e) {
+            logException(e);
+            outputExceptionError("SQL error exporting table data to file", e);
+            return FAILED;
+        } catch (DataSourceException e) {
+            logException(e);
+            outputExceptionError("Error exporting table data to file", e);
+            return FAILED;
+        } catch (OutOfMemoryError e) {
+            cancelTableExports(executor);
+            outputExceptionError("Error exporting table data to file", e);
+            return FAILED;
+        } finally {
 
-                    if (Thread.interrupted()) {
-                        rset.close();
-                        rset = null;
-                        writer.close();
-                        setProgressStatus(totalRecords);
-                        throw new InterruptedException();
-                    }
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+
+            int recordCount = (int) exportedRecords.get();
+
+            finish();
+            setTableCount(tableCount);
+            setRecordCount(recordCount);
+            setErrorCount(0);
+            setRecordCountProcessed(recordCount);
+        }
+    }
+
+    /**
+     * Returns the number of the tables to be exported at once - the tables
+     * are exported one at a time when the connections are not pooled
+     * as all of them would share the same connection.
+     */
+    private int getParallelTableCount() {
+
+        if (!SystemProperties.getBooleanProperty("user", "connection.usepool")) {
+            return 1;
+        }
+
+        return getParent().getParallelConnectionCount();
+    }
 
-                    setProgressStatus(recordCount);
+    private void cancelTableExports(ExecutorService executor) {
 
-                    for (int j = 1; j <= columnCount; j++) {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
 
-                        String value = rset.getString(j);
-                        ColumnData column = columns.get(j - 1);
+        for (TableExport tableExport : tableExports) {
+            tableExport.cancel();
+        }
+    }
+
+    private void rowsExported(int count) {
+
+        exportedRecords.addAndGet(count);
+        updateProgress(false);
+    }
+
+    /**
+     * Updates the progress bar with the records of all the tables
+     * at most once in the update interval.
+     *
+     * @param force - whether to update regardless of the interval
+     */
+    private synchronized void updateProgress(boolean force) {
 
-                        if (value == null || rset.wasNull()) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastProgressUpdate < PROGRESS_UPDATE_INTERVAL) {
+            return;
+        }
+        lastProgressUpdate = now;
 
-                            value = Constants.EMPTY;
+        long total = Math.max(1, Math.min(Integer.MAX_VALUE, totalRecords.get()));
+        long exported = Math.min(total, exportedRecords.get());
 
-                        } else {
+        setProgressBarMaximum((int) total);
+        if (exported > 0) {
+            setProgressStatus((int) exported);
+        }
+    }
 
-                            if ((parseDateValues && dateFormat != null) &&
-                                    column.isDateDataType()) {
+    /**
+     * The export of a single table to its file.
+     */
+    private class TableExport implements Callable<Object> {
 
-                                value = dateFormat.format(rset.getDate(j));
+        private final DataTransferObject dto;
 
-                            } else {
+        private final List<ColumnData> columns;
 
-                                if (trimWhitespace) {
+        private final String selectQuery;
 
-                                    value = value.trim();
-                                }
+        private final String countQuery;
 
-                                value = formatString(value);
-                            }
+        private volatile Statement statement;
 
-                        }
+        TableExport(DataTransferObject dto, List<ColumnData> columns,
+                    String selectQuery, String countQuery) {
+            this.dto = dto;
+            this.columns = columns;
+            this.selectQuery = selectQuery;
+            this.countQuery = countQuery;
+        }
 
-                        boolean isCharType = column.isCharacterType();
-                        if (isCharType && quoteCharacterValues) {
+        public Object call() throws Exception {
 
-                            rowData.append("\"");
-                        }
+            DatabaseConnection databaseConnection = getParent().getDatabaseConnection();
+            Connection connection = ConnectionManager.getConnection(databaseConnection);
+            boolean autoCommit = connection.getAutoCommit();
 
-                        rowData.append(value);
+            try {
 
-                        if (isCharType && quoteCharacterValues) {
+                int records = countRecords(connection);
+                totalRecords.addAndGet(records);
 
-                            rowData.append("\"");
-                        }
+                File exportFile = exportFile();
 
-                        if (j != columnCount) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("---------------------------\nTable: ");
+                sb.append(dto.getTableName());
+                sb.append("\nRecords found: ");
+                sb.append(records);
+                sb.append("\nExport file: ");
+                sb.append(exportFile.getName());
+                appendProgressText(sb.toString());
 
-                            rowData.append(delim);
-                        }
+                connection.setAutoCommit(false);
+                statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSizeForDatabaseProduct(connection.getMetaData()));
 
-                    }
+                Log.info("Executing query for export: [ " + selectQuery + " ]");
 
-                    writer.write(rowData.toString());
-                    writer.newLine();
+                ResultSet rset = statement.executeQuery(selectQuery);
+                DelimitedValueWriter writer = new DelimitedValueWriter(
+                        new OutputStreamWriter(openStream(exportFile), StandardCharsets.UTF_8),
+                        getParent().getDelimiter());
 
-                    rowData.setLength(0);
-                    totalRecordCount++;
-                    recordCount++;
-                }
+                try {
 
-                rset.close();
-                stmnt.close();
-                writer.close();
+                    writeRows(rset, writer);
 
-                setProgressStatus(totalRecords);
+                } finally {
 
-                recordCount = 0;
-                outputBuffer.append("Export successful for table: ");
-                outputBuffer.append(dto.getTableName());
-                appendProgressText(outputBuffer);
+                    writer.close();
+                    rset.close();
+                }
 
+                appendProgressText("Export successful for table: " + dto.getTableName());
                 appendFileInfo(exportFile);
-                
-                /*
-                if (tableCount != fileCount) {
-                    setProgressStatus(0);
+
+                return null;
+
+            } finally {
+
+                Statement _statement = statement;
+                statement = null;
+                if (_statement != null) {
+                    try {
+                        _statement.close();
+                    } catch (SQLException e) {
+                    }
                 }
-                */
-            }
 
-            return SUCCESS;
-        } catch (InterruptedException e) {
-            cancelStatement();
-            return CANCELLED;
-        } catch (SQLException e) {
-            logException(e);
-            outputExceptionError("SQL error exporting table data to file", e);
-            return FAILED;
-        } catch (DataSourceException e) {
-            logException(e);
-            outputExceptionError("Error exporting table data to file", e);
-            return FAILED;
-        } catch (IOException e) {
-            logException(e);
-            outputExceptionError("I/O error exporting table data to file", e);
-            return FAILED;
-        } catch (OutOfMemoryError e) {
-            outputExceptionError("Error exporting table data to file", e);
-            return FAILED;
-        } finally {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                }
 
-            if (rset != null) {
+                // back to the pool - the pool's close would destroy it
                 try {
-                    rset.close();
+                    connection.close();
                 } catch (SQLException e) {
+                    Log.debug("Error returning export connection: " + e.getMessage());
                 }
             }
+        }
 
-            finish();
-            setTableCount(tableCount);
-            setRecordCount(totalRecordCount + errorCount);
-            setErrorCount(errorCount);
-            setRecordCountProcessed(totalRecordCount);
+        private int countRecords(Connection connection) throws SQLException {
+
+            Statement countStatement = connection.createStatement();
+            try {
+
+                statement = countStatement;
+                ResultSet rs = countStatement.executeQuery(countQuery);
+                return rs.next() ? rs.getInt(1) : 0;
+
+            } finally {
+
+                statement = null;
+                countStatement.close();
+            }
         }
-    }
 
-    private static final String NEW_LINE_REPLACEMENT = "\\\\n";
-    private static final String CARRIAGE_RETURN_REPLACEMENT = "\\\\r";
+        private void writeRows(ResultSet rset, DelimitedValueWriter writer)
+                throws SQLException, IOException, InterruptedException {
 
-    private Matcher newLineMatcher = Pattern.compile("\n").matcher(StringUtils.EMPTY);
-    private Matcher carriageReturnMatcher = Pattern.compile("\r").matcher(StringUtils.EMPTY);
+            boolean trimWhitespace = getParent().trimWhitespace();
+            boolean quoteCharacterValues = getParent().quoteCharacterValues();
 
-    private String formatString(String value) {
+            DateFormat dateFormat = null;
+            if (parseDateValues()) {
+                dateFormat = createDateFormatter();
+            }
+
+            int columnCount = columns.size();
+            boolean[] quote = new boolean[columnCount];
+            boolean[] formatDate = new boolean[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+
+                ColumnData column = columns.get(i);
+                quote[i] = quoteCharacterValues && column.isCharacterType();
+                formatDate[i] = dateFormat != null && column.isDateDataType();
+            }
 
-        String formattedValue = newLineMatcher.reset(value).replaceAll(NEW_LINE_REPLACEMENT);
-        formattedValue = carriageReturnMatcher.reset(formattedValue).replaceAll(CARRIAGE_RETURN_REPLACEMENT);
+            // print the column names if specified to do so
+            if (getParent().includeColumnNames()) {
+
+                for (ColumnData column : columns) {
+                    writer.writeValue(column.toString(), false, false);
+                }
+                writer.endRow();
+            }
+
+            int recordCount = 0;
+            while (rset.next()) {
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                for (int j = 0; j < columnCount; j++) {
+
+                    String value = rset.getString(j + 1);
+                    if (value != null && formatDate[j]) {
+
+                        writer.writeValue(dateFormat.format(rset.getDate(j + 1)), quote[j], false);
+
+                    } else {
+
+                        writer.writeValue(value, quote[j], trimWhitespace);
+                    }
+                }
+                writer.endRow();
+
+                if (++recordCount == PROGRESS_ROWS) {
+                    rowsExported(recordCount);
+                    recordCount = 0;
+                }
+            }
+
+            rowsExported(recordCount);
+        }
+
+        private File exportFile() {
+
+            String fileName = dto.getFileName();
+            if (getParent().compressOutput() && !fileName.endsWith(".gz")) {
+                fileName += ".gz";
+            }
+
+            return new File(fileName);
+        }
+
+        private OutputStream openStream(File file) throws IOException {
+
+            OutputStream stream = new FileOutputStream(file);
+            if (getParent().compressOutput()) {
+                stream = new GZIPOutputStream(stream, 64 * 1024);
+            }
+
+            return stream;
+        }
+
+        /**
+         * Cancels the statement in progress.
+         */
+        void cancel() {
+
+            Statement _statement = statement;
+            if (_statement == null) {
+                return;
+            }
+
+            try {
+                _statement.cancel();
+            } catch (SQLException e) {
+            }
+        }
 
-        return formattedValue;
     }
 
     private void logException(Throwable e) {
@@ -353,21 +517,6 @@ public class ExportDelimitedWorker extends AbstractImportExportWorker {
         }
     }
 
-    /**
-     * Cancels an in progress SQL statement.
-     */
-    private void cancelStatement() {
-        if (stmnt == null) {
-            return;
-        }
-        try {
-            stmnt.cancel();
-            stmnt.close();
-            stmnt = null;
-        } catch (SQLException e) {
-        }
-    }
-
     /**
      * Cancels the current in-process transfer.
      */
@@ -29,6 +29,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -41,6 +42,11 @@ import java.util.Vector;
 public class ExportExcelWorker extends AbstractImportExportWorker
         implements Constants {
 
+    /**
+     * The records exported between the progress updates
+     */
+    private static final int PROGRESS_INTERVAL = 1000;
+
     /**
      * The <code>SwingWorker</code> object for this process
      */
@@ -108,6 +114,7 @@ public class ExportExcelWorker extends AbstractImportExportWorker
         int totalRecordCount = 0;
 
         FileOutputStream outputStream = null;
+        ExcelWorkbookBuilder builder = null;
 
         try {
 
@@ -125,8 +132,6 @@ public class ExportExcelWorker extends AbstractImportExportWorker
             int recordCount = 0;
             int totalRecords = 0;
 
-            ExcelWorkbookBuilder builder = createExcelWorkbookBuilder();
-
             String[][] sheetNames = _parent.getSheetNameValues();
 
             // ----------------------------------------
@@ -138,7 +143,6 @@ public class ExportExcelWorker extends AbstractImportExportWorker
             for (int i = 0; i < tablesArray.length; i++) {
 
                 values.clear();
-                builder.reset();
 
                 recordCount = 0;
 
@@ -171,6 +175,13 @@ public class ExportExcelWorker extends AbstractImportExportWorker
                 // initialise the file object
                 File exportFile = new File(dto.getFileName());
 
+                // the workbook for each file
+                if (builder == null) {
+
+                    builder = createExcelWorkbookBuilder(dto.getFileName());
+                }
+                builder.reset();
+
                 // append some output
                 outputBuffer.append("---------------------------\nTable: ");
                 outputBuffer.append(tableName);
@@ -184,8 +195,12 @@ public class ExportExcelWorker extends AbstractImportExportWorker
                 Vector<?> columns = getColumns(tableName);
                 columnCount = columns.size();
 
-                // initialise the output stream
-                outputStream = createOutputStream(exportFile);
+                // initialise the output stream - one for all
+                // the tables exported to a single file
+                if (outputStream == null) {
+
+                    outputStream = createOutputStream(exportFile);
+                }
 
                 String sheetName = tablesArray[i];
                 if (!isSingleTable) {
@@ -233,7 +248,10 @@ public class ExportExcelWorker extends AbstractImportExportWorker
                     recordCount++;
                     totalRecordCount++;
 
-                    setProgressStatus(recordCount);
+                    if (recordCount % PROGRESS_INTERVAL == 0) {
+
+                        setProgressStatus(recordCount);
+                    }
                 }
 
                 rset.close();
@@ -241,6 +259,10 @@ public class ExportExcelWorker extends AbstractImportExportWorker
                 if (isSingleTable || fileFormat == ImportExportDataProcess.MULTIPLE_FILE) {
 
                     builder.writeTo(outputStream);
+                    builder = null;
+
+                    outputStream.close();
+                    outputStream = null;
                 }
 
                 setProgressStatus(totalRecords);
@@ -281,6 +303,10 @@ public class ExportExcelWorker extends AbstractImportExportWorker
             logException(e);
             outputExceptionError("I/O error exporting table data to file", e);
             return FAILED;
+        } catch (UncheckedIOException e) {
+            logException(e);
+            outputExceptionError("I/O error exporting table data to file", e.getCause());
+            return FAILED;
         } catch (OutOfMemoryError e) {
             outputExceptionError("Error exporting table data to file", e);
             return FAILED;
@@ -300,6 +326,11 @@ public class ExportExcelWorker extends AbstractImportExportWorker
                 }
             }
 
+            // remove the sheets left on disk by a failed export
+            if (builder instanceof StreamingXlsxWorkbookBuilder) {
+                ((StreamingXlsxWorkbookBuilder) builder).dispose();
+            }
+
             finish();
             setTableCount(tableCount);
             setRecordCount(totalRecordCount + errorCount);
@@ -314,7 +345,17 @@ public class ExportExcelWorker extends AbstractImportExportWorker
         return new FileOutputStream(path, false);
     }
 
-    private ExcelWorkbookBuilder createExcelWorkbookBuilder() {
+    /**
+     * Returns the builder for the format of the specified file - the
+     * .xlsx workbooks are streamed through the disk, the .xls ones
+     * are built in memory.
+     */
+    private ExcelWorkbookBuilder createExcelWorkbookBuilder(String fileName) {
+
+        if (fileName.toLowerCase().endsWith(".xlsx")) {
+
+            return new StreamingXlsxWorkbookBuilder();
+        }
 
         return new DefaultExcelWorkbookBuilder();
     }
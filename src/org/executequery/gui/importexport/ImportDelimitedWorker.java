@@ -22,29 +22,32 @@ package org.executequery.gui.importexport;
 
 import org.apache.commons.lang.StringUtils;
 import org.executequery.GUIUtilities;
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.datasource.ConnectionManager;
 import org.executequery.gui.browser.ColumnData;
 import org.executequery.log.Log;
 import org.underworldlabs.swing.util.SwingWorker;
 import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.SystemProperties;
 
-import javax.swing.*;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.sql.BatchUpdateException;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author Takis Diakoumis
  */
 public class ImportDelimitedWorker extends AbstractImportExportWorker {
 
+    /**
+     * The interval of the import status updates in milliseconds
+     */
+    private static final long STATUS_INTERVAL = 500;
+
     /**
      * The <code>SwingWorker</code> object for this process
      */
@@ -105,39 +108,38 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
         // table specific counters
 
         // the table statement result
-        int tableInsertCount = 0;
+        long tableInsertCount = 0;
 
         // the records processed for this table
         int tableRowCount = 0;
 
-        // the table commit count
-        int tableCommitCount = 0;
-
         // ---------------------------------------
         // total import process counters
 
-        // the current commit block size
-        int commitCount = 0;
+        // the records inserted and left to be committed at the end
+        long uncommittedCount = 0;
 
         // the total records inserted
-        int totalInsertCount = 0;
+        long totalInsertCount = 0;
 
         // the total records processed
         int totalRecordCount = 0;
 
         // the error count
-        int errorCount = 0;
+        long errorCount = 0;
 
         // the current line number
         int lineNumber = 0;
 
         int rollbackSize = getParent().getRollbackSize();
-        int rollbackCount = 0;
 
-        FileReader fileReader = null;
-        BufferedReader reader = null;
+        DelimitedFileParser parser = null;
+        ImportPipeline pipeline = null;
         DateFormat dateFormat = null;
 
+        // the connections inserting the rows
+        List<Connection> connections = new ArrayList<Connection>();
+
         try {
             // retrieve the import files
             Vector files = getParent().getDataFileVector();
@@ -155,14 +157,10 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             // column names are first row
             boolean hasColumnNames = getParent().includeColumnNames();
 
-            // currently bound variables in the prepared statement
-            Map<ColumnData, String> boundVariables = null;
-
             // ignored indexes of columns from the file
             List<Integer> ignoredIndexes = null;
 
             if (hasColumnNames) {
-                boundVariables = new HashMap<ColumnData, String>();
                 ignoredIndexes = new ArrayList<Integer>();
                 appendProgressText(
                         "Using column names from input file's first row.");
@@ -171,9 +169,6 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             // columns to be imported that are in the file
             Map<ColumnData, String> fileImportedColumns = new HashMap<ColumnData, String>();
 
-            // whether the data format failed (switch structure)
-            boolean failed = false;
-
             // define the delimiter
             String delim = getParent().getDelimiter();
 
@@ -184,14 +179,11 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             // the table's column count
             int columnCount = -1;
 
-            // the length of each line in the file
-            int rowLength = -1;
-
             // progress bar values
             int progressStatus = -1;
 
             // ongoing progress value
-            int progressCheck = -1;
+            long progressCheck = -1;
 
             // the import file size
             long fileSize = -1;
@@ -217,48 +209,6 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             // record the start time
             start();
 
-            // setup the regex matcher for delims
-
-            // ----------------------------------------------------------------
-            // below was the original pattern from oreilly book.
-            // discovered issues when parsing values with quotes
-            // in them - not only around them.
-            /*
-            String regex =
-                    "(?:^|\\" +
-                    delim +
-                    ") (?: \" ( (?> [^\"]*+ ) (?> \"\" [^\"]*+ )*+ ) \" | ( [^\"\\" +
-                    delim + "]*+ ) )";
-            Matcher matcher = Pattern.compile(regex, Pattern.COMMENTS).matcher("");
-            Matcher qMatcher = Pattern.compile("\"\"", Pattern.COMMENTS).matcher("");
-            */
-            // ----------------------------------------------------------------
-
-            // modified above to regex below
-            // added the look-ahead after the close quote
-            // and removed the quote from the last regex pattern
-
-            String escapedDelim = escapeDelim(delim);
-
-            String regex =
-                    "(?:^|" +
-                            escapedDelim +
-                            ") (?: \" ( (?> [^\"]*+ ) (?> \"\" [^\"]*+ )*+ ) \"(?=" +
-                            escapedDelim +
-                            "?) | ( [^" +
-                            escapedDelim + "]*+ ) )";
-
-            // ----------------------------------------------------------------
-            // changed above to the following - seems to work for now
-            // regex pattern in full - where <delim> is the delimiter to use
-            //      \"([^\"]+?)\"<delim>?|([^<delim>]+)<delim>?|<delim>
-            //
-            // fixed oreilly one - not running this one
-            // ----------------------------------------------------------------
-
-            Matcher matcher = Pattern.compile(regex, Pattern.COMMENTS).matcher("");
-            Matcher qMatcher = Pattern.compile("\"\"", Pattern.COMMENTS).matcher("");
-
             // ----------------------------------------
             // --- begin looping through the tables ---
             // ----------------------------------------
@@ -267,8 +217,20 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             conn = getConnection();
             conn.setAutoCommit(false);
 
-            int currentRowLength = 0;
-            boolean insertLine = false;
+            connections.add(conn);
+            openInsertConnections(connections, rollbackSize);
+
+            if (connections.size() > 1) {
+                appendProgressText("Inserting the rows on " +
+                        connections.size() + " connections.");
+            }
+
+            int commitSize = ImportPipeline.COMMIT_BY_CALLER;
+            if (rollbackSize == ImportExportDataProcess.COMMIT_END_OF_FILE) {
+                commitSize = ImportPipeline.COMMIT_ON_FINISH;
+            } else if (rollbackSize > 0) {
+                commitSize = rollbackSize;
+            }
 
             // the number of columns actually available in the file
             int filesColumnCount = 0;
@@ -277,10 +239,7 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
 
                 lineNumber = 0;
                 tableInsertCount = 0;
-                tableCommitCount = 0;
-                rollbackCount = 0;
                 tableRowCount = 0;
-                rowLength = 0;
 
                 if (Thread.interrupted()) {
                     setProgressStatus(100);
@@ -300,24 +259,14 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
                 outputBuffer.append(inputFile.getName());
                 appendProgressText(outputBuffer);
 
-                // setup the reader objects
-                fileReader = new FileReader(inputFile);
-                reader = new BufferedReader(fileReader);
+                // setup the parser
+                parser = new DelimitedFileParser(new FileReader(inputFile), delim);
 
                 // retrieve the columns to be imported (or all)
                 Vector<ColumnData> columns = getColumns(dto.getTableName());
                 columnCount = columns.size();
                 filesColumnCount = columnCount;
 
-                // the wntire row read
-                String row = null;
-
-                // the current delimited value
-                String value = null;
-
-                // the ignored column count
-                int ignoredCount = 0;
-
                 // clear the file columns cache
                 fileImportedColumns.clear();
 
@@ -325,29 +274,18 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
                 // names compare these with the columns selected
                 if (hasColumnNames) {
 
-                    // init the bound vars cache with the selected columns
-                    boundVariables.clear();
-
-                    for (int k = 0; k < columnCount; k++) {
-
-                        boundVariables.put(columns.get(k), VARIABLE_NOT_BOUND);
-                    }
-
-                    row = reader.readLine();
-                    lineNumber++;
+                    // reset the ignored columns
+                    ignoredIndexes.clear();
 
-                    String[] _columns = MiscUtils.splitSeparatedValues(row, delim);
-                    if (_columns != null && _columns.length > 0) {
+                    if (parser.next()) {
 
-                        filesColumnCount = _columns.length;
+                        lineNumber = parser.getLine();
+                        filesColumnCount = parser.getFieldCount();
 
                         // --------------------------------------
                         // first determine if we have any columns in the
                         // input file that were not selected for import
 
-                        // reset the ignored columns
-                        ignoredIndexes.clear();
-
                         // set up another list to re-add the columns in
                         // the order in which they appear in the file.
                         // all other columns will be added to the end
@@ -355,15 +293,16 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
 
                         ColumnData cd = null;
                         int ignoredIndex = -1;
-                        for (int j = 0; j < _columns.length; j++) {
+                        for (int j = 0; j < filesColumnCount; j++) {
                             ignoredIndex = j;
-                            String column = _columns[j];
+                            String column = parser.getField(j).trim();
 
                             for (int k = 0; k < columnCount; k++) {
                                 cd = columns.get(k);
                                 String _column = cd.getColumnName();
 
-                                if (_column.equalsIgnoreCase(column)) {
+                                if (_column.equalsIgnoreCase(column)
+                                        && !fileImportedColumns.containsKey(cd)) {
                                     temp.add(cd);
                                     fileImportedColumns.put(cd, INCLUDED_COLUMN);
                                     ignoredIndex = -1;
@@ -378,49 +317,33 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
                             }
 
                         }
-                        ignoredCount = ignoredIndexes.size();
 
-                        // if we didn't find any columns at all, show warning
+                        // if we didn't find any columns at all, skip the file
                         if (temp.isEmpty()) {
 
-                            String message = "No matching column names were " +
-                                    "found within the specified file's first line.\n" +
-                                    "The current file will be ignored.";
-
-                            outputBuffer.append(message);
-                            appendProgressWarningText(outputBuffer);
-
-                            int yesNo = GUIUtilities.displayYesNoDialog(
-                                    message + "\nDo you wish to continue?",
-                                    "Warning");
-
-                            if (yesNo == JOptionPane.YES_OPTION) {
-                                continue;
-                            } else {
+                            errorCount++;
+                            outputBuffer.append("No matching column names were ");
+                            outputBuffer.append("found within the specified file's first line.\n");
+                            outputBuffer.append("The current file will be ignored.");
+                            appendProgressErrorText(outputBuffer);
+
+                            parser.close();
+                            if (haltOnError) {
+                                processResult = FAILED;
                                 throw new InterruptedException();
                             }
+                            continue;
 
                         } else {
 
                             // add any other selected columns to the
                             // end of the temp list with the columns
                             // available in the file
-                            boolean addColumn = false;
                             for (int k = 0; k < columnCount; k++) {
-                                addColumn = false;
                                 cd = columns.get(k);
-                                for (int j = 0, n = temp.size(); j < n; j++) {
-                                    addColumn = true;
-                                    if (temp.get(j) == cd) {
-                                        addColumn = false;
-                                        break;
-                                    }
-                                }
-
-                                if (addColumn) {
+                                if (!fileImportedColumns.containsKey(cd)) {
                                     temp.add(cd);
                                 }
-
                             }
                             columns = temp; // note: size should not have changed
                         }
@@ -438,49 +361,52 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
 
                 }
 
-                /*
-                Log.debug("ignored count: " + ignoredCount);
+                // the statement parameter for each value of the
+                // file's rows - ignored values have no parameter
+                int[] parameterIndexes = new int[filesColumnCount];
+
+                int boundCount = 0;
+                for (int j = 0; j < filesColumnCount; j++) {
+
+                    if ((hasColumnNames && isIndexIgnored(ignoredIndexes, j))
+                            || boundCount == columnCount) {
+
+                        parameterIndexes[j] = -1;
+                        continue;
+                    }
+
+                    parameterIndexes[j] = boundCount++;
+                }
+
+                int[] sqlTypes = new int[columnCount];
                 for (int j = 0; j < columnCount; j++) {
-                    Log.debug("column: " + columns.get(j));
+                    sqlTypes[j] = columns.get(j).getSQLType();
                 }
-                */
 
                 fileSize = inputFile.length();
                 progressStatus = 10;
-                progressCheck = (int) (fileSize / progressStatus);
-
-                // prepare the statement
-                prepareStatement(dto.getTableName(), columns);
+                progressCheck = fileSize / progressStatus;
 
                 if (parsingDates && dateFormat == null) {
 
                     // check for a date data type
                     for (int j = 0; j < columnCount; j++) {
 
-                        if (dateFormat == null && !hasDate) {
-
-                            ColumnData cd = columns.get(j);
-
-                            if (fileImportedColumns.containsKey(cd)) {
-
-                                if (cd.isDateDataType()) {
-
-                                    hasDate = true;
-                                    break;
-                                }
-
-                            }
+                        ColumnData cd = columns.get(j);
+                        if (fileImportedColumns.containsKey(cd) && cd.isDateDataType()) {
 
+                            hasDate = true;
+                            break;
                         }
                     }
 
-                    if (hasDate && dateFormat == null) {
+                    if (hasDate) {
 
                         String pattern = verifyDate();
 
-                        if (StringUtils.isNotBlank(pattern)) {
+                        if (StringUtils.isBlank(pattern)) {
 
-                            fileReader.close();
+                            parser.close();
                             setProgressStatus(100);
                             throw new InterruptedException();
                         }
@@ -490,359 +416,112 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
 
                 }
 
-                rowLength = 0;
+                // start the conversion and the inserts
+                pipeline = new ImportPipeline(
+                        insertQuery(dto.getTableName(), columns), sqlTypes,
+                        trimWhitespace, dateFormat, isBatch, commitSize,
+                        haltOnError, connections, createErrorHandler());
+                pipeline.start();
 
-                while ((row = reader.readLine()) != null) {
+                long lastStatusTime = System.currentTimeMillis();
 
-                    insertLine = true;
-                    lineNumber++;
-                    tableRowCount++;
-                    totalRecordCount++;
+                // whether halted on a row error
+                boolean halted = false;
+
+                while (parser.next()) {
+
+                    lineNumber = parser.getLine();
 
                     if (Thread.interrupted()) {
 
-                        fileReader.close();
+                        parser.close();
                         printTableResult(tableRowCount,
-                                tableCommitCount, dto.getTableName());
+                                pipeline.getCommittedCount(), dto.getTableName());
 
                         setProgressStatus(100);
                         throw new InterruptedException();
                     }
 
-                    currentRowLength = row.length();
-
-                    if (currentRowLength == 0) {
+                    if (parser.isEmptyLine()) {
 
                         outputBuffer.append("Line ");
                         outputBuffer.append(lineNumber);
-                        outputBuffer.append(" contains no delimited values");
+                        outputBuffer.append(" contains no delimited values - skipped");
                         appendProgressWarningText(outputBuffer);
-
-                        int yesNo = GUIUtilities.displayYesNoDialog(
-                                "No values provided from line " +
-                                        lineNumber + " - the row is blank.\n" +
-                                        "Do you wish to continue?",
-                                "Warning");
-
-                        if (yesNo == JOptionPane.YES_OPTION) {
-                            continue;
-                        } else {
-                            throw new InterruptedException();
-                        }
+                        continue;
                     }
 
-                    rowLength += currentRowLength;
-                    if (progressCheck < rowLength) {
+                    tableRowCount++;
+                    totalRecordCount++;
+
+                    if (parser.getPosition() > progressCheck && progressStatus < 100) {
 
                         setProgressStatus(progressStatus);
                         progressStatus += 10;
-                        rowLength = 0;
+                        progressCheck += fileSize / 10;
                     }
 
-                    // reset matcher with current row
-                    matcher.reset(row);
-
-                    int index = 0;
-                    int lastIndex = -1;
-                    int loopIgnoredCount = 0;
-
-                    //Log.debug(row);
-
-                    for (int j = 0; j < filesColumnCount; j++) {
-
-                        if (matcher.find(index)) {
-
-                            String first = matcher.group(2);
-
-                            if (first != null) {
-
-                                value = first;
-
-                            } else {
-
-                                qMatcher.reset(matcher.group(1));
-                                value = qMatcher.replaceAll("\"");
-                            }
-
-                            index = matcher.end();
-
-                            // check if its an ignored column
-                            if (ignoredCount > 0) {
+                    if (parser.getFieldCount() < filesColumnCount) {
 
-                                if (isIndexIgnored(ignoredIndexes, j)) {
-
-                                    loopIgnoredCount++;
-                                    continue;
-                                }
-
-                            }
-
-                        } else {
-
-                            // not enough delims check
-                            if (j < (filesColumnCount - 1)
-                                    && index > (currentRowLength - 1)) {
-
-                                outputBuffer.append("Insufficient number of column ");
-                                outputBuffer.append("values provided at line ");
-                                outputBuffer.append(lineNumber);
-                                appendProgressErrorText(outputBuffer);
-
-                                int yesNo = GUIUtilities.displayYesNoDialog(
-                                        "Insufficient number of values provided from line " +
-                                                lineNumber + ".\n" +
-                                                "Do you wish to continue?",
-                                        "Warning");
-
-                                if (yesNo == JOptionPane.YES_OPTION) {
-
-                                    insertLine = false;
-                                    break;
-
-                                } else {
-
-                                    throw new InterruptedException();
-                                }
-
-                            } else {
-
-                                // check if we're on a delim the matcher didn't pick up
-
-                                int delimLength = delim.length();
-
-                                if (row.substring(index, index + delimLength).equals(delim)) {
-
-                                    // increment index
-                                    index++;
-                                    // assign as null value
-                                    value = null;
-                                }
-
-                            }
-
-                        }
-
-                        // check if we landed on the same index - likely null value
-                        if (index == lastIndex) {
-                            index++;
-                        }
-                        lastIndex = index;
-
-                        if (value != null && value.trim().length() == 0) {
-                            value = null;
-                        }
-
-                        try {
-                            ColumnData cd = columns.get(j - loopIgnoredCount);
-                            setValue(value,
-                                    getIndexOfColumn(columns, cd) + 1,
-                                    cd.getSQLType(),
-                                    trimWhitespace,
-                                    dateFormat);
-
-                            if (hasColumnNames) {
-                                boundVariables.put(cd, VARIABLE_BOUND);
-                            }
-
-                        } catch (ParseException e) {
-
-                            errorCount++;
-                            failed = true;
-                            outputBuffer.append("Error parsing date value - ");
-                            outputBuffer.append(value);
-                            outputBuffer.append(" - on line ");
-                            outputBuffer.append(lineNumber);
-                            outputBuffer.append(" at position ");
-                            outputBuffer.append(j);
-                            outputExceptionError(null, e);
-                            break;
-
-                        } catch (NumberFormatException e) {
+                        errorCount++;
+                        outputBuffer.append("Insufficient number of column ");
+                        outputBuffer.append("values provided at line ");
+                        outputBuffer.append(lineNumber);
+                        appendProgressErrorText(outputBuffer);
 
-                            errorCount++;
-                            failed = true;
-                            outputBuffer.append("Error parsing value - ");
-                            outputBuffer.append(value);
-                            outputBuffer.append(" - on line ");
-                            outputBuffer.append(lineNumber);
-                            outputBuffer.append(" at position ");
-                            outputBuffer.append(j);
-                            outputExceptionError(null, e);
+                        if (haltOnError) {
+                            halted = true;
                             break;
                         }
-
+                        continue;
                     }
 
-                    if (!insertLine) {
+                    // the selected columns not within the file are NULL
+                    String[] values = new String[columnCount];
+                    for (int j = 0; j < filesColumnCount; j++) {
 
-                        prepStmnt.clearParameters();
-                        continue;
+                        int parameterIndex = parameterIndexes[j];
+                        if (parameterIndex != -1 && !parser.isBlank(j)) {
+                            values[parameterIndex] = parser.getField(j);
+                        }
                     }
 
-                    if (failed && haltOnError) {
-
-                        processResult = FAILED;
+                    if (!pipeline.put(values, lineNumber)) {
                         break;
                     }
 
-                    // execute the statement
-                    try {
-
-                        // check all variables are bound if we used
-                        // the column names from the first row
-                        if (hasColumnNames) {
-
-                            index = 0;
-                            // check all variables are bound - insert NULL otherwise
-
-                            for (Map.Entry<ColumnData, String> entry : boundVariables.entrySet()) {
-
-                                ColumnData cd = entry.getKey();
-
-                                if (VARIABLE_NOT_BOUND.equals(entry.getValue())) {
-
-                                    index = getIndexOfColumn(columns, cd);
-                                    prepStmnt.setNull(index + 1, cd.getSQLType());
-                                }
-
-                            }
-
-                        }
-
-                        if (isBatch) {
-                            prepStmnt.addBatch();
-                        } else {
-                            int result = prepStmnt.executeUpdate();
-                            tableInsertCount += result;
-                            commitCount += result;
-                        }
-
-                        rollbackCount++;
-                        // check the rollback segment
-                        if (rollbackCount == rollbackSize) {
-                            if (isBatch) {
-                                int result = getBatchResult(prepStmnt.executeBatch())[0];
-                                tableInsertCount += result;
-                                commitCount += result;
-                                prepStmnt.clearBatch();
-                            }
-                            conn.commit();
-                            totalInsertCount += commitCount;
-                            tableCommitCount = tableInsertCount;
-                            rollbackCount = 0;
-                            commitCount = 0;
-                        }
-
-                        // reset bound variables
-                        if (hasColumnNames) {
-                            for (int k = 0; k < columnCount; k++) {
-                                boundVariables.put(columns.get(k), VARIABLE_NOT_BOUND);
-                            }
-                        }
-
-                    } catch (SQLException e) {
-                        logException(e);
-                        errorCount++;
-
-                        if (!isBatch) {
-                            outputBuffer.append("Error inserting data from line ");
-                            outputBuffer.append(lineNumber);
-                            outputExceptionError(null, e);
-                        } else {
-                            outputBuffer.append("Error on last batch execution");
-                            outputExceptionError(null, e);
-                        }
-
-                        if (haltOnError) {
-                            processResult = FAILED;
-                            conn.rollback();
-                            getParent().cancelTransfer();
-                            throw new InterruptedException();
-                        }
+                    long now = System.currentTimeMillis();
+                    if (now - lastStatusTime > STATUS_INTERVAL) {
 
+                        setProgressStatusText(pipeline.getStatus());
+                        lastStatusTime = now;
                     }
-
                 }
 
-                // ----------------------------
-                // file/table has ended here
-
-                if (isBatch) {
-
-                    int[] batchResult = null;
-
-                    try {
-                        batchResult = getBatchResult(prepStmnt.executeBatch());
-                        int result = batchResult[0];
-                        tableInsertCount += result;
-                        commitCount += result;
-                        tableCommitCount = tableInsertCount;
-                    } catch (BatchUpdateException e) {
-                        logException(e);
-                        int[] updateCounts = e.getUpdateCounts();
-                        batchResult = getBatchResult(updateCounts);
-                        errorCount += batchResult[1];
-                        if (errorCount == 0) {
-                            errorCount = 1;
-                        }
-
-                        outputBuffer.append("An error occured during the batch process: ");
-                        outputBuffer.append(e.getMessage());
-
-                        SQLException _e = e.getNextException();
-                        while (_e != null) {
-                            outputBuffer.append("\nNext Exception: ");
-                            outputBuffer.append(_e.getMessage());
-                            _e = _e.getNextException();
-                        }
-
-                        outputBuffer.append("\n\nRecords processed to the point ");
-                        outputBuffer.append("where this error occurred: ");
-                        outputBuffer.append(updateCounts.length);
-                        appendProgressErrorText(outputBuffer);
-                        processResult = FAILED;
-                    }
-
-                    //  Log.debug("commitCount: " + commitCount +
-                    //                      " batch: " + batchResult[0]);
-
-                    if (tableRowCount != tableInsertCount) {
-                        conn.rollback();
-
-                        if (onError == ImportExportDataProcess.STOP_TRANSFER) {
-                            getParent().cancelTransfer();
-                            processResult = FAILED;
-                            throw new InterruptedException();
-                        }
+                parser.close();
 
-                    }
+                if (halted || !pipeline.finish()) {
 
+                    // halted on the error or stopped by the failed insert
+                    processResult = FAILED;
+                    getParent().cancelTransfer();
+                    throw new InterruptedException();
                 }
 
-                boolean doCommit = true;
-                if (failed && !isBatch &&
-                        rollbackSize != ImportExportDataProcess.COMMIT_END_OF_ALL_FILES) {
+                // ----------------------------
+                // file/table has ended here
 
-                    int yesNo = GUIUtilities.displayYesNoDialog(
-                            "The process completed with errors.\n" +
-                                    "Do you wish to commit the last block?",
-                            "Confirm commit");
+                setProgressStatusText(pipeline.getStatus());
 
-                    doCommit = (yesNo == JOptionPane.YES_OPTION);
-                }
+                tableInsertCount = pipeline.getInsertCount();
+                errorCount += pipeline.getErrorCount();
 
-                // do the commit if ok from above
-                // and if rollback size selected is end of file
-                if (rollbackSize == ImportExportDataProcess.COMMIT_END_OF_FILE) {
-                    if (doCommit) {
-                        conn.commit();
-                        totalInsertCount += commitCount;
-                        tableCommitCount = tableInsertCount;
-                        commitCount = 0;
-                    } else {
-                        conn.rollback();
-                    }
+                if (commitSize == ImportPipeline.COMMIT_BY_CALLER) {
+                    uncommittedCount += tableInsertCount;
+                } else {
+                    totalInsertCount += pipeline.getCommittedCount();
                 }
+                pipeline = null;
 
                 // update the progress display
                 printTableResult(tableRowCount,
@@ -851,30 +530,15 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
 
                 // reset the checks
                 hasDate = false;
-                failed = false;
 
             }
 
-            // commit the last remaining block or where
-            // set to commit at the end of all files
-            if (rollbackSize != ImportExportDataProcess.COMMIT_END_OF_FILE) {
+            // commit where set to commit at the end of all files -
+            // the rows with errors were logged and skipped
+            if (rollbackSize == ImportExportDataProcess.COMMIT_END_OF_ALL_FILES) {
                 setProgressStatus(100);
-                boolean doCommit = true;
-                if (errorCount > 0 && errorCount != totalRecordCount) {
-                    int yesNo = GUIUtilities.displayYesNoDialog(
-                            "The process completed with errors.\n" +
-                                    "Do you wish to commit the changes?",
-                            "Confirm commit");
-                    doCommit = (yesNo == JOptionPane.YES_OPTION);
-                }
-
-                if (doCommit) {
-                    conn.commit();
-                    totalInsertCount += commitCount;
-                } else {
-                    conn.rollback();
-                }
-
+                conn.commit();
+                totalInsertCount += uncommittedCount;
             }
 
             processResult = SUCCESS;
@@ -884,10 +548,14 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
                 processResult = CANCELLED;
             }
 
+            if (pipeline != null) {
+
+                pipeline.cancel();
+                errorCount += pipeline.getErrorCount();
+                totalInsertCount += pipeline.getCommittedCount();
+            }
+
             try {
-                if (prepStmnt != null) {
-                    prepStmnt.cancel();
-                }
                 if (conn != null) {
                     conn.rollback();
                 }
@@ -901,16 +569,18 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             outputBuffer.append(lineNumber);
             outputExceptionError("\nUnrecoverable error importing table data from file", e);
 
-            int yesNo = GUIUtilities.displayYesNoDialog(
-                    "The process encountered errors.\n" +
-                            "Do you wish to commit the last transaction block?",
-                    "Confirm commit");
-            boolean doCommit = (yesNo == JOptionPane.YES_OPTION);
+            if (pipeline != null) {
 
+                pipeline.cancel();
+                errorCount += pipeline.getErrorCount();
+                totalInsertCount += pipeline.getCommittedCount();
+            }
+
+            // the rows inserted before are kept unless halting on errors
             try {
-                if (doCommit) {
+                if (!haltOnError) {
                     conn.commit();
-                    totalInsertCount += commitCount;
+                    totalInsertCount += uncommittedCount;
                 } else {
                     conn.rollback();
                 }
@@ -921,6 +591,7 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             processResult = FAILED;
         } finally {
             finish();
+            closeInsertConnections(connections);
             releaseResources(getParent().getDatabaseConnection());
 
             if (totalRecordCount == 0 || errorCount > 0) {
@@ -929,47 +600,93 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
 
             setTableCount(tableCount);
             setRecordCount(totalRecordCount);
-            setRecordCountProcessed(totalInsertCount);
-            setErrorCount(errorCount);
+            setRecordCountProcessed((int) totalInsertCount);
+            setErrorCount((int) errorCount);
 
             setProgressStatus(100);
             GUIUtilities.scheduleGC();
 
-            if (reader != null) {
+            if (parser != null) {
                 try {
-                    reader.close();
+                    parser.close();
                 } catch (IOException e) {
                 }
             }
-            if (fileReader != null) {
-                try {
-                    fileReader.close();
-                } catch (IOException e) {
-                }
-            }
-            if (prepStmnt != null) {
-                try {
-                    prepStmnt.close();
-                } catch (SQLException e) {
-                }
-            }
 
         }
 
         return processResult;
     }
 
-    private String escapeDelim(String delim) {
+    /**
+     * Adds the pooled connections inserting the rows at once with the
+     * connection of the process - the rows committed at the end of each
+     * file or of all files are inserted on the connection of the process
+     * only so that they are committed or rolled back together.
+     */
+    private void openInsertConnections(List<Connection> connections, int rollbackSize)
+            throws SQLException {
 
-        String escape = "\\";
+        if (rollbackSize == ImportExportDataProcess.COMMIT_END_OF_ALL_FILES
+                || rollbackSize == ImportExportDataProcess.COMMIT_END_OF_FILE
+                || !SystemProperties.getBooleanProperty("user", "connection.usepool")) {
+            return;
+        }
 
-        StringBuilder sb = new StringBuilder();
-        for (char i : delim.toCharArray()) {
+        DatabaseConnection dc = getParent().getDatabaseConnection();
+        for (int i = 1, n = getParent().getParallelConnectionCount(); i < n; i++) {
 
-            sb.append(escape).append(i);
+            Connection connection = ConnectionManager.getConnection(dc);
+            connections.add(connection);
+            connection.setAutoCommit(false);
         }
+    }
 
-        return sb.toString();
+    /**
+     * Returns the pooled connections other than the process connection.
+     */
+    private void closeInsertConnections(List<Connection> connections) {
+
+        for (int i = 1; i < connections.size(); i++) {
+
+            Connection connection = connections.get(i);
+            try {
+
+                connection.rollback();
+                connection.setAutoCommit(true);
+
+            } catch (SQLException e) {
+
+                logException(e);
+            }
+
+            // back to the pool - the pool's close would destroy it
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logException(e);
+            }
+        }
+        connections.clear();
+    }
+
+    private ImportPipeline.ErrorHandler createErrorHandler() {
+
+        return new ImportPipeline.ErrorHandler() {
+
+            public void rowFailed(int line, String message, Throwable e) {
+
+                logException(e);
+
+                StringBuilder sb = new StringBuilder(message);
+                sb.append("\n[ ");
+                sb.append(MiscUtils.getExceptionName(e));
+                sb.append(" ] ");
+                sb.append(e.getMessage());
+                appendProgressErrorText(sb.toString());
+            }
+
+        };
     }
 
     private void logException(Throwable e) {
@@ -987,20 +704,11 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
         return false;
     }
 
-    private int getIndexOfColumn(Vector<ColumnData> columns, ColumnData cd) {
-        for (int i = 0, n = columns.size(); i < n; i++) {
-            if (columns.get(i) == cd) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     /**
      * Prints the table specific execution results to the output buffer.
      */
     private void printTableResult(int tableRowCount,
-                                  int tableInsertCount,
+                                  long tableInsertCount,
                                   String tableName) {
         // update the progress display
         outputBuffer.append("Records processed: ");
@@ -1013,36 +721,6 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
     }
 
 
-    private int[] getBatchResult(int[] updateCount) throws SQLException {
-        int insert = 0;
-        int success = 0;
-        int errors = 0;
-
-        // annoying as becoming a little db specific,
-        // but Oracle returns -2 on a successful batch
-        // execution using prepared statement (-3 on error)
-
-        if (isOracle()) {
-
-            success = -2;
-
-        } else {
-
-            success = 1;
-        }
-
-        for (int i = 0; i < updateCount.length; i++) {
-            if (updateCount[i] == success) {
-                insert++;
-            } else {
-                errors++;
-            }
-        }
-
-        int[] result = {insert, errors};
-        return result;
-    }
-
     /**
      * Cancels the current in-process transfer.
      */
@@ -297,6 +297,22 @@ public interface ImportExportDataProcess {
 
     boolean quoteCharacterValues();
 
+    /**
+     * Returns whether to compress the export files with gzip.
+     *
+     * @return true | false
+     */
+    boolean compressOutput();
+
+    /**
+     * Returns the number of the connections used at once - the tables
+     * exported at once in a multiple table export process or the
+     * connections inserting the rows of an import.
+     *
+     * @return the number of the connections
+     */
+    int getParallelConnectionCount();
+
     /**
      * Retrieves the selected type of delimiter within
      * the file to be used with this process.
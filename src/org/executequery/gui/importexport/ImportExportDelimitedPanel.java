@@ -236,6 +236,14 @@ public class ImportExportDelimitedPanel extends WizardProcessPanel
         return fourthPanel.includeColumnNames();
     }
 
+    public boolean compressOutput() {
+        return fourthPanel.compressOutput();
+    }
+
+    public int getParallelConnectionCount() {
+        return fourthPanel.getParallelConnectionCount();
+    }
+
     /**
      * <p>Retrieves the action on an error occuring
      * during the import/export process.
@@ -65,6 +65,16 @@ public class ImportExportDelimitedPanel_4 extends JPanel
      */
     private JCheckBox trimCheck;
 
+    /**
+     * The gzip output check box
+     */
+    private JCheckBox compressCheck;
+
+    /**
+     * The number of the tables exported at once combo box
+     */
+    private JComboBox parallelCombo;
+
     /**
      * the date parsing selection panel
      */
@@ -119,11 +129,19 @@ public class ImportExportDelimitedPanel_4 extends JPanel
         trimCheck = new JCheckBox("Trim whitespace");
         applyQuotesCheck = new JCheckBox("Use double quotes for char/varchar/longvarchar columns", true);
         columnNamesFirstRow = new JCheckBox("Column names as first row");
+        compressCheck = new JCheckBox("Compress export files (gzip)");
+
+        JLabel parallelLabel = new JLabel("Tables Exported at Once:");
+
+        String[] parallel = {"1", "2", "4", "8"};
+        parallelCombo = WidgetFactory.createComboBox(parallel);
+        parallelCombo.setSelectedIndex(2);
 
         Dimension comboDim = new Dimension(140, 20);
         delimCombo.setPreferredSize(comboDim);
         errorCombo.setPreferredSize(comboDim);
         rollbackCombo.setPreferredSize(comboDim);
+        parallelCombo.setPreferredSize(comboDim);
 
         JLabel instructLabel = new JLabel("Enter any particulars of the data files " +
                 "and select transfer options.");
@@ -159,6 +177,13 @@ public class ImportExportDelimitedPanel_4 extends JPanel
         gbc.insets.left = 20;
         add(rollbackLabel, gbc);
         gbc.gridy++;
+        add(parallelLabel, gbc);
+        gbc.gridx = 1;
+        gbc.insets.left = 0;
+        add(parallelCombo, gbc);
+        gbc.gridx = 0;
+        gbc.insets.left = 20;
+        gbc.gridy++;
         gbc.weightx = 1.0;
         gbc.weighty = 1.0;
         gbc.gridwidth = GridBagConstraints.REMAINDER;
@@ -177,6 +202,8 @@ public class ImportExportDelimitedPanel_4 extends JPanel
         add(columnNamesFirstRow, gbc);
         gbc.gridy++;
         add(applyQuotesCheck, gbc);
+        gbc.gridy++;
+        add(compressCheck, gbc);
         gbc.weighty = 1;
         gbc.gridy++;
         gbc.insets.left = 10;
@@ -194,6 +221,12 @@ public class ImportExportDelimitedPanel_4 extends JPanel
             rollbackCombo.setEnabled(false);
             rollbackLabel.setEnabled(false);
             batchCheck.setEnabled(false);
+
+        } else {
+
+            parallelLabel.setText("Insert Connections:");
+            parallelCombo.setSelectedIndex(0);
+            compressCheck.setEnabled(false);
         }
 
     }
@@ -264,6 +297,23 @@ public class ImportExportDelimitedPanel_4 extends JPanel
         return trimCheck.isSelected();
     }
 
+    public boolean compressOutput() {
+        return compressCheck.isEnabled() && compressCheck.isSelected();
+    }
+
+    /**
+     * <p>Retrieves the number of the tables exported or
+     * the connections inserting the imported rows at once.
+     *
+     * @return the number of the connections
+     */
+    public int getParallelConnectionCount() {
+        if (!parallelCombo.isEnabled()) {
+            return 1;
+        }
+        return Integer.parseInt((String) parallelCombo.getSelectedItem());
+    }
+
     /**
      * <p>Indicates whether the process (import only)
      * should be run as a batch process.
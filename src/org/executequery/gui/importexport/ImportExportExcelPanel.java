@@ -363,6 +363,16 @@ public class ImportExportExcelPanel extends WizardProcessPanel
         return false;
     }
 
+    @Override
+    public boolean compressOutput() {
+        return false;
+    }
+
+    @Override
+    public int getParallelConnectionCount() {
+        return 1;
+    }
+
     /**
      * Returns whether to trim whitespace on column data values.
      *
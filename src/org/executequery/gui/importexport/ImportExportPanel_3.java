@@ -348,7 +348,10 @@ public class ImportExportPanel_3 extends JPanel {
                 if (transferFormat == ImportExportDataProcess.XML) {
                     defaultExtension = ".xml";
                 } else if (transferFormat == ImportExportDataProcess.EXCEL) {
-                    defaultExtension = ".xls";
+                    // the legacy .xls workbooks are kept where entered
+                    if (!".xls".equalsIgnoreCase(fileExtension)) {
+                        defaultExtension = ".xlsx";
+                    }
                 }
 
                 if (defaultExtension != null &&
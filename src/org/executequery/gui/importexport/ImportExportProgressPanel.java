@@ -51,6 +51,11 @@ public class ImportExportProgressPanel extends JPanel
      */
     private JProgressBar progressBar;
 
+    /**
+     * The throughput and the queue depths of an import
+     */
+    private JLabel statusLabel;
+
     /**
      * The text area displaying process info
      */
@@ -92,6 +97,8 @@ public class ImportExportProgressPanel extends JPanel
         progressBar = new JProgressBar(0, 100);
         progressBar.setBorder(BorderFactory.createLineBorder(GUIUtilities.getDefaultBorderColour()));
 
+        statusLabel = new JLabel(" ");
+
         stopButton = WidgetFactory.createButton("Stop");
         stopButton.addActionListener(this);
 
@@ -116,6 +123,11 @@ public class ImportExportProgressPanel extends JPanel
         add(stopButton, gbc);
         gbc.gridy++;
         gbc.gridx = 0;
+        gbc.insets.top = 0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridwidth = GridBagConstraints.REMAINDER;
+        add(statusLabel, gbc);
+        gbc.gridy++;
         gbc.weighty = 1.0;
         gbc.insets.top = 5;
         gbc.fill = GridBagConstraints.BOTH;
@@ -142,6 +154,7 @@ public class ImportExportProgressPanel extends JPanel
      */
     public void reset() {
         progressBar.setValue(0);
+        statusLabel.setText(" ");
         output.setText("");
         stopButton.setEnabled(true);
     }
@@ -176,6 +189,20 @@ public class ImportExportProgressPanel extends JPanel
         SwingUtilities.invokeLater(setProgressBar);
     }
 
+    /**
+     * Sets the text of the status line below the progress bar.
+     *
+     * @param the status text
+     */
+    public void setStatusText(final String text) {
+        Runnable setStatus = new Runnable() {
+            public void run() {
+                statusLabel.setText(text);
+            }
+        };
+        SwingUtilities.invokeLater(setStatus);
+    }
+
     /**
      * Retrieves the progress bar's maximum value.
      *
@@ -293,6 +293,16 @@ public class ImportExportXMLPanel extends WizardProcessPanel
         return false;
     }
 
+    @Override
+    public boolean compressOutput() {
+        return false;
+    }
+
+    @Override
+    public int getParallelConnectionCount() {
+        return 1;
+    }
+
     public JDialog getDialog() {
         if (parent.isDialog()) {
             return (JDialog) parent;
@@ -0,0 +1,795 @@
+/*
+ * ImportPipeline.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.importexport;
+
+import biz.redsoft.IFBBatch;
+import biz.redsoft.IFBBatchCompletionState;
+import org.executequery.datasource.FirebirdBatches;
+import org.executequery.log.Log;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inserts the rows read by an import process in the stages running
+ * at once - the rows are handed in blocks from the reading thread
+ * to the conversion of the values and on to the inserting threads,
+ * one for each of the connections. The stages are connected with
+ * the bounded queues so the reading waits for the inserts falling
+ * behind.
+ * <p>
+ * The rows of a batch import are inserted with the Firebird batches
+ * on Firebird 4 or later where available and with the JDBC batches
+ * otherwise.
+ * <p>
+ * Only the delimited import runs on the pipeline - the XML import
+ * binds the values within its SAX handler as the elements arrive.
+ */
+class ImportPipeline {
+
+    /**
+     * Commit mode committing the rows on finish only - the rows are
+     * inserted by the single inserting stage within one transaction.
+     */
+    static final int COMMIT_ON_FINISH = 0;
+
+    /**
+     * Commit mode leaving the rows uncommitted - committed by the
+     * caller on the connection of the single inserting stage.
+     */
+    static final int COMMIT_BY_CALLER = -1;
+
+    /**
+     * the rows within a block handed between the stages
+     */
+    private static final int BLOCK_SIZE = 500;
+
+    /**
+     * the blocks waiting within each queue for an inserting stage
+     */
+    private static final int BLOCKS_PER_INSERTER = 2;
+
+    private static final long POLL_TIMEOUT = 100;
+
+    private static final RowBlock END = new RowBlock(0);
+
+    /**
+     * Receives the errors of the rows - called from the stage threads.
+     */
+    interface ErrorHandler {
+
+        void rowFailed(int line, String message, Throwable e);
+
+    }
+
+    private final String query;
+
+    private final int[] sqlTypes;
+
+    private final boolean trim;
+
+    private final DateFormat dateFormat;
+
+    private final boolean batch;
+
+    private final int commitSize;
+
+    private final boolean haltOnError;
+
+    private final ErrorHandler errorHandler;
+
+    private final List<Inserter> inserters;
+
+    private final BlockingQueue<RowBlock> readQueue;
+
+    private final BlockingQueue<RowBlock> convertedQueue;
+
+    private final AtomicLong insertCount = new AtomicLong();
+
+    private final AtomicLong committedCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private ExecutorService executor;
+
+    private List<Future<Object>> stages;
+
+    private RowBlock block;
+
+    private long startTime;
+
+    private volatile boolean stopped;
+
+    private volatile Throwable failure;
+
+    /**
+     * Creates a new pipeline inserting the rows with the specified
+     * query on the specified connections.
+     *
+     * @param query        - the insert query
+     * @param sqlTypes     - the SQL types of the query parameters
+     * @param trim         - whether to trim the whitespace from the values
+     * @param dateFormat   - the format of the date values or null
+     * @param batch        - whether to insert the rows as batches
+     * @param commitSize   - the rows committed at once by each connection,
+     *                     <code>COMMIT_ON_FINISH</code> or <code>COMMIT_BY_CALLER</code>
+     * @param haltOnError  - whether to stop on the first error
+     * @param connections  - the connections for the inserting stages, the
+     *                     first one only unless committing every commit size
+     * @param errorHandler - the handler of the row errors
+     */
+    ImportPipeline(String query, int[] sqlTypes, boolean trim,
+                   DateFormat dateFormat, boolean batch, int commitSize,
+                   boolean haltOnError, List<Connection> connections,
+                   ErrorHandler errorHandler) {
+
+        this.query = query;
+        this.sqlTypes = sqlTypes;
+        this.trim = trim;
+        this.dateFormat = dateFormat;
+        this.batch = batch;
+        this.commitSize = commitSize;
+        this.haltOnError = haltOnError;
+        this.errorHandler = errorHandler;
+
+        // the rows not committed as they go are kept within one transaction
+        if (commitSize <= COMMIT_ON_FINISH && connections.size() > 1) {
+            connections = connections.subList(0, 1);
+        }
+
+        inserters = new ArrayList<Inserter>(connections.size());
+        for (Connection connection : connections) {
+            inserters.add(new Inserter(connection));
+        }
+
+        int capacity = BLOCKS_PER_INSERTER * inserters.size();
+        readQueue = new ArrayBlockingQueue<RowBlock>(capacity);
+        convertedQueue = new ArrayBlockingQueue<RowBlock>(capacity);
+    }
+
+    /**
+     * Prepares the statements and starts the stages.
+     */
+    void start() throws SQLException {
+
+        for (Inserter inserter : inserters) {
+            inserter.prepare();
+        }
+
+        startTime = System.currentTimeMillis();
+        block = new RowBlock(BLOCK_SIZE);
+
+        executor = Executors.newFixedThreadPool(inserters.size() + 1);
+        stages = new ArrayList<Future<Object>>(inserters.size() + 1);
+        stages.add(executor.submit(new Converter()));
+        for (Inserter inserter : inserters) {
+            stages.add(executor.submit(inserter));
+        }
+    }
+
+    /**
+     * Adds the row to be inserted - waits while the stages are behind.
+     *
+     * @param values - the values of the query parameters, null for NULL
+     * @param line   - the line of the row within the file
+     * @return false if the pipeline was stopped
+     */
+    boolean put(String[] values, int line) throws InterruptedException {
+
+        if (stopped) {
+            return false;
+        }
+
+        block.add(values, line);
+        if (block.size == BLOCK_SIZE) {
+
+            RowBlock full = block;
+            block = new RowBlock(BLOCK_SIZE);
+            return transfer(readQueue, full);
+        }
+
+        return true;
+    }
+
+    /**
+     * Inserts the remaining rows and waits for the stages to complete
+     * committing the rows unless committed by the caller.
+     *
+     * @return false if the pipeline was stopped
+     */
+    boolean finish() throws InterruptedException {
+
+        try {
+
+            if (block.size > 0 && !transfer(readQueue, block)) {
+                return false;
+            }
+            if (!transfer(readQueue, END)) {
+                return false;
+            }
+
+            for (Future<Object> stage : stages) {
+
+                try {
+
+                    stage.get();
+
+                } catch (ExecutionException e) {
+
+                    fail(e.getCause());
+                }
+            }
+
+            if (stopped) {
+                return false;
+            }
+
+            for (Inserter inserter : inserters) {
+
+                try {
+
+                    inserter.commit(false);
+
+                } catch (SQLException e) {
+
+                    errorHandler.rowFailed(-1, "Error committing the inserted rows", e);
+                    fail(e);
+                    return false;
+                }
+            }
+
+            return true;
+
+        } finally {
+
+            executor.shutdown();
+            close();
+        }
+    }
+
+    /**
+     * Stops the stages and rolls back the uncommitted rows
+     * unless committed by the caller.
+     */
+    void cancel() {
+
+        stopped = true;
+
+        if (executor != null) {
+
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (Inserter inserter : inserters) {
+            inserter.rollback();
+        }
+        close();
+    }
+
+    /**
+     * Returns the error stopping the pipeline or null.
+     */
+    Throwable getFailure() {
+        return failure;
+    }
+
+    long getInsertCount() {
+        return insertCount.get();
+    }
+
+    long getCommittedCount() {
+        return committedCount.get();
+    }
+
+    long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Returns the throughput and the blocks waiting within the queues.
+     */
+    String getStatus() {
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        long rowsPerSecond = insertCount.get() * 1000 / elapsed;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Inserted: ").append(insertCount.get());
+        sb.append("  Rows/sec: ").append(rowsPerSecond);
+        sb.append("  Queued blocks - read: ").append(readQueue.size());
+        sb.append('/').append(readQueue.remainingCapacity() + readQueue.size());
+        sb.append(", converted: ").append(convertedQueue.size());
+        sb.append('/').append(convertedQueue.remainingCapacity() + convertedQueue.size());
+        sb.append("  Connections: ").append(inserters.size());
+
+        return sb.toString();
+    }
+
+    private boolean transfer(BlockingQueue<RowBlock> queue, RowBlock rows)
+            throws InterruptedException {
+
+        while (!queue.offer(rows, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+
+            if (stopped) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RowBlock take(BlockingQueue<RowBlock> queue) throws InterruptedException {
+
+        RowBlock rows;
+        do {
+
+            if (stopped) {
+                return null;
+            }
+            rows = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        } while (rows == null);
+
+        return rows;
+    }
+
+    private void fail(Throwable e) {
+
+        if (failure == null) {
+            failure = e;
+        }
+        stopped = true;
+    }
+
+    private void stageFailed(Exception e) {
+
+        logException(e);
+        if (!(e instanceof InterruptedException) && !stopped) {
+            errorHandler.rowFailed(-1, "Error inserting the rows", e);
+        }
+        fail(e);
+    }
+
+    private void rowFailed(int line, String message, Throwable e) {
+
+        errorCount.incrementAndGet();
+        errorHandler.rowFailed(line, message, e);
+
+        if (haltOnError) {
+            fail(e);
+        }
+    }
+
+    private void close() {
+
+        for (Inserter inserter : inserters) {
+            inserter.close();
+        }
+    }
+
+    private static void logException(Throwable e) {
+
+        if (Log.isDebugEnabled()) {
+            Log.debug("Error on import pipeline.", e);
+        }
+    }
+
+    /**
+     * The rows handed between the stages.
+     */
+    private static final class RowBlock {
+
+        final String[][] values;
+
+        final Object[][] converted;
+
+        final int[] lines;
+
+        int size;
+
+        RowBlock(int capacity) {
+
+            values = new String[capacity][];
+            converted = new Object[capacity][];
+            lines = new int[capacity];
+        }
+
+        void add(String[] rowValues, int line) {
+
+            values[size] = rowValues;
+            lines[size] = line;
+            size++;
+        }
+
+    }
+
+    /**
+     * Converts the values of the rows to the bound objects - the rows
+     * with the values failing the conversion are not inserted.
+     */
+    private final class Converter implements Callable<Object> {
+
+        public Object call() throws Exception {
+
+            try {
+
+                return convertRows();
+
+            } catch (Exception e) {
+
+                stageFailed(e);
+                throw e;
+            }
+        }
+
+        private Object convertRows() throws InterruptedException {
+
+            while (true) {
+
+                RowBlock rows = take(readQueue);
+                if (rows == null) {
+                    return null;
+                }
+
+                if (rows == END) {
+
+                    for (int i = 0, n = inserters.size(); i < n; i++) {
+                        if (!transfer(convertedQueue, END)) {
+                            return null;
+                        }
+                    }
+                    return null;
+                }
+
+                for (int i = 0; i < rows.size; i++) {
+
+                    rows.converted[i] = convert(rows.values[i], rows.lines[i]);
+                    rows.values[i] = null;
+                }
+
+                if (!transfer(convertedQueue, rows)) {
+                    return null;
+                }
+            }
+        }
+
+        private Object[] convert(String[] values, int line) {
+
+            Object[] converted = new Object[values.length];
+            for (int i = 0; i < values.length; i++) {
+
+                try {
+
+                    converted[i] = AbstractImportExportWorker.convertValue(
+                            values[i], sqlTypes[i], trim, dateFormat);
+
+                } catch (ParseException e) {
+
+                    rowFailed(line, "Error parsing date value - " + values[i]
+                            + " - on line " + line + " at position " + i, e);
+                    return null;
+
+                } catch (IllegalArgumentException e) {
+
+                    rowFailed(line, "Error parsing value - " + values[i]
+                            + " - on line " + line + " at position " + i, e);
+                    return null;
+                }
+            }
+
+            return converted;
+        }
+
+    }
+
+    /**
+     * Inserts the converted rows on its own connection.
+     */
+    private final class Inserter implements Callable<Object> {
+
+        private final Connection connection;
+
+        private PreparedStatement statement;
+
+        private IFBBatch firebirdBatch;
+
+        private long uncommittedCount;
+
+        Inserter(Connection connection) {
+
+            this.connection = connection;
+        }
+
+        void prepare() throws SQLException {
+
+            if (batch && commitSize != COMMIT_BY_CALLER) {
+                firebirdBatch = FirebirdBatches.createBatch(connection, query);
+            }
+
+            if (firebirdBatch == null) {
+                statement = connection.prepareStatement(query);
+            }
+        }
+
+        public Object call() throws Exception {
+
+            try {
+
+                return insertRows();
+
+            } catch (Exception e) {
+
+                stageFailed(e);
+                throw e;
+            }
+        }
+
+        private Object insertRows() throws InterruptedException, SQLException {
+
+            while (true) {
+
+                RowBlock rows = take(convertedQueue);
+                if (rows == null || rows == END) {
+                    return null;
+                }
+
+                if (firebirdBatch != null) {
+
+                    insertFirebirdBatch(rows);
+
+                } else if (batch) {
+
+                    insertBatch(rows);
+
+                } else {
+
+                    insertEach(rows);
+                }
+
+                if (commitSize > 0 && uncommittedCount >= commitSize) {
+                    commit(true);
+                }
+            }
+        }
+
+        private void insertEach(RowBlock rows) throws SQLException {
+
+            for (int i = 0; i < rows.size && !stopped; i++) {
+
+                Object[] values = rows.converted[i];
+                if (values == null) {
+                    continue;
+                }
+
+                try {
+
+                    bind(values);
+                    int result = statement.executeUpdate();
+                    insertCount.addAndGet(result);
+                    uncommittedCount += result;
+
+                } catch (SQLException e) {
+
+                    logException(e);
+                    rowFailed(rows.lines[i], "Error inserting data from line " + rows.lines[i], e);
+
+                } catch (IllegalArgumentException e) {
+
+                    rowFailed(rows.lines[i], "Error parsing value on line " + rows.lines[i], e);
+                }
+            }
+        }
+
+        private void insertBatch(RowBlock rows) throws SQLException {
+
+            int[] lines = new int[rows.size];
+            int count = 0;
+
+            for (int i = 0; i < rows.size; i++) {
+
+                Object[] values = rows.converted[i];
+                if (values == null) {
+                    continue;
+                }
+
+                try {
+
+                    bind(values);
+                    statement.addBatch();
+                    lines[count++] = rows.lines[i];
+
+                } catch (IllegalArgumentException e) {
+
+                    rowFailed(rows.lines[i], "Error parsing value on line " + rows.lines[i], e);
+                }
+            }
+
+            if (count == 0) {
+                return;
+            }
+
+            try {
+
+                countBatchResult(statement.executeBatch(), lines, count, null);
+
+            } catch (BatchUpdateException e) {
+
+                logException(e);
+                countBatchResult(e.getUpdateCounts(), lines, count, e);
+
+            } finally {
+
+                statement.clearBatch();
+            }
+        }
+
+        private void insertFirebirdBatch(RowBlock rows) throws SQLException {
+
+            int[] lines = new int[rows.size];
+            int count = 0;
+
+            for (int i = 0; i < rows.size; i++) {
+
+                Object[] values = rows.converted[i];
+                if (values == null) {
+                    continue;
+                }
+
+                for (int j = 0; j < values.length; j++) {
+
+                    if (values[j] instanceof byte[]) {
+                        firebirdBatch.addBlob(j + 1, (byte[]) values[j]);
+                    } else {
+                        firebirdBatch.setObject(j + 1, values[j]);
+                    }
+                }
+                firebirdBatch.addBatch();
+                lines[count++] = rows.lines[i];
+            }
+
+            if (count > 0) {
+
+                IFBBatchCompletionState state = firebirdBatch.execute();
+                countBatchResult(state.getAllStates(), lines, count, null);
+            }
+        }
+
+        /**
+         * Counts the inserted rows and reports the failed ones - the
+         * rows not executed after the failure of a batch are failed.
+         */
+        private void countBatchResult(int[] updateCounts, int[] lines,
+                                      int count, SQLException e) {
+
+            for (int i = 0; i < count; i++) {
+
+                int result = (updateCounts != null && i < updateCounts.length)
+                        ? updateCounts[i] : Statement.EXECUTE_FAILED;
+
+                if (result == Statement.EXECUTE_FAILED) {
+
+                    rowFailed(lines[i], "Error inserting data from line " + lines[i],
+                            e != null ? e : new SQLException("Batch execution failed"));
+
+                } else {
+
+                    insertCount.incrementAndGet();
+                    uncommittedCount++;
+                }
+            }
+        }
+
+        private void bind(Object[] values) throws SQLException {
+
+            for (int i = 0; i < values.length; i++) {
+                AbstractImportExportWorker.bindValue(statement, i + 1, values[i], sqlTypes[i]);
+            }
+        }
+
+        void commit(boolean restart) throws SQLException {
+
+            if (commitSize == COMMIT_BY_CALLER) {
+                return;
+            }
+
+            if (firebirdBatch != null) {
+
+                firebirdBatch.commit();
+                if (restart) {
+                    firebirdBatch.startTransaction();
+                }
+
+            } else {
+
+                connection.commit();
+            }
+
+            committedCount.addAndGet(uncommittedCount);
+            uncommittedCount = 0;
+        }
+
+        void rollback() {
+
+            if (commitSize == COMMIT_BY_CALLER) {
+                return;
+            }
+
+            try {
+
+                if (firebirdBatch != null) {
+                    firebirdBatch.rollback();
+                } else {
+                    connection.rollback();
+                }
+
+            } catch (SQLException e) {
+
+                logException(e);
+            }
+            uncommittedCount = 0;
+        }
+
+        void close() {
+
+            if (statement != null) {
+
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logException(e);
+                }
+                statement = null;
+            }
+
+            if (firebirdBatch != null) {
+
+                try {
+                    firebirdBatch.cancel();
+                } catch (SQLException e) {
+                    logException(e);
+                }
+                firebirdBatch = null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,446 @@
+/*
+ * StreamingXlsxWorkbookBuilder.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.importexport;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds an Office Open XML (.xlsx) workbook writing the rows of each
+ * sheet to a temporary file as they are added - the rows are not held
+ * in memory. The sheets are packed into the workbook on
+ * <code>writeTo</code>.
+ * <p>
+ * A sheet reaching the row limit of the format continues on a new
+ * sheet with the header row repeated.
+ */
+public class StreamingXlsxWorkbookBuilder implements ExcelWorkbookBuilder {
+
+    /**
+     * the rows limit of a sheet
+     */
+    static final int MAX_ROWS = 1048576;
+
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int DEFAULT_STYLE = 0;
+
+    private static final int HEADER_STYLE = 1;
+
+    private final int maxRows;
+
+    private final List<Sheet> sheets = new ArrayList<Sheet>();
+
+    private final Set<String> sheetNames = new HashSet<String>();
+
+    private Sheet currentSheet;
+
+    private String sheetName;
+
+    private List<String> header;
+
+    private int sheetCount;
+
+    public StreamingXlsxWorkbookBuilder() {
+
+        this(MAX_ROWS);
+    }
+
+    StreamingXlsxWorkbookBuilder(int maxRows) {
+
+        this.maxRows = maxRows;
+    }
+
+    public void reset() {
+
+        currentSheet = null;
+        header = null;
+    }
+
+    public void createSheet(String sheetName) {
+
+        this.sheetName = sheetName;
+        sheetCount = 0;
+        header = null;
+
+        try {
+
+            nextSheet();
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void addRowHeader(List<String> values) {
+
+        header = new ArrayList<String>(values);
+        writeRow(values, HEADER_STYLE);
+    }
+
+    public void addRow(List<String> values) {
+
+        writeRow(values, DEFAULT_STYLE);
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+
+        try {
+
+            for (Sheet sheet : sheets) {
+                sheet.close();
+            }
+
+            ZipOutputStream zip = new ZipOutputStream(outputStream);
+            Writer writer = new OutputStreamWriter(zip, UTF_8);
+
+            putEntry(zip, writer, "[Content_Types].xml", contentTypes());
+            putEntry(zip, writer, "_rels/.rels", rootRelationships());
+            putEntry(zip, writer, "xl/workbook.xml", workbook());
+            putEntry(zip, writer, "xl/_rels/workbook.xml.rels", workbookRelationships());
+            putEntry(zip, writer, "xl/styles.xml", styles());
+
+            byte[] buffer = new byte[64 * 1024];
+            for (int i = 0; i < sheets.size(); i++) {
+
+                zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + (i + 1) + ".xml"));
+
+                InputStream in = new FileInputStream(sheets.get(i).file);
+                try {
+
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        zip.write(buffer, 0, count);
+                    }
+
+                } finally {
+
+                    in.close();
+                }
+                zip.closeEntry();
+            }
+
+            zip.finish();
+
+        } finally {
+
+            dispose();
+        }
+    }
+
+    /**
+     * Deletes the temporary files of the sheets not written.
+     */
+    public void dispose() {
+
+        for (Sheet sheet : sheets) {
+            sheet.delete();
+        }
+        sheets.clear();
+        sheetNames.clear();
+        currentSheet = null;
+    }
+
+    private void writeRow(List<String> values, int style) {
+
+        try {
+
+            if (currentSheet.rowCount == maxRows) {
+
+                nextSheet();
+                if (header != null && style != HEADER_STYLE) {
+                    currentSheet.writeRow(header, HEADER_STYLE);
+                }
+            }
+
+            currentSheet.writeRow(values, style);
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void nextSheet() throws IOException {
+
+        if (currentSheet != null) {
+            currentSheet.close();
+        }
+
+        sheetCount++;
+        String name = sheetName;
+        if (sheetCount > 1) {
+            name = sheetName + " (" + sheetCount + ")";
+        }
+
+        currentSheet = new Sheet(uniqueSheetName(name));
+        sheets.add(currentSheet);
+    }
+
+    /**
+     * Returns the valid sheet name unique within the workbook.
+     */
+    private String uniqueSheetName(String name) {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, n = name.length(); i < n; i++) {
+
+            char c = name.charAt(i);
+            sb.append("[]:*?/\\".indexOf(c) != -1 ? '_' : c);
+        }
+
+        String valid = sb.length() == 0 ? "Sheet" : sb.toString();
+        if (valid.length() > MAX_SHEET_NAME_LENGTH) {
+            valid = valid.substring(0, MAX_SHEET_NAME_LENGTH);
+        }
+
+        String unique = valid;
+        for (int i = 2; sheetNames.contains(unique.toUpperCase()); i++) {
+
+            String suffix = "~" + i;
+            unique = valid.substring(0, Math.min(valid.length(), MAX_SHEET_NAME_LENGTH - suffix.length())) + suffix;
+        }
+
+        sheetNames.add(unique.toUpperCase());
+        return unique;
+    }
+
+    private static void putEntry(ZipOutputStream zip, Writer writer,
+                                 String name, String content) throws IOException {
+
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private String contentTypes() {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        sb.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        sb.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        sb.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        sb.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        sb.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 0; i < sheets.size(); i++) {
+
+            sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i + 1);
+            sb.append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        sb.append("</Types>");
+
+        return sb.toString();
+    }
+
+    private static String rootRelationships() {
+
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>";
+    }
+
+    private String workbook() {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        sb.append("<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"");
+        sb.append(" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">");
+        sb.append("<sheets>");
+        for (int i = 0; i < sheets.size(); i++) {
+
+            sb.append("<sheet name=\"");
+            appendEscaped(sb, sheets.get(i).name);
+            sb.append("\" sheetId=\"").append(i + 1);
+            sb.append("\" r:id=\"rId").append(i + 1).append("\"/>");
+        }
+        sb.append("</sheets></workbook>");
+
+        return sb.toString();
+    }
+
+    private String workbookRelationships() {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        sb.append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 0; i < sheets.size(); i++) {
+
+            sb.append("<Relationship Id=\"rId").append(i + 1);
+            sb.append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\"");
+            sb.append(" Target=\"worksheets/sheet").append(i + 1).append(".xml\"/>");
+        }
+        sb.append("<Relationship Id=\"rId").append(sheets.size() + 1);
+        sb.append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\"");
+        sb.append(" Target=\"styles.xml\"/>");
+        sb.append("</Relationships>");
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the styles - the default and the bold header one.
+     */
+    private static String styles() {
+
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<fonts count=\"2\">"
+                + "<font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+                + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+                + "</fonts>"
+                + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+                + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+                + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+                + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+                + "<cellXfs count=\"2\">"
+                + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+                + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+                + "</cellXfs>"
+                + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+                + "</styleSheet>";
+    }
+
+    private static void appendEscaped(StringBuilder sb, String value) {
+
+        for (int i = 0, n = value.length(); i < n; i++) {
+
+            char c = value.charAt(i);
+            switch (c) {
+
+                case '&':
+                    sb.append("&amp;");
+                    break;
+
+                case '<':
+                    sb.append("&lt;");
+                    break;
+
+                case '>':
+                    sb.append("&gt;");
+                    break;
+
+                case '"':
+                    sb.append("&quot;");
+                    break;
+
+                default:
+                    // the control characters are not allowed within XML
+                    if (c >= ' ' || c == '\t' || c == '\n' || c == '\r') {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The sheet data written to a temporary file.
+     */
+    private static final class Sheet {
+
+        final String name;
+
+        final File file;
+
+        private Writer writer;
+
+        private final StringBuilder row = new StringBuilder(256);
+
+        int rowCount;
+
+        Sheet(String name) throws IOException {
+
+            this.name = name;
+
+            file = File.createTempFile("eq-sheet", ".xml");
+            file.deleteOnExit();
+
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file), UTF_8), 64 * 1024);
+
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+            writer.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+            writer.write("<sheetData>");
+        }
+
+        void writeRow(List<String> values, int style) throws IOException {
+
+            rowCount++;
+
+            row.setLength(0);
+            row.append("<row r=\"").append(rowCount).append("\">");
+
+            for (int i = 0, n = values.size(); i < n; i++) {
+
+                String value = values.get(i);
+                if (value == null || value.length() == 0) {
+
+                    row.append(style == DEFAULT_STYLE ? "<c/>" : "<c s=\"" + style + "\"/>");
+                    continue;
+                }
+
+                row.append("<c t=\"inlineStr\"");
+                if (style != DEFAULT_STYLE) {
+                    row.append(" s=\"").append(style).append('"');
+                }
+                row.append("><is><t xml:space=\"preserve\">");
+                appendEscaped(row, value);
+                row.append("</t></is></c>");
+            }
+            row.append("</row>");
+
+            writer.append(row);
+        }
+
+        void close() throws IOException {
+
+            if (writer != null) {
+
+                writer.write("</sheetData></worksheet>");
+                writer.close();
+                writer = null;
+            }
+        }
+
+        void delete() {
+
+            try {
+                close();
+            } catch (IOException e) {
+                // deleted anyway
+            }
+            file.delete();
+        }
+
+    }
+
+}
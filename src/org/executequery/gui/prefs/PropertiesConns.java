@@ -69,6 +69,41 @@ public class PropertiesConns extends AbstractPropertiesBasePanel {
                 bundledString("Connection.shutdown.timeout"),
                 Integer.valueOf(SystemProperties.getProperty("user", key))));
 
+        key = "connection.keepalive.interval";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("Connection.keepalive.interval"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.pool.acquire.timeout";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("Connection.pool.acquire.timeout"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.pool.validation.interval";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("Connection.pool.validation.interval"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.pool.idle.timeout";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("Connection.pool.idle.timeout"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.pool.max.lifetime";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("Connection.pool.max.lifetime"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
         key = "startup.connection.name";
         list.add(new UserPreference(
                 UserPreference.STRING_TYPE,
@@ -154,6 +154,13 @@ public class PropertiesResultSetTableGeneral extends AbstractPropertiesBasePanel
                 bundledString("FetchSize"),
                 Integer.valueOf(stringUserProperty(key))));
 
+        key = "results.table.fetch.all.memory.limit";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("FetchAllMemoryLimit"),
+                Integer.valueOf(stringUserProperty(key))));
+
         UserPreference[] preferences =
                 list.toArray(new UserPreference[list.size()]);
         preferencesPanel = new SimplePreferencesPanel(preferences);
@@ -0,0 +1,42 @@
+/*
+ * ColumnValueReader.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the value of one result set column into a record data item.
+ * Readers are created once per column when fetching starts and reused
+ * for every fetched row.
+ */
+public interface ColumnValueReader {
+
+    /**
+     * Reads the value at the specified column of the current row.
+     *
+     * @param resultSet the result set positioned at the row
+     * @param column    the column index (1-based)
+     * @param value     the record data item to receive the value
+     */
+    void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException;
+
+}
@@ -0,0 +1,297 @@
+/*
+ * ColumnValueReaderFactory.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import biz.redsoft.IFBBlob;
+import biz.redsoft.IFBClob;
+import org.apache.commons.lang.StringUtils;
+import org.executequery.log.Log;
+import org.underworldlabs.util.DynamicLibraryLoader;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+
+/**
+ * Creates the column value readers for the result set columns
+ * from the column header data types.
+ */
+public class ColumnValueReaderFactory {
+
+    private static final String FIREBIRD_JDBC_PACKAGE = "org.firebirdsql.jdbc";
+
+    public ColumnValueReader create(ResultSetColumnHeader header, String charset) {
+
+        switch (header.getDataType()) {
+
+            // some drivers (informix for example)
+            // was noticed to return the hashcode from
+            // getObject for -1 data types (eg. longvarchar).
+            // force string for these - others stick with
+            // getObject() for default value formatting
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+                return new StringValueReader();
+
+            case Types.TIME_WITH_TIMEZONE:
+                return new TypedObjectValueReader(OffsetTime.class);
+
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return new TypedObjectValueReader(OffsetDateTime.class);
+
+            case Types.DATE:
+                return new TypedObjectValueReader(LocalDate.class);
+
+            case Types.TIME:
+                return new TypedObjectValueReader(LocalTime.class);
+
+            case Types.TIMESTAMP:
+                return new TypedObjectValueReader(LocalDateTime.class);
+
+            case Types.LONGVARCHAR:
+            case Types.CLOB:
+                return new ClobValueReader(charset);
+
+            case Types.LONGVARBINARY:
+            case Types.VARBINARY:
+            case Types.BINARY:
+                return new BytesValueReader();
+
+            case Types.BLOB:
+                return new BlobValueReader();
+
+            case Types.BIT:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.NULL:
+            case Types.OTHER:
+            case Types.JAVA_OBJECT:
+            case Types.DISTINCT:
+            case Types.STRUCT:
+            case Types.ARRAY:
+            case Types.REF:
+            case Types.DATALINK:
+            case Types.BOOLEAN:
+            case Types.ROWID:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.NCLOB:
+            case Types.SQLXML:
+
+                // use getObject for all other known types
+
+                return new ObjectValueReader();
+
+            default:
+
+                // otherwise try as string
+
+                return new StringOrObjectValueReader();
+        }
+
+    }
+
+    static class StringValueReader implements ColumnValueReader {
+
+        @Override
+        public void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException {
+
+            value.setValue(resultSet.getString(column));
+        }
+
+    }
+
+    static class ObjectValueReader implements ColumnValueReader {
+
+        @Override
+        public void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException {
+
+            value.setValue(resultSet.getObject(column));
+        }
+
+    }
+
+    static class TypedObjectValueReader implements ColumnValueReader {
+
+        private final Class<?> type;
+
+        TypedObjectValueReader(Class<?> type) {
+
+            this.type = type;
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException {
+
+            value.setValue(resultSet.getObject(column, type));
+        }
+
+    }
+
+    static class BytesValueReader implements ColumnValueReader {
+
+        @Override
+        public void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException {
+
+            value.setValue(resultSet.getBytes(column));
+        }
+
+    }
+
+    static class StringOrObjectValueReader implements ColumnValueReader {
+
+        @Override
+        public void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException {
+
+            // often getString returns a more useful representation
+            // return using getString where object.toString is the default impl
+
+            Object valueAsObject = resultSet.getObject(column);
+            String valueAsString = resultSet.getString(column);
+
+            if (valueAsObject != null) {
+
+                String valueAsObjectToString = valueAsObject.toString();
+                String toString = valueAsObject.getClass().getName() + "@" + Integer.toHexString(valueAsObject.hashCode());
+                if (!StringUtils.equals(valueAsObjectToString, toString)) {
+
+                    valueAsString = valueAsObjectToString;
+                }
+            }
+
+            value.setValue(valueAsString);
+        }
+
+    }
+
+    /**
+     * Base reader for the LOB columns. The detached Firebird LOB handles are
+     * created from the plugin library over the driver connection which is
+     * resolved only once per column. The LOB content itself is read lazily
+     * by the record data item when the value is displayed or opened.
+     */
+    abstract static class AbstractLobValueReader implements ColumnValueReader {
+
+        private Connection connection;
+
+        private Class<?> lobClass;
+
+        private boolean firebirdLob;
+
+        protected boolean isFirebirdLob(Object lob) {
+
+            Class<?> clazz = lob.getClass();
+            if (clazz != lobClass) {
+
+                lobClass = clazz;
+                firebirdLob = clazz.getName().contains(FIREBIRD_JDBC_PACKAGE);
+            }
+
+            return firebirdLob;
+        }
+
+        protected Object createLobHandle(ResultSet resultSet, String shortClassName) throws SQLException {
+
+            if (connection == null) {
+
+                connection = resultSet.getStatement().getConnection();
+            }
+
+            try {
+
+                return DynamicLibraryLoader.loadingObjectFromClassLoader(connection, shortClassName);
+
+            } catch (ClassNotFoundException e) {
+
+                Log.error("Error creating LOB handle " + shortClassName, e);
+                return null;
+            }
+        }
+
+    }
+
+    static class BlobValueReader extends AbstractLobValueReader {
+
+        @Override
+        public void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException {
+
+            Blob blob = resultSet.getBlob(column);
+            if (blob != null && isFirebirdLob(blob)) {
+
+                IFBBlob ifbBlob = (IFBBlob) createLobHandle(resultSet, "FBBlobImpl");
+                ifbBlob.detach(blob);
+                value.setValue(ifbBlob);
+
+            } else {
+
+                value.setValue(blob);
+            }
+        }
+
+    }
+
+    static class ClobValueReader extends AbstractLobValueReader {
+
+        private final String charset;
+
+        ClobValueReader(String charset) {
+
+            this.charset = charset;
+        }
+
+        @Override
+        public void read(ResultSet resultSet, int column, RecordDataItem value) throws SQLException {
+
+            Clob clob = resultSet.getClob(column);
+            if (clob != null && isFirebirdLob(clob)) {
+
+                IFBClob ifbClob = (IFBClob) createLobHandle(resultSet, "FBClobImpl");
+                ifbClob.detach(clob);
+                value.setValue(ifbClob);
+
+            } else {
+
+                value.setValue(clob);
+            }
+
+            ((ClobRecordDataItem) value).setCharset(charset);
+        }
+
+    }
+
+}
@@ -0,0 +1,950 @@
+/*
+ * ResultSetDataStore.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import org.apache.commons.lang.StringUtils;
+import org.executequery.log.Log;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store of the fetched result set values.
+ * <p>
+ * Numeric columns are held in primitive arrays with null bitmaps and
+ * character columns are dictionary encoded while the number of distinct
+ * values stays low. Record data items are created only for the rows
+ * requested by the table (visible rows kept in a bounded cache) and for
+ * the rows handed out for editing, which stay pinned in the store.
+ * LOB columns keep their record data items as these hold the detached
+ * LOB handles and the lazily read content.
+ * <p>
+ * Rows added by the user (or supplied as record data items) are kept
+ * as they are next to the fetched rows.
+ * <p>
+ * With a memory budget set, the values of the rows fetched once the
+ * estimated size of the stored values exceeds the budget are written
+ * to a {@link ResultSetSpillFile} instead of the column stores.
+ */
+public class ResultSetDataStore {
+
+    /**
+     * The maximum number of unpinned materialized rows kept
+     */
+    private static final int MAX_CACHED_ROWS = 1024;
+
+    /**
+     * The maximum number of distinct values of a dictionary encoded column
+     */
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final List<ResultSetColumnHeader> columnHeaders;
+
+    private final RecordDataItemFactory recordDataItemFactory;
+
+    private ColumnStore[] columns;
+
+    private String[] charsets;
+
+    /**
+     * Row handles in display order - the index of a fetched row
+     * or the encoded index of an added row (see {@link #addedRowHandle(int)})
+     */
+    private int[] rows;
+
+    private int rowCount;
+
+    private int storedRowCount;
+
+    private final List<List<RecordDataItem>> addedRows;
+
+    private final Map<Integer, List<RecordDataItem>> pinnedRows;
+
+    private final Map<Integer, List<RecordDataItem>> cachedRows;
+
+    /**
+     * The memory budget in bytes for the stored values - 0 for no limit
+     */
+    private long memoryBudget;
+
+    private long estimatedSize;
+
+    private ResultSetSpillFile spillFile;
+
+    /**
+     * The index of the first stored row held in the spill file
+     */
+    private int spillStartRow;
+
+    private Object[] spillValues;
+
+    private boolean[] spillNulls;
+
+    public ResultSetDataStore(List<ResultSetColumnHeader> columnHeaders, RecordDataItemFactory recordDataItemFactory) {
+
+        this.columnHeaders = columnHeaders;
+        this.recordDataItemFactory = recordDataItemFactory;
+
+        rows = new int[INITIAL_CAPACITY];
+        columns = new ColumnStore[0];
+        addedRows = new ArrayList<List<RecordDataItem>>();
+        pinnedRows = new HashMap<Integer, List<RecordDataItem>>();
+        cachedRows = new LinkedHashMap<Integer, List<RecordDataItem>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<RecordDataItem>> eldest) {
+
+                if (size() > MAX_CACHED_ROWS) {
+
+                    if (isModified(eldest.getValue())) {
+
+                        pinnedRows.put(eldest.getKey(), eldest.getValue());
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Clears the store and prepares the column storage for the
+     * current column headers.
+     *
+     * @param charsets the character set of each column (used for CLOB values)
+     */
+    public void reset(String[] charsets) {
+
+        clear();
+        this.charsets = charsets;
+
+        columns = new ColumnStore[columnHeaders.size()];
+        for (int i = 0; i < columns.length; i++) {
+
+            columns[i] = createColumnStore(columnHeaders.get(i).getDataType());
+        }
+    }
+
+    public void clear() {
+
+        closeSpillFile();
+        rowCount = 0;
+        storedRowCount = 0;
+        estimatedSize = 0;
+        columns = new ColumnStore[0];
+        addedRows.clear();
+        pinnedRows.clear();
+        cachedRows.clear();
+    }
+
+    public int getRowCount() {
+
+        return rowCount;
+    }
+
+    /**
+     * Sets the memory budget of the stored values. Rows fetched once
+     * the budget is exceeded are spilled to a temporary file.
+     *
+     * @param memoryBudget the budget in bytes - 0 to keep all rows in memory
+     */
+    public void setMemoryBudget(long memoryBudget) {
+
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns whether any fetched rows were spilled to disk.
+     */
+    public boolean isSpilling() {
+
+        return spillFile != null;
+    }
+
+    /**
+     * Returns whether the specified column keeps the record data items
+     * of the fetched rows, so a new item must be supplied for each row.
+     */
+    public boolean keepsRecordDataItems(int column) {
+
+        return columns[column] instanceof ItemColumnStore;
+    }
+
+    /**
+     * Appends the value of the specified column for the row being fetched.
+     *
+     * @param value   the value as set to the record data item
+     * @param sqlNull whether the value was SQL NULL
+     */
+    public void appendValue(int column, Object value, boolean sqlNull) {
+
+        if (spillFile != null) {
+
+            spillValues[column] = value;
+            spillNulls[column] = sqlNull;
+            return;
+        }
+
+        estimatedSize += estimateSize(value);
+        ValueColumnStore columnStore = (ValueColumnStore) columns[column];
+        if (!columnStore.append(value, sqlNull)) {
+
+            columnStore = new ObjectColumnStore(columnStore);
+            columnStore.append(value, sqlNull);
+            columns[column] = columnStore;
+        }
+    }
+
+    /**
+     * Appends the record data item of the specified column for the row
+     * being fetched - for the columns keeping their items.
+     */
+    public void appendRecordDataItem(int column, RecordDataItem value) {
+
+        ((ItemColumnStore) columns[column]).append(value);
+    }
+
+    /**
+     * Completes the row being fetched once all column values were appended.
+     */
+    public void completeRow() {
+
+        if (spillFile != null) {
+
+            spillFile.appendRow(spillValues, spillNulls);
+            Arrays.fill(spillValues, null);
+            Arrays.fill(spillNulls, false);
+        }
+
+        addRowHandle(storedRowCount++);
+
+        if (spillFile == null && memoryBudget > 0 && estimatedSize > memoryBudget) {
+
+            startSpilling();
+        }
+    }
+
+    /**
+     * Adds a row of record data items.
+     */
+    public void addRow(List<RecordDataItem> row) {
+
+        addedRows.add(row);
+        addRowHandle(addedRowHandle(addedRows.size() - 1));
+    }
+
+    public void removeRow(int row) {
+
+        int handle = rows[row];
+        if (isAddedRow(handle)) {
+
+            addedRows.set(addedRowIndex(handle), null);
+
+        } else {
+
+            pinnedRows.remove(handle);
+            cachedRows.remove(handle);
+        }
+
+        System.arraycopy(rows, row + 1, rows, row, rowCount - row - 1);
+        rowCount--;
+    }
+
+    /**
+     * Returns the record data items of the specified row for display.
+     * The items of unmodified rows may be released and recreated later.
+     */
+    public List<RecordDataItem> getRow(int row) {
+
+        int handle = rows[row];
+        if (isAddedRow(handle)) {
+
+            return addedRows.get(addedRowIndex(handle));
+        }
+
+        List<RecordDataItem> rowData = pinnedRows.get(handle);
+        if (rowData == null) {
+
+            rowData = cachedRows.get(handle);
+            if (rowData == null) {
+
+                rowData = createRow(handle);
+                cachedRows.put(handle, rowData);
+            }
+        }
+
+        return rowData;
+    }
+
+    /**
+     * Returns the record data items of the specified row and keeps them
+     * for the life of the store - for rows being edited. Rows modified
+     * while only cached are kept when they leave the cache.
+     */
+    public List<RecordDataItem> getPinnedRow(int row) {
+
+        int handle = rows[row];
+        if (isAddedRow(handle)) {
+
+            return addedRows.get(addedRowIndex(handle));
+        }
+
+        List<RecordDataItem> rowData = pinnedRows.get(handle);
+        if (rowData == null) {
+
+            rowData = cachedRows.remove(handle);
+            if (rowData == null) {
+
+                rowData = createRow(handle);
+            }
+            pinnedRows.put(handle, rowData);
+        }
+
+        return rowData;
+    }
+
+    /**
+     * Returns the value of the specified cell as returned by
+     * {@link RecordDataItem#getValue()} without creating the item.
+     */
+    public Object getValue(int row, int column) {
+
+        List<RecordDataItem> rowData = materializedRow(row);
+        if (rowData != null) {
+
+            return column < rowData.size() ? rowData.get(column).getValue() : null;
+        }
+
+        int index = rows[row];
+        if (columnSqlNull(column, index)) {
+
+            return null;
+        }
+        return columnValue(column, index);
+    }
+
+    /**
+     * Returns the values of the specified column for every row as
+     * {@link #getValue(int, int)} does. Spilled rows are read in one
+     * sequential pass over the spill file rather than row by row.
+     *
+     * @param column the column index
+     * @return the column values in row order
+     */
+    public Object[] getColumnValues(int column) {
+
+        Object[] spilledValues = null;
+        if (spillFile != null && !(columns[column] instanceof ItemColumnStore)) {
+
+            spilledValues = spillFile.getColumnValues(column);
+        }
+
+        Object[] values = new Object[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+
+            int handle = rows[row];
+            if (spilledValues != null && !isAddedRow(handle) && handle >= spillStartRow
+                    && materializedRow(row) == null) {
+
+                values[row] = spilledValues[handle - spillStartRow];
+
+            } else {
+
+                values[row] = getValue(row, column);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Returns whether any value of the specified row contains the pattern
+     * as {@link RecordDataItem#valueContains(String)} does.
+     */
+    public boolean rowContains(int row, String pattern) {
+
+        List<RecordDataItem> rowData = materializedRow(row);
+        if (rowData != null) {
+
+            for (RecordDataItem recordDataItem : rowData) {
+
+                if (recordDataItem.valueContains(pattern)) {
+
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int index = rows[row];
+        for (int i = 0; i < columns.length; i++) {
+
+            ColumnStore columnStore = columns[i];
+            if (columnStore instanceof ItemColumnStore) {
+
+                if (((ItemColumnStore) columnStore).item(index).valueContains(pattern)) {
+
+                    return true;
+                }
+
+            } else if (!columnSqlNull(i, index)) {
+
+                Object value = columnValue(i, index);
+                if (value != null && StringUtils.containsIgnoreCase(value.toString(), pattern)) {
+
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private List<RecordDataItem> materializedRow(int row) {
+
+        int handle = rows[row];
+        if (isAddedRow(handle)) {
+
+            return addedRows.get(addedRowIndex(handle));
+        }
+
+        List<RecordDataItem> rowData = pinnedRows.get(handle);
+        if (rowData == null) {
+
+            rowData = cachedRows.get(handle);
+        }
+        return rowData;
+    }
+
+    private List<RecordDataItem> createRow(int index) {
+
+        List<RecordDataItem> rowData = new ArrayList<RecordDataItem>(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+
+            ColumnStore columnStore = columns[i];
+            if (columnStore instanceof ItemColumnStore) {
+
+                rowData.add(((ItemColumnStore) columnStore).item(index));
+                continue;
+            }
+
+            RecordDataItem value = recordDataItemFactory.create(columnHeaders.get(i));
+            value.setValue(columnValue(i, index));
+            if (columnSqlNull(i, index)) {
+
+                value.setNull();
+            }
+
+            if (value instanceof ClobRecordDataItem && charsets != null) {
+
+                ((ClobRecordDataItem) value).setCharset(charsets[i]);
+            }
+
+            rowData.add(value);
+        }
+
+        return rowData;
+    }
+
+    private Object columnValue(int column, int index) {
+
+        if (index >= spillStartRow && spillFile != null && !(columns[column] instanceof ItemColumnStore)) {
+
+            return spillFile.getValue(index - spillStartRow, column);
+        }
+        return columns[column].get(index);
+    }
+
+    private boolean columnSqlNull(int column, int index) {
+
+        if (index >= spillStartRow && spillFile != null && !(columns[column] instanceof ItemColumnStore)) {
+
+            return spillFile.isSqlNull(index - spillStartRow, column);
+        }
+        return columns[column].isSqlNull(index);
+    }
+
+    private void startSpilling() {
+
+        try {
+
+            spillFile = new ResultSetSpillFile(columns.length);
+            spillStartRow = storedRowCount;
+            spillValues = new Object[columns.length];
+            spillNulls = new boolean[columns.length];
+
+        } catch (IOException e) {
+
+            Log.warning("Unable to create the result set spill file - keeping all rows in memory: " + e.getMessage());
+            memoryBudget = 0;
+        }
+    }
+
+    private void closeSpillFile() {
+
+        if (spillFile != null) {
+
+            spillFile.close();
+            spillFile = null;
+            spillValues = null;
+            spillNulls = null;
+        }
+        spillStartRow = 0;
+    }
+
+    /**
+     * Returns the approximate heap size of the stored value.
+     */
+    private static long estimateSize(Object value) {
+
+        if (value == null) {
+
+            return 1;
+        }
+
+        if (value instanceof String) {
+
+            return 40 + 2L * ((String) value).length();
+        }
+
+        if (value instanceof byte[]) {
+
+            return 16 + ((byte[]) value).length;
+        }
+
+        return value instanceof Number ? 16 : 32;
+    }
+
+    private boolean isModified(List<RecordDataItem> rowData) {
+
+        for (RecordDataItem recordDataItem : rowData) {
+
+            if (recordDataItem.isChanged() || recordDataItem.isDeleted() || recordDataItem.isNew()) {
+
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addRowHandle(int handle) {
+
+        if (rowCount == rows.length) {
+
+            rows = Arrays.copyOf(rows, newCapacity(rows.length));
+        }
+        rows[rowCount++] = handle;
+    }
+
+    private static int addedRowHandle(int index) {
+
+        return -(index + 1);
+    }
+
+    private static int addedRowIndex(int handle) {
+
+        return -handle - 1;
+    }
+
+    private static boolean isAddedRow(int handle) {
+
+        return handle < 0;
+    }
+
+    private static int newCapacity(int capacity) {
+
+        return Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1));
+    }
+
+    private ColumnStore createColumnStore(int dataType) {
+
+        switch (dataType) {
+
+            case Types.LONGVARCHAR:
+            case Types.CLOB:
+            case Types.LONGVARBINARY:
+            case Types.VARBINARY:
+            case Types.BINARY:
+            case Types.BLOB:
+                return new ItemColumnStore();
+
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return new IntColumnStore();
+
+            case Types.BIGINT:
+                return new LongColumnStore();
+
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleColumnStore();
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+                return new DictionaryColumnStore();
+
+            default:
+                return new ObjectColumnStore();
+        }
+
+    }
+
+    /**
+     * Storage of one column of the fetched rows.
+     */
+    private abstract static class ColumnStore {
+
+        protected int size;
+
+        abstract Object get(int index);
+
+        abstract boolean isSqlNull(int index);
+
+        int size() {
+
+            return size;
+        }
+
+    }
+
+    /**
+     * Storage of the values of one column. Values are stored as set to the
+     * record data item with the SQL NULL flag applied on top with setNull().
+     */
+    private abstract static class ValueColumnStore extends ColumnStore {
+
+        /**
+         * Appends the value returning false if this store can not hold it.
+         */
+        abstract boolean append(Object value, boolean sqlNull);
+
+    }
+
+    private static class ObjectColumnStore extends ValueColumnStore {
+
+        private Object[] values;
+
+        private final BitSet sqlNulls;
+
+        ObjectColumnStore() {
+
+            values = new Object[INITIAL_CAPACITY];
+            sqlNulls = new BitSet();
+        }
+
+        ObjectColumnStore(ColumnStore columnStore) {
+
+            values = new Object[Math.max(INITIAL_CAPACITY, columnStore.size())];
+            sqlNulls = new BitSet();
+            for (int i = 0, n = columnStore.size(); i < n; i++) {
+
+                append(columnStore.get(i), columnStore.isSqlNull(i));
+            }
+        }
+
+        @Override
+        boolean append(Object value, boolean sqlNull) {
+
+            if (size == values.length) {
+
+                values = Arrays.copyOf(values, newCapacity(values.length));
+            }
+
+            if (sqlNull) {
+
+                sqlNulls.set(size);
+            }
+            values[size++] = value;
+            return true;
+        }
+
+        @Override
+        Object get(int index) {
+
+            return values[index];
+        }
+
+        @Override
+        boolean isSqlNull(int index) {
+
+            return sqlNulls.get(index);
+        }
+
+    }
+
+    /**
+     * Base of the primitive column stores - a null value is kept
+     * in the null bitmap.
+     */
+    private abstract static class PrimitiveColumnStore extends ValueColumnStore {
+
+        protected final BitSet nulls = new BitSet();
+
+        @Override
+        boolean append(Object value, boolean sqlNull) {
+
+            if (value == null) {
+
+                ensureCapacity(size + 1);
+                nulls.set(size++);
+                return true;
+            }
+
+            if (sqlNull || !accepts(value)) {
+
+                return false;
+            }
+
+            ensureCapacity(size + 1);
+            set(size++, value);
+            return true;
+        }
+
+        @Override
+        Object get(int index) {
+
+            return nulls.get(index) ? null : value(index);
+        }
+
+        @Override
+        boolean isSqlNull(int index) {
+
+            return nulls.get(index);
+        }
+
+        abstract boolean accepts(Object value);
+
+        abstract void ensureCapacity(int capacity);
+
+        abstract void set(int index, Object value);
+
+        abstract Object value(int index);
+
+    }
+
+    private static class IntColumnStore extends PrimitiveColumnStore {
+
+        private int[] values = new int[INITIAL_CAPACITY];
+
+        @Override
+        boolean accepts(Object value) {
+
+            return value.getClass() == Integer.class;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+
+            if (capacity > values.length) {
+
+                values = Arrays.copyOf(values, newCapacity(values.length));
+            }
+        }
+
+        @Override
+        void set(int index, Object value) {
+
+            values[index] = (Integer) value;
+        }
+
+        @Override
+        Object value(int index) {
+
+            return values[index];
+        }
+
+    }
+
+    private static class LongColumnStore extends PrimitiveColumnStore {
+
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        @Override
+        boolean accepts(Object value) {
+
+            return value.getClass() == Long.class;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+
+            if (capacity > values.length) {
+
+                values = Arrays.copyOf(values, newCapacity(values.length));
+            }
+        }
+
+        @Override
+        void set(int index, Object value) {
+
+            values[index] = (Long) value;
+        }
+
+        @Override
+        Object value(int index) {
+
+            return values[index];
+        }
+
+    }
+
+    private static class DoubleColumnStore extends PrimitiveColumnStore {
+
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        @Override
+        boolean accepts(Object value) {
+
+            return value.getClass() == Double.class;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+
+            if (capacity > values.length) {
+
+                values = Arrays.copyOf(values, newCapacity(values.length));
+            }
+        }
+
+        @Override
+        void set(int index, Object value) {
+
+            values[index] = (Double) value;
+        }
+
+        @Override
+        Object value(int index) {
+
+            return values[index];
+        }
+
+    }
+
+    /**
+     * Dictionary encoded string column for low cardinality values.
+     * Replaced with the object store once the dictionary grows too large.
+     */
+    private static class DictionaryColumnStore extends ValueColumnStore {
+
+        private static final int NULL_CODE = -1;
+
+        private int[] codes = new int[INITIAL_CAPACITY];
+
+        private final List<String> dictionary = new ArrayList<String>();
+
+        private final Map<String, Integer> dictionaryCodes = new HashMap<String, Integer>();
+
+        @Override
+        boolean append(Object value, boolean sqlNull) {
+
+            int code = NULL_CODE;
+            if (value != null) {
+
+                if (sqlNull || value.getClass() != String.class) {
+
+                    return false;
+                }
+
+                Integer existing = dictionaryCodes.get(value);
+                if (existing == null) {
+
+                    if (dictionary.size() == MAX_DICTIONARY_SIZE) {
+
+                        return false;
+                    }
+
+                    existing = dictionary.size();
+                    dictionary.add((String) value);
+                    dictionaryCodes.put((String) value, existing);
+                }
+                code = existing;
+            }
+
+            if (size == codes.length) {
+
+                codes = Arrays.copyOf(codes, newCapacity(codes.length));
+            }
+            codes[size++] = code;
+            return true;
+        }
+
+        @Override
+        Object get(int index) {
+
+            int code = codes[index];
+            return code == NULL_CODE ? null : dictionary.get(code);
+        }
+
+        @Override
+        boolean isSqlNull(int index) {
+
+            return codes[index] == NULL_CODE;
+        }
+
+    }
+
+    /**
+     * Column keeping the record data items themselves (LOB columns).
+     */
+    private static class ItemColumnStore extends ColumnStore {
+
+        private RecordDataItem[] items = new RecordDataItem[INITIAL_CAPACITY];
+
+        void append(RecordDataItem item) {
+
+            if (size == items.length) {
+
+                items = Arrays.copyOf(items, newCapacity(items.length));
+            }
+            items[size++] = item;
+        }
+
+        RecordDataItem item(int index) {
+
+            return items[index];
+        }
+
+        @Override
+        Object get(int index) {
+
+            return items[index].getValue();
+        }
+
+        @Override
+        boolean isSqlNull(int index) {
+
+            return items[index].isValueNull();
+        }
+
+    }
+
+}
@@ -0,0 +1,644 @@
+/*
+ * ResultSetSpillFile.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Temporary file holding the result set rows fetched beyond the memory
+ * budget of the result set data store.
+ * <p>
+ * Rows are encoded in a compact binary form and written in pages.
+ * Written pages are read back through memory mapped segments of the file
+ * and decoded pages are kept in a small cache. Values of types without
+ * a binary form stay on the heap and are referenced from the file.
+ */
+public class ResultSetSpillFile {
+
+    private static final int PAGE_SIZE = 64 * 1024;
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private static final int MAX_CACHED_PAGES = 32;
+
+    // value tags
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte BIG_INTEGER = 10;
+    private static final byte BYTES = 11;
+    private static final byte LOCAL_DATE = 12;
+    private static final byte LOCAL_TIME = 13;
+    private static final byte LOCAL_DATE_TIME = 14;
+    private static final byte OFFSET_TIME = 15;
+    private static final byte OFFSET_DATE_TIME = 16;
+    private static final byte HEAP_REFERENCE = 17;
+
+    /**
+     * Flag set on the tag of a non-null value read as SQL NULL
+     */
+    private static final byte SQL_NULL_FLAG = (byte) 0x80;
+
+    private final int columnCount;
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    private long fileLength;
+
+    private int rowCount;
+
+    // page index
+
+    private int pageCount;
+
+    private int[] pageFirstRows;
+
+    private long[] pageOffsets;
+
+    private int[] pageLengths;
+
+    /**
+     * The page being written
+     */
+    private ByteBuffer pageBuffer;
+
+    private int pageBufferFirstRow;
+
+    /**
+     * The decoded rows of the page being written - reset on append
+     */
+    private DecodedPage pageBufferRows;
+
+    private ByteBuffer rowBuffer;
+
+    private MappedByteBuffer[] segments;
+
+    private final List<Object> heapValues;
+
+    private final Map<Integer, DecodedPage> decodedPages;
+
+    public ResultSetSpillFile(int columnCount) throws IOException {
+
+        this.columnCount = columnCount;
+
+        file = File.createTempFile("redexpert-resultset-", ".spill");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+
+        pageFirstRows = new int[16];
+        pageOffsets = new long[16];
+        pageLengths = new int[16];
+        pageBuffer = ByteBuffer.allocate(PAGE_SIZE);
+        rowBuffer = ByteBuffer.allocate(1024);
+        segments = new MappedByteBuffer[4];
+        heapValues = new ArrayList<Object>();
+        decodedPages = new LinkedHashMap<Integer, DecodedPage>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DecodedPage> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+
+        Log.debug("Result set rows exceed the memory budget - spilling to " + file.getAbsolutePath());
+    }
+
+    public int getRowCount() {
+
+        return rowCount;
+    }
+
+    /**
+     * Appends the row values.
+     *
+     * @param values   the row values as set to the record data items
+     * @param sqlNulls whether each value was SQL NULL
+     */
+    public void appendRow(Object[] values, boolean[] sqlNulls) {
+
+        rowBuffer.clear();
+        for (int i = 0; i < columnCount; i++) {
+
+            writeValue(values[i], sqlNulls[i]);
+        }
+        rowBuffer.flip();
+
+        if (pageBuffer.position() > 0 && pageBuffer.remaining() < rowBuffer.remaining()) {
+
+            flushPage();
+        }
+
+        if (pageBuffer.remaining() < rowBuffer.remaining()) {
+
+            pageBuffer = grow(pageBuffer, rowBuffer.remaining());
+        }
+
+        if (pageBuffer.position() == 0) {
+
+            pageBufferFirstRow = rowCount;
+        }
+
+        pageBuffer.put(rowBuffer);
+        pageBufferRows = null;
+        rowCount++;
+    }
+
+    public Object getValue(int row, int column) {
+
+        DecodedPage page = pageForRow(row);
+        int index = (row - page.firstRow) * columnCount + column;
+        return page.values[index];
+    }
+
+    public boolean isSqlNull(int row, int column) {
+
+        DecodedPage page = pageForRow(row);
+        int index = (row - page.firstRow) * columnCount + column;
+        return page.sqlNulls.get(index);
+    }
+
+    /**
+     * Returns the values of the specified column for every row in row
+     * order, reading the pages once in file order. The values of SQL NULL
+     * are returned as null. Pages decoded here are not added to the cache.
+     *
+     * @param column the column index
+     * @return the column values
+     */
+    public Object[] getColumnValues(int column) {
+
+        Object[] columnValues = new Object[rowCount];
+        for (int page = 0; page < pageCount; page++) {
+
+            DecodedPage decodedPage = decodedPages.get(page);
+            if (decodedPage == null) {
+
+                int lastRow = page + 1 < pageCount ? pageFirstRows[page + 1] : pageBufferFirstRow;
+                decodedPage = decode(pageFirstRows[page], lastRow - pageFirstRows[page], mappedPage(page));
+            }
+            copyColumn(decodedPage, column, columnValues);
+        }
+
+        if (pageBuffer.position() > 0) {
+
+            copyColumn(pageForRow(pageBufferFirstRow), column, columnValues);
+        }
+
+        return columnValues;
+    }
+
+    private void copyColumn(DecodedPage page, int column, Object[] columnValues) {
+
+        int rows = page.values.length / columnCount;
+        for (int i = 0; i < rows; i++) {
+
+            int index = i * columnCount + column;
+            if (!page.sqlNulls.get(index)) {
+
+                columnValues[page.firstRow + i] = page.values[index];
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    public void close() {
+
+        decodedPages.clear();
+        pageBufferRows = null;
+        heapValues.clear();
+        segments = new MappedByteBuffer[0];
+
+        try {
+
+            channel.close();
+            randomAccessFile.close();
+
+        } catch (IOException e) {
+
+            Log.debug("Error closing result set spill file " + file.getAbsolutePath(), e);
+        }
+
+        if (!file.delete()) {
+
+            // mapped segments may still hold the file until collected
+            Log.debug("Result set spill file " + file.getAbsolutePath() + " will be deleted on exit");
+        }
+    }
+
+    private void flushPage() {
+
+        pageBuffer.flip();
+        int length = pageBuffer.remaining();
+
+        // pages never cross a mapped segment boundary
+        long segmentOffset = fileLength % SEGMENT_SIZE;
+        if (segmentOffset + length > SEGMENT_SIZE && segmentOffset > 0) {
+
+            fileLength += SEGMENT_SIZE - segmentOffset;
+        }
+
+        try {
+
+            long position = fileLength;
+            while (pageBuffer.hasRemaining()) {
+
+                position += channel.write(pageBuffer, position);
+            }
+
+        } catch (IOException e) {
+
+            throw new DataSourceException(e);
+        }
+
+        if (pageCount == pageOffsets.length) {
+
+            int capacity = pageCount * 2;
+            pageFirstRows = Arrays.copyOf(pageFirstRows, capacity);
+            pageOffsets = Arrays.copyOf(pageOffsets, capacity);
+            pageLengths = Arrays.copyOf(pageLengths, capacity);
+        }
+
+        pageFirstRows[pageCount] = pageBufferFirstRow;
+        pageOffsets[pageCount] = fileLength;
+        pageLengths[pageCount] = length;
+        pageCount++;
+
+        fileLength += length;
+        pageBuffer.clear();
+        pageBufferRows = null;
+        pageBufferFirstRow = rowCount;
+    }
+
+    private DecodedPage pageForRow(int row) {
+
+        if (row >= pageBufferFirstRow && pageBuffer.position() > 0) {
+
+            // rows of the page being written are decoded from the page buffer
+            if (pageBufferRows == null) {
+
+                ByteBuffer buffer = pageBuffer.duplicate();
+                buffer.flip();
+                pageBufferRows = decode(pageBufferFirstRow, rowCount - pageBufferFirstRow, buffer);
+            }
+            return pageBufferRows;
+        }
+
+        int page = pageIndex(row);
+        DecodedPage decodedPage = decodedPages.get(page);
+        if (decodedPage == null) {
+
+            int lastRow = page + 1 < pageCount ? pageFirstRows[page + 1] : pageBufferFirstRow;
+            decodedPage = decode(pageFirstRows[page], lastRow - pageFirstRows[page], mappedPage(page));
+            decodedPages.put(page, decodedPage);
+        }
+
+        return decodedPage;
+    }
+
+    private int pageIndex(int row) {
+
+        int index = Arrays.binarySearch(pageFirstRows, 0, pageCount, row);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private ByteBuffer mappedPage(int page) {
+
+        long offset = pageOffsets[page];
+        int length = pageLengths[page];
+        int segment = (int) (offset / SEGMENT_SIZE);
+        long segmentStart = segment * SEGMENT_SIZE;
+
+        if (segment >= segments.length) {
+
+            segments = Arrays.copyOf(segments, Math.max(segments.length * 2, segment + 1));
+        }
+
+        MappedByteBuffer mapped = segments[segment];
+        if (mapped == null || segmentStart + mapped.capacity() < offset + length) {
+
+            try {
+
+                long size = Math.min(SEGMENT_SIZE, fileLength - segmentStart);
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, size);
+                segments[segment] = mapped;
+
+            } catch (IOException e) {
+
+                throw new DataSourceException(e);
+            }
+        }
+
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) (offset - segmentStart));
+        buffer.limit((int) (offset - segmentStart) + length);
+        return buffer.slice();
+    }
+
+    private DecodedPage decode(int firstRow, int rows, ByteBuffer buffer) {
+
+        DecodedPage page = new DecodedPage(firstRow, rows * columnCount);
+        for (int i = 0, n = rows * columnCount; i < n; i++) {
+
+            byte tag = buffer.get();
+            if ((tag & SQL_NULL_FLAG) != 0) {
+
+                page.sqlNulls.set(i);
+                tag &= ~SQL_NULL_FLAG;
+
+            } else if (tag == NULL) {
+
+                page.sqlNulls.set(i);
+            }
+
+            page.values[i] = readValue(tag, buffer);
+        }
+
+        return page;
+    }
+
+    private Object readValue(byte tag, ByteBuffer buffer) {
+
+        switch (tag) {
+
+            case NULL:
+                return null;
+
+            case STRING:
+                return new String(readBytes(buffer), StandardCharsets.UTF_8);
+
+            case INTEGER:
+                return buffer.getInt();
+
+            case LONG:
+                return buffer.getLong();
+
+            case SHORT:
+                return buffer.getShort();
+
+            case BYTE:
+                return buffer.get();
+
+            case DOUBLE:
+                return buffer.getDouble();
+
+            case FLOAT:
+                return buffer.getFloat();
+
+            case BOOLEAN:
+                return buffer.get() != 0;
+
+            case BIG_DECIMAL:
+                int scale = buffer.getInt();
+                return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(buffer));
+
+            case BYTES:
+                return readBytes(buffer);
+
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(buffer.getLong());
+
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(buffer.getLong());
+
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.of(LocalDate.ofEpochDay(buffer.getLong()), LocalTime.ofNanoOfDay(buffer.getLong()));
+
+            case OFFSET_TIME:
+                return OffsetTime.of(LocalTime.ofNanoOfDay(buffer.getLong()), ZoneOffset.ofTotalSeconds(buffer.getInt()));
+
+            case OFFSET_DATE_TIME:
+                LocalDateTime dateTime = LocalDateTime.of(LocalDate.ofEpochDay(buffer.getLong()), LocalTime.ofNanoOfDay(buffer.getLong()));
+                return OffsetDateTime.of(dateTime, ZoneOffset.ofTotalSeconds(buffer.getInt()));
+
+            case HEAP_REFERENCE:
+                return heapValues.get(buffer.getInt());
+
+            default:
+                throw new DataSourceException("Unknown value tag in result set spill file - " + tag);
+        }
+
+    }
+
+    private byte[] readBytes(ByteBuffer buffer) {
+
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private void writeValue(Object value, boolean sqlNull) {
+
+        if (value == null) {
+
+            ensureRowCapacity(1);
+            rowBuffer.put(NULL);
+            return;
+        }
+
+        byte flag = sqlNull ? SQL_NULL_FLAG : 0;
+        Class<?> type = value.getClass();
+
+        if (type == String.class) {
+
+            writeBytes(STRING, flag, ((String) value).getBytes(StandardCharsets.UTF_8));
+
+        } else if (type == Integer.class) {
+
+            writeTag(INTEGER, flag, 4);
+            rowBuffer.putInt((Integer) value);
+
+        } else if (type == Long.class) {
+
+            writeTag(LONG, flag, 8);
+            rowBuffer.putLong((Long) value);
+
+        } else if (type == Short.class) {
+
+            writeTag(SHORT, flag, 2);
+            rowBuffer.putShort((Short) value);
+
+        } else if (type == Byte.class) {
+
+            writeTag(BYTE, flag, 1);
+            rowBuffer.put((Byte) value);
+
+        } else if (type == Double.class) {
+
+            writeTag(DOUBLE, flag, 8);
+            rowBuffer.putDouble((Double) value);
+
+        } else if (type == Float.class) {
+
+            writeTag(FLOAT, flag, 4);
+            rowBuffer.putFloat((Float) value);
+
+        } else if (type == Boolean.class) {
+
+            writeTag(BOOLEAN, flag, 1);
+            rowBuffer.put((byte) ((Boolean) value ? 1 : 0));
+
+        } else if (type == BigDecimal.class) {
+
+            BigDecimal decimal = (BigDecimal) value;
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            writeTag(BIG_DECIMAL, flag, 8 + unscaled.length);
+            rowBuffer.putInt(decimal.scale());
+            rowBuffer.putInt(unscaled.length);
+            rowBuffer.put(unscaled);
+
+        } else if (type == BigInteger.class) {
+
+            writeBytes(BIG_INTEGER, flag, ((BigInteger) value).toByteArray());
+
+        } else if (type == byte[].class) {
+
+            writeBytes(BYTES, flag, (byte[]) value);
+
+        } else if (type == LocalDate.class) {
+
+            writeTag(LOCAL_DATE, flag, 8);
+            rowBuffer.putLong(((LocalDate) value).toEpochDay());
+
+        } else if (type == LocalTime.class) {
+
+            writeTag(LOCAL_TIME, flag, 8);
+            rowBuffer.putLong(((LocalTime) value).toNanoOfDay());
+
+        } else if (type == LocalDateTime.class) {
+
+            LocalDateTime dateTime = (LocalDateTime) value;
+            writeTag(LOCAL_DATE_TIME, flag, 16);
+            rowBuffer.putLong(dateTime.toLocalDate().toEpochDay());
+            rowBuffer.putLong(dateTime.toLocalTime().toNanoOfDay());
+
+        } else if (type == OffsetTime.class) {
+
+            OffsetTime time = (OffsetTime) value;
+            writeTag(OFFSET_TIME, flag, 12);
+            rowBuffer.putLong(time.toLocalTime().toNanoOfDay());
+            rowBuffer.putInt(time.getOffset().getTotalSeconds());
+
+        } else if (type == OffsetDateTime.class) {
+
+            OffsetDateTime dateTime = (OffsetDateTime) value;
+            writeTag(OFFSET_DATE_TIME, flag, 20);
+            rowBuffer.putLong(dateTime.toLocalDate().toEpochDay());
+            rowBuffer.putLong(dateTime.toLocalTime().toNanoOfDay());
+            rowBuffer.putInt(dateTime.getOffset().getTotalSeconds());
+
+        } else {
+
+            writeTag(HEAP_REFERENCE, flag, 4);
+            rowBuffer.putInt(heapValues.size());
+            heapValues.add(value);
+        }
+
+    }
+
+    private void writeTag(byte tag, byte flag, int length) {
+
+        ensureRowCapacity(1 + length);
+        rowBuffer.put((byte) (tag | flag));
+    }
+
+    private void writeBytes(byte tag, byte flag, byte[] bytes) {
+
+        writeTag(tag, flag, 4 + bytes.length);
+        rowBuffer.putInt(bytes.length);
+        rowBuffer.put(bytes);
+    }
+
+    private void ensureRowCapacity(int length) {
+
+        if (rowBuffer.remaining() < length) {
+
+            rowBuffer = grow(rowBuffer, length);
+        }
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer, int length) {
+
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    private static class DecodedPage {
+
+        private final int firstRow;
+
+        private final Object[] values;
+
+        private final BitSet sqlNulls;
+
+        DecodedPage(int firstRow, int size) {
+
+            this.firstRow = firstRow;
+            values = new Object[size];
+            sqlNulls = new BitSet(size);
+        }
+
+    }
+
+}
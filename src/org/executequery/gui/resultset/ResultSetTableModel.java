@@ -20,8 +20,6 @@
 
 package org.executequery.gui.resultset;
 
-import biz.redsoft.IFBBlob;
-import biz.redsoft.IFBClob;
 import org.apache.commons.lang.StringUtils;
 import org.executequery.GUIUtilities;
 import org.executequery.databasemediators.DatabaseConnection;
@@ -41,12 +39,8 @@ import org.underworldlabs.util.SystemProperties;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.*;
 import java.text.ParseException;
-import java.time.*;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -76,10 +70,15 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     private final List<ResultSetColumnHeader> visibleColumnHeaders;
 
+    /**
+     * The column header index of each visible column
+     */
+    private int[] visibleColumnIndexes;
+
     /**
      * The table values
      */
-    private List<List<RecordDataItem>> tableData;
+    private ResultSetDataStore tableData;
 
     /**
      * result set meta data model
@@ -94,6 +93,16 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     private List<ColumnData> columnDataList;
 
+    /**
+     * The column value readers built for the current result set
+     */
+    private ColumnValueReader[] columnValueReaders;
+
+    /**
+     * Reusable items receiving the column values of the fetched row
+     */
+    private RecordDataItem[] columnValueItems;
+
     boolean isTable;
 
     DefaultStatementExecutor executor;
@@ -121,8 +130,8 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
         columnHeaders = new ArrayList<ResultSetColumnHeader>();
         visibleColumnHeaders = new ArrayList<ResultSetColumnHeader>();
 
-        tableData = new ArrayList<List<RecordDataItem>>();
         recordDataItemFactory = new RecordDataItemFactory();
+        tableData = new ResultSetDataStore(columnHeaders, recordDataItemFactory);
 
         holdMetaData = UserProperties.getInstance().getBooleanProperty("editor.results.metadata");
 
@@ -135,8 +144,13 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     public ResultSetTableModel(List<String> columnHeaders, List<List<RecordDataItem>> tableData) {
 
-        this.tableData = tableData;
         this.columnHeaders = createHeaders(columnHeaders);
+        recordDataItemFactory = new RecordDataItemFactory();
+        this.tableData = new ResultSetDataStore(this.columnHeaders, recordDataItemFactory);
+        for (List<RecordDataItem> row : tableData) {
+
+            this.tableData.addRow(row);
+        }
         visibleColumnHeaders = new ArrayList<ResultSetColumnHeader>();
         resetVisibleColumnHeaders();
     }
@@ -270,6 +284,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     public synchronized void getDataForTable(ResultSet resultSet, int count, List<ColumnData> columnDataList) throws SQLException, InterruptedException {
         recordCount = 0;
         this.columnDataList = columnDataList;
+        createColumnValueReaders(count);
         long time = System.currentTimeMillis();
         fetchSize = SystemProperties.getIntProperty("user", "results.table.fetch.size");
         rsClose = false;
@@ -287,14 +302,32 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             fetchAllRecords(resultSet, count);
         if (Log.isTraceEnabled()) {
 
+            long duration = System.currentTimeMillis() - time;
             Log.trace("Finished populating table model - " + recordCount + " rows - [ "
-                    + MiscUtils.formatDuration(System.currentTimeMillis() - time) + "]");
+                    + MiscUtils.formatDuration(duration) + "]"
+                    + (duration > 0 ? " - " + (recordCount * 1000L / duration) + " rows/sec" : ""));
         }
 
         fireTableStructureChanged();
 
     }
 
+    private void createColumnValueReaders(int count) {
+
+        String[] charsets = new String[count];
+        columnValueReaders = new ColumnValueReader[count];
+        columnValueItems = new RecordDataItem[count];
+        ColumnValueReaderFactory factory = new ColumnValueReaderFactory();
+        for (int i = 0; i < count; i++) {
+
+            charsets[i] = columnDataList != null ? columnDataList.get(i).getCharset() : CreateTableSQLSyntax.NONE;
+            columnValueReaders[i] = factory.create(columnHeaders.get(i), charsets[i]);
+            columnValueItems[i] = recordDataItemFactory.create(columnHeaders.get(i));
+        }
+
+        tableData.reset(charsets);
+    }
+
     public void setFetchAll(boolean fetchAll) {
         this.fetchAll = fetchAll;
     }
@@ -337,6 +370,8 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     }
 
     private void fetchAllRecords(ResultSet resultSet, int count) throws SQLException, InterruptedException {
+        tableData.setMemoryBudget(
+                SystemProperties.getIntProperty("user", "results.table.fetch.all.memory.limit") * 1024L * 1024L);
         while (resultSet.next())
             addingRecord(resultSet, count);
         fireTableDataChanged();
@@ -451,27 +486,6 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     }
 
-    private void asStringOrObject(RecordDataItem value, ResultSet resultSet, int column) throws SQLException {
-
-        // often getString returns a more useful representation
-        // return using getString where object.toString is the default impl
-
-        Object valueAsObject = resultSet.getObject(column);
-        String valueAsString = resultSet.getString(column);
-
-        if (valueAsObject != null) {
-
-            String valueAsObjectToString = valueAsObject.toString();
-            String toString = valueAsObject.getClass().getName() + "@" + Integer.toHexString(valueAsObject.hashCode());
-            if (!StringUtils.equals(valueAsObjectToString, toString)) {
-
-                valueAsString = valueAsObjectToString;
-            }
-        }
-
-        value.setValue(valueAsString);
-    }
-
     private boolean isOpenAndValid(ResultSet resultSet) {
 
         try {
@@ -509,16 +523,26 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     private void clearData() {
 
-        if (tableData != null) {
+        tableData.clear();
 
-            tableData.clear();
+        fireTableStructureChanged();
+    }
 
-        } else {
+    /**
+     * Releases the fetched rows including the temporary file
+     * holding the rows spilled to disk with fetch all.
+     */
+    public void close() {
 
-            tableData = new ArrayList<List<RecordDataItem>>(0);
-        }
+        tableData.clear();
+    }
 
-        fireTableStructureChanged();
+    /**
+     * Returns whether any fetched rows were spilled to disk.
+     */
+    public boolean isSpilling() {
+
+        return tableData.isSpilling();
     }
 
     private void addingRecord(ResultSet resultSet, int count) throws SQLException, InterruptedException {
@@ -530,146 +554,19 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             }
 
             recordCount++;
-            List<RecordDataItem> rowData = new ArrayList<RecordDataItem>(count);
 
             for (int i = 1; i <= count; i++) {
 
                 zeroBaseIndex = i - 1;
 
-                ResultSetColumnHeader header = columnHeaders.get(zeroBaseIndex);
-                RecordDataItem value = recordDataItemFactory.create(header);
+                boolean keepsItem = tableData.keepsRecordDataItems(zeroBaseIndex);
+                RecordDataItem value = keepsItem ?
+                        recordDataItemFactory.create(columnHeaders.get(zeroBaseIndex)) :
+                        columnValueItems[zeroBaseIndex];
 
                 try {
 
-                    int dataType = header.getDataType();
-                    switch (dataType) {
-
-                        // some drivers (informix for example)
-                        // was noticed to return the hashcode from
-                        // getObject for -1 data types (eg. longvarchar).
-                        // force string for these - others stick with
-                        // getObject() for default value formatting
-
-                        case Types.CHAR:
-                        case Types.VARCHAR:
-                        case Types.TIME_WITH_TIMEZONE:
-                            value.setValue(resultSet.getObject(i, OffsetTime.class));
-                            break;
-                        case Types.TIMESTAMP_WITH_TIMEZONE:
-                            value.setValue(resultSet.getObject(i, OffsetDateTime.class));
-                            break;
-                        case Types.DATE:
-                            value.setValue(resultSet.getObject(i, LocalDate.class));
-                            break;
-                        case Types.TIME:
-                            value.setValue(resultSet.getObject(i, LocalTime.class));
-                            break;
-                        case Types.TIMESTAMP:
-                            value.setValue(resultSet.getObject(i, LocalDateTime.class));
-                            break;
-                        case Types.LONGVARCHAR:
-                        case Types.CLOB:
-                            Clob clob = resultSet.getClob(i);
-                            if (clob != null && clob.getClass().getName().contains("org.firebirdsql.jdbc")) {
-                                URL[] urls = new URL[0];
-                                Class clazzdb = null;
-                                Object odb = null;
-                                try {
-                                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                                    ClassLoader cl = new URLClassLoader(urls, resultSet.getStatement().getConnection().getClass().getClassLoader());
-                                    clazzdb = cl.loadClass("biz.redsoft.FBClobImpl");
-                                    odb = clazzdb.newInstance();
-                                } catch (ClassNotFoundException e) {
-                                    e.printStackTrace();
-                                } catch (IllegalAccessException e) {
-                                    e.printStackTrace();
-                                } catch (InstantiationException e) {
-                                    e.printStackTrace();
-                                } catch (MalformedURLException e) {
-                                    e.printStackTrace();
-                                }
-
-                                IFBClob ifbClob = (IFBClob) odb;
-                                ifbClob.detach(clob);
-                                value.setValue(ifbClob);
-                            } else {
-                                value.setValue(clob);
-                            }
-                            if (columnDataList != null) {
-                                ((ClobRecordDataItem) value).setCharset(columnDataList.get(i - 1).getCharset());
-                            } else ((ClobRecordDataItem) value).setCharset(CreateTableSQLSyntax.NONE);
-                            break;
-                        case Types.LONGVARBINARY:
-                        case Types.VARBINARY:
-                        case Types.BINARY:
-                            value.setValue(resultSet.getBytes(i));
-                            break;
-                        case Types.BLOB:
-                            Blob blob = resultSet.getBlob(i);
-                            if (blob != null && blob.getClass().getName().contains("org.firebirdsql.jdbc")) {
-                                URL[] urls = new URL[0];
-                                Class clazzdb = null;
-                                Object odb = null;
-                                try {
-                                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                                    ClassLoader cl = new URLClassLoader(urls, resultSet.getStatement().getConnection().getClass().getClassLoader());
-                                    clazzdb = cl.loadClass("biz.redsoft.FBBlobImpl");
-                                    odb = clazzdb.newInstance();
-                                } catch (ClassNotFoundException e) {
-                                    e.printStackTrace();
-                                } catch (IllegalAccessException e) {
-                                    e.printStackTrace();
-                                } catch (InstantiationException e) {
-                                    e.printStackTrace();
-                                } catch (MalformedURLException e) {
-                                    e.printStackTrace();
-                                }
-
-                                IFBBlob ifbBlob = (IFBBlob) odb;
-                                ifbBlob.detach(blob);
-                                value.setValue(ifbBlob);
-                            } else {
-                                value.setValue(blob);
-                            }
-                            break;
-                        case Types.BIT:
-                        case Types.TINYINT:
-                        case Types.SMALLINT:
-                        case Types.INTEGER:
-                        case Types.BIGINT:
-                        case Types.FLOAT:
-                        case Types.REAL:
-                        case Types.DOUBLE:
-                        case Types.NUMERIC:
-                        case Types.DECIMAL:
-                        case Types.NULL:
-                        case Types.OTHER:
-                        case Types.JAVA_OBJECT:
-                        case Types.DISTINCT:
-                        case Types.STRUCT:
-                        case Types.ARRAY:
-                        case Types.REF:
-                        case Types.DATALINK:
-                        case Types.BOOLEAN:
-                        case Types.ROWID:
-                        case Types.NCHAR:
-                        case Types.NVARCHAR:
-                        case Types.LONGNVARCHAR:
-                        case Types.NCLOB:
-                        case Types.SQLXML:
-
-                            // use getObject for all other known types
-
-                            value.setValue(resultSet.getObject(i));
-                            break;
-
-                        default:
-
-                            // otherwise try as string
-
-                            asStringOrObject(value, resultSet, i);
-                            break;
-                    }
+                    columnValueReaders[zeroBaseIndex].read(resultSet, i, value);
 
                 } catch (Exception e) {
 
@@ -688,15 +585,22 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
                     }
                 }
 
-                if (resultSet.wasNull()) {
+                boolean sqlNull = resultSet.wasNull();
+                if (keepsItem) {
 
-                    value.setNull();
-                }
+                    if (sqlNull) {
+
+                        value.setNull();
+                    }
+                    tableData.appendRecordDataItem(zeroBaseIndex, value);
 
-                rowData.add(value);
+                } else {
+
+                    tableData.appendValue(zeroBaseIndex, value.getValue(), sqlNull);
+                }
             }
 
-            tableData.add(rowData);
+            tableData.completeRow();
     }
 
     public void cancelFetch() {
@@ -849,10 +753,13 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     private void resetVisibleColumnHeaders() {
 
         visibleColumnHeaders.clear();
-        for (ResultSetColumnHeader header : columnHeaders) {
+        visibleColumnIndexes = new int[columnHeaders.size()];
+        for (int i = 0, n = columnHeaders.size(); i < n; i++) {
 
+            ResultSetColumnHeader header = columnHeaders.get(i);
             if (header.isVisible()) {
 
+                visibleColumnIndexes[visibleColumnHeaders.size()] = i;
                 visibleColumnHeaders.add(header);
             }
 
@@ -876,7 +783,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
             return 0;
         }
-        return tableData.size();
+        return tableData.getRowCount();
     }
 
     public List<String> getColumnNames() {
@@ -890,15 +797,27 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
         return list;
     }
 
+    /**
+     * Returns the record data items of the specified row for reading -
+     * edits are made through setValueAt and deleteRow, which keep the row.
+     */
     public List<RecordDataItem> getRowDataForRow(int row) {
 
-        return tableData.get(row);
+        return tableData.getRow(row);
+    }
+
+    /**
+     * Returns whether any value of the specified row contains the pattern.
+     */
+    public boolean rowContains(int row, String pattern) {
+
+        return tableData.rowContains(row, pattern);
     }
 
     @Override
     public void setValueAt(Object value, int row, int column) {
 
-        List<RecordDataItem> rowData = tableData.get(row);
+        List<RecordDataItem> rowData = tableData.getPinnedRow(row);
         if (column < rowData.size()) {
 
             try {
@@ -924,6 +843,12 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     private int asVisibleColumnIndex(int column) {
 
+        if (visibleColumnIndexes != null && column < visibleColumnHeaders.size()
+                && visibleColumnHeaders.get(column) == columnHeaders.get(visibleColumnIndexes[column])) {
+
+            return visibleColumnIndexes[column];
+        }
+
         ResultSetColumnHeader columnHeader = visibleColumnHeaders.get(column);
         for (int i = 0, n = columnHeaders.size(); i < n; i++) {
 
@@ -940,9 +865,9 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     @Override
     public Object getValueAt(int row, int column) {
 
-        if (row < tableData.size()) {
+        if (row < tableData.getRowCount()) {
 
-            List<RecordDataItem> rowData = tableData.get(row);
+            List<RecordDataItem> rowData = tableData.getRow(row);
             if (column < rowData.size()) {
 
                 return rowData.get(asVisibleColumnIndex(column));
@@ -952,9 +877,31 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
         return null;
     }
 
+    @Override
+    public Object getSortValueAt(int row, int column) {
+
+        if (row < tableData.getRowCount() && column < getColumnCount()) {
+
+            return tableData.getValue(row, asVisibleColumnIndex(column));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Object[] getSortValues(int column) {
+
+        if (column < getColumnCount()) {
+
+            return tableData.getColumnValues(asVisibleColumnIndex(column));
+        }
+
+        return super.getSortValues(column);
+    }
+
     public Object getRowValueAt(int row) {
 
-        return tableData.get(row);
+        return tableData.getRow(row);
     }
 
     private boolean cellsEditable;
@@ -966,7 +913,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     @Override
     public boolean isCellEditable(int row, int column) {
-        RecordDataItem recordDataItem = tableData.get(row).get(asVisibleColumnIndex(column));
+        RecordDataItem recordDataItem = tableData.getRow(row).get(asVisibleColumnIndex(column));
 
         if (!visibleColumnHeaders.get(column).isEditable()) {
             return recordDataItem.isNew() && cellsEditable;
@@ -1011,7 +958,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     }
 
     public void AddRow(List<RecordDataItem> row) {
-        tableData.add(row);
+        tableData.addRow(row);
     }
 
     public void AddRow() {
@@ -1026,16 +973,16 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             row.add(rdi);
         }
         AddRow(row);
-        fireTableRowsInserted(tableData.size() - 1, tableData.size() - 1);
+        fireTableRowsInserted(tableData.getRowCount() - 1, tableData.getRowCount() - 1);
         //fireTableChanged(new TableModelEvent(this,tableData.size()-1));
     }
 
     public void deleteRow(int rowNumber) {
-        if (rowNumber >= 0 && rowNumber < tableData.size()) {
-            List<RecordDataItem> row = tableData.get(rowNumber);
+        if (rowNumber >= 0 && rowNumber < tableData.getRowCount()) {
+            List<RecordDataItem> row = tableData.getPinnedRow(rowNumber);
             if (row.get(0).isNew()) {
-                deletedRow = tableData.get(rowNumber);
-                tableData.remove(rowNumber);
+                deletedRow = row;
+                tableData.removeRow(rowNumber);
                 fireTableRowsDeleted(rowNumber, rowNumber);
             } else {
                 for (int i = 0; i < row.size(); i++) {
@@ -1064,12 +1011,12 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     @Override
     public Class<?> getColumnClass(int column) {
 
-        if (tableData.isEmpty()) {
+        if (tableData.getRowCount() == 0) {
 
             return String.class;
         }
 
-        RecordDataItem recordDataItem = tableData.get(0).get(column);
+        RecordDataItem recordDataItem = tableData.getRow(0).get(column);
         if (recordDataItem.isDisplayValueNull()) {
 
             return String.class;
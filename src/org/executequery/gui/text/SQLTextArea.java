@@ -15,6 +15,7 @@ import org.executequery.gui.text.syntax.SQLSyntaxDocument;
 import org.executequery.print.TextPrinter;
 import org.executequery.repository.KeywordRepository;
 import org.executequery.repository.RepositoryCache;
+import org.executequery.sql.StatementSymbols;
 import org.fife.ui.rsyntaxtextarea.*;
 import org.fife.ui.rtextarea.RTextArea;
 import org.fife.ui.rtextarea.RecordableTextAction;
@@ -67,6 +68,8 @@ public class SQLTextArea extends RSyntaxTextArea implements TextEditor {
     protected int fontHeight;
     private DefaultAutoCompletePopupProvider autoCompletePopup;
 
+    private StatementParseIndex statementParseIndex;
+
     protected void setEditorPreferences() {
 
         setSelectionColor(QueryEditorSettings.getSelectionColour());
@@ -254,6 +257,7 @@ public class SQLTextArea extends RSyntaxTextArea implements TextEditor {
         setDocument(document);
         setSyntaxEditingStyle("antlr/sql");
         initialiseStyles();
+        statementParseIndex = new StatementParseIndex(document);
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
@@ -392,6 +396,33 @@ public class SQLTextArea extends RSyntaxTextArea implements TextEditor {
 
     }
 
+    /**
+     * Returns the statement at the specified offset as last read by the
+     * background parse, or <code>null</code> if it is not available.
+     */
+    public StatementParseIndex.ParsedStatement getStatementAt(int offset) {
+
+        if (getDocument() != document) {
+
+            return null;
+        }
+        return statementParseIndex.getStatementAt(offset);
+    }
+
+    /**
+     * Returns the symbols of the statement at the specified offset as
+     * parsed in the background - none where the statement was not parsed
+     * yet or was edited since.
+     */
+    public StatementSymbols getStatementSymbolsAt(int offset) {
+
+        if (getDocument() != document) {
+
+            return StatementSymbols.EMPTY;
+        }
+        return statementParseIndex.getSymbolsAt(offset);
+    }
+
     public void resetAutocomplete() {
         autoCompletePopup.reset();
     }
@@ -0,0 +1,552 @@
+/*
+ * StatementParseIndex.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.text;
+
+import org.executequery.log.Log;
+import org.executequery.sql.DerivedQuery;
+import org.executequery.sql.SqlScriptReader;
+import org.executequery.sql.StatementSymbols;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the statements of an editor document and the symbols of each
+ * statement up to date in the background.
+ * <p>
+ * An edit only marks the statement it falls in as changed and shifts
+ * the offsets of the statements after it. Shortly after the edits stop
+ * the changed statements are read again with {@link SqlScriptReader}
+ * - up to the point the statement boundaries line up with the
+ * unchanged statements again - and only those statements are parsed.
+ * <p>
+ * The changed text is copied under the document read lock and read
+ * without it. The statements read are applied only where the document
+ * was not edited in the meantime.
+ */
+public class StatementParseIndex implements DocumentListener {
+
+    /**
+     * the delay after the last edit before the document is read again
+     */
+    private static final int PARSE_DELAY = 300;
+
+    /**
+     * the least text copied past the changed statements when their
+     * boundaries did not line up within the copied text
+     */
+    private static final int MIN_LOOKAHEAD = 4096;
+
+    private static final ExecutorService PARSER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "StatementParser");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final Document document;
+
+    /**
+     * the statements in document order - each covers the text from the
+     * end of the previous statement up to and including its terminator
+     */
+    private final List<ParsedStatement> statements = new ArrayList<ParsedStatement>();
+
+    /**
+     * whether the text after the last statement changed
+     */
+    private boolean tailChanged = true;
+
+    /**
+     * the number of the edits so far
+     */
+    private int version;
+
+    private final Timer timer;
+
+    public StatementParseIndex(Document document) {
+
+        this.document = document;
+
+        timer = new Timer(PARSE_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                schedule();
+            }
+        });
+        timer.setRepeats(false);
+
+        document.addDocumentListener(this);
+        timer.restart();
+    }
+
+    /**
+     * Stops tracking the document.
+     */
+    public void dispose() {
+
+        timer.stop();
+        document.removeDocumentListener(this);
+    }
+
+    /**
+     * Returns the statement at the specified offset, or <code>null</code>
+     * if the document has not been read yet or the offset is past the
+     * last statement.
+     *
+     * @param offset the document offset
+     * @return the statement or null
+     */
+    public synchronized ParsedStatement getStatementAt(int offset) {
+
+        int index = indexAt(offset);
+        if (index == statements.size()) {
+
+            return null;
+        }
+        return statements.get(index);
+    }
+
+    /**
+     * Returns the symbols of the statement at the specified offset where
+     * they were parsed in the background and the statement was not edited
+     * since, otherwise no symbols.
+     */
+    public StatementSymbols getSymbolsAt(int offset) {
+
+        ParsedStatement statement = getStatementAt(offset);
+        StatementSymbols symbols = statement != null ? statement.getParsedSymbols() : null;
+        return symbols != null ? symbols : StatementSymbols.EMPTY;
+    }
+
+    public void insertUpdate(DocumentEvent e) {
+
+        edited(e.getOffset(), 0, e.getLength());
+    }
+
+    public void removeUpdate(DocumentEvent e) {
+
+        edited(e.getOffset(), e.getLength(), -e.getLength());
+    }
+
+    public void changedUpdate(DocumentEvent e) {
+    }
+
+    private synchronized void edited(int offset, int removed, int delta) {
+
+        int first = indexAt(offset);
+        if (first == statements.size()) {
+
+            tailChanged = true;
+
+        } else {
+
+            // merge the statements the edit touches into one changed statement
+            int editEnd = offset + removed;
+            int last = first;
+            while (last + 1 < statements.size() && statements.get(last + 1).start < editEnd) {
+
+                last++;
+            }
+
+            int lastEnd = statements.get(last).end;
+            if (last == statements.size() - 1 && editEnd > lastEnd) {
+
+                tailChanged = true;
+            }
+
+            ParsedStatement changed = statements.get(first);
+            changed.end = Math.max(offset, lastEnd + delta);
+            changed.changed = true;
+            statements.subList(first + 1, last + 1).clear();
+
+            for (int i = first + 1, n = statements.size(); i < n; i++) {
+
+                ParsedStatement statement = statements.get(i);
+                statement.start += delta;
+                statement.end += delta;
+            }
+        }
+
+        version++;
+        timer.restart();
+    }
+
+    /**
+     * Returns the index of the first statement ending at or after the
+     * specified offset.
+     */
+    private int indexAt(int offset) {
+
+        int low = 0;
+        int high = statements.size();
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+            if (statements.get(middle).end < offset) {
+
+                low = middle + 1;
+
+            } else {
+
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private void schedule() {
+
+        PARSER.execute(new Runnable() {
+            public void run() {
+                parse();
+            }
+        });
+    }
+
+    private void parse() {
+
+        int lookahead = 0;
+        int count = 0;
+        while (true) {
+
+            ChangedText changed;
+            try {
+
+                changed = copyChanged(lookahead);
+
+            } catch (RuntimeException e) {
+
+                Log.debug("Error reading editor statements: " + e.getMessage(), e);
+                return;
+            }
+
+            if (changed == null) {
+
+                break;
+            }
+
+            List<ParsedStatement> replacement = new ArrayList<ParsedStatement>();
+            int next;
+            try {
+
+                next = read(changed, replacement);
+
+            } catch (IOException e) {
+
+                Log.debug("Error reading editor statements: " + e.getMessage(), e);
+                return;
+            }
+
+            if (next < 0) {
+
+                // the boundaries did not line up within the copied text
+                lookahead = Math.max(lookahead * 2, MIN_LOOKAHEAD);
+                continue;
+            }
+
+            synchronized (this) {
+
+                if (version != changed.version) {
+
+                    // edited since the copy - the timer reads it again
+                    return;
+                }
+
+                statements.subList(changed.index, next).clear();
+                statements.addAll(changed.index, replacement);
+                if (changed.toEnd) {
+
+                    tailChanged = false;
+                }
+            }
+
+            // parse outside the locks - queries parse any statement still pending
+            for (ParsedStatement statement : replacement) {
+
+                statement.getSymbols();
+            }
+
+            count += replacement.size();
+            lookahead = 0;
+        }
+
+        if (Log.isTraceEnabled()) {
+
+            Log.trace("Editor statements re-read: " + count);
+        }
+    }
+
+    /**
+     * Copies the text of the first run of changed statements with the
+     * document locked against edits, or returns <code>null</code> where
+     * nothing changed.
+     *
+     * @param lookahead the length copied past the statement that follows
+     *                  the changed statements
+     */
+    private ChangedText copyChanged(final int lookahead) {
+
+        final ChangedText[] changed = new ChangedText[1];
+        final BadLocationException[] error = new BadLocationException[1];
+        document.render(new Runnable() {
+            public void run() {
+                synchronized (StatementParseIndex.this) {
+                    try {
+                        changed[0] = copyChangedText(lookahead);
+                    } catch (BadLocationException e) {
+                        error[0] = e;
+                    }
+                }
+            }
+        });
+
+        if (error[0] != null) {
+
+            throw new IllegalStateException(error[0]);
+        }
+        return changed[0];
+    }
+
+    private ChangedText copyChangedText(int lookahead) throws BadLocationException {
+
+        int size = statements.size();
+        if (tailChanged && size > 0) {
+
+            statements.get(size - 1).changed = true;
+        }
+
+        int index = 0;
+        while (index < size && !statements.get(index).changed) {
+
+            index++;
+        }
+
+        if (index == size && !tailChanged) {
+
+            return null;
+        }
+
+        int runEnd = index;
+        while (runEnd < size && statements.get(runEnd).changed) {
+
+            runEnd++;
+        }
+
+        // copy the statement following the changed ones too so the
+        // boundaries can line up at its start
+        int documentLength = document.getLength();
+        int start = index < size ? Math.min(statements.get(index).start, documentLength) : 0;
+        long end = runEnd < size ? (long) statements.get(runEnd).end + lookahead : documentLength;
+        int copyEnd = (int) Math.min(end, documentLength);
+
+        ChangedText changed = new ChangedText();
+        changed.version = version;
+        changed.index = index;
+        changed.statementCount = size;
+        changed.start = start;
+        changed.delimiter = index < size ? statements.get(index).delimiter : null;
+        changed.toEnd = copyEnd == documentLength;
+        changed.text = document.getText(start, copyEnd - start);
+
+        changed.firstFollowing = runEnd;
+        List<ParsedStatement> following = new ArrayList<ParsedStatement>();
+        for (int i = runEnd; i < size && statements.get(i).start < copyEnd; i++) {
+
+            ParsedStatement statement = statements.get(i);
+            following.add(new ParsedStatement(statement.start, statement.end, null, statement.delimiter));
+            following.get(following.size() - 1).changed = statement.changed;
+        }
+        changed.following = following;
+
+        return changed;
+    }
+
+    /**
+     * Reads the statements of the copied text up to the point the
+     * boundaries line up with an unchanged statement.
+     *
+     * @return the index of the first statement kept after the ones read,
+     *         or -1 where the boundaries did not line up before the end
+     *         of the copied text
+     */
+    private int read(ChangedText changed, List<ParsedStatement> replacement) throws IOException {
+
+        Reader text = new StringReader(changed.text);
+        SqlScriptReader reader = changed.delimiter != null
+                ? new SqlScriptReader(text, changed.delimiter)
+                : new SqlScriptReader(text);
+
+        int following = 0;
+        String segmentDelimiter = reader.getDelimiter();
+        DerivedQuery query;
+        while ((query = reader.next()) != null) {
+
+            ParsedStatement statement = new ParsedStatement(changed.start + reader.getSegmentStart(),
+                    changed.start + reader.getSegmentEnd(), query.getOriginalQuery(), segmentDelimiter);
+            segmentDelimiter = reader.getDelimiter();
+            replacement.add(statement);
+
+            while (following < changed.following.size() && changed.following.get(following).start < statement.end) {
+
+                following++;
+            }
+
+            // stop once the boundaries meet an unchanged statement
+            if (following < changed.following.size()) {
+
+                ParsedStatement next = changed.following.get(following);
+                if (next.start == statement.end && !next.changed
+                        && next.delimiter.equals(segmentDelimiter)) {
+
+                    return changed.firstFollowing + following;
+                }
+            }
+        }
+
+        return changed.toEnd ? changed.statementCount : -1;
+    }
+
+    /**
+     * The text of a run of changed statements as copied from the document.
+     */
+    private static final class ChangedText {
+
+        private int version;
+
+        /**
+         * the index of the first changed statement
+         */
+        private int index;
+
+        private int statementCount;
+
+        private int start;
+
+        private String delimiter;
+
+        private String text;
+
+        /**
+         * whether the text was copied up to the end of the document
+         */
+        private boolean toEnd;
+
+        /**
+         * the index of the first statement after the changed ones
+         */
+        private int firstFollowing;
+
+        /**
+         * copies of the statements after the changed ones within the text
+         */
+        private List<ParsedStatement> following;
+
+    }
+
+    /**
+     * A statement of the document as last read. The offsets follow the
+     * edits; the text and symbols are those of the last read and may be
+     * stale where the statement has changed since.
+     */
+    public static final class ParsedStatement {
+
+        private volatile int start;
+
+        private volatile int end;
+
+        private final String text;
+
+        private final String delimiter;
+
+        private volatile boolean changed;
+
+        private volatile StatementSymbols symbols;
+
+        ParsedStatement(int start, int end, String text, String delimiter) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.delimiter = delimiter;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns whether the statement was edited since it was last read.
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+
+        /**
+         * Returns the symbols of the statement, parsing it on first use.
+         * Not for the event dispatch thread - see getParsedSymbols().
+         */
+        public StatementSymbols getSymbols() {
+
+            StatementSymbols value = symbols;
+            if (value == null) {
+
+                value = StatementSymbols.parse(text);
+                symbols = value;
+            }
+            return value;
+        }
+
+        /**
+         * Returns the symbols of the statement where it was parsed already
+         * and not edited since, otherwise <code>null</code>. Never parses.
+         */
+        public StatementSymbols getParsedSymbols() {
+
+            return changed ? null : symbols;
+        }
+
+    }
+
+}
+
@@ -0,0 +1,299 @@
+/*
+ * ParameterizedQuery.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Query with the string and numeric literals replaced by the parameters.
+ * <p>
+ * The queries differing in the values of the literals only have the same
+ * shape - the same parameterized text, and are executed as one batch.
+ * The literals preceded by a word - the typed literals like
+ * <code>DATE '2017-01-01'</code>, the introducers and the hexadecimal
+ * strings, and the operands of <code>LIKE</code> and similar - the first
+ * arguments of the functions and the data types and the numbers with
+ * a fraction or an exponent are left in the text.
+ */
+public final class ParameterizedQuery {
+
+    /**
+     * the integers of up to 18 digits are bound as long values
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final String sql;
+
+    private final List<Object> parameters;
+
+    private ParameterizedQuery(String sql, List<Object> parameters) {
+
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Returns the parameterized text of the query.
+     */
+    public String getSql() {
+
+        return sql;
+    }
+
+    /**
+     * Returns the values of the replaced literals - strings,
+     * longs and decimals.
+     */
+    public List<Object> getParameters() {
+
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Replaces the literals of the query without the comments.
+     *
+     * @return the parameterized query or null if the query
+     *         returns values or has a malformed literal
+     */
+    public static ParameterizedQuery parse(String query) {
+
+        StringBuilder sql = new StringBuilder(query.length());
+        List<Object> parameters = new ArrayList<Object>();
+
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+
+            char c = query.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+
+                while (i < length && Character.isWhitespace(query.charAt(i)))
+                    i++;
+                if (sql.length() > 0 && i < length)
+                    sql.append(' ');
+
+            } else if (c == '\'') {
+
+                int end = endOfString(query, i);
+                if (end == -1)
+                    return null;
+
+                if (followsWord(sql) || opensArguments(sql)) {
+
+                    sql.append(query, i, end);
+
+                } else {
+
+                    sql.append('?');
+                    parameters.add(query.substring(i + 1, end - 1).replace("''", "'"));
+                }
+                i = end;
+
+            } else if (c == '"') {
+
+                int end = query.indexOf('"', i + 1);
+                if (end == -1)
+                    return null;
+
+                sql.append(query, i, end + 1);
+                i = end + 1;
+
+            } else if (isNumberStart(query, i, sql)) {
+
+                int end = endOfNumber(query, i);
+                String literal = query.substring(i, end);
+
+                // the numbers with a fraction or an exponent are converted
+                // by the server only - the driver may truncate the bound
+                // value where the server rounds the literal
+                if (literal.indexOf('.') != -1 || literal.indexOf('e') != -1 || literal.indexOf('E') != -1) {
+
+                    sql.append(literal);
+
+                } else {
+
+                    try {
+
+                        parameters.add(number(literal));
+
+                    } catch (NumberFormatException e) {
+
+                        return null;
+                    }
+                    sql.append('?');
+                }
+                i = end;
+
+            } else if (isWordPart(c)) {
+
+                int start = i;
+                while (i < length && isWordPart(query.charAt(i)))
+                    i++;
+
+                // the returned values are not available from the batch
+                if (i - start == 9 && query.regionMatches(true, start, "RETURNING", 0, 9))
+                    return null;
+
+                sql.append(query, start, i);
+
+            } else {
+
+                sql.append(c);
+                i++;
+            }
+        }
+
+        return new ParameterizedQuery(sql.toString(), parameters);
+    }
+
+    private static int endOfString(String query, int start) {
+
+        int i = start + 1;
+        while (i < query.length()) {
+
+            if (query.charAt(i) == '\'') {
+
+                if (i + 1 < query.length() && query.charAt(i + 1) == '\'') {
+
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+
+        return -1;
+    }
+
+    private static boolean isNumberStart(String query, int index, StringBuilder sql) {
+
+        char c = query.charAt(index);
+        if (c == '-' || c == '+') {
+
+            // the sign of the value, not the operator
+            char previous = lastChar(sql);
+            if (previous != '(' && previous != ',' && previous != '=')
+                return false;
+
+            index++;
+            if (index == query.length())
+                return false;
+            c = query.charAt(index);
+        }
+
+        if (c == '.' && index + 1 < query.length())
+            c = query.charAt(index + 1);
+
+        return Character.isDigit(c) && !followsWord(sql) && !opensArguments(sql);
+    }
+
+    private static int endOfNumber(String query, int start) {
+
+        int i = start + 1;
+        int length = query.length();
+
+        while (i < length && (Character.isDigit(query.charAt(i)) || query.charAt(i) == '.'))
+            i++;
+
+        if (i < length && (query.charAt(i) == 'e' || query.charAt(i) == 'E')) {
+
+            int exponent = i + 1;
+            if (exponent < length && (query.charAt(exponent) == '-' || query.charAt(exponent) == '+'))
+                exponent++;
+
+            if (exponent < length && Character.isDigit(query.charAt(exponent))) {
+
+                i = exponent;
+                while (i < length && Character.isDigit(query.charAt(i)))
+                    i++;
+            }
+        }
+
+        return i;
+    }
+
+    private static Object number(String literal) {
+
+        if (literal.startsWith("+"))
+            literal = literal.substring(1);
+
+        if (literal.length() <= MAX_LONG_DIGITS)
+            return Long.valueOf(literal);
+
+        return new BigDecimal(literal);
+    }
+
+    private static boolean followsWord(StringBuilder sql) {
+
+        int i = sql.length() - 1;
+        if (i >= 0 && sql.charAt(i) == ' ')
+            i--;
+
+        return i >= 0 && (isWordPart(sql.charAt(i)) || sql.charAt(i) == '?');
+    }
+
+    /**
+     * Returns whether the literal is the first argument of a function
+     * or a data type - the lengths of the types can not be parameters.
+     */
+    private static boolean opensArguments(StringBuilder sql) {
+
+        int i = sql.length() - 1;
+        if (i >= 0 && sql.charAt(i) == ' ')
+            i--;
+        if (i < 0 || sql.charAt(i) != '(')
+            return false;
+
+        int end = i;
+        if (end > 0 && sql.charAt(end - 1) == ' ')
+            end--;
+
+        int start = end;
+        while (start > 0 && isWordPart(sql.charAt(start - 1)))
+            start--;
+
+        if (start == end)
+            return false;
+
+        String word = sql.substring(start, end);
+        return !word.equalsIgnoreCase("VALUES") && !word.equalsIgnoreCase("IN");
+    }
+
+    private static char lastChar(StringBuilder sql) {
+
+        int i = sql.length() - 1;
+        if (i >= 0 && sql.charAt(i) == ' ')
+            i--;
+
+        return i >= 0 ? sql.charAt(i) : 0;
+    }
+
+    private static boolean isWordPart(char c) {
+
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+}
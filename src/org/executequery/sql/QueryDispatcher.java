@@ -56,9 +56,8 @@ import org.underworldlabs.util.DynamicLibraryLoader;
 import org.underworldlabs.util.MiscUtils;
 import org.underworldlabs.util.SystemProperties;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.*;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -113,6 +112,11 @@ public class QueryDispatcher {
 
     private QueryTokenizer queryTokenizer;
 
+    /**
+     * the output of the executing script - null when no script is executing
+     */
+    private volatile QueryOutputQueue scriptOutput;
+
     private boolean waiting;
 
     /**
@@ -131,6 +135,13 @@ public class QueryDispatcher {
     private static final String COMMITTING_LAST = "Committing last transaction block...";
     private static final String ROLLING_BACK_LAST = "Rolling back last transaction block...";
 
+    /**
+     * the number of the script queries logged to the output
+     */
+    private static final int MAX_LOGGED_SCRIPT_QUERIES = 1000;
+
+    private static final long SCRIPT_PROGRESS_INTERVAL = 1000;
+
     // ------------------------------------------------
 
 
@@ -879,6 +890,8 @@ public class QueryDispatcher {
         long totalDuration = 0l;
         querySender.setCloseConnectionAfterQuery(false);
 
+        SqlScriptReader scriptReader = null;
+        scriptOutput = new QueryOutputQueue();
         try {
 
             long start = 0l;
@@ -889,24 +902,7 @@ public class QueryDispatcher {
 
             executing = true;
 
-
-            QueryTokenizer queryTokenizer = new QueryTokenizer();
-            List<DerivedQuery> queries = queryTokenizer.tokenize(script);
-
-            List<DerivedQuery> executableQueries = new ArrayList<DerivedQuery>();
-
-            for (DerivedQuery query : queries) {
-                if (statementCancelled || Thread.interrupted()) {
-
-                    throw new InterruptedException();
-                }
-                if (query.isExecutable()) {
-
-                    executableQueries.add(query);
-                }
-
-            }
-            queries.clear();
+            scriptReader = new SqlScriptReader(new StringReader(script));
 
             try {
                 DatabaseConnection databaseConnection = this.querySender.getDatabaseConnection();
@@ -937,17 +933,36 @@ public class QueryDispatcher {
             } catch (Exception e) {
                 // nothing to do
             }
-            setOutputMessage(
-                    SqlMessages.ACTION_MESSAGE, "Found " + executableQueries.size() + " queries");
             start = System.currentTimeMillis();
             boolean stopOnError = SystemProperties.getBooleanProperty("user", "editor.stop.on.error");
             boolean error = false;
             TreeSet<String> createsMetaNames = new TreeSet<>();
-            for (int i = 0; i < executableQueries.size(); i++) {
+            int count = 0;
+            long lastProgress = start;
+            DerivedQuery query;
+            while ((query = scriptReader.next()) != null) {
+                boolean logged = ++count <= MAX_LOGGED_SCRIPT_QUERIES;
+                error = false;
                 try {
-                    DerivedQuery query = executableQueries.get(i);
-                    setOutputMessage(
-                            SqlMessages.ACTION_MESSAGE, (i + 1) + " query");
+                    if (logged) {
+
+                        setOutputMessage(
+                                SqlMessages.ACTION_MESSAGE, count + " query");
+
+                    } else if (count == MAX_LOGGED_SCRIPT_QUERIES + 1) {
+
+                        setOutputMessage(SqlMessages.ACTION_MESSAGE,
+                                "Further queries are logged on errors only");
+                    }
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastProgress >= SCRIPT_PROGRESS_INTERVAL) {
+
+                        lastProgress = now;
+                        setStatusMessage(" Executing query " + count
+                                + " at line " + scriptReader.getStatementLine());
+                    }
+
                     if (statementCancelled || Thread.interrupted()) {
 
                         throw new InterruptedException();
@@ -958,7 +973,10 @@ public class QueryDispatcher {
                     int type = query.getQueryType();
                     if (type != QueryTypes.COMMIT && type != QueryTypes.ROLLBACK) {
 
-                        logExecution(queryToExecute);
+                        if (logged) {
+
+                            logExecution(queryToExecute);
+                        }
 
                     } else {
 
@@ -1055,7 +1073,10 @@ public class QueryDispatcher {
                                 } else {
 
                                     type = result.getType();
-                                    setResultText(updateCount, query.getQueryType(), query.getMetaName());
+                                    if (logged) {
+
+                                        setResultText(updateCount, query.getQueryType(), query.getMetaName());
+                                    }
                                     if (type == QueryTypes.CREATE_OBJECT || type == QueryTypes.DROP_OBJECT
                                             || type == QueryTypes.CREATE_OR_ALTER || type == QueryTypes.RECREATE_OBJECT || type == QueryTypes.ALTER_OBJECT) {
                                         createsMetaNames.add(query.getMetaName());
@@ -1117,6 +1138,7 @@ public class QueryDispatcher {
 
                 } catch (SQLException e) {
 
+                    logScriptQueryError(query, scriptReader, logged);
                     processException(e);
                     return "SQLException";
 
@@ -1142,17 +1164,23 @@ public class QueryDispatcher {
                         e.printStackTrace();
 
 
+                        logScriptQueryError(query, scriptReader, logged);
                         processException(e);
                     }
 
                 } finally {
 
                     querySender.releaseResources();
+                    if (error) {
+
+                        logScriptQueryError(query, scriptReader, logged);
+                    }
                     if (error && stopOnError)
                         break;
                 }
 
             }
+            setOutputMessage(SqlMessages.ACTION_MESSAGE, "Executed " + count + " queries");
             if (end == 0) {
 
                 end = System.currentTimeMillis();
@@ -1170,12 +1198,6 @@ public class QueryDispatcher {
             }
             statementExecuted(script);
 
-        } catch (InterruptedException e) {
-
-            //Log.debug("InterruptedException");
-            statementCancelled = true; // make sure its set
-            return "Interrupted";
-
         } catch (OutOfMemoryError e) {
 
             setOutputMessage(SqlMessages.ERROR_MESSAGE,
@@ -1199,11 +1221,42 @@ public class QueryDispatcher {
         } finally {
 
             duration = formatDuration(totalDuration);
+            closeScriptReader(scriptReader);
+            scriptOutput.flush();
+            scriptOutput = null;
         }
 
         return DONE;
     }
 
+    private void closeScriptReader(SqlScriptReader scriptReader) {
+
+        if (scriptReader != null) {
+
+            try {
+
+                scriptReader.close();
+
+            } catch (IOException e) {
+
+                Log.warning("Error closing the script: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Logs the failed script query unless it has been logged before.
+     */
+    private void logScriptQueryError(DerivedQuery query, SqlScriptReader scriptReader, boolean logged) {
+
+        if (!logged) {
+
+            setOutputMessage(SqlMessages.ERROR_MESSAGE,
+                    "Error in the query at line " + scriptReader.getStatementLine() + ":");
+            logExecution(query.getDerivedQuery());
+        }
+    }
+
     PreparedStatement prepareStatementWithParameters(String sql, String variables) throws SQLException {
         SqlParser parser = new SqlParser(sql, variables);
         String queryToExecute = parser.getProcessedSql();
@@ -1309,22 +1362,11 @@ public class QueryDispatcher {
                 e.printStackTrace();
             }
 
-            URL[] urls = new URL[0];
-            Class clazzdb = null;
             Object odb = null;
             try {
-                urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-                clazzdb = cl.loadClass("biz.redsoft.FBDatabasePerformanceImpl");
-                odb = clazzdb.newInstance();
+                odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBDatabasePerformanceImpl");
             } catch (ClassNotFoundException e) {
                 e.printStackTrace();
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (InstantiationException e) {
-                e.printStackTrace();
-            } catch (MalformedURLException e) {
-                e.printStackTrace();
             }
 
             IFBDatabasePerformance db = (IFBDatabasePerformance) odb;
@@ -1364,22 +1406,11 @@ public class QueryDispatcher {
                     e.printStackTrace();
                 }
 
-                URL[] urls = new URL[0];
-                Class clazzdb = null;
                 Object odb = null;
                 try {
-                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                    ClassLoader cl = new URLClassLoader(urls, resultSet.getClass().getClassLoader());
-                    clazzdb = cl.loadClass("biz.redsoft.FBDatabasePerformanceImpl");
-                    odb = clazzdb.newInstance();
+                    odb = DynamicLibraryLoader.loadingObjectFromClassLoader(resultSet, "FBDatabasePerformanceImpl");
                 } catch (ClassNotFoundException e) {
                     e.printStackTrace();
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                } catch (InstantiationException e) {
-                    e.printStackTrace();
-                } catch (MalformedURLException e) {
-                    e.printStackTrace();
                 }
 
                 IFBDatabasePerformance db = (IFBDatabasePerformance) odb;
@@ -1415,22 +1446,11 @@ public class QueryDispatcher {
                     e.printStackTrace();
                 }
 
-                URL[] urls = new URL[0];
-                Class clazzdb = null;
                 Object odb = null;
                 try {
-                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                    ClassLoader cl = new URLClassLoader(urls, statement.getClass().getClassLoader());
-                    clazzdb = cl.loadClass("biz.redsoft.FBDatabasePerformanceImpl");
-                    odb = clazzdb.newInstance();
+                    odb = DynamicLibraryLoader.loadingObjectFromClassLoader(statement, "FBDatabasePerformanceImpl");
                 } catch (ClassNotFoundException e) {
                     e.printStackTrace();
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                } catch (InstantiationException e) {
-                    e.printStackTrace();
-                } catch (MalformedURLException e) {
-                    e.printStackTrace();
                 }
 
                 IFBDatabasePerformance db = (IFBDatabasePerformance) odb;
@@ -1607,8 +1627,8 @@ public class QueryDispatcher {
 
     }
 
-    private void setResultText(final int result, final int type, String metaName) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+    private void setResultText(final int result, final int type, final String metaName) {
+        invokeOutput(new Runnable() {
             public void run() {
                 delegate.setResult(result, type, metaName);
             }
@@ -1616,7 +1636,7 @@ public class QueryDispatcher {
     }
 
     private void setStatusMessage(final String text) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+        invokeOutput(new Runnable() {
             public void run() {
                 delegate.setStatusMessage(text);
             }
@@ -1629,7 +1649,7 @@ public class QueryDispatcher {
     }
 
     private void setOutputMessage(final int type, final String text, final boolean selectTab) {
-        ThreadUtils.invokeAndWait(new Runnable() {
+        invokeOutput(new Runnable() {
             public void run() {
                 delegate.setOutputMessage(type, text, selectTab);
                 if (text != null) {
@@ -1639,7 +1659,30 @@ public class QueryDispatcher {
         });
     }
 
+    /**
+     * Runs the output update on the event dispatch thread - the updates
+     * of the executing script are queued without waiting.
+     */
+    private void invokeOutput(Runnable update) {
+
+        QueryOutputQueue output = scriptOutput;
+        if (output != null) {
+
+            output.add(update);
+
+        } else {
+
+            ThreadUtils.invokeAndWait(update);
+        }
+    }
+
     private void setResultSet(final ResultSet rs, final String query) {
+
+        QueryOutputQueue output = scriptOutput;
+        if (output != null) {
+
+            output.flush();
+        }
 /*
         ThreadUtils.invokeAndWait(new Runnable() {
             public void run() {
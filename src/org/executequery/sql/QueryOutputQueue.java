@@ -0,0 +1,97 @@
+/*
+ * QueryOutputQueue.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.executequery.util.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output of the executing script passed to the event dispatch thread
+ * in batches.
+ * <p>
+ * The executing thread does not wait for the output to be displayed
+ * unless the event dispatch thread falls behind by more than the
+ * maximum number of the pending updates.
+ */
+public class QueryOutputQueue {
+
+    private static final int MAX_PENDING = 1000;
+
+    private List<Runnable> pending = new ArrayList<Runnable>();
+
+    private boolean scheduled;
+
+    private final Runnable drain = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Adds the output update to be run on the event dispatch thread.
+     */
+    public synchronized void add(Runnable update) {
+
+        try {
+
+            while (pending.size() >= MAX_PENDING)
+                wait();
+
+        } catch (InterruptedException e) {
+
+            // the execution is cancelled
+            Thread.currentThread().interrupt();
+        }
+
+        pending.add(update);
+        if (!scheduled) {
+
+            scheduled = true;
+            ThreadUtils.invokeLater(drain);
+        }
+    }
+
+    /**
+     * Waits until the pending updates are run.
+     */
+    public void flush() {
+
+        ThreadUtils.invokeAndWait(drain);
+    }
+
+    private void drain() {
+
+        List<Runnable> updates;
+        synchronized (this) {
+
+            updates = pending;
+            pending = new ArrayList<Runnable>();
+            scheduled = false;
+            notifyAll();
+        }
+
+        for (Runnable update : updates)
+            update.run();
+    }
+
+}
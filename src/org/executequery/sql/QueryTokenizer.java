@@ -20,452 +20,103 @@
 
 package org.executequery.sql;
 
-import org.executequery.Constants;
-import org.executequery.gui.text.syntax.Token;
-import org.executequery.gui.text.syntax.TokenTypes;
 import org.underworldlabs.util.InterruptedException;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
+ * Splits the text of the editor into the queries and removes the comments
+ * in a single pass over the text - the statements are read by
+ * {@link SqlScriptReader} with the terminator set by the last
+ * <code>SET TERM</code> of the previous text kept between the calls.
+ *
  * @author Takis Diakoumis
  */
 public class QueryTokenizer {
 
-    private /*static final*/ String QUERY_DELIMITER = ";";
-
-    private List<Token> stringTokens;
-
-    private List<Token> singleLineCommentTokens;
-
-    private List<Token> multiLineCommentTokens;
-
-    String beginPattern = "begin";
-    String endPattern = "end";
-
-    private Matcher stringMatcher;
-
-    private Matcher singleLineCommentMatcher;
-
-    private Matcher multiLineCommentMatcher;
-    List<String> begin_end_blocks;
-
-    private static final String QUOTE_REGEX = "'((\\?>[^']*\\+)(\\?>'{2}[^']*\\+)*\\+)'|'.*'";//"'((?>[^']*+)(?>'{2}[^']*+)*+)'|'.*";
-
-    private static final String MULTILINE_COMMENT_REGEX = "/\\*.*?\\*/";
-    //                                                    "/\\*(?:.|[\\n\\r])*?\\*/|/\\*.*";
-//                                                        "/\\*((?>[^\\*/]*+)*+)\\*/|/\\*.*";
-    private List<Token> declareBlockTokens;
+    private String delimiter = SqlScriptReader.DEFAULT_DELIMITER;
 
     public String removeComments(String query) {
 
-        return removeAllCommentsFromQuery(query);
-    }
-
-    public List<DerivedQuery> tokenize(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
 
-        extractQuotedStringTokens(query);
-        extractSingleLineCommentTokens(query);
-        extractMultiLineCommentTokens(query);
+        int length = query.length();
+        for (int i = 0; i < length; i++) {
 
-        List<DerivedQuery> derivedQueries = deriveQueries(query);
-        for (DerivedQuery derivedQuery : derivedQueries) {
+            char c = query.charAt(i);
+            char next = i + 1 < length ? query.charAt(i + 1) : 0;
 
-            if (Thread.interrupted()) {
+            if (c == '-' && next == '-') {
 
-                throw new InterruptedException();
-            }
+                // up to the end of the line keeping the line break
+                while (i + 1 < length && query.charAt(i + 1) != '\n')
+                    i++;
 
-            String noCommentsQuery = removeAllCommentsFromQuery(derivedQuery.getOriginalQuery());
-            derivedQuery.setQueryWithoutComments(noCommentsQuery.trim());
-        }
-        return derivedQueries;
-    }
+            } else if (c == '/' && next == '*') {
 
-    public QueryTokenized tokenizeFirstQuery(String query,String lowQuery,int startQueryIndex, String delimiter) {
+                int end = query.indexOf("*/", i + 2);
+                i = end != -1 ? end + 1 : length;
 
-        QueryTokenized fquery = firstQuery(query, delimiter, startQueryIndex, lowQuery);
-        String noCommentsQuery = removeAllCommentsFromQuery(fquery.query.getOriginalQuery());
-        fquery.query.setQueryWithoutComments(noCommentsQuery.trim());
-        return fquery;
-    }
+                int last = sb.length() - 1;
+                if (last >= 0 && !Character.isWhitespace(sb.charAt(last)))
+                    sb.append(' ');
 
-    private String removeAllCommentsFromQuery(String query) {
+            } else if (c == '\'' || c == '"') {
 
-        String newQuery = removeMultiLineComments(query);
-
-        return removeSingleLineComments(newQuery);
-    }
-
-    private String removeMultiLineComments(String query) {
-
-        return removeTokensForMatcherWhenNotInString(multiLineCommentMatcher, query);
-    }
+                int end = query.indexOf(c, i + 1);
+                if (end == -1)
+                    end = length - 1;
 
-    private String removeSingleLineComments(String query) {
+                sb.append(query, i, end + 1);
+                i = end;
 
-        return removeTokensForMatcherWhenNotInString(singleLineCommentMatcher, query);
-    }
-
-    private List<DerivedQuery> deriveQueries(String query) {
-
-        int index = 0;
-        int lastIndex = 0;
-
-        List<DerivedQuery> queries = new ArrayList<DerivedQuery>();
-
-        while ((index = query.indexOf(QUERY_DELIMITER, index + 1)) != -1) {
-
-            if (Thread.interrupted()) {
-
-                throw new InterruptedException();
-            }
-
-            if (notInAnyToken(index)) {
-
-                String substring = query.substring(lastIndex, index);
-
-                // if substring includes a set term command
-                Pattern p = Pattern.compile("Set(\\s+)term(\\s+)", Pattern.CASE_INSENSITIVE);
-
-                Matcher m = p.matcher(substring);
-
-                if (m.find()) {
-                    QUERY_DELIMITER = substring.substring(m.end(), substring.length()).trim();
-                    lastIndex = index + (substring.length() - m.end());
-                    continue;
-                }
-
-                queries.add(new DerivedQuery(substring));
-                lastIndex = index + QUERY_DELIMITER.length();/*1;*/
-            }
-
-        }
-
-        if (queries.isEmpty()) {
-
-            queries.add(new DerivedQuery(query));
-        }
-
-        return queries;
-    }
-
-    private List<Token> beginEndBlockTokens;
-
-
-    private boolean notInAnyToken(int index) {
-
-        return !(withinMultiLineComment(index, index))
-                && !(withinSingleLineComment(index, index))
-                && !(withinQuotedString(index, index));
-    }
-
-    private Matcher declareBlockMatcher;
-
-    private void extractSingleLineCommentTokens(String query) {
-
-        addTokensForMatcherWhenNotInString(singleLineCommentMatcher, query, singleLineCommentTokens);
-    }
-
-    private void extractMultiLineCommentTokens(String query) {
-
-        addTokensForMatcherWhenNotInString(multiLineCommentMatcher, query, multiLineCommentTokens);
-    }
-
-    public QueryTokenizer() {
-
-        stringTokens = new ArrayList<Token>();
-        stringMatcher = Pattern.compile(QUOTE_REGEX).matcher(Constants.EMPTY);
-
-        singleLineCommentTokens = new ArrayList<Token>();
-        singleLineCommentMatcher = Pattern.compile(
-                TokenTypes.SINGLE_LINE_COMMENT_REGEX, Pattern.MULTILINE).
-                matcher(Constants.EMPTY);
-
-        multiLineCommentTokens = new ArrayList<Token>();
-        multiLineCommentMatcher = Pattern.compile(
-                MULTILINE_COMMENT_REGEX, Pattern.DOTALL).
-                matcher(Constants.EMPTY);
-        declareBlockTokens = new ArrayList<>();
-        declareBlockMatcher = Pattern.compile(TokenTypes.DECLARE_BLOCK_REGEX, Pattern.DOTALL).matcher(Constants.EMPTY);
-        beginEndBlockTokens = new ArrayList<>();
-    }
-
-    private QueryTokenized firstQuery(String query, String delimiter, int startIndexQuery, String lowQuery) {
-
-        int index = 0;
-        int lastIndex = 0;
-
-        index = query.indexOf(delimiter);
-        boolean cycleContinue = true;
-
-        while ((index != -1) && cycleContinue) {
-            cycleContinue = false;
-
-            if (Thread.interrupted()) {
-
-                throw new InterruptedException();
-            }
-
-            if (notInAllTokens(index + startIndexQuery)) {
-
-                String substring = query.substring(lastIndex, index);
-
-                // if substring includes a set term command
-                Pattern p = Pattern.compile("Set(\\s+)term(\\s+)", Pattern.CASE_INSENSITIVE);
-
-                Matcher m = p.matcher(substring);
-
-                if (m.find()) {
-                    delimiter = substring.substring(m.end(), substring.length()).trim();
-                    lastIndex = index + (substring.length() - m.end());
-                    return new QueryTokenized(null, query.substring(lastIndex),lowQuery.substring(lastIndex),startIndexQuery+lastIndex, delimiter);
-                }
-                lastIndex = index + delimiter.length();/*1;*/
-                return new QueryTokenized(new DerivedQuery(substring), query.substring(lastIndex),lowQuery.substring(lastIndex), startIndexQuery+lastIndex, delimiter);
             } else {
-                cycleContinue = true;
-                index = query.indexOf(delimiter, index + 1);
-            }
-
-        }
-        return new QueryTokenized(new DerivedQuery(query), "", "", lastIndex + startIndexQuery, delimiter);
-    }
-
-    private boolean notInAllTokens(int index) {
-        boolean notAny = notInAnyToken(index);
-        boolean wdb = withinDeclareBlock(index, index);
-        boolean wbeb = withinBeginEndBlock(index, index);
-        return notAny && !wdb && !wbeb;
-    }
-
-    private void extractDeclareBlockTokens(String query) {
 
-        addTokensForMatcherWhenNotInString(declareBlockMatcher, query, declareBlockTokens);
-    }
-
-    private int indexOfStringWithSpaces(String query, String word) {
-        return indexOfStringWithSpaces(query, word, 0);
-    }
-
-    private int indexOfStringWithSpaces(String query, String word, int startIndex) {
-        String[] spaces = {" ", "\n", ";"};
-        int index = query.length();
-        for (int i = 0; i < spaces.length; i++) {
-            for (int g = 0; g < spaces.length; g++) {
-                int ind = query.indexOf(spaces[i] + word + spaces[g], startIndex);
-                if (ind != -1 && ind < index)
-                    index = ind;
-            }
-        }
-        if (index == query.length())
-            return -1;
-        else return index + 1;
-    }
-
-    private String replace(String query, int start, String replacement) {
-        String startQuery = query.substring(0, start);
-        startQuery += replacement;
-        startQuery += query.substring(start + replacement.length());
-        return startQuery;
-    }
-
-    private String addBeginEndBlock(String query) {
-        List<Token> tokens = beginEndBlockTokens;
-        int start = indexOfStringWithSpaces(query, beginPattern);
-        int end = -1;
-        if (start > 0 && notInAnyToken(start)) {
-            end = indexOfStringWithSpaces(query, endPattern);
-            if (end > 0 && notInAnyToken(end)) {
-                query = replace(query, start, "nigeb");
-                int ind = indexOfStringWithSpaces(query, beginPattern);
-                while (ind > 0 && ind < end) {
-                    query = addBeginEndBlock(query);
-                    query = replace(query, ind, "nigeb");
-                    ind = indexOfStringWithSpaces(query, beginPattern);
-                    end = indexOfStringWithSpaces(query, endPattern);
-                    while (!notInAnyToken(end)) {
-                        end = query.indexOf(end);
-                    }
-                }
-            }
-        }
-        if (start >= 0 && end >= 0) {
-            tokens.add(new Token(TokenTypes.BEGIN_END_BLOCK, start, end));
-            query = replace(query, end, "dne");
-            begin_end_blocks.add(query.substring(start, end + 3));
-        }
-        return query;
-    }
-
-    private void extractBeginEndBlockTokens(String query) {
-
-        begin_end_blocks = new ArrayList<>();
-        for (int index = indexOfStringWithSpaces(query, beginPattern); index >= 0; index = indexOfStringWithSpaces(query, beginPattern, index + 1)) {
-            if (notInAnyToken(index)) {
-                query = addBeginEndBlock(query);
-            }
-
-        }
-
-    }
-
-    public void extractTokens(String query) {
-        extractQuotedStringTokens(query);
-        extractSingleLineCommentTokens(query);
-        extractMultiLineCommentTokens(query);
-        extractDeclareBlockTokens(query);
-        extractBeginEndBlockTokens(query);
-    }
-
-    private void addTokensForMatcherWhenNotInString(Matcher matcher, String query, List<Token> tokens) {
-
-        tokens.clear();
-        matcher.reset(query);
-        int startIndex=0;
-
-        while (matcher.find()) {
-            int start = matcher.start()+startIndex;
-            int end = matcher.end();
-            query = query.substring(end);
-            end = end+startIndex;
-            startIndex = end;
-
-            int endOffset = end;
-
-            if (isSingleLineMatcher(matcher)) {
-
-                endOffset = start + 2;
-            }
-
-            if (!withinQuotedString(start, endOffset)) {
-
-                if (matcher == declareBlockMatcher)
-                    tokens.add(new Token(TokenTypes.DECLARE_BLOCK, start, end));
-                else tokens.add(new Token(TokenTypes.COMMENT, start, end));
-            }
-            matcher.reset(query);
-
-        }
-
-    }
-
-    private String removeTokensForMatcherWhenNotInString(Matcher matcher, String query) {
-
-        int start = 0, end = 0, endOffset = 0;
-
-        StringBuilder sb = new StringBuilder(query);
-        matcher.reset(query);
-
-        while (matcher.find(start)) {
-
-            start = matcher.start();
-            end = matcher.end();
-
-            extractQuotedStringTokens(sb.toString());
-
-            endOffset = end;
-
-            if (isSingleLineMatcher(matcher)) {
-
-                endOffset = start + 2;
-            }
-
-            if (!withinQuotedString(start, endOffset)) {
-
-                sb.delete(start, end);
-                matcher.reset(sb);
-
-            } else {
-
-                start = end;
+                sb.append(c);
             }
-
         }
 
         return sb.toString();
     }
 
-    private boolean isSingleLineMatcher(Matcher matcher) {
-
-        return (matcher == singleLineCommentMatcher);
-    }
-
-    private boolean withinMultiLineComment(int start, int end) {
-
-        return contains(multiLineCommentTokens, start, end);
-    }
-
-    private boolean withinSingleLineComment(int start, int end) {
-
-        return contains(singleLineCommentTokens, start, end);
-    }
-
-    private boolean withinQuotedString(int start, int end) {
-
-        return contains(stringTokens, start, end);
-    }
-
-    private boolean withinDeclareBlock(int start, int end) {
-
-        return contains(declareBlockTokens, start, end);
-    }
+    public List<DerivedQuery> tokenize(String query) {
 
-    private boolean withinBeginEndBlock(int start, int end) {
+        List<DerivedQuery> queries = new ArrayList<DerivedQuery>();
 
-        return contains(beginEndBlockTokens, start, end);
-    }
+        SqlScriptReader reader = new SqlScriptReader(new StringReader(query), delimiter);
+        try {
 
-    private boolean contains(List<Token> tokens, int start, int end) {
+            DerivedQuery derivedQuery;
+            while ((derivedQuery = reader.next()) != null) {
 
-        for (Token token : tokens) {
+                if (Thread.interrupted()) {
 
-            if (token.contains(start, end)) {
+                    throw new InterruptedException();
+                }
 
-                return true;
+                queries.add(derivedQuery);
             }
-        }
 
-        return false;
+        } catch (IOException e) {
 
-    }
+            // not thrown reading the string
+            throw new IllegalStateException(e);
 
-    private void extractQuotedStringTokens(String query) {
+        } finally {
 
-        stringTokens.clear();
-        stringMatcher.reset(query);
+            delimiter = reader.getDelimiter();
+        }
 
-        while (stringMatcher.find()) {
+        if (queries.isEmpty()) {
 
-            stringTokens.add(new Token(TokenTypes.STRING,
-                    stringMatcher.start(), stringMatcher.end()));
+            queries.add(new DerivedQuery(query, removeComments(query).trim()));
         }
 
-    }
-    public class QueryTokenized
-    {
-        public DerivedQuery query;
-        public String script;
-        public String lowScript;
-        public int startIndex;
-        public String delimiter;
-
-        public QueryTokenized(DerivedQuery query, String script, String lowScript, int startIndex, String delimiter) {
-            this.query = query;
-            this.script = script;
-            this.lowScript = lowScript;
-            this.startIndex = startIndex;
-            this.delimiter = delimiter;
-        }
+        return queries;
     }
 
 }
 
-
-
-
-
-
@@ -0,0 +1,454 @@
+/*
+ * SqlScriptReader.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Reads the statements of an SQL script one at a time in a single pass.
+ * <p>
+ * The statements are separated by the terminator outside of the quoted
+ * strings and identifiers and the comments, <code>SET TERM</code> changes
+ * the terminator. With the default terminator the semicolons inside the
+ * <code>BEGIN ... END</code> and <code>CASE ... END</code> blocks and in
+ * the declarations of <code>EXECUTE BLOCK</code> and the procedures,
+ * functions, triggers and packages do not end the statement.
+ * <p>
+ * Only the statement being read is held in memory whatever the size
+ * of the script.
+ */
+public class SqlScriptReader implements Closeable {
+
+    static final String DEFAULT_DELIMITER = ";";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * the statement buffers larger than this are released after the statement
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private boolean firstFill = true;
+
+    private String delimiter;
+
+    private StringBuilder query = new StringBuilder();
+
+    private StringBuilder queryWithoutComments = new StringBuilder();
+
+    private final StringBuilder word = new StringBuilder();
+
+    private int line = 1;
+
+    private int statementLine;
+
+    private int queryLine;
+
+    private int offset;
+
+    private int segmentStart;
+
+    private int segmentEnd;
+
+    // the state of the statement being read
+
+    private boolean started;
+
+    private int wordCount;
+
+    private int blockDepth;
+
+    private int parenthesisDepth;
+
+    private boolean headerPending;
+
+    private boolean module;
+
+    private boolean bodyDeclared;
+
+    private boolean bodyClosed;
+
+    public SqlScriptReader(Reader reader) {
+
+        this(reader, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Creates the reader of the script continuing after <code>SET TERM</code>
+     * with the specified terminator.
+     */
+    public SqlScriptReader(Reader reader, String delimiter) {
+
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Returns the next statement of the script.
+     *
+     * @return the next statement or null at the end of the script
+     */
+    public DerivedQuery next() throws IOException {
+
+        segmentStart = offset;
+        while (true) {
+
+            if (!readStatement())
+                return null;
+
+            String statement = queryWithoutComments.toString().trim();
+            String originalQuery = query.toString().trim();
+            releaseBuffers();
+
+            if (statement.isEmpty())
+                continue;
+
+            String terminator = setTermDelimiter(statement);
+            if (terminator != null) {
+
+                delimiter = terminator;
+                continue;
+            }
+
+            statementLine = queryLine;
+            segmentEnd = offset;
+            return new DerivedQuery(originalQuery, statement);
+        }
+    }
+
+    /**
+     * Returns the line of the script the last statement starts on.
+     */
+    public int getStatementLine() {
+
+        return statementLine;
+    }
+
+    /**
+     * Returns the offset of the text read for the last statement - the
+     * whitespace, comments and <code>SET TERM</code> before it included.
+     */
+    public int getSegmentStart() {
+
+        return segmentStart;
+    }
+
+    /**
+     * Returns the offset following the terminator of the last statement.
+     */
+    public int getSegmentEnd() {
+
+        return segmentEnd;
+    }
+
+    public String getDelimiter() {
+
+        return delimiter;
+    }
+
+    public void close() throws IOException {
+
+        reader.close();
+    }
+
+    private boolean readStatement() throws IOException {
+
+        resetStatement();
+
+        int c = read();
+        if (c == -1)
+            return false;
+
+        while (c != -1) {
+
+            if (c == '-' && peek() == '-') {
+
+                endWord();
+                while (c != -1 && c != '\n') {
+
+                    query.append((char) c);
+                    c = read();
+                }
+                continue;
+
+            } else if (c == '/' && peek() == '*') {
+
+                endWord();
+                query.append((char) c).append((char) read());
+                int previous = 0;
+                while ((c = read()) != -1) {
+
+                    query.append((char) c);
+                    if (previous == '*' && c == '/')
+                        break;
+                    previous = c;
+                }
+                appendSeparator();
+
+            } else if (c == '\'' || c == '"') {
+
+                endWord();
+                int quote = c;
+                append(c);
+                while ((c = read()) != -1) {
+
+                    append(c);
+                    if (c == quote)
+                        break;
+                }
+
+            } else {
+
+                if (isWordPart(c)) {
+
+                    word.append((char) c);
+
+                } else {
+
+                    endWord();
+                    if (c == '(')
+                        parenthesisDepth++;
+                    else if (c == ')')
+                        parenthesisDepth--;
+                }
+
+                append(c);
+                if (endsWithDelimiter() && isStatementEnd()) {
+
+                    queryWithoutComments.setLength(queryWithoutComments.length() - delimiter.length());
+                    if (endsWith(query, delimiter))
+                        query.setLength(query.length() - delimiter.length());
+                    return true;
+                }
+            }
+
+            c = read();
+        }
+
+        endWord();
+        return true;
+    }
+
+    private void resetStatement() {
+
+        query.setLength(0);
+        queryWithoutComments.setLength(0);
+        word.setLength(0);
+        started = false;
+        wordCount = 0;
+        blockDepth = 0;
+        parenthesisDepth = 0;
+        headerPending = false;
+        module = false;
+        bodyDeclared = false;
+        bodyClosed = false;
+    }
+
+    private void releaseBuffers() {
+
+        if (query.capacity() > MAX_RETAINED_CAPACITY) {
+
+            query = new StringBuilder();
+            queryWithoutComments = new StringBuilder();
+        }
+    }
+
+    private void append(int c) {
+
+        if (!started && !Character.isWhitespace(c)) {
+
+            started = true;
+            queryLine = line;
+        }
+
+        query.append((char) c);
+        queryWithoutComments.append((char) c);
+    }
+
+    private void appendSeparator() {
+
+        int length = queryWithoutComments.length();
+        if (length > 0 && !Character.isWhitespace(queryWithoutComments.charAt(length - 1)))
+            queryWithoutComments.append(' ');
+    }
+
+    private boolean isStatementEnd() {
+
+        if (!delimiter.equals(DEFAULT_DELIMITER))
+            return true;
+
+        if (blockDepth > 0)
+            return false;
+
+        // the declarations before the body of a module
+        return !(module && bodyDeclared && !bodyClosed);
+    }
+
+    /**
+     * Tracks the keywords of the statement - the blocks and whether
+     * the statement is a module with the body.
+     */
+    private void endWord() {
+
+        if (word.length() == 0)
+            return;
+
+        String keyword = word.toString().toUpperCase(Locale.ENGLISH);
+        word.setLength(0);
+
+        if (wordCount++ == 0) {
+
+            headerPending = keyword.equals("CREATE") || keyword.equals("ALTER")
+                    || keyword.equals("RECREATE") || keyword.equals("EXECUTE");
+
+        } else if (headerPending) {
+
+            if (keyword.equals("PROCEDURE") || keyword.equals("FUNCTION") || keyword.equals("TRIGGER")
+                    || keyword.equals("PACKAGE") || keyword.equals("BLOCK")) {
+
+                module = true;
+                headerPending = false;
+
+            } else if (!keyword.equals("OR") && !keyword.equals("ALTER")) {
+
+                headerPending = false;
+            }
+
+        } else if (module && !bodyDeclared && parenthesisDepth == 0 && keyword.equals("AS")) {
+
+            bodyDeclared = true;
+        }
+
+        if (keyword.equals("BEGIN") || keyword.equals("CASE")) {
+
+            blockDepth++;
+
+        } else if (keyword.equals("END") && blockDepth > 0) {
+
+            blockDepth--;
+            if (blockDepth == 0 && bodyDeclared)
+                bodyClosed = true;
+        }
+    }
+
+    private boolean endsWithDelimiter() {
+
+        return endsWith(queryWithoutComments, delimiter);
+    }
+
+    private static boolean endsWith(StringBuilder sb, String suffix) {
+
+        int start = sb.length() - suffix.length();
+        if (start < 0)
+            return false;
+
+        for (int i = 0; i < suffix.length(); i++) {
+
+            if (sb.charAt(start + i) != suffix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isWordPart(int c) {
+
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * Returns the new terminator if the statement is <code>SET TERM</code>.
+     */
+    private static String setTermDelimiter(String statement) {
+
+        if (statement.length() < 9 || !statement.regionMatches(true, 0, "SET", 0, 3))
+            return null;
+
+        int index = skipWhitespace(statement, 3);
+        if (index == 3 || !statement.regionMatches(true, index, "TERM", 0, 4))
+            return null;
+
+        int start = skipWhitespace(statement, index + 4);
+        if (start == index + 4 || start == statement.length())
+            return null;
+
+        return statement.substring(start).trim();
+    }
+
+    private static int skipWhitespace(String text, int index) {
+
+        while (index < text.length() && Character.isWhitespace(text.charAt(index)))
+            index++;
+        return index;
+    }
+
+    private int read() throws IOException {
+
+        if (position == limit && !fill())
+            return -1;
+
+        char c = buffer[position++];
+        offset++;
+        if (c == '\n')
+            line++;
+        return c;
+    }
+
+    private int peek() throws IOException {
+
+        if (position == limit && !fill())
+            return -1;
+
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+
+        if (count < 0)
+            return false;
+
+        position = 0;
+        limit = count;
+
+        // the byte order mark of the script file
+        if (firstFill && buffer[0] == '\uFEFF')
+            position = 1;
+        firstFill = false;
+
+        return position < limit || fill();
+    }
+
+}
@@ -30,19 +30,28 @@ import org.executequery.databasemediators.spi.DefaultDatabaseDriver;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.datasource.SimpleDataSource;
 import org.executequery.log.Log;
+import org.underworldlabs.util.DynamicLibraryLoader;
+import org.underworldlabs.util.MappedFileReader;
 import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.SystemProperties;
 
 import javax.resource.ResourceException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,6 +69,31 @@ public class SqlScriptRunner {
 
     boolean needCloseDatabase;
 
+    /**
+     * the maximal number of the statements of the same shape executed
+     * as one batch, zero to execute the statements one at a time
+     */
+    private int batchSize;
+
+    /**
+     * the number of the statements committed at once,
+     * zero to leave the commit to the user
+     */
+    private int commitInterval;
+
+    private int uncommitted;
+
+    private PreparedStatement batchStatement;
+
+    private String batchQuery;
+
+    private final List<BatchEntry> batchEntries = new ArrayList<BatchEntry>();
+
+    /**
+     * the shapes of the statements failed to be batched
+     */
+    private final Set<String> notBatchableQueries = new HashSet<String>();
+
     public SqlScriptRunner(ExecutionController executionController) {
 
         super();
@@ -74,32 +108,55 @@ public class SqlScriptRunner {
     public SqlStatementResult execute(DatabaseConnection databaseConnection,
                                       String script, ActionOnError actionOnError) {
 
+        return execute(databaseConnection, new StringReader(script), actionOnError);
+    }
+
+    /**
+     * Executes the script file reading the statements
+     * one at a time from the memory mapped file.
+     */
+    public SqlStatementResult execute(DatabaseConnection databaseConnection,
+                                      File scriptFile, ActionOnError actionOnError) {
+
+        String encoding = SystemProperties.getProperty("user", "system.file.encoding");
+        try {
+
+            return execute(databaseConnection,
+                    new MappedFileReader(scriptFile, Charset.forName(encoding)), actionOnError);
+
+        } catch (IOException e) {
+
+            SqlStatementResult sqlStatementResult = new SqlStatementResult();
+            sqlStatementResult.setOtherException(e);
+            sqlStatementResult.setOtherErrorMessage(e.getMessage());
+            return sqlStatementResult;
+        }
+    }
+
+    private SqlStatementResult execute(DatabaseConnection databaseConnection,
+                                       Reader script, ActionOnError actionOnError) {
+
         int count = 0;
         int result = 0;
 
-        PreparedStatement statement = null;
         SqlStatementResult sqlStatementResult = new SqlStatementResult();
         needCloseDatabase = false;
+        notBatchableQueries.clear();
+        uncommitted = 0;
         querySender = new DefaultStatementExecutor();
 
+        SqlScriptReader scriptReader = new SqlScriptReader(script);
         try {
 
             cancel = false;
 
-            executionController.message("Scanning and tokenizing queries...");
-            QueryTokenizer queryTokenizer = new QueryTokenizer();
-            //List<DerivedQuery> queries =
-
             close();
             if (databaseConnection != null) {
                 querySender.setDatabaseConnection(databaseConnection);
             }
 
-            List<DerivedQuery> executableQueries = new ArrayList<DerivedQuery>();
             DerivedQuery createDBQuery = null;
             String sqlDialect = "3";
-            String delimiter = ";";
-            //queries.clear();
 
 
 
@@ -110,29 +167,15 @@ public class SqlScriptRunner {
                 throw new SQLException("There is no connection. Select a connection from the available connections " +
                         "list or add a database creation statement.");*/
 
-            long start = 0L;
-            long end = 0L;
-            int thisResult = 0;
             boolean logOutput = executionController.logOutput();
-            int startIndex = 0;
-            String lowQuery = script.toLowerCase();
-            executionController.message("Start extracting comments and String constants");
-            queryTokenizer.extractTokens(script);
-            executionController.message("Finish extracting comments and String constants");
-            while (script!=null &&!script.isEmpty()) {
-                QueryTokenizer.QueryTokenized fquery=queryTokenizer.tokenizeFirstQuery(script,lowQuery,startIndex,delimiter);
-                script= fquery.script;
-                delimiter = fquery.delimiter;
-                DerivedQuery query =  fquery.query;
-                lowQuery = fquery.lowScript;
-                startIndex = fquery.startIndex;
-                if(query==null||!query.isExecutable())
-                    continue;
+            DerivedQuery query;
+            while ((query = scriptReader.next()) != null) {
                 if (shouldNotContinue()) {
 
                     throw new InterruptedException();
                 }
                 if (query.getQueryType() == QueryTypes.CREATE_DATABASE) {
+                    result += executeBatch(actionOnError);
                     createDBQuery = query;
                     localDataSource = createDatabase(createDBQuery, sqlDialect);
                     connection = localDataSource.getConnection();
@@ -151,60 +194,39 @@ public class SqlScriptRunner {
                         sqlDialect = matcher.group().trim();
                     continue;
                 }
-                String derivedQuery = query.getDerivedQuery();
-                try {
+                count++;
 
-                    count++;
+                if (batchSize > 0 && isBatchable(query)) {
 
-                    if (logOutput) {
-
-                        executionController.message("Executing query " + count + ":");
-                        executionController.queryMessage(query.getDerivedQuery());
-                    }
-
-                    statement = querySender.getPreparedStatement(derivedQuery);
-                    start = System.currentTimeMillis();
-                    sqlStatementResult = querySender.execute(query.getQueryType(), statement);
-                    if (sqlStatementResult.isException())
-                        if (sqlStatementResult.getSqlException() != null)
-                            throw sqlStatementResult.getSqlException();
-                    result += sqlStatementResult.getUpdateCount();
-
-                } catch (SQLException e) {
+                    ParameterizedQuery parameterizedQuery = ParameterizedQuery.parse(query.getQueryWithoutComments());
+                    if (parameterizedQuery != null && !notBatchableQueries.contains(parameterizedQuery.getSql())) {
 
-                    executionController.errorMessage("Error executing statement:");
-                    executionController.actionMessage(derivedQuery);
+                        if (logOutput) {
 
-                    if (actionOnError != ActionOnError.CONTINUE) {
-
-                        throw e;
-
-                    } else {
-
-                        executionController.errorMessage(e.getMessage());
-                    }
-
-                } finally {
-
-                    if (statement != null && !statement.isClosed()) {
-
-                        try {
-                            statement.close();
-                        } catch (SQLException e) {
-                            e.printStackTrace();
+                            executionController.message("Executing query " + count + " in batch:");
+                            executionController.queryMessage(query.getDerivedQuery());
                         }
-                    }
 
-                }
+                        if (!parameterizedQuery.getSql().equals(batchQuery))
+                            result += executeBatch(actionOnError);
 
-                end = System.currentTimeMillis();
-                if (logOutput) {
+                        result += addToBatch(parameterizedQuery, query, scriptReader.getStatementLine(), actionOnError);
+                        if (batchEntries.size() >= batchSize)
+                            result += executeBatch(actionOnError);
 
-                    executionController.message("Records affected: " + thisResult + "\nDuration: " + MiscUtils.formatDuration(end - start));
+                        commitIfNeeded(false);
+                        continue;
+                    }
                 }
 
+                result += executeBatch(actionOnError);
+                result += executeStatement(query, count, scriptReader.getStatementLine(), actionOnError);
+                commitIfNeeded(false);
             }
 
+            result += executeBatch(actionOnError);
+            commitIfNeeded(true);
+
         } catch (SQLException e) {
 
             sqlStatementResult.setSqlException(e);
@@ -217,7 +239,18 @@ public class SqlScriptRunner {
 
             sqlStatementResult.setOtherException(e);
 
+        } catch (IOException e) {
+
+            sqlStatementResult.setOtherException(e);
+            sqlStatementResult.setOtherErrorMessage(e.getMessage());
+
         } finally {
+            closeBatch();
+            try {
+                scriptReader.close();
+            } catch (IOException e) {
+                Log.warning("Error closing the script: " + e.getMessage());
+            }
             if (needCloseDatabase) {
                 try {
                     localDataSource.close();
@@ -234,6 +267,228 @@ public class SqlScriptRunner {
         return sqlStatementResult;
     }
 
+    private int executeStatement(DerivedQuery query, int number, int line,
+                                 ActionOnError actionOnError) throws SQLException {
+
+        String derivedQuery = query.getDerivedQuery();
+
+        // the statements of the failed batch are already printed
+        boolean logOutput = executionController.logOutput() && number > 0;
+        if (logOutput) {
+
+            executionController.message("Executing query " + number + ":");
+            executionController.queryMessage(derivedQuery);
+        }
+
+        int updateCount = 0;
+        long start = System.currentTimeMillis();
+        PreparedStatement statement = null;
+        try {
+
+            statement = querySender.getPreparedStatement(derivedQuery);
+            SqlStatementResult sqlStatementResult = querySender.execute(query.getQueryType(), statement);
+            if (sqlStatementResult.isException())
+                if (sqlStatementResult.getSqlException() != null)
+                    throw sqlStatementResult.getSqlException();
+            updateCount = Math.max(sqlStatementResult.getUpdateCount(), 0);
+            uncommitted++;
+
+        } catch (SQLException e) {
+
+            executionController.errorMessage("Error executing statement at line " + line + ":");
+            executionController.actionMessage(derivedQuery);
+
+            if (actionOnError != ActionOnError.CONTINUE) {
+
+                throw e;
+
+            } else {
+
+                executionController.errorMessage(e.getMessage());
+            }
+
+        } finally {
+
+            if (statement != null && !statement.isClosed()) {
+
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+
+        }
+
+        if (logOutput) {
+
+            long end = System.currentTimeMillis();
+            executionController.message("Records affected: " + updateCount + "\nDuration: " + MiscUtils.formatDuration(end - start));
+        }
+
+        return updateCount;
+    }
+
+    private boolean isBatchable(DerivedQuery query) {
+
+        int type = query.getQueryType();
+        return type == QueryTypes.INSERT || type == QueryTypes.UPDATE;
+    }
+
+    /**
+     * Adds the statement to the batch of the statements of its shape.
+     * The statement the parameters can not be set for is executed
+     * as is and its shape is not batched any more.
+     *
+     * @return the number of the records updated by the statement
+     *         executed without the batch
+     */
+    private int addToBatch(ParameterizedQuery parameterizedQuery, DerivedQuery query, int line,
+                           ActionOnError actionOnError) throws SQLException {
+
+        try {
+
+            if (batchStatement == null) {
+
+                batchStatement = querySender.getPreparedStatement(parameterizedQuery.getSql());
+                if (batchStatement == null)
+                    throw new SQLException("There is no connection for the batch");
+                batchQuery = parameterizedQuery.getSql();
+            }
+
+            List<Object> parameters = parameterizedQuery.getParameters();
+            for (int i = 0; i < parameters.size(); i++)
+                batchStatement.setObject(i + 1, parameters.get(i));
+            batchStatement.addBatch();
+
+        } catch (SQLException e) {
+
+            if (Log.isDebugEnabled()) {
+
+                Log.debug("Statement at line " + line + " can not be batched: " + e.getMessage());
+            }
+
+            notBatchableQueries.add(parameterizedQuery.getSql());
+            int result = executeBatch(actionOnError);
+            return result + executeStatement(query, 0, line, actionOnError);
+        }
+
+        batchEntries.add(new BatchEntry(query, line));
+        return 0;
+    }
+
+    /**
+     * Executes the pending batch. The statements the batch failed on
+     * and the statements not executed after the failure are executed
+     * one at a time to report the errors of the particular statements.
+     * In auto-commit mode the whole batch is executed again that way.
+     *
+     * @return the number of the updated records
+     */
+    private int executeBatch(ActionOnError actionOnError) throws SQLException {
+
+        if (batchStatement == null)
+            return 0;
+
+        List<BatchEntry> entries = new ArrayList<BatchEntry>(batchEntries);
+        int[] updateCounts;
+        try {
+
+            long start = System.currentTimeMillis();
+            updateCounts = entries.isEmpty() ? new int[0] : batchStatement.executeBatch();
+
+            if (executionController.logOutput() && !entries.isEmpty()) {
+
+                long end = System.currentTimeMillis();
+                executionController.message("Batch of " + entries.size() + " queries executed"
+                        + "\nDuration: " + MiscUtils.formatDuration(end - start));
+            }
+
+        } catch (BatchUpdateException e) {
+
+            updateCounts = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+            if (Log.isDebugEnabled()) {
+
+                Log.debug("Batch execution failed: " + e.getMessage());
+            }
+
+            // in auto-commit mode the failed batch is rolled back as a whole
+            // whatever the update counts report - run every statement again
+            if (batchStatement.getConnection().getAutoCommit()) {
+
+                updateCounts = new int[0];
+            }
+
+        } finally {
+
+            closeBatch();
+        }
+
+        int result = 0;
+        for (int i = 0; i < entries.size(); i++) {
+
+            if (i < updateCounts.length && updateCounts[i] != Statement.EXECUTE_FAILED) {
+
+                result += Math.max(updateCounts[i], 0);
+                uncommitted++;
+                continue;
+            }
+
+            BatchEntry entry = entries.get(i);
+            result += executeStatement(entry.query, 0, entry.line, actionOnError);
+        }
+
+        return result;
+    }
+
+    private void closeBatch() {
+
+        batchEntries.clear();
+        batchQuery = null;
+
+        if (batchStatement != null) {
+
+            try {
+                batchStatement.close();
+            } catch (SQLException e) {
+                Log.warning("Error closing the batch statement: " + e.getMessage());
+            }
+            batchStatement = null;
+        }
+    }
+
+    /**
+     * Commits the executed statements when the commit interval is set.
+     *
+     * @param force whether to commit whatever the number of the statements
+     */
+    private void commitIfNeeded(boolean force) throws SQLException {
+
+        if (commitInterval <= 0 || uncommitted == 0 || (!force && uncommitted < commitInterval))
+            return;
+
+        Connection conn = querySender.getConnection();
+        if (conn != null && !conn.isClosed() && !conn.getAutoCommit()) {
+
+            conn.commit();
+            if (executionController.logOutput()) {
+
+                executionController.message("Commit after " + uncommitted + " queries");
+            }
+        }
+        uncommitted = 0;
+    }
+
+    public void setBatchSize(int batchSize) {
+
+        this.batchSize = batchSize;
+    }
+
+    public void setCommitInterval(int commitInterval) {
+
+        this.commitInterval = commitInterval;
+    }
+
     public boolean isNeedCloseDatabase() {
         return needCloseDatabase;
     }
@@ -309,16 +564,10 @@ public class SqlScriptRunner {
                 charSet = charSet.substring(0, idx);
         }
 
-        URL[] urlDriver = new URL[0];
-        Class clazzDriver = null;
-        URL[] urls = new URL[0];
-        Class clazzdb = null;
         Object odb = null;
         try {
-            urlDriver = MiscUtils.loadURLs("./lib/jaybird-3.jar"); // TODO Must use DriverLoader
-            ClassLoader clD = new URLClassLoader(urlDriver);
-            clazzDriver = clD.loadClass("org.firebirdsql.jdbc.FBDriver");
-            Object o = clazzDriver.newInstance();
+            Object o = DynamicLibraryLoader.loadingObjectFromClassLoader(this,
+                    "org.firebirdsql.jdbc.FBDriver", "./lib/jaybird-3.jar"); // TODO Must use DriverLoader
             Driver driver = (Driver) o;
 
             Log.info("Database creation via jaybird");
@@ -330,18 +579,9 @@ public class SqlScriptRunner {
                 throw new SQLException(sb.toString());
             }
 
-            urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            ClassLoader cl = new URLClassLoader(urls, o.getClass().getClassLoader());
-            clazzdb = cl.loadClass("biz.redsoft.FBCreateDatabaseImpl");
-            odb = clazzdb.newInstance();
+            odb = DynamicLibraryLoader.loadingObjectFromClassLoader(o, "FBCreateDatabaseImpl");
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
         }
 
         IFBCreateDatabase db = (IFBCreateDatabase) odb;
@@ -433,11 +673,18 @@ public class SqlScriptRunner {
         }
     }
 
+    private static class BatchEntry {
 
-}
-
+        private final DerivedQuery query;
 
+        private final int line;
 
+        BatchEntry(DerivedQuery query, int line) {
 
+            this.query = query;
+            this.line = line;
+        }
+    }
 
+}
 
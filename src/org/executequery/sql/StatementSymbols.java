@@ -0,0 +1,225 @@
+/*
+ * StatementSymbols.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.executequery.log.Log;
+import org.underworldlabs.sqlParser.REDDATABASESqlBaseListener;
+import org.underworldlabs.sqlParser.REDDATABASESqlLexer;
+import org.underworldlabs.sqlParser.REDDATABASESqlParser;
+
+import java.util.*;
+
+/**
+ * The names declared by one statement - the tables with their aliases,
+ * the common table expressions and the variables and parameters of
+ * blocks and modules - read from the parse tree of the statement.
+ * <p>
+ * Names are held upper case unless quoted and every lookup is a
+ * single hash lookup.
+ */
+public final class StatementSymbols {
+
+    public static final StatementSymbols EMPTY = new StatementSymbols();
+
+    private final List<QueryTable> tables = new ArrayList<QueryTable>();
+
+    /**
+     * table names and aliases mapped to the table they stand for
+     */
+    private final Map<String, QueryTable> tablesByName = new HashMap<String, QueryTable>();
+
+    private final Set<String> commonTableExpressions = new HashSet<String>();
+
+    private final Set<String> variables = new LinkedHashSet<String>();
+
+    private StatementSymbols() {
+    }
+
+    /**
+     * Parses the specified statement and returns its symbols. Statements
+     * the grammar does not fully cover yield the symbols of whatever
+     * part of the statement could be parsed.
+     *
+     * @param statement the statement text
+     * @return the symbols of the statement
+     */
+    public static StatementSymbols parse(String statement) {
+
+        StatementSymbols symbols = new StatementSymbols();
+        try {
+
+            REDDATABASESqlLexer lexer = new REDDATABASESqlLexer(CharStreams.fromString(statement));
+            lexer.removeErrorListeners();
+
+            REDDATABASESqlParser parser = new REDDATABASESqlParser(new CommonTokenStream(lexer));
+            List<? extends ANTLRErrorListener> listeners = parser.getErrorListeners();
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                if (listeners.get(i) instanceof ConsoleErrorListener)
+                    parser.removeErrorListener(listeners.get(i));
+            }
+
+            // the symbols only need the shape of the statement
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            new ParseTreeWalker().walk(symbols.new SymbolsListener(), parser.parse());
+
+        } catch (RuntimeException e) {
+
+            if (Log.isTraceEnabled()) {
+
+                Log.trace("Statement symbols incomplete: " + e.getMessage());
+            }
+        }
+
+        return symbols;
+    }
+
+    /**
+     * Returns the tables of the statement in the order they appear.
+     */
+    public List<QueryTable> getTables() {
+
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * Returns the table the specified name or alias refers to.
+     *
+     * @param nameOrAlias a table name or alias
+     * @return the table or null
+     */
+    public QueryTable getTableForNameOrAlias(String nameOrAlias) {
+
+        return tablesByName.get(normalise(nameOrAlias));
+    }
+
+    public boolean isCommonTableExpression(String name) {
+
+        return commonTableExpressions.contains(normalise(name));
+    }
+
+    public boolean isVariable(String name) {
+
+        return variables.contains(normalise(name));
+    }
+
+    /**
+     * Returns the declared variables and parameters.
+     */
+    public Set<String> getVariables() {
+
+        return Collections.unmodifiableSet(variables);
+    }
+
+    public boolean isEmpty() {
+
+        return tables.isEmpty() && commonTableExpressions.isEmpty() && variables.isEmpty();
+    }
+
+    private void addTable(ParserRuleContext name, ParserRuleContext alias) {
+
+        if (name == null) {
+
+            return;
+        }
+
+        String tableName = normalise(name.getText());
+        String tableAlias = alias != null ? normalise(alias.getText()) : null;
+
+        QueryTable table = new QueryTable(tableName, tableAlias);
+        tables.add(table);
+
+        if (!tablesByName.containsKey(tableName)) {
+
+            tablesByName.put(tableName, table);
+        }
+        if (tableAlias != null) {
+
+            tablesByName.put(tableAlias, table);
+        }
+    }
+
+    private static String normalise(String name) {
+
+        if (name == null) {
+
+            return null;
+        }
+
+        String value = name.trim();
+        if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+
+            return value.substring(1, value.length() - 1);
+        }
+        return value.toUpperCase();
+    }
+
+    private final class SymbolsListener extends REDDATABASESqlBaseListener {
+
+        @Override
+        public void enterTable_or_subquery(REDDATABASESqlParser.Table_or_subqueryContext ctx) {
+            addTable(ctx.table_name(), ctx.table_alias());
+        }
+
+        @Override
+        public void enterQualified_table_name(REDDATABASESqlParser.Qualified_table_nameContext ctx) {
+            addTable(ctx.table_name(), null);
+        }
+
+        @Override
+        public void enterInsert_stmt(REDDATABASESqlParser.Insert_stmtContext ctx) {
+            addTable(ctx.table_name(), null);
+        }
+
+        @Override
+        public void enterCommon_table_expression(REDDATABASESqlParser.Common_table_expressionContext ctx) {
+            if (ctx.table_name() != null)
+                commonTableExpressions.add(normalise(ctx.table_name().getText()));
+        }
+
+        @Override
+        public void enterCte_table_name(REDDATABASESqlParser.Cte_table_nameContext ctx) {
+            if (ctx.table_name() != null)
+                commonTableExpressions.add(normalise(ctx.table_name().getText()));
+        }
+
+        @Override
+        public void enterLocal_variable(REDDATABASESqlParser.Local_variableContext ctx) {
+            if (ctx.variable_name() != null)
+                variables.add(normalise(ctx.variable_name().getText()));
+        }
+
+        @Override
+        public void enterDesciption_parameter(REDDATABASESqlParser.Desciption_parameterContext ctx) {
+            if (ctx.parameter_name() != null)
+                variables.add(normalise(ctx.parameter_name().getText()));
+        }
+
+    }
+
+}
+
@@ -32,6 +32,28 @@ public abstract class AbstractSortableTableModel extends AbstractTableModel
         return true;
     }
 
+    public Object getSortValueAt(int row, int column) {
+
+        Object value = getValueAt(row, column);
+        if (value instanceof TableCellValue) {
+
+            return ((TableCellValue) value).getValue();
+        }
+
+        return value;
+    }
+
+    public Object[] getSortValues(int column) {
+
+        Object[] values = new Object[getRowCount()];
+        for (int row = 0; row < values.length; row++) {
+
+            values[row] = getSortValueAt(row, column);
+        }
+
+        return values;
+    }
+
     protected String bundleString(String key) {
         return Bundles.get(getClass(), key);
     }
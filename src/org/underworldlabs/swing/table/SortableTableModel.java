@@ -26,6 +26,17 @@ public interface SortableTableModel extends TableModel {
 
     boolean canSortColumn(int column);
 
+    /**
+     * Returns the value of the specified cell to compare when sorting.
+     */
+    Object getSortValueAt(int row, int column);
+
+    /**
+     * Returns the values of the specified column to compare when sorting,
+     * one for each row in row order.
+     */
+    Object[] getSortValues(int column);
+
 }
 
 
@@ -117,6 +117,11 @@ public class TableSorter extends AbstractTableModel {
     private Row[] viewToModel;
     private int[] modelToView;
 
+    /**
+     * The values of the sorting columns while the rows are sorted
+     */
+    private Map sortValues;
+
     private JTableHeader tableHeader;
     private MouseListener mouseListener;
     private TableModelListener tableModelListener;
@@ -305,7 +310,22 @@ public class TableSorter extends AbstractTableModel {
 
             if (isSorting()) {
 
-                Arrays.sort(viewToModel);
+                // read each sorting column once instead of per comparison
+                sortValues = new HashMap();
+                for (int i = 0, n = sortingColumns.size(); i < n; i++) {
+
+                    int column = ((Directive) sortingColumns.get(i)).column;
+                    sortValues.put(column, tableModel.getSortValues(column));
+                }
+
+                try {
+
+                    Arrays.sort(viewToModel);
+
+                } finally {
+
+                    sortValues = null;
+                }
             }
 
         }
@@ -580,14 +600,16 @@ public class TableSorter extends AbstractTableModel {
 
         private Object valueToCompareFromModel(int row, int column) {
 
-            Object object = tableModel.getValueAt(row, column);
+            if (sortValues != null) {
 
-            if (object instanceof TableCellValue) {
+                Object[] values = (Object[]) sortValues.get(column);
+                if (values != null && row < values.length) {
 
-                object = ((TableCellValue) object).getValue();
+                    return values[row];
+                }
             }
 
-            return object;
+            return tableModel.getSortValueAt(row, column);
         }
 
     } // class Row
@@ -20,8 +20,19 @@
 
 package org.underworldlabs.util;
 
+import org.executequery.log.Log;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Takis Diakoumis
@@ -81,68 +92,232 @@ public class DynamicLibraryLoader extends URLClassLoader {
 
     }
 
+    /**
+     * Default search path of the Firebird plugin implementation library.
+     */
+    public static final String FBPLUGIN_IMPL_PATH = "./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar";
+
+    private static final String FBPLUGIN_PACKAGE = "biz.redsoft.";
+
+    /**
+     * Resolved and verified library URLs keyed by the search path.
+     */
+    private static final Map<String, URL[]> RESOLVED_PATHS = new ConcurrentHashMap<String, URL[]>();
+
+    /**
+     * Plugin class loaders - one per search path for every (driver) parent class loader.
+     */
+    private static final Map<ClassLoader, Map<String, PluginClassLoader>> PLUGIN_LOADERS =
+            new ConcurrentHashMap<ClassLoader, Map<String, PluginClassLoader>>();
+
     public static Object loadingObjectFromClassLoader(Object unwrapObject, String shortClassName)
             throws ClassNotFoundException {
-        return loadingObjectFromClassLoader(unwrapObject, "biz.redsoft."
-                + shortClassName, "./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
+        return loadingObjectFromClassLoader(unwrapObject, FBPLUGIN_PACKAGE
+                + shortClassName, FBPLUGIN_IMPL_PATH);
     }
 
     public static Object loadingObjectFromClassLoader(Object unwrapObject, String className, String jarPath)
             throws ClassNotFoundException {
 
-        URL[] urls;
-        Class clazzdb;
-        Object odb = null;
         try {
-            urls = MiscUtils.loadURLs(jarPath);
-            ClassLoader cl = new URLClassLoader(urls, unwrapObject.getClass().getClassLoader());
-            clazzdb = cl.loadClass(className);
-            odb = clazzdb.newInstance();
+            return pluginClassLoader(unwrapObject, jarPath).newInstance(className);
         } catch (Exception e) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Error loading class ");
-            sb.append(className);
-            sb.append(" from ");
-            sb.append(jarPath);
-            throw new ClassNotFoundException(sb.toString(), e.getCause());
+            throw loadingException(className, jarPath, e);
         }
-
-        return odb;
     }
 
     public static Object loadingObjectFromClassLoaderWithParams(Object unwrapObject, String shortClassName, Parameter... params)
             throws ClassNotFoundException {
-        return loadingObjectFromClassLoaderWithParams(unwrapObject, "biz.redsoft."
-                + shortClassName, "./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar", params);
+        return loadingObjectFromClassLoaderWithParams(unwrapObject, FBPLUGIN_PACKAGE
+                + shortClassName, FBPLUGIN_IMPL_PATH, params);
     }
 
     public static Object loadingObjectFromClassLoaderWithParams(Object unwrapObject, String className, String jarPath, Parameter... params)
             throws ClassNotFoundException {
 
-        URL[] urls;
-        Class clazzdb;
-        Object odb = null;
+        Class<?>[] types = new Class<?>[params.length];
+        Object[] parameters = new Object[params.length];
+        for (int i = 0; i < params.length; i++) {
+            types[i] = params[i].type;
+            parameters[i] = params[i].parameter;
+        }
+
         try {
-            urls = MiscUtils.loadURLs(jarPath);
-            ClassLoader cl = new URLClassLoader(urls, unwrapObject.getClass().getClassLoader());
-            clazzdb = cl.loadClass(className);
-            Class<?>[] types = new Class<?>[params.length];
-            Object[] parameters = new Object[params.length];
-            for (int i = 0; i < params.length; i++) {
-                types[i] = params[i].type;
-                parameters[i] = params[i].parameter;
-            }
-            odb = clazzdb.getConstructor(types).newInstance(parameters);
+            return pluginClassLoader(unwrapObject, jarPath).newInstance(className, types, parameters);
         } catch (Exception e) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Error loading class ");
-            sb.append(className);
-            sb.append(" from ");
-            sb.append(jarPath);
-            throw new ClassNotFoundException(sb.toString(), e.getCause());
+            throw loadingException(className, jarPath, e);
+        }
+    }
+
+    /**
+     * Returns the plugin implementation class with the specified short name
+     * (without the <code>biz.redsoft.</code> package) visible from the class
+     * loader of the specified object - typically an unwrapped driver connection.
+     */
+    public static Class<?> loadPluginClass(Object unwrapObject, String shortClassName)
+            throws ClassNotFoundException {
+
+        String className = FBPLUGIN_PACKAGE + shortClassName;
+        try {
+            return pluginClassLoader(unwrapObject, FBPLUGIN_IMPL_PATH).loadPluginClass(className);
+        } catch (Exception e) {
+            throw loadingException(className, FBPLUGIN_IMPL_PATH, e);
+        }
+    }
+
+    /**
+     * Releases the cached plugin class loaders created over the specified
+     * parent class loader. Called when a driver is unloaded.
+     */
+    public static void releasePluginClassLoaders(ClassLoader parent) {
+
+        if (parent != null) {
+            PLUGIN_LOADERS.remove(parent);
+        }
+    }
+
+    private static PluginClassLoader pluginClassLoader(Object unwrapObject, String jarPath)
+            throws MalformedURLException {
+
+        ClassLoader parent = unwrapObject.getClass().getClassLoader();
+        if (parent == null) {
+            parent = ClassLoader.getSystemClassLoader();
+        }
+
+        Map<String, PluginClassLoader> loaders = PLUGIN_LOADERS.get(parent);
+        if (loaders == null) {
+            loaders = new ConcurrentHashMap<String, PluginClassLoader>();
+            Map<String, PluginClassLoader> existing = PLUGIN_LOADERS.putIfAbsent(parent, loaders);
+            if (existing != null) {
+                loaders = existing;
+            }
+        }
+
+        PluginClassLoader loader = loaders.get(jarPath);
+        if (loader == null) {
+            synchronized (loaders) {
+                loader = loaders.get(jarPath);
+                if (loader == null) {
+                    loader = new PluginClassLoader(resolvePath(jarPath), parent);
+                    loaders.put(jarPath, loader);
+                }
+            }
+        }
+
+        return loader;
+    }
+
+    private static URL[] resolvePath(String jarPath) throws MalformedURLException {
+
+        URL[] urls = RESOLVED_PATHS.get(jarPath);
+        if (urls == null) {
+
+            List<URL> existing = new ArrayList<URL>();
+            for (URL url : MiscUtils.loadURLs(jarPath)) {
+                if (url != null && exists(url)) {
+                    existing.add(url);
+                }
+            }
+
+            if (existing.isEmpty()) {
+                Log.debug("No library found at " + jarPath + ", classes will be loaded from the parent class loader");
+            }
+
+            urls = existing.toArray(new URL[existing.size()]);
+            RESOLVED_PATHS.put(jarPath, urls);
+        }
+
+        return urls;
+    }
+
+    private static boolean exists(URL url) {
+
+        try {
+            return new File(url.toURI()).exists();
+        } catch (URISyntaxException e) {
+            return true;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static ClassNotFoundException loadingException(String className, String jarPath, Exception e) {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Error loading class ");
+        sb.append(className);
+        sb.append(" from ");
+        sb.append(jarPath);
+
+        Throwable cause = e;
+        if (e instanceof InvocationTargetException) {
+            cause = e.getCause();
+        }
+
+        return new ClassNotFoundException(sb.toString(), cause);
+    }
+
+    /**
+     * Plugin class loader caching the loaded classes and their constructors.
+     */
+    private static class PluginClassLoader {
+
+        private final ClassLoader loader;
+
+        private final Map<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+
+        private final Map<String, Constructor<?>> constructors = new ConcurrentHashMap<String, Constructor<?>>();
+
+        PluginClassLoader(URL[] urls, ClassLoader parent) {
+
+            if (urls.length > 0) {
+                loader = new URLClassLoader(urls, parent);
+            } else {
+                loader = parent;
+            }
+        }
+
+        Class<?> loadPluginClass(String className) throws ClassNotFoundException {
+
+            Class<?> clazz = classes.get(className);
+            if (clazz == null) {
+                clazz = loader.loadClass(className);
+                classes.put(className, clazz);
+            }
+
+            return clazz;
+        }
+
+        Object newInstance(String className) throws Exception {
+
+            return newInstance(className, new Class<?>[0], new Object[0]);
+        }
+
+        Object newInstance(String className, Class<?>[] types, Object[] parameters) throws Exception {
+
+            String key = constructorKey(className, types);
+            Constructor<?> constructor = constructors.get(key);
+            if (constructor == null) {
+                constructor = loadPluginClass(className).getConstructor(types);
+                constructors.put(key, constructor);
+            }
+
+            return constructor.newInstance(parameters);
+        }
+
+        private String constructorKey(String className, Class<?>[] types) {
+
+            if (types.length == 0) {
+                return className;
+            }
+
+            StringBuilder sb = new StringBuilder(className);
+            for (Class<?> type : types) {
+                sb.append(',').append(type.getName());
+            }
+            return sb.toString();
         }
 
-        return odb;
     }
 
     public static class Parameter {
@@ -0,0 +1,149 @@
+/*
+ * MappedFileReader.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.underworldlabs.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of a text file decoded from the memory mapped windows of the file.
+ * <p>
+ * Only one window is mapped at a time so the files of any size are read
+ * without copying them to the heap.
+ */
+public class MappedFileReader extends Reader {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private static final int CHAR_BUFFER_SIZE = 8192;
+
+    private final FileChannel channel;
+
+    private final CharsetDecoder decoder;
+
+    private final long size;
+
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    private MappedByteBuffer window;
+
+    private long windowStart;
+
+    private boolean endOfInput;
+
+    public MappedFileReader(File file, Charset charset) throws IOException {
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        size = channel.size();
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        chars.flip();
+        map(0);
+    }
+
+    /**
+     * Returns the number of the bytes of the file read so far.
+     */
+    public long getPosition() {
+
+        return window != null ? windowStart + window.position() : size;
+    }
+
+    public long getSize() {
+
+        return size;
+    }
+
+    public int read(char[] cbuf, int off, int len) throws IOException {
+
+        if (len == 0)
+            return 0;
+
+        if (!chars.hasRemaining() && !decode())
+            return -1;
+
+        int count = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, count);
+        return count;
+    }
+
+    public void close() throws IOException {
+
+        window = null;
+        channel.close();
+    }
+
+    private boolean decode() throws IOException {
+
+        chars.clear();
+        try {
+
+            while (chars.position() == 0 && !endOfInput) {
+
+                if (window == null)
+                    throw new IOException("Reader closed");
+
+                boolean last = windowStart + window.limit() >= size;
+                CoderResult result = decoder.decode(window, chars, last);
+                if (result.isError())
+                    result.throwException();
+
+                if (result.isUnderflow()) {
+
+                    if (last) {
+
+                        decoder.flush(chars);
+                        endOfInput = true;
+
+                    } else {
+
+                        // the bytes of a split character are mapped again
+                        map(windowStart + window.position());
+                    }
+                }
+            }
+
+        } finally {
+
+            chars.flip();
+        }
+
+        return chars.hasRemaining();
+    }
+
+    private void map(long start) throws IOException {
+
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+    }
+
+}